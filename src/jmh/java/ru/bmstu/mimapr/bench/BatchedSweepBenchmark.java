@@ -0,0 +1,68 @@
+package ru.bmstu.mimapr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.sweep.RunSummary;
+import ru.bmstu.mimapr.sweep.SweepRunner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Серия Монте-Карло в одном потоке: runs прогонов по одному (batch = 1)
+ * или пакетами на Vector API. Время операции - время всей серии
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchedSweepBenchmark {
+    @Param({"1e-5"})
+    public double timeEnd;
+
+    @Param({"16"})
+    public int runs;
+
+    @Param({"1", "4", "8", "16"})
+    public int batch;
+
+    private final List<CircuitParameters> parameters = new ArrayList<>();
+    private SweepRunner runner;
+
+    @Setup
+    public void setUp() {
+        Iterator<CircuitParameters> it =
+                SweepRunner.monteCarlo(new CircuitParameters(), 0.1, 1L, runs);
+        while (it.hasNext()) parameters.add(it.next());
+        runner = new SweepRunner(1, timeEnd, LinearSolverKind.DENSE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        runner.shutdown();
+    }
+
+    @Benchmark
+    public int sweep() {
+        int iterations = 0;
+        for (int first = 0; first < runs; first += batch) {
+            List<CircuitParameters> part = parameters.subList(first, Math.min(runs, first + batch));
+            if (batch == 1) {
+                iterations += runner.runOne(first, part.get(0)).iterations;
+            } else {
+                for (RunSummary s : runner.runBatch(first, part)) iterations += s.iterations;
+            }
+        }
+        return iterations;
+    }
+}
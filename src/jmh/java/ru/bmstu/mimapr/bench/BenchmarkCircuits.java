@@ -0,0 +1,62 @@
+package ru.bmstu.mimapr.bench;
+
+import ru.bmstu.mimapr.netlist.AssembledCircuit;
+import ru.bmstu.mimapr.netlist.CircuitAssembler;
+import ru.bmstu.mimapr.netlist.NetlistParser;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.CircuitSystemModel;
+
+import java.util.SplittableRandom;
+
+/*
+ * Схемы и матрицы для бенчмарков
+ *
+ * Размер задачи задается числом звеньев RC-цепочки с диодом в каждом звене:
+ * 0 - встроенная схема CircuitSystem, иначе схема из схемного описания
+ * */
+final class BenchmarkCircuits {
+    private BenchmarkCircuits() {}
+
+    static CircuitModel model(int sections) {
+        return (sections == 0) ? new CircuitSystemModel() : ladder(sections);
+    }
+
+    // V1 - R - (C || D) - R - (C || D) ... , 2 * sections + 2 неизвестных
+    static AssembledCircuit ladder(int sections) {
+        StringBuilder sb = new StringBuilder("* RC ladder\n");
+        sb.append("V1 1 0 SIN(0 1 10k)\n");
+        for (int i = 1; i <= sections; i++) {
+            sb.append("R").append(i).append(' ').append(i).append(' ').append(i + 1);
+            sb.append(" 100\n");
+            sb.append("C").append(i).append(' ').append(i + 1).append(" 0 10n\n");
+            sb.append("D").append(i).append(' ').append(i + 1).append(" 0 IS=1e-14\n");
+        }
+        sb.append(".PROBE V(").append(sections + 1).append(")\n.END\n");
+        return CircuitAssembler.assemble(NetlistParser.parse(sb.toString()));
+    }
+
+    // Случайная матрица с диагональным преобладанием: метод Гаусса без выбора
+    // ведущего элемента устойчив на ней так же, как на матрице Якоби схемы
+    static double[][] diagonallyDominant(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[][] a = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            double sum = 0.0;
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    a[i][j] = random.nextDouble(-1.0, 1.0);
+                    sum += Math.abs(a[i][j]);
+                }
+            }
+            a[i][i] = sum + 1.0;
+        }
+        return a;
+    }
+
+    static double[] vector(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] b = new double[n];
+        for (int i = 0; i < n; i++) b[i] = random.nextDouble(-1.0, 1.0);
+        return b;
+    }
+}
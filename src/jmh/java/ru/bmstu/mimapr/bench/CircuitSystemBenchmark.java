@@ -0,0 +1,94 @@
+package ru.bmstu.mimapr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.model.PhaseVariables;
+import ru.bmstu.mimapr.model.PrevStateVariables;
+import ru.bmstu.mimapr.model.TimeDemon;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.CircuitSystem;
+import ru.bmstu.mimapr.numerics.SparseMatrix;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Построение матрицы Якоби и вектора невязок
+ *
+ * create* - исходные функции CircuitSystem с выделением памяти,
+ * fill* - заполнение на месте, model* - модель произвольной схемы
+ * размера sections (0 - встроенная схема)
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CircuitSystemBenchmark {
+    @Param({"0", "10", "100"})
+    public int sections;
+
+    private static final double DELTA_T = 1e-8;
+
+    private final TimeDemon td = new TimeDemon(1e-5, DELTA_T, true);
+    private final PhaseVariables pv = new PhaseVariables();
+    private final PrevStateVariables prev = new PrevStateVariables();
+    private final double[][] jacobi = new double[Data.N][Data.N];
+    private final double[] vector = new double[Data.N];
+
+    private CircuitModel model;
+    private SparseMatrix modelJacobi;
+    private double[] approx;
+    private double[] history;
+    private double[] modelVector;
+
+    @Setup
+    public void setup() {
+        pv.Ucb = 0.3;
+        pv.phi1 = 1.0;
+        pv.phi2 = 0.5;
+        model = BenchmarkCircuits.model(sections);
+        modelJacobi = model.createJacobiMatrix();
+        approx = BenchmarkCircuits.vector(model.size(), 3L);
+        history = new double[model.stateCount()];
+        modelVector = new double[model.size()];
+    }
+
+    @Benchmark
+    public double[][] createJacobiMatrix() {
+        return CircuitSystem.createJacobiMatrix(DELTA_T, pv.Ucb);
+    }
+
+    @Benchmark
+    public double[][] fillJacobiMatrix() {
+        CircuitSystem.fillJacobiMatrix(jacobi, DELTA_T, pv.Ucb);
+        return jacobi;
+    }
+
+    @Benchmark
+    public double[] createVector() {
+        return CircuitSystem.createVector(td, pv, prev);
+    }
+
+    @Benchmark
+    public double[] fillVector() {
+        CircuitSystem.fillVector(vector, td, pv, prev);
+        return vector;
+    }
+
+    @Benchmark
+    public SparseMatrix modelJacobiMatrix() {
+        model.fillJacobiMatrix(modelJacobi, DELTA_T, approx);
+        return modelJacobi;
+    }
+
+    @Benchmark
+    public double[] modelVector() {
+        model.fillVector(modelVector, td.currT, DELTA_T, approx, history);
+        return modelVector;
+    }
+}
@@ -0,0 +1,171 @@
+package ru.bmstu.mimapr.bench;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.io.OutputUtils;
+import ru.bmstu.mimapr.model.DoubleList;
+import ru.bmstu.mimapr.numerics.CircuitSystemModel;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/*
+ * Сравнение формул интегрирования на встроенной схеме при равной точности
+ *
+ * Запуск: ./gradlew compareMethods [-Pcompare.args="lte 1e-3"] - способ выбора
+ * шага и требуемое максимальное отклонение. Для каждой формулы множитель допусков
+ * TransientAnalysis.toleranceScale подбирается так, чтобы максимальное отклонение
+ * потенциалов на сетке SAVE_DT от эталона совпало с требуемым с точностью до
+ * TARGET_RATIO, и печатается число шагов, решений СЛАУ и время этого расчета.
+ * Эталон - формула трапеций с выбором шага по локальной погрешности и допусками,
+ * уменьшенными в 1 / REFERENCE_SCALE раз. Точки вывода всех расчетов
+ * интерполируются (denseOutput), иначе отклонение определялось бы шагом, а не формулой
+ * */
+public final class IntegratorComparison {
+    private IntegratorComparison() {}
+
+    private static final int[] PROBES = {10, 11, 13, 14};
+    private static final double DEFAULT_TARGET = 1e-3;
+    private static final double REFERENCE_SCALE = 1e-4;
+    private static final double TARGET_RATIO = 1.2;
+    private static final int MAX_TUNING_RUNS = 12;
+    // Границы изменения множителя допусков за одну итерацию подбора
+    private static final double MAX_SCALE_CHANGE = 100.0;
+
+    public static void main(String[] args) throws IOException {
+        StepControlKind stepControl =
+                (args.length > 0)
+                        ? StepControlKind.valueOf(args[0].toUpperCase(Locale.ROOT))
+                        : Data.STEP_CONTROL;
+        double target = (args.length > 1) ? Double.parseDouble(args[1]) : DEFAULT_TARGET;
+        run(System.out, stepControl, target);
+    }
+
+    private static final class Result {
+        double scale;
+        double deviation;
+        long accepted;
+        long rejected;
+        long solves;
+        double seconds;
+    }
+
+    public static void run(PrintStream out, StepControlKind stepControl, double target)
+            throws IOException {
+        TransientAnalysis reference =
+                analysis(IntegrationMethodKind.TRAPEZOIDAL, StepControlKind.LTE, REFERENCE_SCALE);
+        DoubleList[] expected = sample(reference);
+
+        out.println("target max_dev " + OutputUtils.fmt(target) + ", step control " + stepControl);
+        out.println(
+                "method\ttolerance_scale\tmax_dev\taccepted\trejected\tsolves\twall_s"
+                        + "\tsim_s_per_wall_s\truns");
+        for (IntegrationMethodKind method : IntegrationMethodKind.values()) {
+            Result best = null;
+            double scale = 1.0;
+            double prevLogScale = Double.NaN;
+            double prevLogError = Double.NaN;
+            int runs = 0;
+            while (runs < MAX_TUNING_RUNS) {
+                Result r = measure(method, stepControl, scale, expected);
+                runs++;
+                final double logError = Math.log(r.deviation / target);
+                if (best == null
+                        || Math.abs(logError) < Math.abs(Math.log(best.deviation / target))) {
+                    best = r;
+                }
+                if (Math.abs(logError) < Math.log(TARGET_RATIO)) break;
+
+                // Секущая в логарифмах: отклонение примерно степенная функция допусков
+                final double logScale = Math.log(scale);
+                double slope = 1.0;
+                if (!Double.isNaN(prevLogScale) && logScale != prevLogScale) {
+                    slope = (logError - prevLogError) / (logScale - prevLogScale);
+                }
+                if (!(slope > 0.1)) slope = 1.0;
+                final double change =
+                        Math.max(
+                                -Math.log(MAX_SCALE_CHANGE),
+                                Math.min(Math.log(MAX_SCALE_CHANGE), -logError / slope));
+                prevLogScale = logScale;
+                prevLogError = logError;
+                scale = Math.exp(logScale + change);
+            }
+
+            out.println(
+                    method
+                            + "\t"
+                            + OutputUtils.fmt(best.scale)
+                            + "\t"
+                            + OutputUtils.fmt(best.deviation)
+                            + "\t"
+                            + best.accepted
+                            + "\t"
+                            + best.rejected
+                            + "\t"
+                            + best.solves
+                            + "\t"
+                            + OutputUtils.fmt(best.seconds)
+                            + "\t"
+                            + OutputUtils.fmt((Data.TIME_END - Data.TIME_START) / best.seconds)
+                            + "\t"
+                            + runs);
+        }
+    }
+
+    private static Result measure(
+            IntegrationMethodKind method,
+            StepControlKind stepControl,
+            double scale,
+            DoubleList[] expected)
+            throws IOException {
+        TransientAnalysis analysis = analysis(method, stepControl, scale);
+        long start = System.nanoTime();
+        DoubleList[] samples = sample(analysis);
+
+        Result r = new Result();
+        r.seconds = (System.nanoTime() - start) / 1e9;
+        r.scale = scale;
+        r.deviation = maxDeviation(expected, samples);
+        r.accepted = analysis.acceptedSteps();
+        r.rejected = analysis.rejectedSteps();
+        r.solves = analysis.workspace.solves;
+        return r;
+    }
+
+    private static TransientAnalysis analysis(
+            IntegrationMethodKind method, StepControlKind stepControl, double scale) {
+        TransientAnalysis analysis =
+                new TransientAnalysis(new CircuitSystemModel(), Data.LINEAR_SOLVER, method);
+        analysis.stepControl = stepControl;
+        analysis.toleranceScale = scale;
+        analysis.denseOutput = true;
+        analysis.progressOutput = false;
+        return analysis;
+    }
+
+    private static DoubleList[] sample(TransientAnalysis analysis) throws IOException {
+        DoubleList[] samples = new DoubleList[PROBES.length];
+        for (int i = 0; i < samples.length; i++) samples[i] = new DoubleList();
+        analysis.run(
+                Data.TIME_END,
+                (t, x) -> {
+                    for (int i = 0; i < PROBES.length; i++) samples[i].add(x[PROBES[i]]);
+                });
+        return samples;
+    }
+
+    private static double maxDeviation(DoubleList[] a, DoubleList[] b) {
+        double dev = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            int n = Math.min(a[i].size(), b[i].size());
+            for (int k = 0; k < n; k++) {
+                dev = Math.max(dev, Math.abs(a[i].get(k) - b[i].get(k)));
+            }
+        }
+        return dev;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.bmstu.mimapr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.bmstu.mimapr.numerics.DenseLuSolver;
+import ru.bmstu.mimapr.numerics.LinearAlgebra;
+
+import java.util.concurrent.TimeUnit;
+
+// Плотные СЛАУ: метод Гаусса с выделением памяти и без, LU-разложение и решение
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LinearAlgebraBenchmark {
+    @Param({"16", "64", "256"})
+    public int n;
+
+    private double[][] matrix;
+    private double[] rhs;
+    private double[] x;
+    private double[][] aScratch;
+    private double[] bScratch;
+    private DenseLuSolver factored;
+    private DenseLuSolver solver;
+
+    @Setup
+    public void setup() {
+        matrix = BenchmarkCircuits.diagonallyDominant(n, 1L);
+        rhs = BenchmarkCircuits.vector(n, 2L);
+        x = new double[n];
+        aScratch = new double[n][n];
+        bScratch = new double[n];
+        solver = new DenseLuSolver(n);
+        factored = new DenseLuSolver(n);
+        factored.factor(matrix);
+    }
+
+    @Benchmark
+    public double[] gauss() {
+        return LinearAlgebra.gauss(matrix, rhs);
+    }
+
+    @Benchmark
+    public double[] gaussInPlace() {
+        LinearAlgebra.gauss(matrix, rhs, x, aScratch, bScratch);
+        return x;
+    }
+
+    @Benchmark
+    public double[] luFactorSolve() {
+        solver.factor(matrix);
+        solver.solve(rhs, x);
+        return x;
+    }
+
+    // Решение по готовому разложению, как в модифицированном методе Ньютона
+    @Benchmark
+    public double[] luSolve() {
+        factored.solve(rhs, x);
+        return x;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.bmstu.mimapr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.model.NewtonMethodResults;
+import ru.bmstu.mimapr.model.PhaseVariables;
+import ru.bmstu.mimapr.model.PrevStateVariables;
+import ru.bmstu.mimapr.model.TimeDemon;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.ModelWorkspace;
+import ru.bmstu.mimapr.numerics.NewtonSolver;
+import ru.bmstu.mimapr.numerics.SolverWorkspace;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Метод Ньютона на steps последовательных шагах по времени с постоянным шагом
+ *
+ * legacy* - исходный метод для встроенной схемы с выделением памяти и в рабочей
+ * памяти, оба с решателем по умолчанию (Data.LINEAR_SOLVER) и одинаковой передачей
+ * решения на следующий шаг. model - модель размера sections с решателем solver
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NewtonBenchmark {
+    @Param({"1", "100"})
+    public int steps;
+
+    private static final double T_START = 1e-5;
+    private static final double DELTA_T = 1e-8;
+
+    // Параметры модели нужны только бенчмарку model и не размножают legacy*
+    @State(Scope.Thread)
+    public static class Circuit {
+        @Param({"0", "10", "100"})
+        public int sections;
+
+        @Param({"DENSE", "SPARSE"})
+        public LinearSolverKind solver;
+
+        CircuitModel model;
+        ModelWorkspace workspace;
+        double[] approx;
+        double[] history;
+
+        @Setup
+        public void setup() {
+            model = BenchmarkCircuits.model(sections);
+            workspace = new ModelWorkspace(model, solver);
+            approx = new double[model.size()];
+            history = new double[model.stateCount()];
+        }
+    }
+
+    private SolverWorkspace legacyWorkspace;
+
+    @Setup
+    public void setup() {
+        legacyWorkspace = new SolverWorkspace();
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        PhaseVariables approx = new PhaseVariables();
+        PrevStateVariables prev = new PrevStateVariables();
+        boolean ok = true;
+        for (int k = 0; k < steps; k++) {
+            TimeDemon td = new TimeDemon(T_START + k * DELTA_T, DELTA_T, true);
+            NewtonMethodResults result = NewtonSolver.newtonMethod(td, approx, prev);
+            ok &= result.isSuccessful;
+            advance(result.phaseVariables, approx, prev);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public boolean legacyWorkspace() {
+        PhaseVariables approx = new PhaseVariables();
+        PrevStateVariables prev = new PrevStateVariables();
+        boolean ok = true;
+        for (int k = 0; k < steps; k++) {
+            TimeDemon td = new TimeDemon(T_START + k * DELTA_T, DELTA_T, true);
+            ok &= NewtonSolver.newtonMethod(td, approx, prev, legacyWorkspace);
+            advance(legacyWorkspace.solution, approx, prev);
+        }
+        return ok;
+    }
+
+    // Решение на предыдущем шаге служит начальным приближением и историей неявной формулы Эйлера
+    @Benchmark
+    public boolean model(Circuit c) {
+        Arrays.fill(c.approx, 0.0);
+        Arrays.fill(c.history, 0.0);
+        boolean ok = true;
+        for (int k = 0; k < steps; k++) {
+            ok &=
+                    NewtonSolver.newtonMethod(
+                            c.model,
+                            T_START + k * DELTA_T,
+                            DELTA_T,
+                            c.approx,
+                            c.history,
+                            c.workspace);
+            double[] x = c.workspace.solution;
+            for (int s = 0; s < c.history.length; s++) c.history[s] = x[c.model.stateIndex(s)];
+            System.arraycopy(x, 0, c.approx, 0, c.approx.length);
+        }
+        return ok;
+    }
+
+    // То же для встроенной схемы: решение s - приближение и история следующего шага
+    private static void advance(PhaseVariables s, PhaseVariables approx, PrevStateVariables prev) {
+        prev.uC1Prev = s.Uc1;
+        prev.uC2Prev = s.Uc2;
+        prev.uCbPrev = s.Ucb;
+        prev.iL1Prev = s.Il1;
+        prev.uC3Prev = s.uC3;
+        approx.copyFrom(s);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.bmstu.mimapr.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Полный расчет переходного процесса, как в Main, без вывода в файлы
+ *
+ * Счетчик simulatedSeconds в режиме Throughput дает пропускную способность
+ * в секундах модельного времени на секунду расчета
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransientBenchmark {
+    @Param({"1e-5", "1e-4"})
+    public double timeEnd;
+
+    @Param({"0", "10"})
+    public int sections;
+
+    @Param({"DENSE", "SPARSE"})
+    public LinearSolverKind solver;
+
+    @Param({"BACKWARD_EULER", "TRAPEZOIDAL"})
+    public IntegrationMethodKind method;
+
+    @Param({"HEURISTIC", "LTE"})
+    public StepControlKind stepControl;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Progress {
+        public double simulatedSeconds;
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            simulatedSeconds = 0.0;
+            steps = 0;
+        }
+    }
+
+    @Benchmark
+    public long run(Progress progress) throws IOException {
+        TransientAnalysis analysis =
+                new TransientAnalysis(BenchmarkCircuits.model(sections), solver, method);
+        analysis.progressOutput = false;
+        analysis.stepControl = stepControl;
+        long[] samples = {0};
+        analysis.run(timeEnd, (t, x) -> samples[0]++);
+
+        progress.simulatedSeconds += timeEnd - Data.TIME_START;
+        progress.steps += analysis.acceptedSteps();
+        return samples[0];
+    }
+}
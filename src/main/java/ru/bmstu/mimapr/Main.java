@@ -1,97 +1,928 @@
 package ru.bmstu.mimapr;
 
+import ru.bmstu.mimapr.config.CircuitParameters;
 import ru.bmstu.mimapr.config.Data;
 import ru.bmstu.mimapr.config.FileData;
-import ru.bmstu.mimapr.exceptions.TimeStepException;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.io.AsyncSampleSink;
+import ru.bmstu.mimapr.io.BinaryResultReader;
+import ru.bmstu.mimapr.io.BinaryResultWriter;
+import ru.bmstu.mimapr.io.CheckpointFile;
 import ru.bmstu.mimapr.io.OutputUtils;
+import ru.bmstu.mimapr.io.WaveformStore;
+import ru.bmstu.mimapr.io.WaveformWriter;
+import ru.bmstu.mimapr.metrics.MetricsReporter;
+import ru.bmstu.mimapr.metrics.SolverMetrics;
 import ru.bmstu.mimapr.model.*;
-import ru.bmstu.mimapr.numerics.NewtonSolver;
-import ru.bmstu.mimapr.numerics.TimeStepController;
+import ru.bmstu.mimapr.netlist.AssembledCircuit;
+import ru.bmstu.mimapr.netlist.BuiltinNetlist;
+import ru.bmstu.mimapr.netlist.CircuitAssembler;
+import ru.bmstu.mimapr.netlist.CircuitCompiler;
+import ru.bmstu.mimapr.netlist.CompiledCircuit;
+import ru.bmstu.mimapr.netlist.Netlist;
+import ru.bmstu.mimapr.netlist.NetlistParser;
+import ru.bmstu.mimapr.numerics.AcAnalysis;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.CircuitSystemModel;
+import ru.bmstu.mimapr.numerics.DcOperatingPoint;
+import ru.bmstu.mimapr.numerics.ExponentialAnalysis;
+import ru.bmstu.mimapr.numerics.ModelWorkspace;
+import ru.bmstu.mimapr.numerics.MultirateAnalysis;
+import ru.bmstu.mimapr.numerics.PararealAnalysis;
+import ru.bmstu.mimapr.numerics.PeriodicSteadyState;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+import ru.bmstu.mimapr.service.SimulationServer;
+import ru.bmstu.mimapr.service.Simulator;
+import ru.bmstu.mimapr.sweep.RunSummary;
+import ru.bmstu.mimapr.sweep.SweepRunner;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.management.JMException;
+
+/*
+ * Запуск:
+ *   без аргументов                         - встроенная схема CircuitSystem
+ *   --netlist <файл>                       - схема из файла схемного описания
+ *   --builtin-netlist                      - встроенная схема из схемного описания
+ *   --compiled                             - сгенерированный для схемы код модели
+ *                                            и LU-разложения (со схемным описанием)
+ *   --condensed                            - исключение производных и переменных состояния
+ *                                            до решения СЛАУ (CondensedSolver)
+ *   --binary                               - потоковая запись результатов в results.bin
+ *   --waveforms                            - запись всех потенциалов и переменных состояния
+ *                                            в файл осциллограмм waveforms.bin, текстовые
+ *                                            файлы выгружаются из него (без --binary)
+ *   --async                                - запись результатов в отдельном потоке
+ *   --all-variables                        - вывод всех неизвестных, а не только потенциалов
+ *   --method <backward_euler|trapezoidal|bdf2> - формула интегрирования
+ *   --step-control <heuristic|lte>         - выбор шага по порогам или по локальной погрешности
+ *   --metrics <период, с>                  - статистика решателя: MBean и строка в stderr
+ *                                            с заданным периодом (0 - только итог)
+ *   --junction-limiting                    - ограничение напряжений диодов на итерациях Ньютона
+ *   --adaptive-newton                      - метод Ньютона с контролем скорости сходимости,
+ *                                            дроблением поправки и ограничением шага
+ *   --exp-table                            - экспонента диодов по таблице
+ *   --breakpoints                          - шаги попадают в изломы и экстремумы ЭДС
+ *   --dense-output                         - интерполяция точек вывода между шагами
+ *   --dc-op                                - начальные условия по режиму по постоянному току
+ *   --pss                                  - начальные условия на периодической траектории
+ *                                            (метод стрельбы по периоду источников)
+ *   --ac                                   - малосигнальный анализ в рабочей точке по постоянному
+ *                                            току, модуль и фаза потенциалов узлов в ac.csv
+ *   --parareal <окна>                      - параллельный по времени расчет (Parareal)
+ *                                            и сравнение с последовательным
+ *   --multirate                            - быстрые неизвестные рассчитываются своими
+ *                                            шагами внутри медленных (с --step-control lte)
+ *                                            и сравнение с общим шагом
+ *   --exponential                          - экспоненциальное интегрирование: линейная часть
+ *                                            схемы точно, диоды - неявной поправкой
+ *   --checkpoint <период, с>               - контрольные точки в checkpoint.bin (с --binary)
+ *   --resume <файл>                        - продолжение расчета с контрольной точки,
+ *                                            results.bin дописывается (с --binary); схема и
+ *                                            ключи решателя и метода Ньютона - те же, что
+ *                                            при записи контрольной точки
+ *   --convert <файл>                       - преобразование results.bin в текстовые файлы
+ *   --decimate <файл> <столбец> <интервалы> - минимумы и максимумы столбца файла
+ *                                            осциллограмм waveforms.bin по интервалам времени
+ *                                            (записанного с --waveforms)
+ *   --sweep <прогоны> [разброс] [seed]     - серия Монте-Карло, итоги в sweep.csv
+ *   --sweep-batched <прогоны> [разброс] [seed] - то же пакетами по SWEEP_BATCH прогонов
+ *                                            на Vector API (--add-modules jdk.incubator.vector)
+ *   --serve <порт>                         - служба расчетов по HTTP на 127.0.0.1
+ *                                            (SimulationServer)
+ * */
 public class Main {
 
+    private static final String USAGE =
+            "usage: [--netlist <file> | --builtin-netlist] [--compiled] [--condensed]"
+                    + " [--binary | --waveforms] [--async] [--all-variables]"
+                    + " [--method <backward_euler|trapezoidal|bdf2>]"
+                    + " [--step-control <heuristic|lte>] [--metrics <period_s>]"
+                    + " [--junction-limiting] [--adaptive-newton] [--exp-table]"
+                    + " [--breakpoints] [--dense-output]"
+                    + " [--dc-op] [--pss] [--ac] [--parareal <windows>]"
+                    + " [--multirate] [--exponential]"
+                    + " [--checkpoint <period_s>] [--resume <file>]"
+                    + " | --sweep[-batched] <runs> [tolerance] [seed]"
+                    + " | --convert <file>"
+                    + " | --decimate <file> <column> <buckets>"
+                    + " | --serve <port>";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
     public static void main(String[] args) {
         try {
-            OutputUtils.clearFiles();
+            if (args.length >= 2
+                    && args.length <= 4
+                    && (args[0].equals("--sweep") || args[0].equals("--sweep-batched"))) {
+                int runs = Integer.parseInt(args[1]);
+                double tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : 0.1;
+                long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1L;
+                int batch = args[0].equals("--sweep") ? 1 : Data.SWEEP_BATCH;
+                if (batch > 1 && ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+                    throw new IllegalArgumentException(
+                            "--sweep-batched requires --add-modules " + VECTOR_MODULE);
+                }
+                runSweep(runs, tolerance, seed, batch);
+            } else if (args.length == 2 && args[0].equals("--convert")) {
+                BinaryResultReader.convertToText(Path.of(args[1]));
+            } else if (args.length == 4 && args[0].equals("--decimate")) {
+                printEnvelope(Path.of(args[1]), args[2], Integer.parseInt(args[3]));
+            } else if (args.length == 2 && args[0].equals("--serve")) {
+                serve(Integer.parseInt(args[1]));
+            } else {
+                runTransient(RunOptions.parse(args));
+            }
 
-            TimeDemon timeDemon = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
-            double prevDeltaT = timeDemon.deltaT;
+            System.exit(0);
+        } catch (Exception ex) {
+            System.err.println("Fatal error: " + ex.getMessage());
+            System.exit(2);
+        }
+    }
 
-            PrevStateVariables prevStateVariables = new PrevStateVariables();
+    // Параметры расчета переходного процесса из командной строки
+    private static final class RunOptions {
+        Netlist netlist = null;
+        // Текст схемного описания для свертки контрольной точки
+        String netlistText = null;
+        boolean compiled = false;
+        boolean condensed = false;
+        boolean binary = false;
+        boolean waveforms = false;
+        boolean async = false;
+        boolean allVariables = false;
+        IntegrationMethodKind method = Data.INTEGRATION_METHOD;
+        StepControlKind stepControl = Data.STEP_CONTROL;
+        // Период строки статистики в секундах, < 0 - статистика выключена
+        double metricsPeriod = -1.0;
+        boolean junctionLimiting = Data.JUNCTION_LIMITING;
+        boolean adaptiveNewton = Data.ADAPTIVE_NEWTON;
+        boolean expTable = Data.EXP_TABLE;
+        boolean breakpoints = Data.BREAKPOINTS;
+        boolean denseOutput = Data.DENSE_OUTPUT;
+        boolean dcOperatingPoint = false;
+        boolean periodicSteadyState = false;
+        boolean ac = false;
+        // Число окон Parareal, 0 - обычный последовательный расчет
+        int pararealWindows = 0;
+        boolean multirate = false;
+        boolean exponential = false;
+        // Период контрольных точек в секундах, < 0 - выключены
+        double checkpointPeriod = -1.0;
+        CheckpointFile resume = null;
 
-            PhaseVariables initialApproximation = new PhaseVariables();
-            PhaseVariables pvPrev = new PhaseVariables();
-            PhaseVariables pvPrevPrev = new PhaseVariables();
+        static RunOptions parse(String[] args) throws IOException {
+            RunOptions o = new RunOptions();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--netlist" -> {
+                        if (o.netlist != null) throw new IllegalArgumentException(USAGE);
+                        o.netlistText = Files.readString(Path.of(value(args, ++i)));
+                        o.netlist = NetlistParser.parse(o.netlistText);
+                    }
+                    case "--builtin-netlist" -> {
+                        if (o.netlist != null) throw new IllegalArgumentException(USAGE);
+                        o.netlistText = BuiltinNetlist.text();
+                        o.netlist = NetlistParser.parse(o.netlistText);
+                    }
+                    case "--compiled" -> o.compiled = true;
+                    case "--condensed" -> o.condensed = true;
+                    case "--binary" -> o.binary = true;
+                    case "--waveforms" -> o.waveforms = true;
+                    case "--async" -> o.async = true;
+                    case "--all-variables" -> o.allVariables = true;
+                    case "--method" ->
+                            o.method = parseEnum(IntegrationMethodKind.class, value(args, ++i));
+                    case "--step-control" ->
+                            o.stepControl = parseEnum(StepControlKind.class, value(args, ++i));
+                    case "--metrics" -> o.metricsPeriod = Double.parseDouble(value(args, ++i));
+                    case "--junction-limiting" -> o.junctionLimiting = true;
+                    case "--adaptive-newton" -> o.adaptiveNewton = true;
+                    case "--exp-table" -> o.expTable = true;
+                    case "--breakpoints" -> o.breakpoints = true;
+                    case "--dense-output" -> o.denseOutput = true;
+                    case "--dc-op" -> o.dcOperatingPoint = true;
+                    case "--pss" -> o.periodicSteadyState = true;
+                    case "--ac" -> o.ac = true;
+                    case "--parareal" -> {
+                        o.pararealWindows = Integer.parseInt(value(args, ++i));
+                        if (o.pararealWindows < 1) throw new IllegalArgumentException(USAGE);
+                    }
+                    case "--multirate" -> o.multirate = true;
+                    case "--exponential" -> o.exponential = true;
+                    case "--checkpoint" ->
+                            o.checkpointPeriod = Double.parseDouble(value(args, ++i));
+                    case "--resume" -> o.resume = CheckpointFile.read(Path.of(value(args, ++i)));
+                    default -> throw new IllegalArgumentException(USAGE);
+                }
+            }
+            if (o.compiled && o.netlist == null) {
+                throw new IllegalArgumentException("--compiled requires a netlist");
+            }
+            if (o.waveforms && o.binary) {
+                throw new IllegalArgumentException("--waveforms conflicts with --binary");
+            }
+            // Текстовые результаты копятся в памяти до конца расчета, продолжать их нечем
+            if ((o.checkpointPeriod >= 0.0 || o.resume != null) && !o.binary) {
+                throw new IllegalArgumentException("--checkpoint and --resume require --binary");
+            }
+            if (o.resume != null && (o.dcOperatingPoint || o.periodicSteadyState)) {
+                throw new IllegalArgumentException("--resume conflicts with --dc-op and --pss");
+            }
+            // Малосигнальный анализ выполняется вместо переходного процесса
+            if (o.ac
+                    && (o.periodicSteadyState
+                            || o.pararealWindows > 0
+                            || o.checkpointPeriod >= 0.0
+                            || o.resume != null)) {
+                throw new IllegalArgumentException(
+                        "--ac conflicts with --pss, --parareal, --checkpoint and --resume");
+            }
+            // Окна Parareal рассчитываются неявной формулой Эйлера с выбором шага по порогам
+            if (o.pararealWindows > 0
+                    && (o.checkpointPeriod >= 0.0
+                            || o.resume != null
+                            || o.async
+                            || o.metricsPeriod >= 0.0
+                            || o.breakpoints
+                            || o.denseOutput
+                            || o.method != IntegrationMethodKind.BACKWARD_EULER
+                            || o.stepControl != StepControlKind.HEURISTIC)) {
+                throw new IllegalArgumentException(
+                        "--parareal supports only the backward Euler method with heuristic"
+                                + " step control and no checkpoints, async output or metrics");
+            }
+            // Быстрые шаги выбираются по оценке погрешности
+            if (o.multirate
+                    && (o.stepControl != StepControlKind.LTE
+                            || o.pararealWindows > 0
+                            || o.ac
+                            || o.checkpointPeriod >= 0.0
+                            || o.resume != null
+                            || o.async
+                            || o.metricsPeriod >= 0.0)) {
+                throw new IllegalArgumentException(
+                        "--multirate requires --step-control lte and conflicts with --parareal,"
+                                + " --ac, checkpoints, async output and metrics");
+            }
+            // Шаг выбирается удвоением и делением пополам, изломы ЭДС не учитываются
+            if (o.exponential
+                    && (o.pararealWindows > 0
+                            || o.multirate
+                            || o.ac
+                            || o.checkpointPeriod >= 0.0
+                            || o.resume != null
+                            || o.async
+                            || o.metricsPeriod >= 0.0
+                            || o.breakpoints)) {
+                throw new IllegalArgumentException(
+                        "--exponential conflicts with --parareal, --multirate, --ac, --breakpoints,"
+                                + " checkpoints, async output and metrics");
+            }
+            // Состояние продолжается только в той же модели с тем же решателем
+            if (o.resume != null && !o.resume.matches(o.setupDigest())) {
+                throw new IllegalArgumentException(
+                        "--resume checkpoint was written for a different netlist or different"
+                                + " --compiled, --condensed, --junction-limiting,"
+                                + " --adaptive-newton, --exp-table or --all-variables");
+            }
+            // Формула интегрирования, выбор шага и вывод продолжаются те же, что до остановки
+            if (o.resume != null) {
+                o.method = o.resume.state.method;
+                o.stepControl = o.resume.state.stepControl;
+                o.breakpoints = o.resume.state.breakpoints;
+                o.denseOutput = o.resume.state.denseOutput;
+            }
+            return o;
+        }
 
-            ResultLists results = new ResultLists();
-            double nextSaveT = Data.TIME_START;
-            final double SAVE_DT = 1e-7;
-            int iteration = 0;
-            while (timeDemon.currT < Data.TIME_END) {
-                NewtonMethodResults nmr =
-                        NewtonSolver.newtonMethod(
-                                timeDemon, initialApproximation, prevStateVariables);
-                iteration++;
+        // Свертка схемы и ключей, от которых зависят модель, решатель и столбцы
+        // results.bin
+        byte[] setupDigest() {
+            return CheckpointFile.digest(
+                    ((netlistText == null) ? "builtin model" : "netlist\n" + netlistText)
+                            + "\ncompiled="
+                            + compiled
+                            + "\ncondensed="
+                            + condensed
+                            + "\njunctionLimiting="
+                            + junctionLimiting
+                            + "\nadaptiveNewton="
+                            + adaptiveNewton
+                            + "\nexpTable="
+                            + expTable
+                            + "\nallVariables="
+                            + allVariables);
+        }
 
-                if (nmr.isSuccessful) {
-                    PhaseVariables phaseVariables = nmr.phaseVariables;
+        private static String value(String[] args, int i) {
+            if (i >= args.length) throw new IllegalArgumentException(USAGE);
+            return args[i];
+        }
+    }
 
-                    TimeDemon prevTimeDemon = timeDemon;
-                    timeDemon =
-                            TimeStepController.calculateDeltaT(
-                                    timeDemon, prevDeltaT, phaseVariables, pvPrev, pvPrevPrev);
+    // Переходный процесс для встроенной схемы (netlist == null) или схемного описания
+    private static void runTransient(RunOptions options)
+            throws IOException, JMException, InterruptedException {
+        final Netlist netlist = options.netlist;
+        CircuitModel model;
+        // Экземпляры модели для параллельных расчетов
+        Supplier<CircuitModel> models;
+        int[] probes;
+        String[] files;
+        LinearSolverKind solver;
 
-                    if (!timeDemon.success) {
-                        continue;
-                    }
-                    double tAccepted = prevTimeDemon.currT;
-                    while (tAccepted >= nextSaveT) {
-                        results.phi1List.add(phaseVariables.phi1);
-                        results.phi2List.add(phaseVariables.phi2);
-                        results.phi4List.add(phaseVariables.phi4);
-                        results.phi5List.add(phaseVariables.phi5);
-                        results.timeList.add(nextSaveT);
-                        nextSaveT += SAVE_DT;
-                    }
-                    prevDeltaT = prevTimeDemon.deltaT;
+        if (netlist == null) {
+            model = new CircuitSystemModel(new CircuitParameters(), options.expTable);
+            models = () -> new CircuitSystemModel(new CircuitParameters(), options.expTable);
+            probes = new int[] {10, 11, 13, 14};
+            files =
+                    new String[] {
+                        FileData.PHI1_FILE,
+                        FileData.PHI2_FILE,
+                        FileData.PHI4_FILE,
+                        FileData.PHI5_FILE
+                    };
+            solver = Data.LINEAR_SOLVER;
+        } else {
+            // Для произвольной схемы нужен выбор ведущего элемента
+            AssembledCircuit circuit = CircuitAssembler.assemble(netlist, options.expTable);
+            model = options.compiled ? compile(circuit) : circuit;
+            final CircuitModel shared = model;
+            models = () -> shared;
+            probes = circuit.probeIndices();
+            files = new String[probes.length];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = FileData.probeFile(circuit.probes.get(i));
+            }
+            solver = LinearSolverKind.SPARSE;
+        }
+        if (options.condensed) solver = LinearSolverKind.CONDENSED;
+        if (options.allVariables) {
+            probes = new int[model.size()];
+            files = new String[probes.length];
+            for (int i = 0; i < probes.length; i++) {
+                probes[i] = i;
+                files[i] = FileData.variableFile(model.variableName(i));
+            }
+        }
 
-                    initialApproximation =
-                            TimeStepController.predictPhaseVariables(phaseVariables, pvPrev);
+        if (options.ac) {
+            runAc(model, options);
+            return;
+        }
 
-                    prevStateVariables.uC1Prev = phaseVariables.Uc1;
-                    prevStateVariables.uC2Prev = phaseVariables.Uc2;
-                    prevStateVariables.uCbPrev = phaseVariables.Ucb;
-                    prevStateVariables.iL1Prev = phaseVariables.Il1;
-                    prevStateVariables.uC3Prev = phaseVariables.uC3;
+        TransientAnalysis analysis = new TransientAnalysis(model, solver, options.method);
+        analysis.stepControl = options.stepControl;
+        analysis.breakpoints = options.breakpoints;
+        analysis.denseOutput = options.denseOutput;
+        analysis.workspace.junctionLimiting = options.junctionLimiting;
+        analysis.workspace.adaptiveNewton = options.adaptiveNewton;
+        if (options.resume != null) analysis.restore(options.resume.state);
+        PararealAnalysis parareal = null;
+        if (options.pararealWindows > 0) {
+            parareal =
+                    new PararealAnalysis(
+                            models,
+                            solver,
+                            options.pararealWindows,
+                            Runtime.getRuntime().availableProcessors());
+        }
+        MultirateAnalysis multirate = null;
+        if (options.multirate) {
+            multirate = new MultirateAnalysis(model, solver, options.method);
+            multirate.breakpoints = options.breakpoints;
+            multirate.denseOutput = options.denseOutput;
+            multirate.workspace.junctionLimiting = options.junctionLimiting;
+            multirate.workspace.adaptiveNewton = options.adaptiveNewton;
+        }
+        ExponentialAnalysis exponential = null;
+        if (options.exponential) {
+            exponential = new ExponentialAnalysis(model);
+            exponential.denseOutput = options.denseOutput;
+        }
+        if (options.dcOperatingPoint || options.periodicSteadyState) {
+            double[] x0 = initialPoint(model, solver, options);
+            analysis.start(0.0, x0);
+            if (parareal != null) parareal.start(0.0, x0);
+            if (multirate != null) multirate.start(0.0, x0);
+            if (exponential != null) exponential.start(0.0, x0);
+        }
+        final boolean async = options.async;
+
+        MetricsReporter reporter = null;
+        if (options.metricsPeriod >= 0.0) {
+            SolverMetrics metrics = new SolverMetrics(Data.NEWTON_STEPS);
+            analysis.workspace.metrics = metrics;
+            reporter = new MetricsReporter(metrics, "transient", options.metricsPeriod, System.err);
+        }
 
-                    pvPrevPrev = pvPrev;
-                    pvPrev = phaseVariables;
+        try {
+            if (options.binary) {
+                // Точки пишутся по мере принятия шагов, в памяти держится один блок
+                String[] names = new String[files.length + 1];
+                names[0] = FileData.columnName(FileData.T_FILE);
+                for (int i = 0; i < files.length; i++) names[i + 1] = FileData.columnName(files[i]);
+                Path path = Path.of(FileData.BINARY_FILE);
+                CheckpointFile resume = options.resume;
+                try (BinaryResultWriter writer =
+                        (resume == null)
+                                ? new BinaryResultWriter(path, names, probes)
+                                : BinaryResultWriter.resume(
+                                        path,
+                                        names,
+                                        probes,
+                                        resume.outputPosition,
+                                        resume.outputRows,
+                                        resume.outputPending)) {
+                    if (options.checkpointPeriod >= 0.0) {
+                        // Снимок сохраняется вместе с позицией записанных на диск результатов
+                        // и строками их неполного блока
+                        Path checkpoint = Path.of(FileData.CHECKPOINT_FILE);
+                        byte[] setupDigest = options.setupDigest();
+                        analysis.checkpointPeriodNanos = (long) (options.checkpointPeriod * 1e9);
+                        analysis.checkpointSink =
+                                state -> {
+                                    long position = writer.commit();
+                                    new CheckpointFile(
+                                                    setupDigest,
+                                                    state,
+                                                    position,
+                                                    writer.rowsWritten(),
+                                                    writer.pendingRows())
+                                            .write(checkpoint);
+                                };
+                    }
+                    runAnalysis(
+                            analysis,
+                            parareal,
+                            multirate,
+                            exponential,
+                            model.size(),
+                            async,
+                            writer);
+                }
+            } else {
+                OutputUtils.deleteIfExists(FileData.T_FILE);
+                for (String file : files) OutputUtils.deleteIfExists(file);
 
-                    if (iteration % Data.PRINT_EVERY_SUCCESS_STEPS == 0) {
-                        System.out.println(iteration + ", t = " + OutputUtils.fmt(timeDemon.currT));
+                if (!options.waveforms) {
+                    ResultLists results = new ResultLists(probes.length);
+                    final int[] columns = probes;
+                    runAnalysis(
+                            analysis,
+                            parareal,
+                            multirate,
+                            exponential,
+                            model.size(),
+                            async,
+                            (t, x) -> {
+                                for (int i = 0; i < columns.length; i++) {
+                                    results.probeLists[i].add(x[columns[i]]);
+                                }
+                                results.timeList.add(t);
+                            });
 
-                        results.phi1List.add(phaseVariables.phi1);
-                        results.phi2List.add(phaseVariables.phi2);
-                        results.phi4List.add(phaseVariables.phi4);
-                        results.phi5List.add(phaseVariables.phi5);
-                        results.timeList.add(prevTimeDemon.currT);
+                    for (int i = 0; i < files.length; i++) {
+                        OutputUtils.printToFile(files[i], results.probeLists[i]);
                     }
+                    OutputUtils.printToFile(FileData.T_FILE, results.timeList);
                 } else {
-                    timeDemon = TimeStepController.deltaTReduction(timeDemon);
-                    if (timeDemon.deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                    // Точки пишутся сразу в отображаемый в память файл осциллограмм,
+                    // текстовые файлы наблюдаемых величин выгружаются из него
+                    int[] columns = waveformColumns(model, probes);
+                    String[] names = new String[columns.length + 1];
+                    names[0] = FileData.columnName(FileData.T_FILE);
+                    for (int i = 0; i < columns.length; i++) {
+                        names[i + 1] =
+                                (i < files.length)
+                                        ? FileData.columnName(files[i])
+                                        : model.variableName(columns[i]);
+                    }
+                    Path path = Path.of(FileData.WAVEFORM_FILE);
+                    try (WaveformWriter writer = new WaveformWriter(path, names, columns)) {
+                        runAnalysis(
+                                analysis,
+                                parareal,
+                                multirate,
+                                exponential,
+                                model.size(),
+                                async,
+                                writer);
+                    }
+
+                    try (WaveformStore store = new WaveformStore(path)) {
+                        for (int i = 0; i < files.length; i++) {
+                            OutputUtils.printToFile(files[i], store, i + 1);
+                        }
+                        OutputUtils.printToFile(FileData.T_FILE, store, 0);
+                    }
                 }
             }
+        } finally {
+            if (reporter != null) reporter.close();
+        }
+        if (parareal != null) {
+            parareal.shutdown();
+            reportParareal(parareal, analysis, model, options.pararealWindows);
+            return;
+        }
+        if (multirate != null) {
+            reportMultirate(multirate, model);
+            return;
+        }
+        if (exponential != null) {
+            reportExponential(exponential);
+            return;
+        }
 
-            OutputUtils.printToFile(FileData.PHI1_FILE, results.phi1List);
-            OutputUtils.printToFile(FileData.PHI2_FILE, results.phi2List);
-            OutputUtils.printToFile(FileData.PHI4_FILE, results.phi4List);
-            OutputUtils.printToFile(FileData.PHI5_FILE, results.phi5List);
-            OutputUtils.printToFile(FileData.T_FILE, results.timeList);
+        ModelWorkspace workspace = analysis.workspace;
+        System.out.println(
+                "Steps accepted: "
+                        + analysis.acceptedSteps()
+                        + ", rejected: "
+                        + analysis.rejectedSteps());
+        System.out.println(
+                "LU factorizations: "
+                        + workspace.factorizations
+                        + ", solves: "
+                        + workspace.solves
+                        + ", saved: "
+                        + workspace.savedFactorizations());
+        if (workspace.junctionLimiting) {
+            System.out.println("Limited Newton iterations: " + workspace.limitedIterations);
+        }
+        if (workspace.adaptiveNewton) {
+            System.out.println(
+                    "Newton early aborts: "
+                            + workspace.newtonAborts
+                            + ", damped iterations: "
+                            + workspace.dampedIterations);
+        }
+    }
 
-            System.exit(0);
-        } catch (Exception ex) {
-            System.err.println("Fatal error: " + ex.getMessage());
-            System.exit(2);
+    // Столбцы файла осциллограмм: наблюдаемые величины, затем остальные
+    // потенциалы узлов и переменные состояния
+    private static int[] waveformColumns(CircuitModel model, int[] probes) {
+        Set<Integer> columns = new LinkedHashSet<>();
+        for (int i : probes) columns.add(i);
+        for (int i : model.potentialIndices()) columns.add(i);
+        for (int k = 0; k < model.stateCount(); k++) columns.add(model.stateIndex(k));
+        return columns.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Прореживание столбца файла осциллограмм для графика: начало интервала, минимум, максимум
+    private static void printEnvelope(Path path, String column, int buckets) throws IOException {
+        try (WaveformStore store = new WaveformStore(path)) {
+            if (store.rows() == 0) return;
+            double t0 = store.time(0);
+            double t1 = Math.max(store.time(store.rows() - 1), Math.nextUp(t0));
+            WaveformStore.Envelope envelope = store.decimate(store.column(column), t0, t1, buckets);
+            for (int b = 0; b < buckets; b++) {
+                System.out.println(
+                        OutputUtils.fmt(envelope.bucketStart(b))
+                                + " "
+                                + OutputUtils.fmt(envelope.min[b])
+                                + " "
+                                + OutputUtils.fmt(envelope.max[b]));
+            }
+        }
+    }
+
+    // Служба расчетов работает до завершения процесса
+    private static void serve(int port) throws IOException, InterruptedException {
+        SimulationServer server = new SimulationServer(new Simulator(), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Simulation server listening on 127.0.0.1:" + server.port());
+        Thread.currentThread().join();
+    }
+
+    // Генерация, компиляция и проверка кода модели до начала расчета
+    private static CompiledCircuit compile(AssembledCircuit circuit) {
+        final long begin = System.nanoTime();
+        CompiledCircuit compiled = CircuitCompiler.compile(circuit);
+        System.out.printf(
+                Locale.ROOT,
+                "Compiled circuit kernel: %d source lines, %d L+U nonzeros,"
+                        + " verified bit-identical at %d points in %.0f ms%n",
+                compiled.source.lines().count(),
+                compiled.luSize(),
+                CircuitCompiler.VERIFY_POINTS,
+                (System.nanoTime() - begin) / 1e6);
+        return compiled;
+    }
+
+    // Начальная точка в момент 0: режим по постоянному току и/или точка периодического режима
+    private static double[] initialPoint(
+            CircuitModel model, LinearSolverKind solver, RunOptions options) {
+        double[] x0 = new double[model.size()];
+        if (options.dcOperatingPoint) {
+            DcOperatingPoint dc = new DcOperatingPoint(model);
+            x0 = dc.solve(0.0);
+            System.out.println(
+                    "DC operating point: Newton iterations: "
+                            + dc.iterations()
+                            + ", gmin steps: "
+                            + dc.gminSteps()
+                            + ", source steps: "
+                            + dc.sourceSteps());
+        }
+        if (options.periodicSteadyState) {
+            double period = model.period();
+            if (Double.isNaN(period)) {
+                throw new IllegalArgumentException("--pss requires sources with a common period");
+            }
+            PeriodicSteadyState pss = new PeriodicSteadyState(model, solver, period);
+            pss.workspace.junctionLimiting = options.junctionLimiting;
+            pss.workspace.adaptiveNewton = options.adaptiveNewton;
+            x0 = pss.solve(0.0, x0);
+            System.out.println(
+                    "Periodic steady state: shooting iterations: "
+                            + pss.iterations()
+                            + ", steps: "
+                            + pss.acceptedSteps()
+                            + ", residual: "
+                            + OutputUtils.fmt(pss.residual()));
+        }
+        return x0;
+    }
+
+    // Частотная характеристика в рабочей точке по постоянному току
+    private static void runAc(CircuitModel model, RunOptions options)
+            throws IOException, InterruptedException {
+        DcOperatingPoint dc = new DcOperatingPoint(model);
+        double[] x0 = dc.solve(0.0);
+        System.out.println(
+                "DC operating point: Newton iterations: "
+                        + dc.iterations()
+                        + ", gmin steps: "
+                        + dc.gminSteps()
+                        + ", source steps: "
+                        + dc.sourceSteps());
+
+        int[] columns = model.potentialIndices();
+        if (options.allVariables) {
+            columns = new int[model.size()];
+            for (int i = 0; i < columns.length; i++) columns[i] = i;
+        }
+        double[] frequencies =
+                AcAnalysis.logFrequencies(
+                        Data.AC_START_FREQUENCY, Data.AC_STOP_FREQUENCY, Data.AC_POINTS_PER_DECADE);
+        AcAnalysis ac = new AcAnalysis(model, x0, Runtime.getRuntime().availableProcessors());
+        try {
+            ac.run(frequencies);
+        } finally {
+            ac.shutdown();
+        }
+
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FileData.AC_FILE))) {
+            StringBuilder header = new StringBuilder("f");
+            for (int i : columns) {
+                String name = model.variableName(i);
+                header.append(',').append(name).append("_mag,").append(name).append("_phase");
+            }
+            bw.write(header.toString());
+            bw.newLine();
+            for (int k = 0; k < frequencies.length; k++) {
+                StringBuilder line = new StringBuilder(OutputUtils.fmt(frequencies[k]));
+                for (int i : columns) {
+                    line.append(',').append(OutputUtils.fmt(ac.magnitude(k, i)));
+                    line.append(',').append(OutputUtils.fmt(ac.phaseDegrees(k, i)));
+                }
+                bw.write(line.toString());
+                bw.newLine();
+            }
+        }
+        System.out.println(
+                "AC analysis: "
+                        + frequencies.length
+                        + " frequencies on "
+                        + ac.parallelism()
+                        + " threads in "
+                        + OutputUtils.fmt(ac.elapsedNanos() / 1e9)
+                        + " s, singular: "
+                        + ac.singularPoints());
+    }
+
+    // Итоги Parareal, время и отклонение от обычного расчета TransientAnalysis
+    private static void reportParareal(
+            PararealAnalysis parareal, TransientAnalysis analysis, CircuitModel model, int windows)
+            throws IOException {
+        // Расчет, который выполнялся бы без --parareal
+        final double[] serial = new double[model.size()];
+        final long begin = System.nanoTime();
+        analysis.progressOutput = false;
+        analysis.run(
+                Data.TIME_END,
+                (t, x) -> {
+                    if (t <= Data.TIME_END) System.arraycopy(x, 0, serial, 0, serial.length);
+                });
+        final double serialTime = (System.nanoTime() - begin) * 1e-9;
+        final double pararealTime = parareal.elapsedNanos() * 1e-9;
+
+        double difference = 0.0;
+        double[] solution = parareal.lastSample();
+        for (int i : model.potentialIndices()) {
+            difference = Math.max(difference, Math.abs(solution[i] - serial[i]));
+        }
+        System.out.println(
+                "Parareal: windows: "
+                        + windows
+                        + ", iterations: "
+                        + parareal.iterations()
+                        + ", fine steps: "
+                        + parareal.fineSteps()
+                        + ", coarse steps: "
+                        + parareal.coarseSteps()
+                        + ", threads: "
+                        + parareal.parallelism());
+        System.out.println(
+                "Parareal time: "
+                        + OutputUtils.fmt(pararealTime)
+                        + " s, serial: "
+                        + OutputUtils.fmt(serialTime)
+                        + " s, speedup: "
+                        + OutputUtils.fmt(serialTime / pararealTime)
+                        + ", max potential difference at the last output point: "
+                        + OutputUtils.fmt(difference));
+    }
+
+    // Итоги многоскоростного расчета и тот же расчет с общим шагом для всех неизвестных
+    private static void reportMultirate(MultirateAnalysis multirate, CircuitModel model)
+            throws IOException {
+        double[] global = multirate.runGlobal(Data.TIME_END);
+        final double multirateTime = multirate.elapsedNanos() * 1e-9;
+        final double globalTime = multirate.globalNanos() * 1e-9;
+
+        double difference = 0.0;
+        double[] solution = multirate.lastSample();
+        for (int i : model.potentialIndices()) {
+            difference = Math.max(difference, Math.abs(solution[i] - global[i]));
+        }
+        StringBuilder fast = new StringBuilder();
+        for (int i : multirate.fastIndices()) {
+            if (fast.length() > 0) fast.append(' ');
+            fast.append(model.variableName(i));
+        }
+        System.out.println("Multirate: fast unknowns: " + (fast.length() > 0 ? fast : "none"));
+        System.out.println(
+                "Multirate steps: slow accepted: "
+                        + multirate.acceptedSteps()
+                        + ", rejected: "
+                        + multirate.rejectedSteps()
+                        + ", fast accepted: "
+                        + multirate.fastAcceptedSteps()
+                        + ", rejected: "
+                        + multirate.fastRejectedSteps()
+                        + ", LU factorizations: "
+                        + multirate.workspace.factorizations
+                        + " full, "
+                        + multirate.fastFactorizations()
+                        + " fast");
+        System.out.println(
+                "Global steps: accepted: "
+                        + multirate.globalAcceptedSteps()
+                        + ", rejected: "
+                        + multirate.globalRejectedSteps());
+        System.out.println(
+                "Multirate time: "
+                        + OutputUtils.fmt(multirateTime)
+                        + " s, global: "
+                        + OutputUtils.fmt(globalTime)
+                        + " s, speedup: "
+                        + OutputUtils.fmt(globalTime / multirateTime)
+                        + ", max potential difference at the end: "
+                        + OutputUtils.fmt(difference));
+    }
+
+    private static void reportExponential(ExponentialAnalysis exponential) {
+        System.out.println(
+                "Exponential steps: accepted: "
+                        + exponential.acceptedSteps()
+                        + ", rejected: "
+                        + exponential.rejectedSteps());
+        System.out.println(
+                "Step matrices: cache hits: "
+                        + exponential.cacheHits()
+                        + ", misses: "
+                        + exponential.cacheMisses()
+                        + ", evictions: "
+                        + exponential.cacheEvictions());
+        System.out.println(
+                "Exponential time: " + OutputUtils.fmt(exponential.elapsedNanos() * 1e-9) + " s");
+    }
+
+    // Значение перечисления без учета регистра, '-' равносильно '_'
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("unknown option value " + name);
         }
     }
+
+    // Расчет с записью точек в потоке расчета или через очередь в фоновом потоке.
+    // parareal != null - вместо analysis расчет по окнам Parareal,
+    // multirate != null - многоскоростной расчет, exponential != null - экспоненциальный
+    private static void runAnalysis(
+            TransientAnalysis analysis,
+            PararealAnalysis parareal,
+            MultirateAnalysis multirate,
+            ExponentialAnalysis exponential,
+            int width,
+            boolean async,
+            TransientAnalysis.SampleSink sink)
+            throws IOException, InterruptedException {
+        if (parareal != null) {
+            parareal.run(Data.TIME_END, sink);
+            return;
+        }
+        if (multirate != null) {
+            multirate.run(Data.TIME_END, sink);
+            return;
+        }
+        if (exponential != null) {
+            exponential.run(Data.TIME_END, sink);
+            return;
+        }
+        if (!async) {
+            analysis.run(Data.TIME_END, sink);
+            return;
+        }
+
+        AsyncSampleSink queue = new AsyncSampleSink(sink, width);
+        // Перед контрольной точкой очередь записывается до конца
+        TransientAnalysis.CheckpointSink checkpointSink = analysis.checkpointSink;
+        if (checkpointSink != null) {
+            analysis.checkpointSink =
+                    state -> {
+                        queue.flush();
+                        checkpointSink.checkpoint(state);
+                    };
+        }
+        try (queue) {
+            analysis.run(Data.TIME_END, queue);
+        }
+        System.out.println(
+                "Async output: written "
+                        + queue.samplesWritten()
+                        + ", max queue depth: "
+                        + queue.maxQueueDepth()
+                        + ", blocked: "
+                        + queue.blockedCount()
+                        + ", dropped: "
+                        + queue.droppedCount());
+    }
+
+    // Серия Монте-Карло: итоги прогонов пишутся в файл по мере готовности
+    private static void runSweep(int runs, double tolerance, long seed, int batch)
+            throws IOException, InterruptedException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        SweepRunner runner = new SweepRunner(parallelism, Data.TIME_END, Data.LINEAR_SOLVER);
+
+        long start = System.nanoTime();
+        int[] failed = {0};
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FileData.SWEEP_FILE))) {
+            bw.write(RunSummary.csvHeader(5));
+            bw.newLine();
+            IOException[] error = {null};
+            runner.run(
+                    SweepRunner.monteCarlo(new CircuitParameters(), tolerance, seed, runs),
+                    summary -> {
+                        if (!summary.isSuccessful) failed[0]++;
+                        try {
+                            bw.write(summary.toCsv());
+                            bw.newLine();
+                        } catch (IOException ex) {
+                            error[0] = ex;
+                        }
+                    },
+                    batch);
+            if (error[0] != null) throw error[0];
+        } finally {
+            runner.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(
+                runs
+                        + " runs on "
+                        + parallelism
+                        + " threads in "
+                        + OutputUtils.fmt(seconds)
+                        + " s, failed: "
+                        + failed[0]);
+    }
 }
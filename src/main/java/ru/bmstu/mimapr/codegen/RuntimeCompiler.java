@@ -0,0 +1,126 @@
+package ru.bmstu.mimapr.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/*
+ * Компиляция сгенерированного исходного текста во время выполнения
+ *
+ * Текст компилируется javac (javax.tools) в памяти с classpath текущего
+ * процесса, а класс загружается как скрытый (Lookup.defineHiddenClass):
+ * он не виден по имени и выгружается вместе с последней ссылкой на него.
+ * Класс должен быть объявлен в пакете ru.bmstu.mimapr.codegen.
+ * Нужен JDK: в JRE компилятора нет
+ * */
+public final class RuntimeCompiler {
+    public static final String PACKAGE = "ru.bmstu.mimapr.codegen";
+
+    private RuntimeCompiler() {}
+
+    // Полный доступ к скрытому классу simpleName из source
+    public static MethodHandles.Lookup defineHidden(String simpleName, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("code generation requires a JDK with javac");
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standard =
+                compiler.getStandardFileManager(diagnostics, Locale.ROOT, null);
+        ClassOutput output = new ClassOutput();
+        MemoryFileManager fileManager = new MemoryFileManager(standard, output);
+
+        List<String> options =
+                List.of("-classpath", System.getProperty("java.class.path"), "-proc:none");
+        boolean ok =
+                compiler.getTask(
+                                null,
+                                fileManager,
+                                diagnostics,
+                                options,
+                                null,
+                                List.of(new SourceInput(simpleName, source)))
+                        .call();
+        if (!ok) {
+            StringBuilder message = new StringBuilder("generated code does not compile:");
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    message.append(' ').append(d.getMessage(Locale.ROOT));
+                }
+            }
+            throw new IllegalStateException(message.toString());
+        }
+
+        try {
+            return MethodHandles.lookup().defineHiddenClass(output.bytes(), true);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String path(String simpleName) {
+        return PACKAGE.replace('.', '/') + "/" + simpleName;
+    }
+
+    private static final class SourceInput extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceInput(String simpleName, String source) {
+            super(URI.create("string:///" + path(simpleName) + ".java"), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    // Байт-код единственного класса единицы компиляции
+    private static final class ClassOutput extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        ClassOutput() {
+            super(URI.create("bytes:///" + path("class")), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            buffer.reset();
+            return buffer;
+        }
+
+        byte[] bytes() {
+            return buffer.toByteArray();
+        }
+    }
+
+    private static final class MemoryFileManager
+            extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final ClassOutput output;
+
+        MemoryFileManager(StandardJavaFileManager standard, ClassOutput output) {
+            super(standard);
+            this.output = output;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(
+                Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return output;
+        }
+    }
+}
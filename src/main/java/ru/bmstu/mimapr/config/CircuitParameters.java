@@ -0,0 +1,99 @@
+package ru.bmstu.mimapr.config;
+
+import ru.bmstu.mimapr.device.Diode;
+
+import java.util.SplittableRandom;
+
+/*
+ * Значения компонентов для одного прогона
+ *
+ * По умолчанию совпадают с Components. Используется вместо статических
+ * полей, когда нужно моделировать несколько вариантов схемы одновременно
+ * */
+public final class CircuitParameters {
+    public double L = Components.L;
+    public double C1 = Components.C1;
+    public double C2 = Components.C2;
+    public double C3 = Components.C3;
+    public double R1 = Components.R1;
+    public double R2 = Components.R2;
+
+    public double I_T = Components.I_T;
+    public double C_B = Components.C_B;
+    public double MFT = Components.MFT;
+    public double R_B = Components.R_B;
+
+    public double R_U = Components.R_U;
+
+    public double E_TIME = Components.E_TIME;
+    public double E_AMPLITUDE = Components.E_AMPLITUDE;
+
+    // Модель диода по I_T и MFT. Создается заново только после изменения этих номиналов
+    private Diode diode;
+
+    public Diode diode() {
+        Diode d = diode;
+        if (d == null || d.saturationCurrent != I_T || d.thermalVoltage != MFT) {
+            diode = d = new Diode(I_T, MFT);
+        }
+        return d;
+    }
+
+    // Закон по которому изменяется значение ЭДС
+    public double currentE1(double t) {
+        return E_AMPLITUDE * Math.sin(2.0 * Math.PI / E_TIME * t);
+    }
+
+    // Ближайший после t экстремум или нуль ЭДС: они следуют через четверть периода
+    public double nextBreakpoint(double t) {
+        final double quarter = 0.25 * E_TIME;
+        return (Math.floor(t / quarter) + 1.0) * quarter;
+    }
+
+    public CircuitParameters copy() {
+        CircuitParameters p = new CircuitParameters();
+        p.L = L;
+        p.C1 = C1;
+        p.C2 = C2;
+        p.C3 = C3;
+        p.R1 = R1;
+        p.R2 = R2;
+        p.I_T = I_T;
+        p.C_B = C_B;
+        p.MFT = MFT;
+        p.R_B = R_B;
+        p.R_U = R_U;
+        p.E_TIME = E_TIME;
+        p.E_AMPLITUDE = E_AMPLITUDE;
+        return p;
+    }
+
+    // Случайный разброс номиналов: равномерно в пределах +-tolerance от значения.
+    // Температурный потенциал и период ЭДС не меняются
+    public CircuitParameters vary(SplittableRandom random, double tolerance) {
+        CircuitParameters p = copy();
+        p.L = spread(random, L, tolerance);
+        p.C1 = spread(random, C1, tolerance);
+        p.C2 = spread(random, C2, tolerance);
+        p.C3 = spread(random, C3, tolerance);
+        p.R1 = spread(random, R1, tolerance);
+        p.R2 = spread(random, R2, tolerance);
+        p.I_T = spread(random, I_T, tolerance);
+        p.C_B = spread(random, C_B, tolerance);
+        p.R_B = spread(random, R_B, tolerance);
+        p.R_U = spread(random, R_U, tolerance);
+        p.E_AMPLITUDE = spread(random, E_AMPLITUDE, tolerance);
+        return p;
+    }
+
+    private static double spread(SplittableRandom random, double value, double tolerance) {
+        return value * (1.0 + tolerance * (2.0 * random.nextDouble() - 1.0));
+    }
+
+    @Override
+    public String toString() {
+        return "L=" + L + " C1=" + C1 + " C2=" + C2 + " C3=" + C3 + " R1=" + R1 + " R2=" + R2
+                + " I_T=" + I_T + " C_B=" + C_B + " MFT=" + MFT + " R_B=" + R_B + " R_U=" + R_U
+                + " E_TIME=" + E_TIME + " E_AMPLITUDE=" + E_AMPLITUDE;
+    }
+}
@@ -9,6 +9,42 @@ package ru.bmstu.mimapr.config;
  * Начальный шаг START_DELTA_TIME = 1e-9
  * Максимальный шаг MAXIMAL_STEP = 1e-10
  * Параметры корректировки DELTA_1 = 1e-5, DELTA_2 = 1e-7
+ * Модифицированный метод Ньютона MODIFIED_NEWTON - выключен,
+ * допуск на изменение проводимости диода DIODE_TOLERANCE = 0.1
+ * Ограничение напряжений p-n переходов на итерациях JUNCTION_LIMITING - выключено,
+ * метод Ньютона с контролем скорости сходимости ADAPTIVE_NEWTON - выключен
+ * (целевой коэффициент сжатия NEWTON_TARGET_RATE = 0.3, дроблений поправки
+ * NEWTON_DAMPING_STEPS = 4, допуск невязки NEWTON_RESIDUAL_TOLERANCE = 1e-3),
+ * экспонента диодов по таблице EXP_TABLE - выключена
+ * Решатель СЛАУ LINEAR_SOLVER - плотный
+ * Формула интегрирования INTEGRATION_METHOD - неявная формула Эйлера
+ * Выбор шага STEP_CONTROL - по порогам DELTA_1/DELTA_2. Для выбора по локальной
+ * погрешности: допуски RELATIVE_TOLERANCE = 1e-3, ABSOLUTE_TOLERANCE = 1e-3
+ * (не меньше точности метода Ньютона),
+ * коэффициент запаса STEP_SAFETY = 0.9, изменение шага за раз в пределах
+ * [MIN_STEP_RATIO, MAX_STEP_RATIO] = [0.2, 2]
+ * Шаг сетки вывода результатов SAVE_DT = 1e-7
+ * Попадание шагов в изломы и экстремумы ЭДС BREAKPOINTS - выключено,
+ * интерполяция точек вывода по принятым шагам DENSE_OUTPUT - выключена
+ * (точка вывода повторяет последнее принятое решение)
+ * Размер пакета векторизованной серии прогонов SWEEP_BATCH = 16
+ * Режим по постоянному току: итераций Ньютона DC_NEWTON_STEPS = 100, проводимость
+ * узлов на землю DC_GMIN = 1e-12, ступенчатое уменьшение проводимости
+ * от DC_GMIN_START = 1e-2 в DC_GMIN_FACTOR = 10 раз, ступенчатое включение
+ * источников с начальной ступенью DC_SOURCE_STEP = 0.1 не мельче DC_MIN_SOURCE_STEP = 1e-3
+ * Периодический режим методом стрельбы: итераций Ньютона PSS_ITERATIONS = 20
+ * Parareal: постоянных шагов грубого расчета на окно PARAREAL_COARSE_STEPS = 100
+ * Многоскоростной расчет: разрыв постоянных времени быстрых и медленных переменных
+ * состояния не меньше MULTIRATE_SEPARATION = 100 раз, быстрые потенциалы - с
+ * чувствительностью к быстрым переменным состояния больше MULTIRATE_COUPLING = 1e-6
+ * Экспоненциальное интегрирование: матрицы шага в кэше не больше чем для
+ * EXPONENTIAL_CACHE_SIZE = 32 длин шага
+ * Малосигнальный анализ: частоты от AC_START_FREQUENCY = 1 Гц до AC_STOP_FREQUENCY = 1 ГГц,
+ * AC_POINTS_PER_DECADE = 20 точек на декаду
+ * Служба расчетов: заданий в очереди и в счете не больше SIMULATOR_QUEUE_CAPACITY = 64,
+ * процессор уступается ожидающим заданиям каждые SIMULATOR_TIME_SLICE_MILLIS = 50 мс.
+ * HTTP-служба хранит завершенное задание не дольше SERVER_JOB_TTL_MILLIS = 10 мин
+ * и не больше SERVER_FINISHED_JOBS = 256 завершенных заданий
  *
  * */
 public final class Data {
@@ -25,8 +61,72 @@ public final class Data {
 
     public static final double EPSILON = 1e-3;
 
+    // LU-разложение матрицы Якоби сохраняется между шагами по времени,
+    // пока не меняется шаг и проводимость диода в пределах допуска
+    public static final boolean MODIFIED_NEWTON = false;
+    public static final double DIODE_TOLERANCE = 0.1;
+
+    // Ограничение приращения напряжения диода на итерации метода Ньютона (pnjlim)
+    public static final boolean JUNCTION_LIMITING = false;
+    // Ограниченные итерации сверх NEWTON_STEPS: при шаге ~ n * Vt * ln(...) за итерацию
+    // переход открывается из нуля за десятки итераций
+    public static final int LIMITED_NEWTON_STEPS = 30;
+
+    public static final boolean ADAPTIVE_NEWTON = false;
+    // Сжатие поправок примерно пропорционально шагу: при большем сжатии шаг уменьшается
+    public static final double NEWTON_TARGET_RATE = 0.3;
+    public static final int NEWTON_DAMPING_STEPS = 4;
+    public static final double NEWTON_RESIDUAL_TOLERANCE = 1e-3;
+    // Экспонента в моделях диодов по таблице с интерполяцией вместо Math.exp
+    public static final boolean EXP_TABLE = false;
+
+    public static final LinearSolverKind LINEAR_SOLVER = LinearSolverKind.DENSE;
+    public static final IntegrationMethodKind INTEGRATION_METHOD =
+            IntegrationMethodKind.BACKWARD_EULER;
+
     public static final double DELTA_1 = 1e-5;
     public static final double DELTA_2 = 1e-7;
 
+    public static final StepControlKind STEP_CONTROL = StepControlKind.HEURISTIC;
+    public static final double RELATIVE_TOLERANCE = 1e-3;
+    public static final double ABSOLUTE_TOLERANCE = 1e-3;
+    public static final double STEP_SAFETY = 0.9;
+    public static final double MIN_STEP_RATIO = 0.2;
+    public static final double MAX_STEP_RATIO = 2.0;
+
+    public static final double SAVE_DT = 1e-7;
+    public static final boolean BREAKPOINTS = false;
+    public static final boolean DENSE_OUTPUT = false;
     public static final int PRINT_EVERY_SUCCESS_STEPS = 100000;
+
+    public static final int DC_NEWTON_STEPS = 100;
+    // Проводимость от каждого узла на землю: узлы, связанные с землей только
+    // через конденсаторы, по постоянному току иначе висят в воздухе
+    public static final double DC_GMIN = 1e-12;
+    public static final double DC_GMIN_START = 1e-2;
+    public static final double DC_GMIN_FACTOR = 10.0;
+    public static final double DC_SOURCE_STEP = 0.1;
+    public static final double DC_MIN_SOURCE_STEP = 1e-3;
+
+    public static final int PSS_ITERATIONS = 20;
+
+    public static final int PARAREAL_COARSE_STEPS = 100;
+
+    public static final double MULTIRATE_SEPARATION = 100.0;
+    public static final double MULTIRATE_COUPLING = 1e-6;
+
+    public static final int EXPONENTIAL_CACHE_SIZE = 32;
+
+    public static final double AC_START_FREQUENCY = 1.0;
+    public static final double AC_STOP_FREQUENCY = 1e9;
+    public static final int AC_POINTS_PER_DECADE = 20;
+
+    public static final int SIMULATOR_QUEUE_CAPACITY = 64;
+    public static final long SIMULATOR_TIME_SLICE_MILLIS = 50;
+    public static final long SERVER_JOB_TTL_MILLIS = 600_000;
+    public static final int SERVER_FINISHED_JOBS = 256;
+
+    // Прогонов в пакете: несколько векторов, чтобы скрыть задержку деления,
+    // но не слишком много, чтобы дорожки реже простаивали в ожидании остальных
+    public static final int SWEEP_BATCH = 16;
 }
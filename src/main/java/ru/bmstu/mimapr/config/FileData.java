@@ -8,4 +8,28 @@ public final class FileData {
     public static final String PHI4_FILE = "phi4.txt";
     public static final String PHI5_FILE = "phi5.txt";
     public static final String T_FILE = "t.txt";
+    public static final String SWEEP_FILE = "sweep.csv";
+    public static final String BINARY_FILE = "results.bin";
+    public static final String CHECKPOINT_FILE = "checkpoint.bin";
+    public static final String WAVEFORM_FILE = "waveforms.bin";
+    public static final String AC_FILE = "ac.csv";
+
+    public static final String TEXT_EXTENSION = ".txt";
+
+    // Файл потенциала узла схемного описания
+    public static String probeFile(String node) {
+        return "phi" + node + TEXT_EXTENSION;
+    }
+
+    // Файл произвольной неизвестной модели
+    public static String variableFile(String name) {
+        return name + TEXT_EXTENSION;
+    }
+
+    // Имя столбца двоичного файла для текстового файла результатов
+    public static String columnName(String file) {
+        return file.endsWith(TEXT_EXTENSION)
+                ? file.substring(0, file.length() - TEXT_EXTENSION.length())
+                : file;
+    }
 }
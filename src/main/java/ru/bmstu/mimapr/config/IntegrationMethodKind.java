@@ -0,0 +1,11 @@
+package ru.bmstu.mimapr.config;
+
+// Формула интегрирования, связывающая производные и переменные состояния
+public enum IntegrationMethodKind {
+    // Неявная формула Эйлера, первый порядок
+    BACKWARD_EULER,
+    // Формула трапеций, второй порядок
+    TRAPEZOIDAL,
+    // Формула Гира (BDF) второго порядка с переменными коэффициентами
+    BDF2
+}
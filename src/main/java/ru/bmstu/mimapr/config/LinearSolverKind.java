@@ -0,0 +1,12 @@
+package ru.bmstu.mimapr.config;
+
+// Способ решения СЛАУ в методе Ньютона
+public enum LinearSolverKind {
+    // Плотное LU-разложение (метод Гаусса)
+    DENSE,
+    // Разреженное LU-разложение с упорядочиванием по Марковицу
+    SPARSE,
+    // Исключение производных и переменных состояния, затем SparseLU
+    // приведенной системы по узлам (CondensedSolver, нужна структура модели)
+    CONDENSED
+}
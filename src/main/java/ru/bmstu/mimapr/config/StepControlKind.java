@@ -0,0 +1,10 @@
+package ru.bmstu.mimapr.config;
+
+// Способ выбора шага по времени
+public enum StepControlKind {
+    // Уменьшение вдвое, сохранение или удвоение шага по порогам DELTA_1/DELTA_2
+    HEURISTIC,
+    // Оценка локальной погрешности методом предиктор-корректор с допусками
+    // RELATIVE_TOLERANCE/ABSOLUTE_TOLERANCE и плавным изменением шага
+    LTE
+}
@@ -0,0 +1,24 @@
+package ru.bmstu.mimapr.device;
+
+/*
+ * Модель нелинейного двухполюсного прибора (p-n перехода)
+ *
+ * Ток и дифференциальная проводимость вычисляются за одно обращение
+ * к экспоненте. Многополюсные приборы (транзисторы) описываются
+ * несколькими переходами с общими параметрами
+ * */
+public interface DeviceModel {
+    // Ток и проводимость при напряжении v. Если out уже содержит результат
+    // для того же напряжения, вычисление не повторяется
+    void evaluate(double v, DeviceState out);
+
+    double current(double v);
+
+    double conductance(double v);
+
+    // Ограничение напряжения на итерации метода Ньютона: новое значение vNew
+    // по значению vOld на предыдущей итерации. Без ограничения возвращает vNew
+    default double limit(double vNew, double vOld) {
+        return vNew;
+    }
+}
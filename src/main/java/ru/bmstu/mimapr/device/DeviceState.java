@@ -0,0 +1,13 @@
+package ru.bmstu.mimapr.device;
+
+// Результат вычисления DeviceModel: напряжение, ток и проводимость
+public final class DeviceState {
+    // NaN - результат еще не вычислен
+    public double voltage = Double.NaN;
+    public double current;
+    public double conductance;
+
+    public void invalidate() {
+        voltage = Double.NaN;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.bmstu.mimapr.device;
+
+/*
+ * Диод: I = Is * (e^(U / (n * Vt)) - 1), g = Is / (n * Vt) * e^(U / (n * Vt))
+ *
+ * Выше MAX_EXPONENT экспонента продолжается касательной, поэтому ток
+ * и проводимость остаются конечными при любом прямом смещении: проводимость
+ * там постоянна и равна Is / (n * Vt) * e^MAX_EXPONENT.
+ * Ограничение напряжения на итерации - как pnjlim в SPICE: выше критического
+ * напряжения приращение больше 2 * n * Vt заменяется логарифмическим
+ * */
+public final class Diode implements DeviceModel {
+    // e^40 ~ 2e17: при Is ~ 1e-12 A ток ~ 1e5 A, далее рост линейный
+    public static final double MAX_EXPONENT = 40.0;
+    private static final double EXP_LIMIT = Math.exp(MAX_EXPONENT);
+
+    public final double saturationCurrent;
+    // Температурный потенциал с коэффициентом неидеальности n * Vt
+    public final double thermalVoltage;
+    // Критическое напряжение: максимум кривизны характеристики
+    public final double criticalVoltage;
+    private final boolean expTable;
+
+    public Diode(double saturationCurrent, double thermalVoltage) {
+        this(saturationCurrent, thermalVoltage, false);
+    }
+
+    // expTable - экспонента по таблице ExpTable вместо Math.exp
+    public Diode(double saturationCurrent, double thermalVoltage, boolean expTable) {
+        if (!(saturationCurrent > 0.0) || !(thermalVoltage > 0.0)) {
+            throw new IllegalArgumentException("diode parameters must be positive");
+        }
+        this.saturationCurrent = saturationCurrent;
+        this.thermalVoltage = thermalVoltage;
+        this.criticalVoltage =
+                thermalVoltage * Math.log(thermalVoltage / (Math.sqrt(2.0) * saturationCurrent));
+        this.expTable = expTable;
+    }
+
+    // e^(v / (n * Vt)) с линейным продолжением выше MAX_EXPONENT
+    private double exp(double v) {
+        final double x = v / thermalVoltage;
+        if (x > MAX_EXPONENT) return EXP_LIMIT * (1.0 + (x - MAX_EXPONENT));
+        return expTable ? ExpTable.exp(x) : Math.exp(x);
+    }
+
+    // Производная exp по v, умноженная на n * Vt: на линейном участке постоянна
+    private double slope(double v) {
+        final double x = v / thermalVoltage;
+        if (x > MAX_EXPONENT) return EXP_LIMIT;
+        return expTable ? ExpTable.exp(x) : Math.exp(x);
+    }
+
+    @Override
+    public void evaluate(double v, DeviceState out) {
+        if (v == out.voltage) return;
+        out.voltage = v;
+        final double x = v / thermalVoltage;
+        if (x > MAX_EXPONENT) {
+            out.current = saturationCurrent * (exp(v) - 1.0);
+            out.conductance = saturationCurrent / thermalVoltage * EXP_LIMIT;
+            return;
+        }
+        final double e = expTable ? ExpTable.exp(x) : Math.exp(x);
+        out.current = saturationCurrent * (e - 1.0);
+        out.conductance = saturationCurrent / thermalVoltage * e;
+    }
+
+    @Override
+    public double current(double v) {
+        return saturationCurrent * (exp(v) - 1.0);
+    }
+
+    @Override
+    public double conductance(double v) {
+        return saturationCurrent / thermalVoltage * slope(v);
+    }
+
+    @Override
+    public double limit(double vNew, double vOld) {
+        return pnjlim(vNew, vOld, thermalVoltage, criticalVoltage);
+    }
+
+    // Ограничение напряжения p-n перехода по алгоритму SPICE
+    public static double pnjlim(double vNew, double vOld, double vt, double vCrit) {
+        if (vNew <= vCrit || Math.abs(vNew - vOld) <= 2.0 * vt) return vNew;
+        if (vOld > 0.0) {
+            final double arg = 1.0 + (vNew - vOld) / vt;
+            return (arg > 0.0) ? vOld + vt * Math.log(arg) : vCrit;
+        }
+        return vt * Math.log(vNew / vt);
+    }
+}
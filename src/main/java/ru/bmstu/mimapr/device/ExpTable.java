@@ -0,0 +1,33 @@
+package ru.bmstu.mimapr.device;
+
+/*
+ * Экспонента по таблице с интерполяцией
+ *
+ * e^x = e^(x_k) * e^r, где x_k - ближайший слева узел сетки с шагом 1 / STEPS,
+ * e^r при 0 <= r < 1 / STEPS - многочлен Тейлора пятой степени
+ * (остаток меньше r^6 / 720 ~ 2e-14, относительная погрешность меньше 1e-13).
+ * Вне [MIN_ARGUMENT, MAX_ARGUMENT] используется Math.exp. Таблица общая и неизменяемая
+ * */
+public final class ExpTable {
+    private ExpTable() {}
+
+    public static final double MIN_ARGUMENT = -64.0;
+    public static final double MAX_ARGUMENT = 64.0;
+    private static final int STEPS = 64;
+    private static final double[] TABLE;
+
+    static {
+        final int size = (int) ((MAX_ARGUMENT - MIN_ARGUMENT) * STEPS) + 1;
+        TABLE = new double[size];
+        for (int k = 0; k < size; k++) TABLE[k] = Math.exp(MIN_ARGUMENT + (double) k / STEPS);
+    }
+
+    public static double exp(double x) {
+        if (!(x >= MIN_ARGUMENT && x < MAX_ARGUMENT)) return Math.exp(x);
+        final double s = (x - MIN_ARGUMENT) * STEPS;
+        final int k = (int) s;
+        final double r = (s - k) / STEPS;
+        final double p = 1.0 / 6.0 + r * (1.0 / 24.0 + r * (1.0 / 120.0));
+        return TABLE[k] * (1.0 + r * (1.0 + r * (0.5 + r * p)));
+    }
+}
@@ -0,0 +1,7 @@
+package ru.bmstu.mimapr.exceptions;
+
+public final class ConvergenceException extends RuntimeException {
+    public ConvergenceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.bmstu.mimapr.exceptions;
+
+public final class NetlistException extends RuntimeException {
+    public NetlistException(int line, String message) {
+        super("Netlist line " + line + ": " + message);
+    }
+
+    public NetlistException(String message) {
+        super("Netlist: " + message);
+    }
+}
@@ -0,0 +1,175 @@
+package ru.bmstu.mimapr.io;
+
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Асинхронная передача точек решения в фоновый поток записи
+ *
+ * Поток расчета копирует вектор неизвестных в кольцевой буфер фиксированного
+ * размера (один производитель, один потребитель, без блокировок), фоновый
+ * поток пачками передает точки в downstream. Поток расчета ждет только при
+ * заполненном буфере (BLOCK) или отбрасывает точку (DROP)
+ * */
+public final class AsyncSampleSink implements TransientAnalysis.SampleSink, Closeable {
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP
+    }
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final TransientAnalysis.SampleSink downstream;
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final double[] times;
+    private final double[][] slots;
+
+    // tail пишет только поток расчета, head - только фоновый поток
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+
+    // Метрики
+    private volatile long blocked = 0;
+    private volatile long dropped = 0;
+    private volatile long maxDepth = 0;
+
+    public AsyncSampleSink(
+            TransientAnalysis.SampleSink downstream,
+            int width,
+            int capacity,
+            OverflowPolicy policy) {
+        this.downstream = downstream;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.times = new double[capacity];
+        this.slots = new double[capacity][width];
+        this.writer = new Thread(this::drain, "result-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public AsyncSampleSink(TransientAnalysis.SampleSink downstream, int width) {
+        this(downstream, width, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    @Override
+    public void sample(double t, double[] x) throws IOException {
+        checkFailure();
+        final long tl = tail.get();
+        if (tl - head.get() >= capacity) {
+            if (policy == OverflowPolicy.DROP) {
+                dropped++;
+                return;
+            }
+            blocked++;
+            while (tl - head.get() >= capacity) {
+                LockSupport.parkNanos(PARK_NANOS);
+                checkWriter();
+            }
+        }
+
+        final int slot = (int) (tl % capacity);
+        times[slot] = t;
+        System.arraycopy(x, 0, slots[slot], 0, slots[slot].length);
+        // Публикация точки для фонового потока
+        tail.lazySet(tl + 1);
+
+        final long depth = tl + 1 - head.get();
+        if (depth > maxDepth) maxDepth = depth;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                final long h = head.get();
+                final long tl = tail.get();
+                if (h == tl) {
+                    if (closed && tail.get() == h) break;
+                    LockSupport.parkNanos(PARK_NANOS);
+                    continue;
+                }
+                for (long i = h; i < tl; i++) {
+                    final int slot = (int) (i % capacity);
+                    downstream.sample(times[slot], slots[slot]);
+                }
+                head.lazySet(tl);
+            }
+        } catch (Throwable ex) {
+            // Error тоже: иначе поток записи завершится молча, а поток расчета
+            // будет ждать освобождения буфера бесконечно
+            failure = ex;
+        }
+    }
+
+    // Error из downstream передается без обертки
+    private void checkFailure() throws IOException {
+        Throwable ex = failure;
+        if (ex instanceof Error error) throw error;
+        if (ex != null) throw new IOException("Result writer failed: " + ex.getMessage(), ex);
+    }
+
+    // Ожидание точек, которые уже некому записать
+    private void checkWriter() throws IOException {
+        checkFailure();
+        if (!writer.isAlive() && head.get() < tail.get()) {
+            checkFailure();
+            throw new IOException("Result writer stopped with samples still queued");
+        }
+    }
+
+    // Число точек, ожидающих записи
+    public long queueDepth() {
+        return tail.get() - head.get();
+    }
+
+    public long maxQueueDepth() {
+        return maxDepth;
+    }
+
+    // Сколько раз поток расчета ждал освобождения буфера
+    public long blockedCount() {
+        return blocked;
+    }
+
+    public long droppedCount() {
+        return dropped;
+    }
+
+    public long samplesWritten() {
+        return head.get();
+    }
+
+    // Дожидается передачи в downstream всех уже поставленных в очередь точек
+    public void flush() throws IOException {
+        final long tl = tail.get();
+        while (head.get() < tl) {
+            checkWriter();
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        checkFailure();
+    }
+
+    // Дожидается записи всех точек. downstream закрывает вызывающий код
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing results", ex);
+        }
+        checkFailure();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.bmstu.mimapr.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Чтение файла BinaryResultWriter по блокам
+ *
+ * Преобразование в текстовые файлы (по файлу <имя столбца>.txt на столбец)
+ * дает тот же формат, что и OutputUtils.printToFile, для plot.py
+ * */
+public final class BinaryResultReader implements Closeable {
+    private final FileChannel channel;
+    public final String[] names;
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    public BinaryResultReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        ByteBuffer head = read(Long.BYTES + 2 * Integer.BYTES);
+        if (head.getLong() != BinaryResultWriter.MAGIC) throw new IOException("Not a result file");
+        if (head.getInt() != BinaryResultWriter.VERSION) throw new IOException("Bad version");
+        names = new String[head.getInt()];
+        for (int i = 0; i < names.length; i++) {
+            int length = read(Integer.BYTES).getInt();
+            byte[] bytes = new byte[length];
+            read(length).get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Следующий блок: block[столбец][строка]. null в конце файла
+    public double[][] nextBlock() throws IOException {
+        if (channel.position() == channel.size()) return null;
+        int rows = read(Integer.BYTES).getInt();
+        ByteBuffer data = read(names.length * rows * Double.BYTES);
+        double[][] block = new double[names.length][rows];
+        for (double[] column : block) {
+            for (int r = 0; r < rows; r++) column[r] = data.getDouble();
+        }
+        return block;
+    }
+
+    private ByteBuffer read(int bytes) throws IOException {
+        if (buffer.capacity() < bytes) buffer = ByteBuffer.allocate(bytes);
+        buffer.clear().limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException();
+        }
+        buffer.flip();
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Преобразование в текстовые файлы рядом с текущим каталогом
+    public static void convertToText(Path path) throws IOException {
+        try (BinaryResultReader reader = new BinaryResultReader(path)) {
+            BufferedWriter[] writers = new BufferedWriter[reader.names.length];
+            try {
+                for (int i = 0; i < writers.length; i++) {
+                    writers[i] = new BufferedWriter(new FileWriter(reader.names[i] + ".txt"));
+                }
+                double[][] block;
+                while ((block = reader.nextBlock()) != null) {
+                    for (int c = 0; c < block.length; c++) {
+                        for (double v : block[c]) {
+                            writers[c].write(OutputUtils.fmt(v));
+                            writers[c].newLine();
+                        }
+                    }
+                }
+            } finally {
+                for (BufferedWriter w : writers) {
+                    if (w != null) w.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ru.bmstu.mimapr.io;
+
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Потоковая запись результатов в двоичный столбцовый формат
+ *
+ * Файл:
+ *   заголовок: MAGIC, версия, число столбцов, имена столбцов (длина + UTF-8)
+ *   блоки:     число строк r, затем столбцы по r значений double подряд
+ * Первый столбец - время. Все числа little-endian. В памяти держится
+ * не больше одного блока, блок записывается через FileChannel.
+ * Все блоки, кроме последнего, содержат ровно blockRows строк: commit
+ * пишет в файл только заполненные блоки, строки неполного блока
+ * сохраняются в контрольной точке. При продолжении расчета файл усекается
+ * до позиции, зафиксированной вместе с ней, неполный блок восстанавливается
+ * в памяти, и файл дописывается дальше - он побайтно совпадает с файлом
+ * расчета без перерыва
+ * */
+public final class BinaryResultWriter implements TransientAnalysis.SampleSink, Closeable {
+    public static final long MAGIC = 0x4D494D4150525731L; // "MIMAPRW1"
+    public static final int VERSION = 1;
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+    private final FileChannel channel;
+    private final int[] indices;
+    private final int blockRows;
+    private final double[][] columns;
+    private final ByteBuffer buffer;
+    private int rows = 0;
+    private long totalRows = 0;
+
+    // names[0] - имя столбца времени, names[i + 1] - имя величины x[indices[i]]
+    public BinaryResultWriter(Path path, String[] names, int[] indices) throws IOException {
+        this(path, names, indices, DEFAULT_BLOCK_ROWS);
+    }
+
+    public BinaryResultWriter(Path path, String[] names, int[] indices, int blockRows)
+            throws IOException {
+        this(path, names, indices, blockRows, -1L, 0L);
+    }
+
+    // Дописывание файла, усеченного до position, в котором уже записано rows строк.
+    // pending - строки неполного блока из pendingRows на момент снимка
+    public static BinaryResultWriter resume(
+            Path path, String[] names, int[] indices, long position, long rows, double[] pending)
+            throws IOException {
+        if (position < 0) throw new IllegalArgumentException("negative file position");
+        if (pending.length % names.length != 0
+                || pending.length / names.length >= DEFAULT_BLOCK_ROWS
+                || pending.length / names.length > rows) {
+            throw new IllegalArgumentException("pending rows do not match the columns");
+        }
+        BinaryResultWriter writer =
+                new BinaryResultWriter(
+                        path,
+                        names,
+                        indices,
+                        DEFAULT_BLOCK_ROWS,
+                        position,
+                        rows - pending.length / names.length);
+        writer.rows = pending.length / names.length;
+        int k = 0;
+        for (double[] column : writer.columns) {
+            for (int r = 0; r < writer.rows; r++) column[r] = pending[k++];
+        }
+        return writer;
+    }
+
+    private BinaryResultWriter(
+            Path path, String[] names, int[] indices, int blockRows, long position, long rows)
+            throws IOException {
+        if (names.length != indices.length + 1) {
+            throw new IllegalArgumentException("names must include the time column");
+        }
+        this.indices = indices.clone();
+        this.blockRows = blockRows;
+        this.columns = new double[names.length][blockRows];
+        this.buffer =
+                ByteBuffer.allocateDirect(Integer.BYTES + names.length * blockRows * Double.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+        if (position < 0) {
+            this.channel =
+                    FileChannel.open(
+                            path,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = header(names);
+            while (header.hasRemaining()) channel.write(header);
+            return;
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            checkHeader(names, position);
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        this.totalRows = rows;
+    }
+
+    private void checkHeader(String[] names, long position) throws IOException {
+        ByteBuffer expected = header(names);
+        if (channel.size() < position || position < expected.remaining()) {
+            throw new IOException("Result file is shorter than the checkpoint");
+        }
+        ByteBuffer actual = ByteBuffer.allocate(expected.remaining());
+        while (actual.hasRemaining()) {
+            if (channel.read(actual, actual.position()) < 0) break;
+        }
+        actual.flip();
+        if (!actual.equals(expected)) {
+            throw new IOException("Result file columns do not match the checkpoint");
+        }
+    }
+
+    private static ByteBuffer header(String[] names) {
+        byte[][] encoded = new byte[names.length][];
+        int size = Long.BYTES + 2 * Integer.BYTES;
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + encoded[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putInt(names.length);
+        for (byte[] bytes : encoded) header.putInt(bytes.length).put(bytes);
+        return header.flip();
+    }
+
+    @Override
+    public void sample(double t, double[] x) throws IOException {
+        columns[0][rows] = t;
+        for (int i = 0; i < indices.length; i++) columns[i + 1][rows] = x[indices[i]];
+        if (++rows == blockRows) flush();
+    }
+
+    public long rowsWritten() {
+        return totalRows + rows;
+    }
+
+    private void flush() throws IOException {
+        if (rows == 0) return;
+        buffer.clear();
+        buffer.putInt(rows);
+        for (double[] column : columns) {
+            for (int r = 0; r < rows; r++) buffer.putDouble(column[r]);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        totalRows += rows;
+        rows = 0;
+    }
+
+    // Сброс заполненных блоков на диск. Возвращает позицию их конца
+    // для контрольной точки, строки неполного блока - в pendingRows
+    public long commit() throws IOException {
+        channel.force(false);
+        return channel.position();
+    }
+
+    // Строки неполного блока по столбцам подряд
+    public double[] pendingRows() {
+        double[] pending = new double[columns.length * rows];
+        int k = 0;
+        for (double[] column : columns) {
+            System.arraycopy(column, 0, pending, k, rows);
+            k += rows;
+        }
+        return pending;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
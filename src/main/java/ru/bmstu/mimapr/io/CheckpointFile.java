@@ -0,0 +1,196 @@
+package ru.bmstu.mimapr.io;
+
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.numerics.TransientState;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/*
+ * Контрольная точка расчета переходного процесса
+ *
+ * Файл:
+ *   MAGIC, версия, свертка SHA-256 схемы и параметров решателя (длина + байты),
+ *   размер модели, формула интегрирования и способ выбора
+ *   шага (длина + UTF-8), TimeDemon, шаги и момент следующей точки вывода,
+ *   моменты двух последних принятых решений, признаки точек излома
+ *   и плотного вывода, счетчики, векторы решений, состояние формулы интегрирования
+ *   (длина + значения), позиция конца и число строк файла результатов,
+ *   строки его неполного блока (длина + значения)
+ * Все числа little-endian. Файл пишется во временный и переименовывается,
+ * поэтому прерывание записи не портит предыдущую контрольную точку.
+ * Продолжение допускается только при той же свертке: иначе состояние одной
+ * модели продолжилось бы в другой
+ * */
+public final class CheckpointFile {
+    public static final long MAGIC = 0x4D494D4150524331L; // "MIMAPRC1"
+    public static final int VERSION = 4;
+
+    // Свертка схемы и параметров решателя, см. digest
+    public final byte[] setupDigest;
+    public final TransientState state;
+    // Позиция конца данных, число строк и строки неполного блока
+    // BinaryResultWriter на момент снимка
+    public final long outputPosition;
+    public final long outputRows;
+    public final double[] outputPending;
+
+    public CheckpointFile(
+            byte[] setupDigest,
+            TransientState state,
+            long outputPosition,
+            long outputRows,
+            double[] outputPending) {
+        this.setupDigest = setupDigest;
+        this.state = state;
+        this.outputPosition = outputPosition;
+        this.outputRows = outputRows;
+        this.outputPending = outputPending;
+    }
+
+    public void write(Path path) throws IOException {
+        byte[] method = state.method.name().getBytes(StandardCharsets.UTF_8);
+        byte[] stepControl = state.stepControl.name().getBytes(StandardCharsets.UTF_8);
+        int size =
+                Long.BYTES
+                        + 3 * Integer.BYTES
+                        + Integer.BYTES + setupDigest.length
+                        + 2 * Integer.BYTES + method.length + stepControl.length
+                        + 7 * Double.BYTES + 3
+                        + Integer.BYTES + 4 * Long.BYTES
+                        + 4 * state.size * Double.BYTES
+                        + Integer.BYTES + state.integratorState.length * Double.BYTES
+                        + 2 * Long.BYTES
+                        + Integer.BYTES + outputPending.length * Double.BYTES;
+
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putLong(MAGIC).putInt(VERSION);
+        b.putInt(setupDigest.length).put(setupDigest);
+        b.putInt(state.size);
+        b.putInt(method.length).put(method);
+        b.putInt(stepControl.length).put(stepControl);
+        b.putDouble(state.currT).putDouble(state.deltaT).put((byte) (state.success ? 1 : 0));
+        b.putDouble(state.prevDeltaT).putDouble(state.prevPrevDeltaT).putDouble(state.nextSaveT);
+        b.putDouble(state.prevT).putDouble(state.prevPrevT);
+        b.put((byte) (state.breakpoints ? 1 : 0)).put((byte) (state.denseOutput ? 1 : 0));
+        b.putInt(state.iteration);
+        b.putLong(state.acceptedSteps).putLong(state.rejectedSteps);
+        b.putLong(state.factorizations).putLong(state.solves);
+        putArray(b, state.initialApproximation);
+        putArray(b, state.pvPrev);
+        putArray(b, state.pvPrevPrev);
+        putArray(b, state.pvPrev3);
+        b.putInt(state.integratorState.length);
+        putArray(b, state.integratorState);
+        b.putLong(outputPosition).putLong(outputRows);
+        b.putInt(outputPending.length);
+        putArray(b, outputPending);
+        b.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel =
+                FileChannel.open(
+                        tmp,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) channel.write(b);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static CheckpointFile read(Path path) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (b.getLong() != MAGIC) throw new IOException("Not a checkpoint file");
+            if (b.getInt() != VERSION) throw new IOException("Bad checkpoint version");
+            byte[] digest = getBytes(b);
+
+            TransientState s = new TransientState();
+            s.size = b.getInt();
+            s.method = IntegrationMethodKind.valueOf(getString(b));
+            s.stepControl = StepControlKind.valueOf(getString(b));
+            s.currT = b.getDouble();
+            s.deltaT = b.getDouble();
+            s.success = b.get() != 0;
+            s.prevDeltaT = b.getDouble();
+            s.prevPrevDeltaT = b.getDouble();
+            s.nextSaveT = b.getDouble();
+            s.prevT = b.getDouble();
+            s.prevPrevT = b.getDouble();
+            s.breakpoints = b.get() != 0;
+            s.denseOutput = b.get() != 0;
+            s.iteration = b.getInt();
+            s.acceptedSteps = b.getLong();
+            s.rejectedSteps = b.getLong();
+            s.factorizations = b.getLong();
+            s.solves = b.getLong();
+            s.initialApproximation = getArray(b, s.size);
+            s.pvPrev = getArray(b, s.size);
+            s.pvPrevPrev = getArray(b, s.size);
+            s.pvPrev3 = getArray(b, s.size);
+            s.integratorState = getArray(b, b.getInt());
+            long position = b.getLong();
+            long rows = b.getLong();
+            CheckpointFile file =
+                    new CheckpointFile(digest, s, position, rows, getArray(b, b.getInt()));
+            if (b.hasRemaining()) throw new IOException("Trailing data in checkpoint file");
+            return file;
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new IOException("Corrupted checkpoint file " + path, ex);
+        }
+    }
+
+    // SHA-256 текста, описывающего схему и параметры решателя
+    public static byte[] digest(String setup) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(setup.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public boolean matches(byte[] digest) {
+        return MessageDigest.isEqual(setupDigest, digest);
+    }
+
+    private static void putArray(ByteBuffer b, double[] values) {
+        for (double v : values) b.putDouble(v);
+    }
+
+    private static double[] getArray(ByteBuffer b, int length) {
+        if (length < 0 || length > b.remaining() / Double.BYTES) {
+            throw new IllegalArgumentException("bad array length " + length);
+        }
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) values[i] = b.getDouble();
+        return values;
+    }
+
+    private static byte[] getBytes(ByteBuffer b) {
+        int length = b.getInt();
+        if (length < 0 || length > b.remaining()) {
+            throw new IllegalArgumentException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        b.get(bytes);
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer b) {
+        return new String(getBytes(b), StandardCharsets.UTF_8);
+    }
+}
@@ -26,6 +26,17 @@ public final class OutputUtils {
         }
     }
 
+    // Столбец файла осциллограмм, строки читаются по порядку из отображения
+    public static void printToFile(String name, WaveformStore store, int column)
+            throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(name, true))) {
+            for (long row = 0; row < store.rows(); row++) {
+                bw.write(fmt(store.get(row, column)));
+                bw.newLine();
+            }
+        }
+    }
+
     public static void clearFiles() throws IOException {
         deleteIfExists(FileData.PHI1_FILE);
         deleteIfExists(FileData.PHI2_FILE);
@@ -0,0 +1,280 @@
+package ru.bmstu.mimapr.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * Чтение осциллограмм WaveformWriter без загрузки файла целиком
+ *
+ * Отрезки файла отображаются в память по мере обращения к ним, в память
+ * попадают только прочитанные страницы. Строка по времени ищется двоичным
+ * поиском сначала по сводкам отрезков, затем внутри отрезка. Прореживание
+ * для графиков берет минимум и максимум отрезка из сводки, если отрезок
+ * целиком попадает в один интервал
+ * */
+public final class WaveformStore implements Closeable {
+    private final FileChannel channel;
+    public final String[] names;
+    private final int columns;
+    private final int chunkRows;
+    private final long rows;
+    private final long headerBytes;
+    private final long chunkBytes;
+    private final MappedByteBuffer[] chunks;
+
+    // Значения столбцов в строках с временем из [t0, t1]
+    public static final class Slice {
+        public final double[] time;
+        public final double[][] values;
+
+        Slice(double[] time, double[][] values) {
+            this.time = time;
+            this.values = values;
+        }
+    }
+
+    // Минимум и максимум столбца по равным интервалам времени [t0, t1],
+    // NaN - в интервал не попало ни одной строки
+    public static final class Envelope {
+        public final double t0;
+        public final double t1;
+        public final double[] min;
+        public final double[] max;
+
+        Envelope(double t0, double t1, int buckets) {
+            this.t0 = t0;
+            this.t1 = t1;
+            this.min = new double[buckets];
+            this.max = new double[buckets];
+            Arrays.fill(min, Double.NaN);
+            Arrays.fill(max, Double.NaN);
+        }
+
+        // Начало интервала b
+        public double bucketStart(int b) {
+            return t0 + (t1 - t0) * b / min.length;
+        }
+
+        void add(int b, double low, double high) {
+            if (!(min[b] <= low)) min[b] = low;
+            if (!(max[b] >= high)) max[b] = high;
+        }
+    }
+
+    public WaveformStore(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer head = read(0, WaveformWriter.FIXED_HEADER_BYTES);
+            if (head.getLong() != WaveformWriter.MAGIC) {
+                throw new IOException("Not a waveform file");
+            }
+            if (head.getInt() != WaveformWriter.VERSION) throw new IOException("Bad version");
+            this.columns = head.getInt();
+            this.chunkRows = head.getInt();
+            this.rows = head.getLong();
+            long position = head.position();
+            this.names = new String[columns];
+            for (int i = 0; i < columns; i++) {
+                int length = read(position, Integer.BYTES).getInt();
+                ByteBuffer bytes = read(position + Integer.BYTES, length);
+                names[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+                position += Integer.BYTES + length;
+            }
+            int page = WaveformWriter.PAGE_BYTES;
+            this.headerBytes = (position + page - 1) / page * page;
+            this.chunkBytes = WaveformWriter.chunkBytes(columns, chunkRows);
+            this.chunks = new MappedByteBuffer[(int) ((rows + chunkRows - 1) / chunkRows)];
+            if (channel.size() < headerBytes + chunks.length * chunkBytes) {
+                throw new IOException("Waveform file is truncated");
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private ByteBuffer read(long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Waveform file is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    // Номер столбца по имени; 0 - время
+    public int column(String name) {
+        for (int i = 0; i < columns; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("no waveform column " + name);
+    }
+
+    public double get(long row, int column) {
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException(row);
+        checkColumn(column);
+        return value(chunk((int) (row / chunkRows)), column, (int) (row % chunkRows));
+    }
+
+    public double time(long row) {
+        return get(row, 0);
+    }
+
+    // Первая строка с временем не меньше t, rows() - таких строк нет
+    public long firstRowAtOrAfter(double t) {
+        // Первый отрезок, последнее время которого не меньше t
+        int lo = 0;
+        int hi = chunks.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (summaryMax(chunk(mid), 0) < t) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo == chunks.length) return rows;
+
+        final MappedByteBuffer buffer = chunk(lo);
+        int first = 0;
+        int last = chunkLength(lo);
+        while (first < last) {
+            final int mid = (first + last) >>> 1;
+            if (value(buffer, 0, mid) < t) first = mid + 1;
+            else last = mid;
+        }
+        return (long) lo * chunkRows + first;
+    }
+
+    // Значение столбца в момент t: линейная интерполяция между соседними строками
+    public double valueAt(int column, double t) {
+        if (rows == 0 || t < time(0) || t > time(rows - 1)) {
+            throw new IllegalArgumentException("time " + t + " is outside the waveform");
+        }
+        final long row = firstRowAtOrAfter(t);
+        final double t1 = time(row);
+        if (t1 == t || row == 0) return get(row, column);
+        final double t0 = time(row - 1);
+        final double v0 = get(row - 1, column);
+        return v0 + (t - t0) / (t1 - t0) * (get(row, column) - v0);
+    }
+
+    public Slice slice(double t0, double t1, int... selected) {
+        for (int c : selected) checkColumn(c);
+        final long begin = firstRowAtOrAfter(t0);
+        final long end = endRow(t1);
+        final long count = Math.max(0L, end - begin);
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("slice does not fit in an array, decimate it");
+        }
+        final double[] time = new double[(int) count];
+        final double[][] values = new double[selected.length][(int) count];
+        for (int i = 0; i < count; i++) {
+            final long row = begin + i;
+            final MappedByteBuffer buffer = chunk((int) (row / chunkRows));
+            final int r = (int) (row % chunkRows);
+            time[i] = value(buffer, 0, r);
+            for (int c = 0; c < selected.length; c++) values[c][i] = value(buffer, selected[c], r);
+        }
+        return new Slice(time, values);
+    }
+
+    // Минимумы и максимумы столбца на buckets равных интервалах [t0, t1] для графика
+    public Envelope decimate(int column, double t0, double t1, int buckets) {
+        if (buckets < 1 || !(t1 > t0)) throw new IllegalArgumentException("bad decimation range");
+        checkColumn(column);
+        final Envelope envelope = new Envelope(t0, t1, buckets);
+        final long begin = firstRowAtOrAfter(t0);
+        final long end = endRow(t1);
+
+        long row = begin;
+        while (row < end) {
+            final int c = (int) (row / chunkRows);
+            final MappedByteBuffer buffer = chunk(c);
+            final long chunkStart = (long) c * chunkRows;
+            final long chunkEnd = chunkStart + chunkLength(c);
+            if (row == chunkStart && chunkEnd <= end) {
+                final int b = bucket(envelope, summaryMin(buffer, 0));
+                if (b == bucket(envelope, summaryMax(buffer, 0))) {
+                    // Сводка без значений - в отрезке только NaN
+                    final double low = summaryMin(buffer, column);
+                    final double high = summaryMax(buffer, column);
+                    if (low <= high) envelope.add(b, low, high);
+                    row = chunkEnd;
+                    continue;
+                }
+            }
+            final long stop = Math.min(end, chunkEnd);
+            for (; row < stop; row++) {
+                final int r = (int) (row - chunkStart);
+                final double v = value(buffer, column, r);
+                if (v == v) envelope.add(bucket(envelope, value(buffer, 0, r)), v, v);
+            }
+        }
+        return envelope;
+    }
+
+    // Первая строка с временем больше t
+    private long endRow(double t) {
+        return firstRowAtOrAfter(Math.nextUp(t));
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= columns) throw new IndexOutOfBoundsException(column);
+    }
+
+    private static int bucket(Envelope envelope, double t) {
+        final int buckets = envelope.min.length;
+        final double position = (t - envelope.t0) / (envelope.t1 - envelope.t0) * buckets;
+        return (int) Math.min(buckets - 1, Math.max(0.0, Math.floor(position)));
+    }
+
+    private int chunkLength(int c) {
+        return (int) Math.min(chunkRows, rows - (long) c * chunkRows);
+    }
+
+    private MappedByteBuffer chunk(int c) {
+        MappedByteBuffer buffer = chunks[c];
+        if (buffer == null) {
+            try {
+                buffer =
+                        channel.map(
+                                FileChannel.MapMode.READ_ONLY,
+                                headerBytes + c * chunkBytes,
+                                chunkBytes);
+            } catch (IOException ex) {
+                throw new IllegalStateException("cannot map waveform chunk " + c, ex);
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            chunks[c] = buffer;
+        }
+        return buffer;
+    }
+
+    private double value(MappedByteBuffer buffer, int column, int row) {
+        return buffer.getDouble((2 * columns + column * chunkRows + row) * Double.BYTES);
+    }
+
+    private double summaryMin(MappedByteBuffer buffer, int column) {
+        return buffer.getDouble(column * Double.BYTES);
+    }
+
+    private double summaryMax(MappedByteBuffer buffer, int column) {
+        return buffer.getDouble((columns + column) * Double.BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
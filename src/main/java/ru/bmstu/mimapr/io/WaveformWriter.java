@@ -0,0 +1,167 @@
+package ru.bmstu.mimapr.io;
+
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * Запись осциллограмм в отображаемый в память столбцовый файл
+ *
+ * Файл:
+ *   заголовок: MAGIC, версия, число столбцов, строк в отрезке, число строк,
+ *              имена столбцов (длина + UTF-8), дополнен до PAGE_BYTES
+ *   отрезки:   по chunkRows строк; в начале отрезка минимумы и максимумы
+ *              всех столбцов по его строкам, затем столбцы по chunkRows
+ *              значений double подряд
+ * Первый столбец - время, оно не убывает, поэтому минимумы и максимумы
+ * времени по отрезкам служат индексом для поиска по времени. Все числа
+ * little-endian. Отрезок отображается в память целиком, значения пишутся
+ * прямо в отображение, без промежуточных массивов. Число строк в заголовке
+ * записывается при закрытии
+ * */
+public final class WaveformWriter implements TransientAnalysis.SampleSink, Closeable {
+    public static final long MAGIC = 0x4D494D4150525753L; // "MIMAPRWS"
+    public static final int VERSION = 1;
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 16;
+    public static final int PAGE_BYTES = 4096;
+    // Смещение числа строк в заголовке
+    static final int ROWS_OFFSET = Long.BYTES + 3 * Integer.BYTES;
+    static final int FIXED_HEADER_BYTES = ROWS_OFFSET + Long.BYTES;
+
+    private final FileChannel channel;
+    private final int[] indices;
+    private final int columns;
+    private final int chunkRows;
+    private final long headerBytes;
+    private final long chunkBytes;
+    private final double[] min;
+    private final double[] max;
+
+    private MappedByteBuffer chunk;
+    private long chunks = 0;
+    private int row = 0;
+    private long rows = 0;
+    private double lastTime = Double.NEGATIVE_INFINITY;
+
+    // names[0] - имя столбца времени, names[i + 1] - имя величины x[indices[i]]
+    public WaveformWriter(Path path, String[] names, int[] indices) throws IOException {
+        this(path, names, indices, DEFAULT_CHUNK_ROWS);
+    }
+
+    public WaveformWriter(Path path, String[] names, int[] indices, int chunkRows)
+            throws IOException {
+        if (names.length != indices.length + 1) {
+            throw new IllegalArgumentException("names must include the time column");
+        }
+        if (chunkRows < 1) throw new IllegalArgumentException("chunk must hold rows");
+        this.indices = indices.clone();
+        this.columns = names.length;
+        this.chunkRows = chunkRows;
+        this.chunkBytes = chunkBytes(columns, chunkRows);
+        // Отрезок отображается одним буфером
+        if (chunkBytes > Integer.MAX_VALUE) throw new IllegalArgumentException("chunk too large");
+        this.min = new double[columns];
+        this.max = new double[columns];
+
+        ByteBuffer header = header(names, chunkRows);
+        this.headerBytes = header.capacity();
+        this.channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            while (header.hasRemaining()) channel.write(header);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    // Сводка (минимумы и максимумы) и столбцы отрезка
+    static long chunkBytes(int columns, int chunkRows) {
+        return (2L + chunkRows) * columns * Double.BYTES;
+    }
+
+    private static ByteBuffer header(String[] names, int chunkRows) {
+        byte[][] encoded = new byte[names.length][];
+        int size = FIXED_HEADER_BYTES;
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + encoded[i].length;
+        }
+        size = (size + PAGE_BYTES - 1) / PAGE_BYTES * PAGE_BYTES;
+
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putInt(names.length).putInt(chunkRows);
+        header.putLong(0L);
+        for (byte[] bytes : encoded) header.putInt(bytes.length).put(bytes);
+        return header.clear();
+    }
+
+    @Override
+    public void sample(double t, double[] x) throws IOException {
+        if (t < lastTime) throw new IllegalArgumentException("samples must be ordered by time");
+        lastTime = t;
+        if (chunk == null) {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, position(chunks), chunkBytes);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+        put(0, t);
+        for (int i = 0; i < indices.length; i++) put(i + 1, x[indices[i]]);
+        rows++;
+        if (++row == chunkRows) finishChunk();
+    }
+
+    public long rowsWritten() {
+        return rows;
+    }
+
+    private long position(long chunkIndex) {
+        return headerBytes + chunkIndex * chunkBytes;
+    }
+
+    private void put(int column, double value) {
+        chunk.putDouble((2 * columns + column * chunkRows + row) * Double.BYTES, value);
+        // NaN не попадает в сводку, как и в прореживание по строкам
+        if (value < min[column]) min[column] = value;
+        if (value > max[column]) max[column] = value;
+    }
+
+    private void finishChunk() {
+        for (int c = 0; c < columns; c++) {
+            chunk.putDouble(c * Double.BYTES, min[c]);
+            chunk.putDouble((columns + c) * Double.BYTES, max[c]);
+        }
+        chunk = null;
+        chunks++;
+        row = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (chunk != null) finishChunk();
+            ByteBuffer count = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            count.putLong(rows).flip();
+            while (count.hasRemaining()) {
+                channel.write(count, ROWS_OFFSET + count.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.bmstu.mimapr.metrics;
+
+/*
+ * Гистограмма с фиксированным числом корзин
+ *
+ * Номер корзины вычисляет вызывающий код (число итераций, двоичный порядок
+ * времени или нормы), значения вне диапазона попадают в крайние корзины.
+ * Пишет один поток, читатели получают приблизительный снимок
+ * */
+public final class Histogram {
+    private final long[] counts;
+
+    public Histogram(int buckets) {
+        this.counts = new long[buckets];
+    }
+
+    public void record(int bucket) {
+        if (bucket < 0) bucket = 0;
+        if (bucket >= counts.length) bucket = counts.length - 1;
+        counts[bucket]++;
+    }
+
+    public int buckets() {
+        return counts.length;
+    }
+
+    public long[] snapshot() {
+        return counts.clone();
+    }
+
+    public long total() {
+        long sum = 0;
+        for (long c : counts) sum += c;
+        return sum;
+    }
+
+    // Номер корзины, в которой набирается доля q всех значений
+    public int quantileBucket(double q) {
+        final long total = total();
+        if (total == 0) return 0;
+        final long target = (long) Math.ceil(q * total);
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            if (sum >= target) return i;
+        }
+        return counts.length - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.bmstu.mimapr.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Публикация SolverMetrics: регистрация MBean и периодическая строка в журнал
+ *
+ * MBean: ru.bmstu.mimapr:type=SolverMetrics,name=<имя>
+ * */
+public final class MetricsReporter implements AutoCloseable {
+    public static final String DOMAIN = "ru.bmstu.mimapr";
+
+    private final SolverMetrics metrics;
+    private final PrintStream out;
+    private final ObjectName objectName;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsReporter(
+            SolverMetrics metrics, String name, double periodSeconds, PrintStream out)
+            throws JMException {
+        this.metrics = metrics;
+        this.out = out;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        this.objectName = new ObjectName(DOMAIN + ":type=SolverMetrics,name=" + name);
+        server.registerMBean(metrics, objectName);
+
+        if (periodSeconds > 0.0) {
+            this.scheduler =
+                    Executors.newSingleThreadScheduledExecutor(
+                            r -> {
+                                Thread t = new Thread(r, "metrics-reporter");
+                                t.setDaemon(true);
+                                return t;
+                            });
+            long periodMillis = Math.max(1L, (long) (periodSeconds * 1000.0));
+            scheduler.scheduleAtFixedRate(
+                    this::report, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    public void report() {
+        out.println(metrics.logLine());
+    }
+
+    // Останавливает вывод и снимает MBean, итоговая строка печатается всегда
+    @Override
+    public void close() throws JMException {
+        if (scheduler != null) scheduler.shutdownNow();
+        report();
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+}
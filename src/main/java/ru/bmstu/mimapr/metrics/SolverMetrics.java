@@ -0,0 +1,200 @@
+package ru.bmstu.mimapr.metrics;
+
+import java.util.Locale;
+
+/*
+ * Счетчики и гистограммы одного расчета переходного процесса
+ *
+ * Заполняются потоком расчета через ModelWorkspace.metrics и TransientAnalysis.
+ * При metrics == null сбор выключен и стоит одну проверку на событие.
+ * Разложения и решения СЛАУ считаются на каждом вызове, а время замеряется
+ * только у каждого TIMING_SAMPLE-го: пара System.nanoTime сравнима
+ * со временем решения малой системы. Суммарное время - оценка по выборке.
+ * Поля не синхронизированы: JMX и периодический вывод читают
+ * приблизительный снимок
+ * */
+public final class SolverMetrics implements SolverMetricsMXBean {
+    // Корзина 0 - нулевая норма, корзины 1..80 - двоичные порядки -64..15
+    private static final int NORM_EXPONENT_OFFSET = 65;
+    // Замеряется каждый TIMING_SAMPLE-й вызов разложения и решения СЛАУ
+    public static final int TIMING_SAMPLE = 64;
+
+    private volatile double simulatedTime = 0.0;
+    private double lastDeltaT = 0.0;
+
+    private long acceptedSteps = 0;
+    private long stepRejections = 0;
+    private long stepReductions = 0;
+
+    private long newtonSolves = 0;
+    private long newtonIterations = 0;
+    private long newtonFailures = 0;
+    private final Histogram iterationHistogram;
+
+    private long factorizations = 0;
+    private long timedFactorizations = 0;
+    private long factorizationNanos = 0;
+    private long linearSolves = 0;
+    private long timedLinearSolves = 0;
+    private long linearSolveNanos = 0;
+    private final Histogram solveNanosHistogram = new Histogram(40);
+    private final Histogram residualHistogram = new Histogram(81);
+
+    public SolverMetrics(int maxNewtonIterations) {
+        this.iterationHistogram = new Histogram(maxNewtonIterations + 1);
+    }
+
+    public void stepAccepted(double t, double deltaT) {
+        acceptedSteps++;
+        lastDeltaT = deltaT;
+        simulatedTime = t;
+    }
+
+    public void stepRejected() {
+        stepRejections++;
+    }
+
+    public void stepReduced() {
+        stepReductions++;
+    }
+
+    // Итог решения методом Ньютона: число итераций и норма последней невязки
+    public void newtonSolved(int iterations, boolean converged, double residualNorm) {
+        newtonSolves++;
+        newtonIterations += iterations;
+        if (!converged) newtonFailures++;
+        iterationHistogram.record(iterations);
+        residualHistogram.record(
+                (residualNorm == 0.0)
+                        ? 0
+                        : Math.getExponent(residualNorm) + NORM_EXPONENT_OFFSET);
+    }
+
+    // Начало разложения. true - его время нужно замерить и передать в factorizationTimed
+    public boolean factorizing() {
+        return factorizations++ % TIMING_SAMPLE == 0;
+    }
+
+    public void factorizationTimed(long nanos) {
+        timedFactorizations++;
+        factorizationNanos += nanos;
+    }
+
+    // Начало решения СЛАУ. true - его время нужно замерить и передать в linearSolveTimed
+    public boolean linearSolving() {
+        return linearSolves++ % TIMING_SAMPLE == 0;
+    }
+
+    public void linearSolveTimed(long nanos) {
+        timedLinearSolves++;
+        linearSolveNanos += nanos;
+        solveNanosHistogram.record(64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    // Оценка суммарного времени count вызовов по timed замеренным
+    private static long estimate(long nanos, long timed, long count) {
+        return (timed == 0) ? 0L : Math.round((double) nanos / timed * count);
+    }
+
+    // Строка key=value для журналов и скриптов
+    public String logLine() {
+        return String.format(
+                Locale.ROOT,
+                "metrics t=%.6e dt=%.3e accepted=%d rejected=%d reduced=%d newton=%d"
+                        + " newton_iter_mean=%.3f newton_failures=%d factor=%d factor_ns=%d"
+                        + " solve=%d solve_ns_mean=%.1f solve_ns_p99=%d",
+                simulatedTime,
+                lastDeltaT,
+                acceptedSteps,
+                stepRejections,
+                stepReductions,
+                newtonSolves,
+                getMeanNewtonIterations(),
+                newtonFailures,
+                factorizations,
+                getFactorizationNanos(),
+                linearSolves,
+                (timedLinearSolves == 0) ? 0.0 : (double) linearSolveNanos / timedLinearSolves,
+                1L << solveNanosHistogram.quantileBucket(0.99));
+    }
+
+    @Override
+    public double getSimulatedTime() {
+        return simulatedTime;
+    }
+
+    @Override
+    public double getLastDeltaT() {
+        return lastDeltaT;
+    }
+
+    @Override
+    public long getAcceptedSteps() {
+        return acceptedSteps;
+    }
+
+    @Override
+    public long getStepRejections() {
+        return stepRejections;
+    }
+
+    @Override
+    public long getStepReductions() {
+        return stepReductions;
+    }
+
+    @Override
+    public long getNewtonSolves() {
+        return newtonSolves;
+    }
+
+    @Override
+    public long getNewtonIterations() {
+        return newtonIterations;
+    }
+
+    @Override
+    public long getNewtonFailures() {
+        return newtonFailures;
+    }
+
+    @Override
+    public double getMeanNewtonIterations() {
+        return (newtonSolves == 0) ? 0.0 : (double) newtonIterations / newtonSolves;
+    }
+
+    @Override
+    public long[] getNewtonIterationHistogram() {
+        return iterationHistogram.snapshot();
+    }
+
+    @Override
+    public long getFactorizations() {
+        return factorizations;
+    }
+
+    @Override
+    public long getFactorizationNanos() {
+        return estimate(factorizationNanos, timedFactorizations, factorizations);
+    }
+
+    @Override
+    public long getLinearSolves() {
+        return linearSolves;
+    }
+
+    @Override
+    public long getLinearSolveNanos() {
+        return estimate(linearSolveNanos, timedLinearSolves, linearSolves);
+    }
+
+    @Override
+    public long[] getLinearSolveNanosHistogram() {
+        return solveNanosHistogram.snapshot();
+    }
+
+    @Override
+    public long[] getResidualNormHistogram() {
+        return residualHistogram.snapshot();
+    }
+}
@@ -0,0 +1,43 @@
+package ru.bmstu.mimapr.metrics;
+
+// Статистика расчета переходного процесса, доступная через JMX
+public interface SolverMetricsMXBean {
+    double getSimulatedTime();
+
+    double getLastDeltaT();
+
+    long getAcceptedSteps();
+
+    // Отказы от шага по оценке погрешности (calculateDeltaT)
+    long getStepRejections();
+
+    // Уменьшения шага после расходимости метода Ньютона (deltaTReduction)
+    long getStepReductions();
+
+    long getNewtonSolves();
+
+    long getNewtonIterations();
+
+    long getNewtonFailures();
+
+    double getMeanNewtonIterations();
+
+    // Число решений методом Ньютона по числу итераций 1..NEWTON_STEPS
+    long[] getNewtonIterationHistogram();
+
+    long getFactorizations();
+
+    // Оценка по замеренным вызовам (каждый SolverMetrics.TIMING_SAMPLE-й)
+    long getFactorizationNanos();
+
+    long getLinearSolves();
+
+    // Оценка по замеренным вызовам, как getFactorizationNanos
+    long getLinearSolveNanos();
+
+    // Корзина i - время замеренных решений СЛАУ в [2^(i-1), 2^i) нс
+    long[] getLinearSolveNanosHistogram();
+
+    // Корзина i - норма невязки на последней итерации в [2^(i-65), 2^(i-64))
+    long[] getResidualNormHistogram();
+}
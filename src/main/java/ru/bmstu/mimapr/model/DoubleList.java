@@ -18,4 +18,8 @@ public final class DoubleList {
     public double get(int i) {
         return data[i];
     }
+
+    public double[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
 }
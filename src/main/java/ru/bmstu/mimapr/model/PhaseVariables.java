@@ -59,6 +59,51 @@ public final class PhaseVariables {
         return r;
     }
 
+    // Сложение на месте, без создания нового объекта
+    public void add(PhaseVariables o) {
+        dUc1 += o.dUc1;
+        dUc2 += o.dUc2;
+        dUcb += o.dUcb;
+        dIl1 += o.dIl1;
+        duC3 += o.duC3;
+
+        Uc1 += o.Uc1;
+        Uc2 += o.Uc2;
+        Ucb += o.Ucb;
+        Il1 += o.Il1;
+        uC3 += o.uC3;
+
+        phi1 += o.phi1;
+        phi2 += o.phi2;
+        phi3 += o.phi3;
+        phi4 += o.phi4;
+        phi5 += o.phi5;
+
+        iE += o.iE;
+    }
+
+    public void copyFrom(PhaseVariables o) {
+        dUc1 = o.dUc1;
+        dUc2 = o.dUc2;
+        dUcb = o.dUcb;
+        dIl1 = o.dIl1;
+        duC3 = o.duC3;
+
+        Uc1 = o.Uc1;
+        Uc2 = o.Uc2;
+        Ucb = o.Ucb;
+        Il1 = o.Il1;
+        uC3 = o.uC3;
+
+        phi1 = o.phi1;
+        phi2 = o.phi2;
+        phi3 = o.phi3;
+        phi4 = o.phi4;
+        phi5 = o.phi5;
+
+        iE = o.iE;
+    }
+
     public double[] toArray() {
         return new double[] {
             dUc1, dUc2, dUcb, dIl1, duC3,
@@ -70,29 +115,32 @@ public final class PhaseVariables {
 
     // Расположения в векторе неизвестных
     public static PhaseVariables fromArray(double[] array) {
-        if (array == null || array.length != Data.N) throw new ConversionException();
         PhaseVariables pv = new PhaseVariables();
+        pv.setFromArray(array);
+        return pv;
+    }
 
-        pv.dUc1 = array[0];
-        pv.dUc2 = array[1];
-        pv.dUcb = array[2];
-        pv.dIl1 = array[3];
-        pv.duC3 = array[4];
-
-        pv.Uc1 = array[5];
-        pv.Uc2 = array[6];
-        pv.Ucb = array[7];
-        pv.Il1 = array[8];
-        pv.uC3 = array[9];
-
-        pv.phi1 = array[10];
-        pv.phi2 = array[11];
-        pv.phi3 = array[12];
-        pv.phi4 = array[13];
-        pv.phi5 = array[14];
-
-        pv.iE = array[15];
+    public void setFromArray(double[] array) {
+        if (array == null || array.length != Data.N) throw new ConversionException();
 
-        return pv;
+        dUc1 = array[0];
+        dUc2 = array[1];
+        dUcb = array[2];
+        dIl1 = array[3];
+        duC3 = array[4];
+
+        Uc1 = array[5];
+        Uc2 = array[6];
+        Ucb = array[7];
+        Il1 = array[8];
+        uC3 = array[9];
+
+        phi1 = array[10];
+        phi2 = array[11];
+        phi3 = array[12];
+        phi4 = array[13];
+        phi5 = array[14];
+
+        iE = array[15];
     }
 }
@@ -1,9 +1,12 @@
 package ru.bmstu.mimapr.model;
 
+// Результаты на сетке вывода: время и значения наблюдаемых величин
 public final class ResultLists {
-    public final DoubleList phi1List = new DoubleList();
-    public final DoubleList phi2List = new DoubleList();
-    public final DoubleList phi4List = new DoubleList();
-    public final DoubleList phi5List = new DoubleList();
     public final DoubleList timeList = new DoubleList();
+    public final DoubleList[] probeLists;
+
+    public ResultLists(int probes) {
+        probeLists = new DoubleList[probes];
+        for (int i = 0; i < probes; i++) probeLists[i] = new DoubleList();
+    }
 }
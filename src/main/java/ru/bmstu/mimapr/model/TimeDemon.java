@@ -2,15 +2,27 @@ package ru.bmstu.mimapr.model;
 
 /*
  * Утилита для отслеживания текущего времени и проверки сходимости
+ *
+ * Цикл шагов по времени обновляет один экземпляр на месте (TimeStepController),
+ * поэтому выбор шага не создает новых объектов
  * */
 public final class TimeDemon {
-    public final double currT;
-    public final double deltaT;
-    public final boolean success;
+    public double currT;
+    public double deltaT;
+    public boolean success;
 
     public TimeDemon(double currT, double deltaT, boolean success) {
+        set(currT, deltaT, success);
+    }
+
+    public TimeDemon set(double currT, double deltaT, boolean success) {
         this.currT = currT;
         this.deltaT = deltaT;
         this.success = success;
+        return this;
+    }
+
+    public TimeDemon copyFrom(TimeDemon o) {
+        return set(o.currT, o.deltaT, o.success);
     }
 }
@@ -0,0 +1,449 @@
+package ru.bmstu.mimapr.netlist;
+
+import ru.bmstu.mimapr.device.Diode;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/*
+ * Модель схемы, собранная из схемного описания
+ *
+ * Элементы хранятся массивами по типам. Для каждого вклада элемента
+ * в матрицу Якоби заранее найдена позиция в values разреженной матрицы,
+ * поэтому заполнение затрагивает только ненулевые элементы.
+ * Индекс -1 означает землю: такие вклады пропускаются.
+ * Экземпляр неизменяем и может использоваться из нескольких потоков
+ * */
+public final class AssembledCircuit implements CircuitModel {
+    static final int GROUND = -1;
+    static final int REACTIVE_SLOTS = 7;
+
+    public final Netlist netlist;
+    public final List<String> nodes;
+    public final List<String> probes;
+
+    // Массивы элементов доступны в пакете для генерации кода (CircuitCompiler)
+
+    final int n;
+    final int m;
+    final int nodeBase;
+    final int sourceBase;
+
+    // Резисторы
+    final int[] rA;
+    final int[] rB;
+    final double[] rValue;
+    final int[] rSlots;
+
+    // Конденсаторы и катушки (k-я переменная состояния)
+    final int[] xA;
+    final int[] xB;
+    final double[] xValue;
+    final boolean[] xInductor;
+    final String[] stateElements;
+    final int[] xSlots;
+
+    // Диоды
+    final int[] dA;
+    final int[] dB;
+    final Diode[] dModel;
+    final int[] dSlots;
+
+    // Источники ЭДС
+    final int[] sA;
+    final int[] sB;
+    final Element[] sElement;
+    final int[] sSlots;
+
+    private final int[] jacobiRowPtr;
+    private final int[] jacobiColIdx;
+
+    AssembledCircuit(
+            Netlist netlist,
+            List<String> nodes,
+            int reactive,
+            int sources,
+            List<String> probes,
+            boolean expTable) {
+        this.netlist = netlist;
+        this.nodes = List.copyOf(nodes);
+        this.probes = List.copyOf(probes);
+
+        this.m = reactive;
+        this.nodeBase = 2 * m;
+        this.sourceBase = nodeBase + nodes.size();
+        this.n = sourceBase + sources;
+
+        List<Element> rs = new ArrayList<>();
+        List<Element> xs = new ArrayList<>();
+        List<Element> ds = new ArrayList<>();
+        List<Element> ss = new ArrayList<>();
+        for (Element e : netlist.elements) {
+            switch (e.type) {
+                case RESISTOR -> rs.add(e);
+                case CAPACITOR, INDUCTOR -> xs.add(e);
+                case DIODE -> ds.add(e);
+                case VOLTAGE_SOURCE -> ss.add(e);
+            }
+        }
+
+        rA = new int[rs.size()];
+        rB = new int[rs.size()];
+        rValue = new double[rs.size()];
+        for (int i = 0; i < rs.size(); i++) {
+            rA[i] = node(rs.get(i).nodeA);
+            rB[i] = node(rs.get(i).nodeB);
+            rValue[i] = rs.get(i).value;
+        }
+
+        xA = new int[m];
+        xB = new int[m];
+        xValue = new double[m];
+        xInductor = new boolean[m];
+        stateElements = new String[m];
+        for (int k = 0; k < m; k++) {
+            xA[k] = node(xs.get(k).nodeA);
+            xB[k] = node(xs.get(k).nodeB);
+            xValue[k] = xs.get(k).value;
+            xInductor[k] = xs.get(k).type == ElementType.INDUCTOR;
+            stateElements[k] = xs.get(k).name;
+        }
+
+        dA = new int[ds.size()];
+        dB = new int[ds.size()];
+        dModel = new Diode[ds.size()];
+        for (int i = 0; i < ds.size(); i++) {
+            dA[i] = node(ds.get(i).nodeA);
+            dB[i] = node(ds.get(i).nodeB);
+            dModel[i] =
+                    new Diode(ds.get(i).saturationCurrent, ds.get(i).thermalVoltage, expTable);
+        }
+
+        sA = new int[ss.size()];
+        sB = new int[ss.size()];
+        sElement = ss.toArray(new Element[0]);
+        for (int i = 0; i < ss.size(); i++) {
+            sA[i] = node(ss.get(i).nodeA);
+            sB[i] = node(ss.get(i).nodeB);
+        }
+
+        // Портрет: все позиции, в которые пишут элементы
+        TreeSet<Long> pattern = new TreeSet<>();
+        for (int i = 0; i < rA.length; i++) addConductance(pattern, rA[i], rB[i]);
+        for (int i = 0; i < dA.length; i++) addConductance(pattern, dA[i], dB[i]);
+        for (int k = 0; k < m; k++) {
+            for (int[] e : reactiveEntries(k)) add(pattern, e[0], e[1]);
+        }
+        for (int i = 0; i < sA.length; i++) {
+            for (int[] e : sourceEntries(i)) add(pattern, e[0], e[1]);
+        }
+
+        jacobiRowPtr = new int[n + 1];
+        jacobiColIdx = new int[pattern.size()];
+        int pos = 0;
+        for (long key : pattern) {
+            int row = (int) (key / n);
+            jacobiRowPtr[row + 1]++;
+            jacobiColIdx[pos++] = (int) (key % n);
+        }
+        for (int i = 0; i < n; i++) jacobiRowPtr[i + 1] += jacobiRowPtr[i];
+
+        SparseMatrix shape = createJacobiMatrix();
+        rSlots = new int[4 * rA.length];
+        for (int i = 0; i < rA.length; i++) conductanceSlots(shape, rSlots, 4 * i, rA[i], rB[i]);
+        dSlots = new int[4 * dA.length];
+        for (int i = 0; i < dA.length; i++) conductanceSlots(shape, dSlots, 4 * i, dA[i], dB[i]);
+        xSlots = new int[REACTIVE_SLOTS * m];
+        for (int k = 0; k < m; k++) {
+            int[][] entries = reactiveEntries(k);
+            for (int j = 0; j < REACTIVE_SLOTS; j++) {
+                xSlots[REACTIVE_SLOTS * k + j] = slot(shape, entries[j]);
+            }
+        }
+        sSlots = new int[4 * sA.length];
+        for (int i = 0; i < sA.length; i++) {
+            int[][] entries = sourceEntries(i);
+            for (int j = 0; j < 4; j++) sSlots[4 * i + j] = slot(shape, entries[j]);
+        }
+    }
+
+    private int node(String name) {
+        return name.equals(Netlist.GROUND) ? GROUND : nodeBase + nodes.indexOf(name);
+    }
+
+    // Позиция потенциала узла в векторе неизвестных
+    public int nodeIndex(String name) {
+        int idx = nodes.indexOf(name);
+        return (idx < 0) ? GROUND : nodeBase + idx;
+    }
+
+    public int[] probeIndices() {
+        int[] idx = new int[probes.size()];
+        for (int i = 0; i < idx.length; i++) idx[i] = nodeIndex(probes.get(i));
+        return idx;
+    }
+
+    // Вклады реактивного элемента k: формула интегрирования (2), компонентное
+    // уравнение (3), ток в уравнениях узлов (2)
+    private int[][] reactiveEntries(int k) {
+        final int der = k;
+        final int state = m + k;
+        final int current = xInductor[k] ? state : der;
+        return new int[][] {
+            {k, der},
+            {k, state},
+            {m + k, xInductor[k] ? der : state},
+            {m + k, xA[k]},
+            {m + k, xB[k]},
+            {xA[k], current},
+            {xB[k], current}
+        };
+    }
+
+    // Вклады источника i: ток в уравнениях узлов (2) и уравнение ЭДС (2)
+    private int[][] sourceEntries(int i) {
+        final int row = sourceBase + i;
+        return new int[][] {{sA[i], row}, {sB[i], row}, {row, sA[i]}, {row, sB[i]}};
+    }
+
+    private void add(TreeSet<Long> pattern, int row, int col) {
+        if (row != GROUND && col != GROUND) pattern.add((long) row * n + col);
+    }
+
+    private void addConductance(TreeSet<Long> pattern, int a, int b) {
+        add(pattern, a, a);
+        add(pattern, a, b);
+        add(pattern, b, a);
+        add(pattern, b, b);
+    }
+
+    private static int slot(SparseMatrix shape, int[] entry) {
+        return (entry[0] == GROUND || entry[1] == GROUND) ? -1 : shape.indexOf(entry[0], entry[1]);
+    }
+
+    private static void conductanceSlots(SparseMatrix shape, int[] slots, int off, int a, int b) {
+        slots[off] = slot(shape, new int[] {a, a});
+        slots[off + 1] = slot(shape, new int[] {a, b});
+        slots[off + 2] = slot(shape, new int[] {b, a});
+        slots[off + 3] = slot(shape, new int[] {b, b});
+    }
+
+    private static void stamp(double[] values, int slot, double v) {
+        if (slot >= 0) values[slot] += v;
+    }
+
+    private static double potential(double[] x, int idx) {
+        return (idx == GROUND) ? 0.0 : x[idx];
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public int stateCount() {
+        return m;
+    }
+
+    @Override
+    public int stateIndex(int k) {
+        return m + k;
+    }
+
+    @Override
+    public int derivativeIndex(int k) {
+        return k;
+    }
+
+    @Override
+    public int[] potentialIndices() {
+        int[] idx = new int[nodes.size()];
+        for (int i = 0; i < idx.length; i++) idx[i] = nodeBase + i;
+        return idx;
+    }
+
+    @Override
+    public SparseMatrix createJacobiMatrix() {
+        return new SparseMatrix(n, jacobiRowPtr, jacobiColIdx);
+    }
+
+    @Override
+    public void fillJacobiMatrix(SparseMatrix jacobi, double gamma, double[] approx) {
+        final double[] values = jacobi.values;
+        Arrays.fill(values, 0.0);
+
+        for (int i = 0; i < rA.length; i++) {
+            final double g = 1.0 / rValue[i];
+            stamp(values, rSlots[4 * i], g);
+            stamp(values, rSlots[4 * i + 1], -g);
+            stamp(values, rSlots[4 * i + 2], -g);
+            stamp(values, rSlots[4 * i + 3], g);
+        }
+
+        for (int k = 0; k < m; k++) {
+            final int s = REACTIVE_SLOTS * k;
+            // Производные
+            stamp(values, xSlots[s], 1.0);
+            stamp(values, xSlots[s + 1], -1.0 / gamma);
+            // Переменные состояния: U - (phi_a - phi_b) или L * dI - (phi_a - phi_b)
+            stamp(values, xSlots[s + 2], xInductor[k] ? xValue[k] : 1.0);
+            stamp(values, xSlots[s + 3], -1.0);
+            stamp(values, xSlots[s + 4], 1.0);
+            // Токи: C * dU или I
+            final double c = xInductor[k] ? 1.0 : xValue[k];
+            stamp(values, xSlots[s + 5], c);
+            stamp(values, xSlots[s + 6], -c);
+        }
+
+        // Проводимость диода вычисляется в начальной аппроксимации шага
+        for (int i = 0; i < dA.length; i++) {
+            final double u = potential(approx, dA[i]) - potential(approx, dB[i]);
+            final double g = dModel[i].conductance(u);
+            stamp(values, dSlots[4 * i], g);
+            stamp(values, dSlots[4 * i + 1], -g);
+            stamp(values, dSlots[4 * i + 2], -g);
+            stamp(values, dSlots[4 * i + 3], g);
+        }
+
+        for (int i = 0; i < sA.length; i++) {
+            stamp(values, sSlots[4 * i], 1.0);
+            stamp(values, sSlots[4 * i + 1], -1.0);
+            stamp(values, sSlots[4 * i + 2], 1.0);
+            stamp(values, sSlots[4 * i + 3], -1.0);
+        }
+    }
+
+    @Override
+    public void fillVector(double[] v, double t, double gamma, double[] approx, double[] history) {
+        fillVector(v, t, gamma, approx, history, 1.0);
+    }
+
+    // history == null - режим по постоянному току: производные равны нулю
+    @Override
+    public void fillDcVector(double[] v, double t, double sourceScale, double[] approx) {
+        fillVector(v, t, Double.POSITIVE_INFINITY, approx, null, sourceScale);
+    }
+
+    private void fillVector(
+            double[] v,
+            double t,
+            double gamma,
+            double[] approx,
+            double[] history,
+            double sourceScale) {
+        Arrays.fill(v, 0.0);
+
+        for (int k = 0; k < m; k++) {
+            final double der = approx[k];
+            final double state = approx[m + k];
+            final double u = potential(approx, xA[k]) - potential(approx, xB[k]);
+
+            // Производные (формула интегрирования)
+            v[k] = (history == null) ? der : der - (state - history[k]) / gamma;
+
+            // Компонентные уравнения и токи в уравнениях узлов
+            final double current;
+            if (xInductor[k]) {
+                v[m + k] = xValue[k] * der - u;
+                current = state;
+            } else {
+                v[m + k] = state - u;
+                current = xValue[k] * der;
+            }
+            if (xA[k] != GROUND) v[xA[k]] += current;
+            if (xB[k] != GROUND) v[xB[k]] -= current;
+        }
+
+        for (int i = 0; i < rA.length; i++) {
+            final double u = potential(approx, rA[i]) - potential(approx, rB[i]);
+            final double current = u / rValue[i];
+            if (rA[i] != GROUND) v[rA[i]] += current;
+            if (rB[i] != GROUND) v[rB[i]] -= current;
+        }
+
+        for (int i = 0; i < dA.length; i++) {
+            final double u = potential(approx, dA[i]) - potential(approx, dB[i]);
+            final double current = dModel[i].current(u);
+            if (dA[i] != GROUND) v[dA[i]] += current;
+            if (dB[i] != GROUND) v[dB[i]] -= current;
+        }
+
+        for (int i = 0; i < sA.length; i++) {
+            final int row = sourceBase + i;
+            final double current = approx[row];
+            if (sA[i] != GROUND) v[sA[i]] += current;
+            if (sB[i] != GROUND) v[sB[i]] -= current;
+            v[row] =
+                    potential(approx, sA[i])
+                            - potential(approx, sB[i])
+                            - sourceScale * sElement[i].sourceValue(t);
+        }
+    }
+
+    @Override
+    public double calculateVectorNorm(double[] deltas) {
+        // Производные не включаем в норму, так как они зависят от самих ПС
+        double sum = 0.0;
+        for (int i = m; i < n; i++) sum += deltas[i] * deltas[i];
+        return Math.sqrt(sum);
+    }
+
+    // Общий множитель поправки по ограничениям напряжений всех диодов
+    @Override
+    public double limitStep(double[] approx, double[] deltas) {
+        double factor = 1.0;
+        for (int i = 0; i < dA.length; i++) {
+            final double vOld = potential(approx, dA[i]) - potential(approx, dB[i]);
+            final double vNew = vOld + potential(deltas, dA[i]) - potential(deltas, dB[i]);
+            final double limited = dModel[i].limit(vNew, vOld);
+            if (limited != vNew) factor = Math.min(factor, (limited - vOld) / (vNew - vOld));
+        }
+        return factor;
+    }
+
+    // Сигнал подается источниками с переменной составляющей; если таких нет -
+    // всеми источниками. Постоянные источники питания по сигналу замкнуты
+    @Override
+    public void fillAcExcitation(double[] b) {
+        Arrays.fill(b, 0.0);
+        boolean any = false;
+        for (Element e : sElement) any |= e.amplitude != 0.0;
+        for (int i = 0; i < sA.length; i++) {
+            if (!any || sElement[i].amplitude != 0.0) b[sourceBase + i] = 1.0;
+        }
+    }
+
+    // Общий период синусоидальных источников. Источники с разными частотами
+    // не поддерживаются: период их суммы может быть сколь угодно большим
+    @Override
+    public double period() {
+        double frequency = Double.NaN;
+        for (Element e : sElement) {
+            if (e.amplitude == 0.0 || e.frequency == 0.0) continue;
+            if (!Double.isNaN(frequency) && e.frequency != frequency) return Double.NaN;
+            frequency = e.frequency;
+        }
+        return 1.0 / Math.abs(frequency);
+    }
+
+    @Override
+    public double nextBreakpoint(double t) {
+        double next = Double.POSITIVE_INFINITY;
+        for (Element e : sElement) next = Math.min(next, e.nextBreakpoint(t));
+        return next;
+    }
+
+    // d<элемент> и <элемент> для переменных состояния, phi<узел>, i<источник>
+    @Override
+    public String variableName(int i) {
+        if (i < m) return "d" + stateElements[i];
+        if (i < nodeBase) return stateElements[i - m];
+        if (i < sourceBase) return "phi" + nodes.get(i - nodeBase);
+        return "i" + sElement[i - sourceBase].name;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.bmstu.mimapr.netlist;
+
+import ru.bmstu.mimapr.config.CircuitParameters;
+
+/*
+ * Схема CircuitSystem в виде схемного описания
+ *
+ * Номиналы берутся из Components или из параметров прогона. Порядок
+ * реактивных элементов и номера узлов повторяют расположение неизвестных
+ * в PhaseVariables
+ * */
+public final class BuiltinNetlist {
+    private BuiltinNetlist() {}
+
+    public static String text() {
+        return text(new CircuitParameters());
+    }
+
+    public static String text(CircuitParameters p) {
+        return String.join(
+                "\n",
+                "* Built-in circuit: E1, R1||C1||L, diode (C_B, R_U, R_B), C2, C3, R2",
+                "V1 1 0 SIN(0 " + p.E_AMPLITUDE + " " + 1.0 / p.E_TIME + ")",
+                "C1 2 1 " + p.C1,
+                "C2 5 4 " + p.C2,
+                "CB 3 2 " + p.C_B,
+                "L1 2 1 " + p.L,
+                "C3 5 0 " + p.C3,
+                "R1 2 1 " + p.R1,
+                "RU 3 2 " + p.R_U,
+                "D1 3 2 IS=" + p.I_T + " VT=" + p.MFT,
+                "RB 4 3 " + p.R_B,
+                "R2 5 0 " + p.R2,
+                ".PROBE V(1) V(2) V(4) V(5)",
+                ".END");
+    }
+
+    public static Netlist netlist() {
+        return NetlistParser.parse(text());
+    }
+
+    public static Netlist netlist(CircuitParameters p) {
+        return NetlistParser.parse(text(p));
+    }
+}
@@ -0,0 +1,89 @@
+package ru.bmstu.mimapr.netlist;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.exceptions.NetlistException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Построение модели расширенного узлового метода по схемному описанию
+ *
+ * Неизвестные располагаются в порядке:
+ *   производные переменных состояния (в порядке реактивных элементов),
+ *   переменные состояния, потенциалы узлов, токи источников ЭДС.
+ * Уравнения - в том же порядке: формулы интегрирования, компонентные
+ * уравнения реактивных элементов, первый закон Кирхгофа, уравнения ЭДС
+ * */
+public final class CircuitAssembler {
+    private CircuitAssembler() {}
+
+    public static AssembledCircuit assemble(Netlist netlist) {
+        return assemble(netlist, Data.EXP_TABLE);
+    }
+
+    // expTable - экспонента диодов по таблице ExpTable
+    public static AssembledCircuit assemble(Netlist netlist, boolean expTable) {
+        List<String> nodes = orderNodes(netlist);
+
+        int reactive = 0;
+        int sources = 0;
+        for (Element e : netlist.elements) {
+            if (e.type.isReactive()) reactive++;
+            if (e.type == ElementType.VOLTAGE_SOURCE) sources++;
+        }
+
+        List<String> probes = netlist.probes.isEmpty() ? nodes : netlist.probes;
+        for (String probe : probes) {
+            if (!nodes.contains(probe)) throw new NetlistException("unknown probe node " + probe);
+        }
+        checkGroundPath(netlist, nodes);
+
+        return new AssembledCircuit(netlist, nodes, reactive, sources, probes, expTable);
+    }
+
+    // Узлы с числовыми именами идут по возрастанию, остальные - в порядке появления
+    private static List<String> orderNodes(Netlist netlist) {
+        Set<String> seen = new LinkedHashSet<>();
+        for (Element e : netlist.elements) {
+            seen.add(e.nodeA);
+            seen.add(e.nodeB);
+        }
+        if (!seen.remove(Netlist.GROUND)) throw new NetlistException("no ground node 0");
+
+        List<String> nodes = new ArrayList<>(seen);
+        nodes.sort(Comparator.comparingLong(CircuitAssembler::numericOrder));
+        return nodes;
+    }
+
+    private static long numericOrder(String node) {
+        try {
+            return Long.parseLong(node);
+        } catch (NumberFormatException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    // Каждый узел должен быть связан с землей, иначе матрица Якоби вырождена
+    private static void checkGroundPath(Netlist netlist, List<String> nodes) {
+        Set<String> reached = new LinkedHashSet<>();
+        reached.add(Netlist.GROUND);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Element e : netlist.elements) {
+                if (reached.contains(e.nodeA) != reached.contains(e.nodeB)) {
+                    reached.add(e.nodeA);
+                    reached.add(e.nodeB);
+                    changed = true;
+                }
+            }
+        }
+        for (String node : nodes) {
+            if (!reached.contains(node)) throw new NetlistException("floating node " + node);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package ru.bmstu.mimapr.netlist;
+
+import ru.bmstu.mimapr.codegen.RuntimeCompiler;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.device.Diode;
+import ru.bmstu.mimapr.numerics.CircuitKernel;
+import ru.bmstu.mimapr.numerics.SparseLU;
+import ru.bmstu.mimapr.numerics.SparseMatrix;
+import ru.bmstu.mimapr.numerics.UnrolledLuSolver;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static ru.bmstu.mimapr.netlist.AssembledCircuit.GROUND;
+import static ru.bmstu.mimapr.netlist.AssembledCircuit.REACTIVE_SLOTS;
+
+/*
+ * Генерация специализированного класса модели для собранной схемы
+ *
+ * По массивам элементов AssembledCircuit выписывается исходный текст
+ * CircuitKernel: невязка и ненулевые элементы матрицы Якоби - прямыми
+ * выражениями с номиналами-литералами, LU-разложение и решение - без
+ * циклов для порядка исключения, выбранного SparseLU по матрице Якоби
+ * в нулевой точке. Слагаемые складываются в том же порядке, что и в
+ * AssembledCircuit, поэтому результаты совпадают побитно; это проверяется
+ * после загрузки в VERIFY_POINTS случайных точках. Диоды остаются вызовами
+ * моделей Diode (предельные напряжения, таблица экспоненты)
+ * */
+public final class CircuitCompiler {
+    public static final String CLASS_NAME = "GeneratedCircuitKernel";
+    public static final int VERIFY_POINTS = 32;
+    private static final long VERIFY_SEED = 1L;
+
+    private CircuitCompiler() {}
+
+    public static CompiledCircuit compile(AssembledCircuit circuit) {
+        // Порядок исключения - как при первом разложении в начале расчета
+        SparseMatrix shape = circuit.createJacobiMatrix();
+        circuit.fillJacobiMatrix(shape, Data.START_DELTA_TIME, new double[circuit.n]);
+        SparseLU lu = new SparseLU(circuit.n);
+        if (!lu.analyze(shape)) {
+            throw new IllegalStateException("circuit matrix is singular, nothing to compile");
+        }
+
+        String source = generate(circuit, lu);
+        CircuitKernel kernel;
+        try {
+            MethodHandles.Lookup lookup = RuntimeCompiler.defineHidden(CLASS_NAME, source);
+            kernel =
+                    (CircuitKernel)
+                            lookup.findConstructor(
+                                            lookup.lookupClass(),
+                                            MethodType.methodType(void.class, Diode[].class))
+                                    .invoke(circuit.dModel.clone());
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        verify(circuit, kernel, shape, lu);
+        return new CompiledCircuit(circuit, kernel, source);
+    }
+
+    static String generate(AssembledCircuit c, SparseLU lu) {
+        StringBuilder out = new StringBuilder();
+        out.append("package ").append(RuntimeCompiler.PACKAGE).append(";\n\n");
+        out.append("import ru.bmstu.mimapr.device.Diode;\n");
+        out.append("import ru.bmstu.mimapr.numerics.CircuitKernel;\n\n");
+        out.append("public final class ").append(CLASS_NAME);
+        out.append(" implements CircuitKernel {\n");
+        for (int i = 0; i < c.dA.length; i++) {
+            out.append("    private final Diode d").append(i).append(";\n");
+        }
+        out.append("\n    public ").append(CLASS_NAME).append("(Diode[] diodes) {\n");
+        for (int i = 0; i < c.dA.length; i++) {
+            out.append("        d").append(i).append(" = diodes[").append(i).append("];\n");
+        }
+        out.append("    }\n\n");
+
+        emitVector(out, c);
+        emitJacobi(out, c);
+        UnrolledLuSolver.emitKernelMethods(out, lu);
+        out.append("}\n");
+        return out.toString();
+    }
+
+    // Невязка: те же выражения, что в AssembledCircuit.fillVector,
+    // уравнения узлов - суммы токов в порядке обхода элементов
+    private static void emitVector(StringBuilder out, AssembledCircuit c) {
+        final int m = c.m;
+        List<StringBuilder> rows = new ArrayList<>();
+        for (int i = 0; i < c.n; i++) rows.add(null);
+
+        out.append("    public void fillVector(double[] v, double t, double gamma, double[] x,");
+        out.append(" double[] history, double sourceScale) {\n");
+        if (m > 0) {
+            out.append("        if (history == null) {\n");
+            for (int k = 0; k < m; k++) {
+                out.append("            v[").append(k).append("] = x[").append(k).append("];\n");
+            }
+            out.append("        } else {\n");
+            for (int k = 0; k < m; k++) {
+                out.append("            v[").append(k).append("] = x[").append(k);
+                out.append("] - (x[").append(m + k).append("] - history[").append(k);
+                out.append("]) / gamma;\n");
+            }
+            out.append("        }\n");
+        }
+
+        for (int k = 0; k < m; k++) {
+            final String u = voltage(c.xA[k], c.xB[k]);
+            out.append("        v[").append(m + k).append("] = ");
+            if (c.xInductor[k]) {
+                out.append(literal(c.xValue[k])).append(" * x[").append(k).append("] - ");
+                out.append(u).append(";\n");
+                out.append("        final double ix").append(k).append(" = x[").append(m + k);
+            } else {
+                out.append("x[").append(m + k).append("] - ").append(u).append(";\n");
+                out.append("        final double ix").append(k).append(" = ");
+                out.append(literal(c.xValue[k])).append(" * x[").append(k);
+            }
+            out.append("];\n");
+            current(rows, c.xA[k], c.xB[k], "ix" + k);
+        }
+        for (int i = 0; i < c.rA.length; i++) {
+            out.append("        final double ir").append(i).append(" = ");
+            out.append(voltage(c.rA[i], c.rB[i])).append(" / ").append(literal(c.rValue[i]));
+            out.append(";\n");
+            current(rows, c.rA[i], c.rB[i], "ir" + i);
+        }
+        for (int i = 0; i < c.dA.length; i++) {
+            out.append("        final double id").append(i).append(" = d").append(i);
+            out.append(".current(").append(voltage(c.dA[i], c.dB[i])).append(");\n");
+            current(rows, c.dA[i], c.dB[i], "id" + i);
+        }
+        for (int i = 0; i < c.sA.length; i++) {
+            current(rows, c.sA[i], c.sB[i], "x[" + (c.sourceBase + i) + "]");
+        }
+
+        for (int i = c.nodeBase; i < c.sourceBase; i++) {
+            out.append("        v[").append(i).append("] = 0.0");
+            if (rows.get(i) != null) out.append(rows.get(i));
+            out.append(";\n");
+        }
+        for (int i = 0; i < c.sA.length; i++) {
+            final Element e = c.sElement[i];
+            out.append("        v[").append(c.sourceBase + i).append("] = ");
+            out.append(voltage(c.sA[i], c.sB[i])).append(" - sourceScale * (");
+            out.append(literal(e.offset)).append(" + ").append(literal(e.amplitude));
+            out.append(" * Math.sin(2.0 * Math.PI * ").append(literal(e.frequency));
+            out.append(" * t));\n");
+        }
+        out.append("    }\n\n");
+    }
+
+    // Ненулевые элементы матрицы Якоби: вклады элементов по позициям в порядке
+    // AssembledCircuit.fillJacobiMatrix
+    private static void emitJacobi(StringBuilder out, AssembledCircuit c) {
+        final int m = c.m;
+        List<StringBuilder> slots = new ArrayList<>();
+        for (int s = 0; s < c.createJacobiMatrix().nnz(); s++) slots.add(new StringBuilder());
+
+        out.append("    public void fillJacobi(double[] values, double gamma, double[] x) {\n");
+        for (int i = 0; i < c.rA.length; i++) {
+            final double g = 1.0 / c.rValue[i];
+            term(slots, c.rSlots[4 * i], " + " + literal(g));
+            term(slots, c.rSlots[4 * i + 1], " + " + literal(-g));
+            term(slots, c.rSlots[4 * i + 2], " + " + literal(-g));
+            term(slots, c.rSlots[4 * i + 3], " + " + literal(g));
+        }
+        if (m > 0) out.append("        final double dg = -1.0 / gamma;\n");
+        for (int k = 0; k < m; k++) {
+            final int s = REACTIVE_SLOTS * k;
+            term(slots, c.xSlots[s], " + 1.0");
+            term(slots, c.xSlots[s + 1], " + dg");
+            term(slots, c.xSlots[s + 2], " + " + literal(c.xInductor[k] ? c.xValue[k] : 1.0));
+            term(slots, c.xSlots[s + 3], " + (-1.0)");
+            term(slots, c.xSlots[s + 4], " + 1.0");
+            final double cap = c.xInductor[k] ? 1.0 : c.xValue[k];
+            term(slots, c.xSlots[s + 5], " + " + literal(cap));
+            term(slots, c.xSlots[s + 6], " + " + literal(-cap));
+        }
+        for (int i = 0; i < c.dA.length; i++) {
+            out.append("        final double g").append(i).append(" = d").append(i);
+            out.append(".conductance(").append(voltage(c.dA[i], c.dB[i])).append(");\n");
+            term(slots, c.dSlots[4 * i], " + g" + i);
+            term(slots, c.dSlots[4 * i + 1], " - g" + i);
+            term(slots, c.dSlots[4 * i + 2], " - g" + i);
+            term(slots, c.dSlots[4 * i + 3], " + g" + i);
+        }
+        for (int i = 0; i < c.sA.length; i++) {
+            term(slots, c.sSlots[4 * i], " + 1.0");
+            term(slots, c.sSlots[4 * i + 1], " + (-1.0)");
+            term(slots, c.sSlots[4 * i + 2], " + 1.0");
+            term(slots, c.sSlots[4 * i + 3], " + (-1.0)");
+        }
+        for (int s = 0; s < slots.size(); s++) {
+            out.append("        values[").append(s).append("] = 0.0").append(slots.get(s));
+            out.append(";\n");
+        }
+        out.append("    }\n\n");
+    }
+
+    private static void current(List<StringBuilder> rows, int a, int b, String current) {
+        if (a != GROUND) row(rows, a).append(" + ").append(current);
+        if (b != GROUND) row(rows, b).append(" - ").append(current);
+    }
+
+    private static StringBuilder row(List<StringBuilder> rows, int i) {
+        if (rows.get(i) == null) rows.set(i, new StringBuilder());
+        return rows.get(i);
+    }
+
+    private static void term(List<StringBuilder> slots, int slot, String term) {
+        if (slot >= 0) slots.get(slot).append(term);
+    }
+
+    private static String voltage(int a, int b) {
+        return "(" + potential(a) + " - " + potential(b) + ")";
+    }
+
+    private static String potential(int idx) {
+        return (idx == GROUND) ? "0.0" : "x[" + idx + "]";
+    }
+
+    // Литерал, дающий то же значение double
+    private static String literal(double value) {
+        if (Double.isNaN(value)) return "Double.NaN";
+        if (Double.isInfinite(value)) {
+            return (value > 0) ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return "(" + value + ")";
+    }
+
+    // Сравнение с интерпретируемым путем в случайных точках: невязки переходного
+    // режима и режима по постоянному току, матрица Якоби, разложение и решение
+    private static void verify(
+            AssembledCircuit c, CircuitKernel kernel, SparseMatrix shape, SparseLU lu) {
+        final int n = c.n;
+        final Random random = new Random(VERIFY_SEED);
+        final double[] x = new double[n];
+        final double[] history = new double[c.m];
+        final double[] expected = new double[n];
+        final double[] actual = new double[n];
+        final double[] b = new double[n];
+        final double[] luValues = new double[kernel.luSize()];
+        final SparseMatrix jacobi = c.createJacobiMatrix();
+
+        for (int point = 0; point < VERIFY_POINTS; point++) {
+            for (int i = 0; i < n; i++) x[i] = random.nextDouble() * 2.0 - 1.0;
+            for (int k = 0; k < history.length; k++) history[k] = random.nextDouble() * 2.0 - 1.0;
+            final double t = random.nextDouble() * Data.TIME_END;
+            final double gamma =
+                    Data.MINIMAL_STEP
+                            + random.nextDouble() * (Data.MAXIMAL_STEP - Data.MINIMAL_STEP);
+            final double scale = random.nextDouble();
+
+            c.fillVector(expected, t, gamma, x, history);
+            kernel.fillVector(actual, t, gamma, x, history, 1.0);
+            check(expected, actual, "residual");
+
+            c.fillDcVector(expected, t, scale, x);
+            kernel.fillVector(actual, t, Double.POSITIVE_INFINITY, x, null, scale);
+            check(expected, actual, "DC residual");
+
+            c.fillJacobiMatrix(jacobi, gamma, x);
+            kernel.fillJacobi(shape.values, gamma, x);
+            check(jacobi.values, shape.values, "Jacobian");
+
+            // Разложение сравнивается по решениям; при потере ведущего элемента
+            // SparseLU выбрал бы другой порядок, такие точки пропускаются
+            if (!kernel.factor(shape.values, luValues)) continue;
+            if (!lu.factor(shape)) throw mismatch("LU factorization");
+            for (int i = 0; i < n; i++) b[i] = random.nextDouble() * 2.0 - 1.0;
+            lu.solve(b, expected);
+            kernel.solve(luValues, b, actual);
+            check(expected, actual, "LU solution");
+        }
+    }
+
+    private static void check(double[] expected, double[] actual, String what) {
+        if (!Arrays.equals(expected, actual)) throw mismatch(what);
+    }
+
+    private static IllegalStateException mismatch(String what) {
+        return new IllegalStateException(
+                "generated circuit code differs from the interpreted model: " + what);
+    }
+}
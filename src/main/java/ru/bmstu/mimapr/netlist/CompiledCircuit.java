@@ -0,0 +1,118 @@
+package ru.bmstu.mimapr.netlist;
+
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.numerics.CircuitKernel;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.LinearSolver;
+import ru.bmstu.mimapr.numerics.SparseMatrix;
+import ru.bmstu.mimapr.numerics.UnrolledLuSolver;
+
+/*
+ * Модель схемы на сгенерированном CircuitCompiler коде
+ *
+ * Невязка, матрица Якоби и разреженное LU-разложение вычисляются
+ * сгенерированным ядром, остальное (портрет, нормы, ограничение напряжений
+ * диодов, имена переменных) - исходной AssembledCircuit.
+ * Результаты совпадают с AssembledCircuit побитно
+ * */
+public final class CompiledCircuit implements CircuitModel {
+    public final AssembledCircuit circuit;
+    // Исходный текст ядра
+    public final String source;
+    private final CircuitKernel kernel;
+
+    CompiledCircuit(AssembledCircuit circuit, CircuitKernel kernel, String source) {
+        this.circuit = circuit;
+        this.kernel = kernel;
+        this.source = source;
+    }
+
+    // Число элементов L + U развернутого разложения
+    public int luSize() {
+        return kernel.luSize();
+    }
+
+    @Override
+    public int size() {
+        return circuit.size();
+    }
+
+    @Override
+    public int stateCount() {
+        return circuit.stateCount();
+    }
+
+    @Override
+    public int stateIndex(int k) {
+        return circuit.stateIndex(k);
+    }
+
+    @Override
+    public int derivativeIndex(int k) {
+        return circuit.derivativeIndex(k);
+    }
+
+    @Override
+    public int[] potentialIndices() {
+        return circuit.potentialIndices();
+    }
+
+    @Override
+    public SparseMatrix createJacobiMatrix() {
+        return circuit.createJacobiMatrix();
+    }
+
+    @Override
+    public void fillJacobiMatrix(SparseMatrix jacobi, double gamma, double[] approx) {
+        kernel.fillJacobi(jacobi.values, gamma, approx);
+    }
+
+    @Override
+    public void fillVector(double[] v, double t, double gamma, double[] approx, double[] history) {
+        kernel.fillVector(v, t, gamma, approx, history, 1.0);
+    }
+
+    @Override
+    public void fillDcVector(double[] v, double t, double sourceScale, double[] approx) {
+        kernel.fillVector(v, t, Double.POSITIVE_INFINITY, approx, null, sourceScale);
+    }
+
+    @Override
+    public double calculateVectorNorm(double[] deltas) {
+        return circuit.calculateVectorNorm(deltas);
+    }
+
+    @Override
+    public double limitStep(double[] approx, double[] deltas) {
+        return circuit.limitStep(approx, deltas);
+    }
+
+    @Override
+    public void fillAcExcitation(double[] b) {
+        circuit.fillAcExcitation(b);
+    }
+
+    @Override
+    public double period() {
+        return circuit.period();
+    }
+
+    @Override
+    public double nextBreakpoint(double t) {
+        return circuit.nextBreakpoint(t);
+    }
+
+    // Разреженные матрицы раскладываются развернутым кодом ядра
+    @Override
+    public LinearSolver createLinearSolver(LinearSolverKind kind) {
+        if (kind == LinearSolverKind.SPARSE) {
+            return new UnrolledLuSolver(kernel, circuit.createJacobiMatrix());
+        }
+        return CircuitModel.super.createLinearSolver(kind);
+    }
+
+    @Override
+    public String variableName(int i) {
+        return circuit.variableName(i);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.bmstu.mimapr.netlist;
+
+/*
+ * Элемент схемы
+ *
+ * Ток элемента считается положительным, если он течет от узла a к узлу b
+ * через элемент. Для реактивных элементов value - емкость или индуктивность,
+ * для резистора - сопротивление. Параметры диода и источника ЭДС хранятся
+ * в отдельных полях
+ * */
+public final class Element {
+    public final String name;
+    public final ElementType type;
+    public final String nodeA;
+    public final String nodeB;
+    public final double value;
+
+    // Диод: ток насыщения и температурный потенциал
+    public final double saturationCurrent;
+    public final double thermalVoltage;
+
+    // Источник ЭДС: E(t) = offset + amplitude * sin(2 * pi * frequency * t)
+    public final double offset;
+    public final double amplitude;
+    public final double frequency;
+
+    private Element(
+            String name,
+            ElementType type,
+            String nodeA,
+            String nodeB,
+            double value,
+            double saturationCurrent,
+            double thermalVoltage,
+            double offset,
+            double amplitude,
+            double frequency) {
+        this.name = name;
+        this.type = type;
+        this.nodeA = nodeA;
+        this.nodeB = nodeB;
+        this.value = value;
+        this.saturationCurrent = saturationCurrent;
+        this.thermalVoltage = thermalVoltage;
+        this.offset = offset;
+        this.amplitude = amplitude;
+        this.frequency = frequency;
+    }
+
+    // Резистор, конденсатор или катушка
+    public static Element passive(
+            String name, ElementType type, String nodeA, String nodeB, double value) {
+        return new Element(name, type, nodeA, nodeB, value, 0.0, 0.0, 0.0, 0.0, 0.0);
+    }
+
+    public static Element diode(
+            String name, String anode, String cathode, double is, double vt) {
+        return new Element(name, ElementType.DIODE, anode, cathode, 0.0, is, vt, 0.0, 0.0, 0.0);
+    }
+
+    public static Element source(
+            String name,
+            String nodeA,
+            String nodeB,
+            double offset,
+            double amplitude,
+            double frequency) {
+        return new Element(
+                name,
+                ElementType.VOLTAGE_SOURCE,
+                nodeA,
+                nodeB,
+                0.0,
+                0.0,
+                0.0,
+                offset,
+                amplitude,
+                frequency);
+    }
+
+    // Копия пассивного элемента с другим номиналом
+    public Element withValue(double newValue) {
+        return new Element(
+                name,
+                type,
+                nodeA,
+                nodeB,
+                newValue,
+                saturationCurrent,
+                thermalVoltage,
+                offset,
+                amplitude,
+                frequency);
+    }
+
+    public double sourceValue(double t) {
+        return offset + amplitude * Math.sin(2.0 * Math.PI * frequency * t);
+    }
+
+    // Ближайший после t экстремум или нуль синусоиды: они следуют через четверть периода.
+    // Постоянный источник включается в момент 0 и изломов при t > 0 не имеет
+    public double nextBreakpoint(double t) {
+        if (amplitude == 0.0 || frequency == 0.0) return Double.POSITIVE_INFINITY;
+        final double quarter = 0.25 / Math.abs(frequency);
+        return (Math.floor(t / quarter) + 1.0) * quarter;
+    }
+}
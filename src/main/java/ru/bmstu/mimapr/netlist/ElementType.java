@@ -0,0 +1,29 @@
+package ru.bmstu.mimapr.netlist;
+
+// Типы элементов, поддерживаемые схемным описанием
+public enum ElementType {
+    RESISTOR('R'),
+    CAPACITOR('C'),
+    INDUCTOR('L'),
+    DIODE('D'),
+    VOLTAGE_SOURCE('V');
+
+    public final char prefix;
+
+    ElementType(char prefix) {
+        this.prefix = prefix;
+    }
+
+    public static ElementType byPrefix(char c) {
+        char upper = Character.toUpperCase(c);
+        for (ElementType type : values()) {
+            if (type.prefix == upper) return type;
+        }
+        return null;
+    }
+
+    // Реактивные элементы вносят в вектор неизвестных переменную состояния и ее производную
+    public boolean isReactive() {
+        return this == CAPACITOR || this == INDUCTOR;
+    }
+}
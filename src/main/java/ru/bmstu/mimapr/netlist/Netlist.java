@@ -0,0 +1,32 @@
+package ru.bmstu.mimapr.netlist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Схемное описание: список элементов и наблюдаемых узлов
+ *
+ * Узел "0" - общий (земля), его потенциал равен нулю
+ * */
+public final class Netlist {
+    public static final String GROUND = "0";
+
+    public final String title;
+    public final List<Element> elements;
+    // Узлы, потенциалы которых выводятся в результаты (директива .PROBE)
+    public final List<String> probes;
+
+    public Netlist(String title, List<Element> elements, List<String> probes) {
+        this.title = title;
+        this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+        this.probes = Collections.unmodifiableList(new ArrayList<>(probes));
+    }
+
+    public Element find(String name) {
+        for (Element e : elements) {
+            if (e.name.equalsIgnoreCase(name)) return e;
+        }
+        return null;
+    }
+}
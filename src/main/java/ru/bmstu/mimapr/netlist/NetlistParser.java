@@ -0,0 +1,191 @@
+package ru.bmstu.mimapr.netlist;
+
+import ru.bmstu.mimapr.exceptions.NetlistException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Разбор схемного описания в стиле SPICE
+ *
+ *   * комментарий
+ *   R<имя> <узел+> <узел-> <сопротивление>
+ *   C<имя> <узел+> <узел-> <емкость>
+ *   L<имя> <узел+> <узел-> <индуктивность>
+ *   D<имя> <анод> <катод> [IS=<ток насыщения>] [VT=<температурный потенциал>]
+ *   V<имя> <узел+> <узел-> SIN(<смещение> <амплитуда> <частота>) | [DC] <значение>
+ *   .PROBE <узел> ...
+ *   .END
+ *
+ * Числа допускают множители SPICE: f, p, n, u, m, k, meg, g, t
+ * */
+public final class NetlistParser {
+    private NetlistParser() {}
+
+    public static final double DEFAULT_SATURATION_CURRENT = 1e-14;
+    public static final double DEFAULT_THERMAL_VOLTAGE = 0.026;
+
+    public static Netlist parseFile(String fileName) throws IOException {
+        return parse(Files.readString(Path.of(fileName)));
+    }
+
+    public static Netlist parse(String text) {
+        String title = "";
+        List<Element> elements = new ArrayList<>();
+        List<String> probes = new ArrayList<>();
+
+        String[] lines = text.split("\\R");
+        for (int lineNo = 1; lineNo <= lines.length; lineNo++) {
+            String line = stripComment(lines[lineNo - 1]).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("*")) {
+                if (title.isEmpty()) title = line.substring(1).trim();
+                continue;
+            }
+
+            // Скобки источника разбираются как отдельные токены
+            String[] tokens = line.replace("(", " ").replace(")", " ").trim().split("\\s+");
+            String head = tokens[0];
+
+            if (head.startsWith(".")) {
+                String directive = head.toUpperCase(Locale.ROOT);
+                if (directive.equals(".END")) break;
+                if (directive.equals(".PROBE")) {
+                    // V(1) и 1 означают один и тот же узел
+                    for (int i = 1; i < tokens.length; i++) {
+                        if (!tokens[i].equalsIgnoreCase("V")) probes.add(tokens[i]);
+                    }
+                    continue;
+                }
+                throw new NetlistException(lineNo, "unknown directive " + head);
+            }
+
+            ElementType type = ElementType.byPrefix(head.charAt(0));
+            if (type == null) throw new NetlistException(lineNo, "unknown element " + head);
+            if (tokens.length < 3) throw new NetlistException(lineNo, "missing nodes of " + head);
+            if (tokens[1].equals(tokens[2])) {
+                throw new NetlistException(lineNo, head + " is shorted");
+            }
+            if (findByName(elements, head) != null) {
+                throw new NetlistException(lineNo, "duplicate element " + head);
+            }
+
+            elements.add(parseElement(lineNo, type, tokens));
+        }
+
+        if (elements.isEmpty()) throw new NetlistException("no elements");
+        return new Netlist(title, elements, probes);
+    }
+
+    private static Element parseElement(int lineNo, ElementType type, String[] tokens) {
+        String name = tokens[0];
+        String a = tokens[1];
+        String b = tokens[2];
+
+        switch (type) {
+            case RESISTOR, CAPACITOR, INDUCTOR -> {
+                if (tokens.length != 4) throw new NetlistException(lineNo, "expected value");
+                double value = parseValue(lineNo, tokens[3]);
+                if (!(value > 0.0)) throw new NetlistException(lineNo, "value must be positive");
+                return Element.passive(name, type, a, b, value);
+            }
+            case DIODE -> {
+                double is = DEFAULT_SATURATION_CURRENT;
+                double vt = DEFAULT_THERMAL_VOLTAGE;
+                for (int i = 3; i < tokens.length; i++) {
+                    String[] kv = tokens[i].split("=", 2);
+                    if (kv.length != 2) throw new NetlistException(lineNo, "bad " + tokens[i]);
+                    double v = parseValue(lineNo, kv[1]);
+                    switch (kv[0].toUpperCase(Locale.ROOT)) {
+                        case "IS" -> is = v;
+                        case "VT" -> vt = v;
+                        default -> throw new NetlistException(lineNo, "unknown " + kv[0]);
+                    }
+                }
+                if (!(is > 0.0) || !(vt > 0.0)) {
+                    throw new NetlistException(lineNo, "IS and VT must be positive");
+                }
+                return Element.diode(name, a, b, is, vt);
+            }
+            case VOLTAGE_SOURCE -> {
+                if (tokens.length >= 4 && tokens[3].equalsIgnoreCase("SIN")) {
+                    if (tokens.length != 7) {
+                        throw new NetlistException(lineNo, "SIN expects offset amplitude freq");
+                    }
+                    return Element.source(
+                            name,
+                            a,
+                            b,
+                            parseValue(lineNo, tokens[4]),
+                            parseValue(lineNo, tokens[5]),
+                            parseValue(lineNo, tokens[6]));
+                }
+                int i = (tokens.length == 5 && tokens[3].equalsIgnoreCase("DC")) ? 4 : 3;
+                if (tokens.length != i + 1) throw new NetlistException(lineNo, "expected value");
+                return Element.source(name, a, b, parseValue(lineNo, tokens[i]), 0.0, 0.0);
+            }
+            default -> throw new NetlistException(lineNo, "unsupported " + name);
+        }
+    }
+
+    // Число с необязательным множителем SPICE
+    public static double parseValue(int lineNo, String token) {
+        String s = token.toLowerCase(Locale.ROOT);
+        int end = 0;
+        while (end < s.length() && "0123456789.+-e".indexOf(s.charAt(end)) >= 0) {
+            // 'e' без цифр после него - это не экспонента, а начало суффикса
+            if (s.charAt(end) == 'e'
+                    && (end + 1 >= s.length() || "0123456789+-".indexOf(s.charAt(end + 1)) < 0)) {
+                break;
+            }
+            end++;
+        }
+
+        double base;
+        try {
+            base = Double.parseDouble(s.substring(0, end));
+        } catch (NumberFormatException ex) {
+            throw new NetlistException(lineNo, "bad number " + token);
+        }
+
+        String suffix = s.substring(end);
+        double scale;
+        if (suffix.startsWith("meg")) {
+            scale = 1e6;
+        } else if (suffix.isEmpty()) {
+            scale = 1.0;
+        } else {
+            switch (suffix.charAt(0)) {
+                case 'f' -> scale = 1e-15;
+                case 'p' -> scale = 1e-12;
+                case 'n' -> scale = 1e-9;
+                case 'u' -> scale = 1e-6;
+                case 'm' -> scale = 1e-3;
+                case 'k' -> scale = 1e3;
+                case 'g' -> scale = 1e9;
+                case 't' -> scale = 1e12;
+                // Единицы измерения без множителя (V, A, s, Hz ...) игнорируются
+                default -> scale = 1.0;
+            }
+        }
+        return (scale == 1.0) ? base : base * scale;
+    }
+
+    private static String stripComment(String line) {
+        int pos = line.indexOf(';');
+        return (pos >= 0) ? line.substring(0, pos) : line;
+    }
+
+    private static Element findByName(List<Element> elements, String name) {
+        for (Element e : elements) {
+            if (e.name.equalsIgnoreCase(name)) return e;
+        }
+        return null;
+    }
+}
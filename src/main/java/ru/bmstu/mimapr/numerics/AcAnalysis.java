@@ -0,0 +1,156 @@
+package ru.bmstu.mimapr.numerics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * Малосигнальный анализ в частотной области около рабочей точки
+ *
+ * Модель линеаризуется в рабочей точке: матрица Якоби при gamma = 1
+ * равна G + C, при бесконечной gamma - G, где C - слагаемые -1/gamma
+ * формул интегрирования. Для гармонического сигнала dX = j * w * X, поэтому
+ * на частоте f решается комплексная система (G + j * 2 * pi * f * C) x = b,
+ * b - единичные амплитуды источников (CircuitModel.fillAcExcitation).
+ * Проводимости диодов и емкости берутся из матрицы Якоби модели в рабочей
+ * точке. Частоты рассчитываются в ForkJoinPool по parallelism задачам,
+ * у каждой свое комплексное LU-разложение. Если матрица вырождена
+ * на частоте, решение на ней - NaN
+ * */
+public final class AcAnalysis {
+    private final int n;
+    private final double[][] g;
+    private final double[][] c;
+    private final double[] excitation;
+    private final ForkJoinPool pool;
+
+    private double[] frequencies = new double[0];
+    private double[][] solutionRe = new double[0][];
+    private double[][] solutionIm = new double[0][];
+    private int singular = 0;
+    private long elapsedNanos = 0;
+
+    public AcAnalysis(CircuitModel model, double[] operatingPoint, int parallelism) {
+        this.n = model.size();
+        if (operatingPoint.length != n) {
+            throw new IllegalArgumentException("operating point does not match the circuit size");
+        }
+        SparseMatrix jacobi = model.createJacobiMatrix();
+        model.fillJacobiMatrix(jacobi, Double.POSITIVE_INFINITY, operatingPoint);
+        this.g = dense(jacobi);
+        model.fillJacobiMatrix(jacobi, 1.0, operatingPoint);
+        this.c = dense(jacobi);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) c[i][j] -= g[i][j];
+        }
+        this.excitation = new double[n];
+        model.fillAcExcitation(excitation);
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // points частот на декаду от fStart до fStop включительно, равномерно по логарифму
+    public static double[] logFrequencies(double fStart, double fStop, int points) {
+        if (!(fStart > 0.0) || !(fStop >= fStart) || points < 1) {
+            throw new IllegalArgumentException("bad frequency sweep");
+        }
+        final double decades = Math.log10(fStop / fStart);
+        final int count = (int) Math.floor(decades * points + 1e-9) + 1;
+        double[] f = new double[count];
+        for (int k = 0; k < count; k++) f[k] = fStart * Math.pow(10.0, (double) k / points);
+        return f;
+    }
+
+    public void run(double[] frequencies) throws InterruptedException {
+        final long begin = System.nanoTime();
+        this.frequencies = frequencies.clone();
+        this.solutionRe = new double[frequencies.length][];
+        this.solutionIm = new double[frequencies.length][];
+
+        // Задача k рассчитывает частоты k, k + tasks, ...: соседние частоты
+        // обусловлены одинаково и распределяются по задачам равномерно
+        final int tasks = Math.min(pool.getParallelism(), Math.max(1, frequencies.length));
+        List<Callable<Integer>> work = new ArrayList<>();
+        for (int k = 0; k < tasks; k++) {
+            final int first = k;
+            work.add(() -> solveStrided(first, tasks));
+        }
+        singular = 0;
+        for (Future<Integer> result : pool.invokeAll(work)) {
+            try {
+                singular += result.get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException re) throw re;
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        elapsedNanos = System.nanoTime() - begin;
+    }
+
+    private int solveStrided(int first, int stride) {
+        final ComplexLU lu = new ComplexLU(n);
+        final double[][] im = new double[n][n];
+        final double[] zero = new double[n];
+        int failed = 0;
+        for (int k = first; k < frequencies.length; k += stride) {
+            final double w = 2.0 * Math.PI * frequencies[k];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) im[i][j] = w * c[i][j];
+            }
+            final double[] re = new double[n];
+            final double[] imag = new double[n];
+            if (lu.factor(g, im)) {
+                lu.solve(excitation, zero, re, imag);
+            } else {
+                Arrays.fill(re, Double.NaN);
+                Arrays.fill(imag, Double.NaN);
+                failed++;
+            }
+            solutionRe[k] = re;
+            solutionIm[k] = imag;
+        }
+        return failed;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public double[] frequencies() {
+        return frequencies.clone();
+    }
+
+    // Модуль i-й неизвестной на k-й частоте
+    public double magnitude(int k, int i) {
+        return Math.hypot(solutionRe[k][i], solutionIm[k][i]);
+    }
+
+    // Фаза i-й неизвестной на k-й частоте в градусах
+    public double phaseDegrees(int k, int i) {
+        return Math.toDegrees(Math.atan2(solutionIm[k][i], solutionRe[k][i]));
+    }
+
+    // Частоты с вырожденной матрицей в последнем расчете
+    public int singularPoints() {
+        return singular;
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    private static double[][] dense(SparseMatrix a) {
+        double[][] d = new double[a.n][a.n];
+        for (int i = 0; i < a.n; i++) {
+            for (int k = a.rowPtr[i]; k < a.rowPtr[i + 1]; k++) d[i][a.colIdx[k]] = a.values[k];
+        }
+        return d;
+    }
+}
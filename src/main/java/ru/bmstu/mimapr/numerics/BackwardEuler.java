@@ -0,0 +1,57 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+
+// Неявная формула Эйлера: dX = (X - X_n) / deltaT
+public final class BackwardEuler implements IntegrationMethod {
+    private final int[] stateIdx;
+    // Переменные состояния на последнем принятом шаге, в начале - нулевые
+    private final double[] states;
+
+    public BackwardEuler(CircuitModel model) {
+        this.stateIdx = IntegrationMethod.stateIndices(model);
+        this.states = new double[stateIdx.length];
+    }
+
+    @Override
+    public IntegrationMethodKind kind() {
+        return IntegrationMethodKind.BACKWARD_EULER;
+    }
+
+    @Override
+    public int order() {
+        return 1;
+    }
+
+    @Override
+    public double errorConstant() {
+        return 0.5;
+    }
+
+    @Override
+    public double prepare(double deltaT, double[] history) {
+        System.arraycopy(states, 0, history, 0, states.length);
+        return deltaT;
+    }
+
+    @Override
+    public void accept(double deltaT, double[] x) {
+        for (int k = 0; k < states.length; k++) states[k] = x[stateIdx[k]];
+    }
+
+    @Override
+    public void initialize(double[] x) {
+        accept(0.0, x);
+    }
+
+    @Override
+    public double[] saveState() {
+        return states.clone();
+    }
+
+    @Override
+    public void restoreState(double[] state) {
+        IntegrationMethod.checkStateLength(state, states.length);
+        System.arraycopy(state, 0, states, 0, states.length);
+    }
+}
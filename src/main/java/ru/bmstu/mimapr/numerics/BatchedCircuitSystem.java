@@ -0,0 +1,418 @@
+package ru.bmstu.mimapr.numerics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.Data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/*
+ * Система CircuitSystem для K экземпляров схемы с разными номиналами
+ *
+ * Экземпляры (дорожки) хранятся в виде структуры массивов: значения одной
+ * неизвестной для SPECIES.length() соседних дорожек лежат подряд и
+ * обрабатываются одной векторной операцией. Данные разбиты на блоки
+ * по длине вектора: блок содержит все неизвестные, невязки и матрицу Якоби
+ * своих дорожек, поэтому разложение блока целиком помещается в кэш L1.
+ *
+ * Формулы и порядок операций повторяют CircuitSystem и LinearAlgebra.luDecompose,
+ * кроме экспоненты (VectorOperators.EXP отличается от Math.exp в пределах 1 ulp)
+ * и пропуска структурно нулевых элементов матрицы Якоби при разложении.
+ * Не потокобезопасна
+ * */
+public final class BatchedCircuitSystem {
+    public static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final int N = Data.N;
+    private static final int L = SPECIES.length();
+
+    // Число дорожек с учетом дополнения до целого числа блоков
+    public final int lanes;
+    private final int blocks;
+
+    // Номиналы по дорожкам
+    private final double[] inductance;
+    private final double[] c1;
+    private final double[] c2;
+    private final double[] c3;
+    private final double[] r1;
+    private final double[] r2;
+    private final double[] iT;
+    private final double[] cB;
+    private final double[] mft;
+    private final double[] rB;
+    private final double[] rU;
+
+    // Входные данные шага по дорожкам: формула интегрирования dU = (U - h) / gamma
+    // и значение ЭДС в момент шага
+    public final double[] gamma;
+    public final double[] source;
+    // h для переменных состояния: [состояние][дорожка] внутри блока
+    private final double[] history;
+
+    // Текущая аппроксимация, невязки, поправки и LU-разложения по блокам
+    private final double[] x;
+    private final double[] v;
+    private final double[] deltas;
+    private final double[] lu;
+
+    // Портрет L + U с учетом заполнения, общий для всех дорожек.
+    // pivotRows[j] - строки i > j с ненулевым lu[i][j], upperCols[j] - столбцы k > j
+    // с ненулевым lu[j][k], lowerCols[i] - столбцы j < i с ненулевым lu[i][j]
+    private final int[][] pivotRows;
+    private final int[][] upperCols;
+    private final int[][] lowerCols;
+
+    public BatchedCircuitSystem(List<CircuitParameters> parameters) {
+        if (parameters.isEmpty()) throw new IllegalArgumentException("empty batch");
+        this.blocks = (parameters.size() + L - 1) / L;
+        this.lanes = blocks * L;
+
+        inductance = new double[lanes];
+        c1 = new double[lanes];
+        c2 = new double[lanes];
+        c3 = new double[lanes];
+        r1 = new double[lanes];
+        r2 = new double[lanes];
+        iT = new double[lanes];
+        cB = new double[lanes];
+        mft = new double[lanes];
+        rB = new double[lanes];
+        rU = new double[lanes];
+        // Дополнительные дорожки повторяют последний экземпляр, чтобы не получать NaN
+        for (int lane = 0; lane < lanes; lane++) {
+            CircuitParameters p = parameters.get(Math.min(lane, parameters.size() - 1));
+            inductance[lane] = p.L;
+            c1[lane] = p.C1;
+            c2[lane] = p.C2;
+            c3[lane] = p.C3;
+            r1[lane] = p.R1;
+            r2[lane] = p.R2;
+            iT[lane] = p.I_T;
+            cB[lane] = p.C_B;
+            mft[lane] = p.MFT;
+            rB[lane] = p.R_B;
+            rU[lane] = p.R_U;
+        }
+
+        gamma = new double[lanes];
+        source = new double[lanes];
+        history = new double[lanes * 5];
+        x = new double[lanes * N];
+        v = new double[lanes * N];
+        deltas = new double[lanes * N];
+        lu = new double[lanes * N * N];
+
+        double[][] dense = CircuitSystem.createJacobiMatrix(1.0, 0.0);
+        boolean[][] nz = new boolean[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) nz[i][j] = dense[i][j] != 0.0;
+        }
+        // Символьное исключение без выбора ведущего элемента
+        for (int j = 0; j < N - 1; j++) {
+            for (int i = j + 1; i < N; i++) {
+                if (!nz[i][j]) continue;
+                for (int k = j + 1; k < N; k++) if (nz[j][k]) nz[i][k] = true;
+            }
+        }
+        pivotRows = new int[N][];
+        upperCols = new int[N][];
+        lowerCols = new int[N][];
+        for (int j = 0; j < N; j++) {
+            final int col = j;
+            pivotRows[j] = indices(j + 1, N, i -> nz[i][col]);
+            upperCols[j] = indices(j + 1, N, k -> nz[col][k]);
+            lowerCols[j] = indices(0, j, k -> nz[col][k]);
+        }
+    }
+
+    private static int[] indices(int from, int to, IntPredicate nonZero) {
+        return IntStream.range(from, to).filter(nonZero).toArray();
+    }
+
+    // Смещения в блочном хранении: [блок][неизвестная][дорожка блока]
+    private static int offset(int lane, int i, int rows) {
+        return ((lane / L) * rows + i) * L + lane % L;
+    }
+
+    private static int block(int b, int i, int rows) {
+        return (b * rows + i) * L;
+    }
+
+    public void setApproximation(int lane, double[] approx) {
+        for (int i = 0; i < N; i++) x[offset(lane, i, N)] = approx[i];
+    }
+
+    public void getSolution(int lane, double[] out) {
+        for (int i = 0; i < N; i++) out[i] = x[offset(lane, i, N)];
+    }
+
+    public void setHistory(int lane, double[] h) {
+        for (int k = 0; k < 5; k++) history[offset(lane, k, 5)] = h[k];
+    }
+
+    // Заполнение матриц Якоби по текущей аппроксимации и LU-разложение
+    // для блоков с хотя бы одной активной дорожкой. ok[lane] - разложение удалось
+    public void factor(boolean[] active, boolean[] ok) {
+        for (int b = 0; b < blocks; b++) {
+            if (!anyTrue(active, b)) continue;
+            final int base = b * N * N * L;
+            fillJacobi(b, base);
+            eliminate(base);
+            for (int l = 0; l < L; l++) {
+                boolean good = true;
+                for (int j = 0; j < N; j++) {
+                    final double pivot = lu[base + (j * N + j) * L + l];
+                    if (pivot == 0.0 || !Double.isFinite(pivot)) good = false;
+                }
+                ok[b * L + l] = good;
+            }
+        }
+    }
+
+    private void fillJacobi(int b, int base) {
+        final int lane = b * L;
+        Arrays.fill(lu, base, base + N * N * L, 0.0);
+
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector minusOne = DoubleVector.broadcast(SPECIES, -1.0);
+        DoubleVector g = DoubleVector.fromArray(SPECIES, gamma, lane);
+        DoubleVector uCb = DoubleVector.fromArray(SPECIES, x, block(b, 7, N));
+        DoubleVector l = DoubleVector.fromArray(SPECIES, inductance, lane);
+        DoubleVector vc1 = DoubleVector.fromArray(SPECIES, c1, lane);
+        DoubleVector vc2 = DoubleVector.fromArray(SPECIES, c2, lane);
+        DoubleVector vr1 = DoubleVector.fromArray(SPECIES, r1, lane);
+        DoubleVector vr2 = DoubleVector.fromArray(SPECIES, r2, lane);
+        DoubleVector vcb = DoubleVector.fromArray(SPECIES, cB, lane);
+        DoubleVector vrb = DoubleVector.fromArray(SPECIES, rB, lane);
+        DoubleVector vmft = DoubleVector.fromArray(SPECIES, mft, lane);
+
+        // Проводимость диода вместе с сопротивлением утечки
+        DoubleVector a =
+                one.div(DoubleVector.fromArray(SPECIES, rU, lane))
+                        .add(
+                                DoubleVector.fromArray(SPECIES, iT, lane)
+                                        .div(vmft)
+                                        .mul(uCb.div(vmft).lanewise(VectorOperators.EXP)));
+        DoubleVector invGamma = minusOne.div(g);
+        DoubleVector gR1 = one.div(vr1);
+        DoubleVector gRb = one.div(vrb);
+
+        for (int k = 0; k < 5; k++) {
+            put(base, k, k, one);
+            put(base, k, k + 5, invGamma);
+        }
+
+        put(base, 5, 5, one);
+        put(base, 5, 10, one);
+        put(base, 5, 11, minusOne);
+        put(base, 6, 6, one);
+        put(base, 6, 13, one);
+        put(base, 6, 14, minusOne);
+        put(base, 7, 7, one);
+        put(base, 7, 11, one);
+        put(base, 7, 12, minusOne);
+        put(base, 8, 3, l);
+        put(base, 8, 10, one);
+        put(base, 8, 11, minusOne);
+        put(base, 9, 9, one);
+        put(base, 9, 14, minusOne);
+
+        put(base, 10, 0, vc1.neg());
+        put(base, 10, 5, minusOne.div(vr1));
+        put(base, 10, 8, minusOne);
+        put(base, 10, 15, one);
+
+        put(base, 11, 0, vc1);
+        put(base, 11, 2, vcb.neg());
+        put(base, 11, 5, gR1);
+        put(base, 11, 7, a.neg());
+        put(base, 11, 8, one);
+
+        put(base, 12, 2, vcb);
+        put(base, 12, 7, a);
+        put(base, 12, 12, gRb);
+        put(base, 12, 13, minusOne.div(vrb));
+
+        put(base, 13, 1, vc2.neg());
+        put(base, 13, 12, minusOne.div(vrb));
+        put(base, 13, 13, gRb);
+
+        put(base, 14, 1, vc2);
+        put(base, 14, 4, vc2);
+        put(base, 14, 14, one.div(vr2));
+
+        put(base, 15, 10, one);
+    }
+
+    private void put(int base, int i, int j, DoubleVector value) {
+        value.intoArray(lu, base + (i * N + j) * L);
+    }
+
+    // LU-разложение без выбора ведущего элемента, как LinearAlgebra.luDecompose,
+    // по портрету с заполнением
+    private void eliminate(int base) {
+        for (int j = 0; j < N - 1; j++) {
+            final int pj = base + j * N * L;
+            DoubleVector ajj = DoubleVector.fromArray(SPECIES, lu, pj + j * L);
+            for (int i : pivotRows[j]) {
+                final int pi = base + i * N * L;
+                DoubleVector coeff = DoubleVector.fromArray(SPECIES, lu, pi + j * L).div(ajj);
+                for (int k : upperCols[j]) {
+                    DoubleVector aik = DoubleVector.fromArray(SPECIES, lu, pi + k * L);
+                    DoubleVector ajk = DoubleVector.fromArray(SPECIES, lu, pj + k * L);
+                    aik.sub(coeff.mul(ajk)).intoArray(lu, pi + k * L);
+                }
+                coeff.intoArray(lu, pi + j * L);
+            }
+        }
+    }
+
+    // Вектор невязок по текущей аппроксимации, как CircuitSystem.fillVector
+    public void fillVector(boolean[] active) {
+        for (int b = 0; b < blocks; b++) {
+            if (anyTrue(active, b)) fillVector(b);
+        }
+    }
+
+    private void fillVector(int b) {
+        final int lane = b * L;
+        final int xb = block(b, 0, N);
+        final int hb = block(b, 0, 5);
+
+        DoubleVector g = DoubleVector.fromArray(SPECIES, gamma, lane);
+
+        DoubleVector dUc1 = DoubleVector.fromArray(SPECIES, x, xb);
+        DoubleVector dUc2 = DoubleVector.fromArray(SPECIES, x, xb + L);
+        DoubleVector dUcb = DoubleVector.fromArray(SPECIES, x, xb + 2 * L);
+        DoubleVector dIl1 = DoubleVector.fromArray(SPECIES, x, xb + 3 * L);
+        DoubleVector duC3 = DoubleVector.fromArray(SPECIES, x, xb + 4 * L);
+
+        DoubleVector uC1 = DoubleVector.fromArray(SPECIES, x, xb + 5 * L);
+        DoubleVector uC2 = DoubleVector.fromArray(SPECIES, x, xb + 6 * L);
+        DoubleVector uCb = DoubleVector.fromArray(SPECIES, x, xb + 7 * L);
+        DoubleVector iL1 = DoubleVector.fromArray(SPECIES, x, xb + 8 * L);
+        DoubleVector uC3 = DoubleVector.fromArray(SPECIES, x, xb + 9 * L);
+
+        DoubleVector phi1 = DoubleVector.fromArray(SPECIES, x, xb + 10 * L);
+        DoubleVector phi2 = DoubleVector.fromArray(SPECIES, x, xb + 11 * L);
+        DoubleVector phi3 = DoubleVector.fromArray(SPECIES, x, xb + 12 * L);
+        DoubleVector phi4 = DoubleVector.fromArray(SPECIES, x, xb + 13 * L);
+        DoubleVector phi5 = DoubleVector.fromArray(SPECIES, x, xb + 14 * L);
+
+        DoubleVector iE = DoubleVector.fromArray(SPECIES, x, xb + 15 * L);
+
+        DoubleVector vmft = DoubleVector.fromArray(SPECIES, mft, lane);
+
+        // Токи в резисторах I_r = U_r / R
+        DoubleVector iR1 = uC1.div(DoubleVector.fromArray(SPECIES, r1, lane));
+        DoubleVector iR2 = phi5.div(DoubleVector.fromArray(SPECIES, r2, lane));
+        DoubleVector iRu = uCb.div(DoubleVector.fromArray(SPECIES, rU, lane));
+        DoubleVector iRb = phi4.sub(phi3).div(DoubleVector.fromArray(SPECIES, rB, lane));
+
+        // Токи в конденсаторах I_c = C * dU_c / dt
+        DoubleVector iC1 = DoubleVector.fromArray(SPECIES, c1, lane).mul(dUc1);
+        DoubleVector iC2 = DoubleVector.fromArray(SPECIES, c2, lane).mul(dUc2);
+        DoubleVector iCb = DoubleVector.fromArray(SPECIES, cB, lane).mul(dUcb);
+        DoubleVector iC3 = DoubleVector.fromArray(SPECIES, c3, lane).mul(duC3);
+
+        // Ток диода I_t * ( e^(U_cb / MFT) - 1)
+        DoubleVector iD =
+                DoubleVector.fromArray(SPECIES, iT, lane)
+                        .mul(uCb.div(vmft).lanewise(VectorOperators.EXP).sub(1.0));
+
+        // Производные
+        store(b, 0, dUc1.sub(uC1.sub(prev(hb, 0)).div(g)));
+        store(b, 1, dUc2.sub(uC2.sub(prev(hb, 1)).div(g)));
+        store(b, 2, dUcb.sub(uCb.sub(prev(hb, 2)).div(g)));
+        store(b, 3, dIl1.sub(iL1.sub(prev(hb, 3)).div(g)));
+        store(b, 4, duC3.sub(uC3.sub(prev(hb, 4)).div(g)));
+
+        // ПС
+        store(b, 5, uC1.sub(phi2.sub(phi1)));
+        store(b, 6, uC2.sub(phi5.sub(phi4)));
+        store(b, 7, uCb.sub(phi3.sub(phi2)));
+        DoubleVector l = DoubleVector.fromArray(SPECIES, inductance, lane);
+        store(b, 8, l.mul(dIl1).sub(phi2.sub(phi1)));
+        store(b, 9, uC3.sub(phi5));
+
+        // Потенциалы (1 закон Кирхгофа)
+        store(b, 10, iR1.neg().sub(iC1).sub(iL1).add(iE));
+        store(b, 11, iCb.neg().sub(iRu).sub(iD).add(iR1).add(iC1).add(iL1));
+        store(b, 12, iRb.neg().add(iCb).add(iRu).add(iD));
+        store(b, 13, iC2.neg().add(iRb));
+        store(b, 14, iR2.add(iC2).add(iC3));
+        // ЭДС
+        store(b, 15, phi1.sub(DoubleVector.fromArray(SPECIES, source, lane)));
+    }
+
+    private DoubleVector prev(int hb, int k) {
+        return DoubleVector.fromArray(SPECIES, history, hb + k * L);
+    }
+
+    private void store(int b, int i, DoubleVector value) {
+        value.intoArray(v, block(b, i, N));
+    }
+
+    // Шаг метода Ньютона для активных дорожек: поправки по LU-разложению
+    // для -v, прибавление к аппроксимации и вторая норма поправок в norm[lane]
+    public void newtonStep(boolean[] active, double[] norm) {
+        for (int b = 0; b < blocks; b++) {
+            if (!anyTrue(active, b)) continue;
+            solve(b);
+
+            VectorMask<Double> mask = VectorMask.fromArray(SPECIES, active, b * L);
+            final int xb = block(b, 0, N);
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            for (int i = 0; i < N; i++) {
+                DoubleVector d = DoubleVector.fromArray(SPECIES, deltas, xb + i * L);
+                DoubleVector xi = DoubleVector.fromArray(SPECIES, x, xb + i * L);
+                xi.add(d, mask).intoArray(x, xb + i * L);
+                // Производные не включаем в норму, так как они зависят от самих ПС
+                if (i >= 5) sum = sum.add(d.mul(d));
+            }
+            sum.lanewise(VectorOperators.SQRT).intoArray(norm, b * L);
+        }
+    }
+
+    // Прямой и обратный ход, как LinearAlgebra.luSolve, по портрету с заполнением
+    private void solve(int b) {
+        final int base = b * N * N * L;
+        final int xb = block(b, 0, N);
+
+        for (int i = 0; i < N; i++) {
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, v, xb + i * L).neg();
+            final int pi = base + i * N * L;
+            for (int j : lowerCols[i]) {
+                DoubleVector lij = DoubleVector.fromArray(SPECIES, lu, pi + j * L);
+                xi = xi.sub(lij.mul(DoubleVector.fromArray(SPECIES, deltas, xb + j * L)));
+            }
+            xi.intoArray(deltas, xb + i * L);
+        }
+
+        for (int i = N - 1; i >= 0; i--) {
+            final int pi = base + i * N * L;
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            int[] cols = upperCols[i];
+            for (int q = cols.length - 1; q >= 0; q--) {
+                final int k = cols[q];
+                DoubleVector uik = DoubleVector.fromArray(SPECIES, lu, pi + k * L);
+                sum = sum.add(uik.mul(DoubleVector.fromArray(SPECIES, deltas, xb + k * L)));
+            }
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, deltas, xb + i * L);
+            xi.sub(sum).div(DoubleVector.fromArray(SPECIES, lu, pi + i * L))
+                    .intoArray(deltas, xb + i * L);
+        }
+    }
+
+    private static boolean anyTrue(boolean[] flags, int b) {
+        for (int l = b * L; l < (b + 1) * L; l++) if (flags[l]) return true;
+        return false;
+    }
+}
@@ -0,0 +1,186 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.exceptions.TimeStepException;
+import ru.bmstu.mimapr.model.TimeDemon;
+
+import java.util.List;
+
+/*
+ * Переходный процесс для пакета экземпляров CircuitSystem с разными номиналами
+ *
+ * Экземпляры рассчитываются в ногу: на каждом шаге цикла каждая дорожка
+ * выполняет одно решение методом Ньютона со своими моментом и шагом.
+ * Итерации Ньютона векторизованы в BatchedCircuitSystem, сошедшиеся
+ * дорожки исключаются маской. Выбор шага, вывод на сетку SAVE_DT
+ * и прогноз начального приближения выполняются по дорожкам так же, как
+ * в TransientAnalysis с неявной формулой Эйлера и выбором шага по порогам
+ * */
+public final class BatchedTransientAnalysis {
+
+    // Получатель принятых точек решения дорожки lane
+    @FunctionalInterface
+    public interface LaneSink {
+        void sample(int lane, double t, double[] x);
+    }
+
+    // Потенциалы phi1..phi5, по которым выбирается шаг
+    private static final int[] CONTROLLED = {10, 11, 12, 13, 14};
+    private static final int STATES = 5;
+
+    private final BatchedCircuitSystem system;
+    private final List<CircuitParameters> parameters;
+    private final int count;
+
+    // Состояние интегрирования по дорожкам
+    private final TimeDemon[] timeDemon;
+    private final double[] prevDeltaT;
+    private final double[][] states;
+    private final double[][] initialApproximation;
+    private final double[][] pvPrev;
+    private final double[][] pvPrevPrev;
+    private final double[] nextSaveT;
+    private final int[] iterations;
+    private final String[] errors;
+
+    // Дорожки, продолжающие расчет, и маски текущего решения методом Ньютона
+    private final boolean[] running;
+    private final boolean[] iterating;
+    private final boolean[] factored;
+    private final double[] norm;
+    private final double[] solution = new double[Data.N];
+
+    public BatchedTransientAnalysis(List<CircuitParameters> parameters) {
+        this.parameters = List.copyOf(parameters);
+        this.system = new BatchedCircuitSystem(this.parameters);
+        this.count = parameters.size();
+
+        final int lanes = system.lanes;
+        timeDemon = new TimeDemon[count];
+        prevDeltaT = new double[count];
+        states = new double[count][STATES];
+        initialApproximation = new double[count][Data.N];
+        pvPrev = new double[count][Data.N];
+        pvPrevPrev = new double[count][Data.N];
+        nextSaveT = new double[count];
+        iterations = new int[count];
+        errors = new String[count];
+        running = new boolean[lanes];
+        iterating = new boolean[lanes];
+        factored = new boolean[lanes];
+        norm = new double[lanes];
+
+        for (int lane = 0; lane < count; lane++) {
+            timeDemon[lane] = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+            prevDeltaT[lane] = Data.START_DELTA_TIME;
+            nextSaveT[lane] = Data.TIME_START;
+            running[lane] = true;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Число решений методом Ньютона дорожки, включая отброшенные шаги
+    public int iterations(int lane) {
+        return iterations[lane];
+    }
+
+    // Сообщение об ошибке дорожки или null, если расчет завершен успешно
+    public String error(int lane) {
+        return errors[lane];
+    }
+
+    public void run(double timeEnd, LaneSink sink) {
+        for (int lane = 0; lane < count; lane++) {
+            running[lane] = timeDemon[lane].currT < timeEnd;
+        }
+
+        while (anyRunning()) {
+            for (int lane = 0; lane < count; lane++) {
+                if (!running[lane]) continue;
+                final TimeDemon td = timeDemon[lane];
+                system.gamma[lane] = td.deltaT;
+                system.source[lane] = parameters.get(lane).currentE1(td.currT);
+                system.setHistory(lane, states[lane]);
+                system.setApproximation(lane, initialApproximation[lane]);
+            }
+
+            newtonMethod();
+
+            for (int lane = 0; lane < count; lane++) {
+                if (!running[lane]) continue;
+                iterations[lane]++;
+                if (factored[lane] && !iterating[lane]) {
+                    system.getSolution(lane, solution);
+                    accept(lane, solution, sink);
+                } else {
+                    reduce(lane);
+                }
+                if (running[lane]) running[lane] = timeDemon[lane].currT < timeEnd;
+            }
+        }
+    }
+
+    // Решение методом Ньютона для всех дорожек. После возврата дорожка сошлась,
+    // если разложение удалось (factored) и итерации завершены (!iterating)
+    private void newtonMethod() {
+        system.factor(running, factored);
+        for (int lane = 0; lane < running.length; lane++) {
+            iterating[lane] = running[lane] && factored[lane];
+        }
+
+        for (int n = 0; n < Data.NEWTON_STEPS && anyIterating(); n++) {
+            system.fillVector(iterating);
+            system.newtonStep(iterating, norm);
+            // Проверка второй нормы вектора поправок на порог точности
+            for (int lane = 0; lane < iterating.length; lane++) {
+                if (iterating[lane] && norm[lane] < Data.EPSILON) iterating[lane] = false;
+            }
+        }
+    }
+
+    private void accept(int lane, double[] phaseVariables, LaneSink sink) {
+        final TimeDemon td = timeDemon[lane];
+        final double tAccepted = td.currT;
+        final double deltaT = td.deltaT;
+        TimeStepController.calculateDeltaT(
+                td, prevDeltaT[lane], phaseVariables, pvPrev[lane], pvPrevPrev[lane], CONTROLLED);
+        if (!td.success) return;
+
+        while (tAccepted >= nextSaveT[lane]) {
+            sink.sample(lane, nextSaveT[lane], phaseVariables);
+            nextSaveT[lane] += Data.SAVE_DT;
+        }
+        prevDeltaT[lane] = deltaT;
+
+        TimeStepController.predictPhaseVariables(
+                phaseVariables, pvPrev[lane], initialApproximation[lane]);
+        for (int k = 0; k < STATES; k++) states[lane][k] = phaseVariables[STATES + k];
+
+        double[] tmp = pvPrevPrev[lane];
+        pvPrevPrev[lane] = pvPrev[lane];
+        pvPrev[lane] = tmp;
+        System.arraycopy(phaseVariables, 0, tmp, 0, tmp.length);
+    }
+
+    private void reduce(int lane) {
+        TimeStepController.deltaTReduction(timeDemon[lane]);
+        if (timeDemon[lane].deltaT < Data.MINIMAL_STEP) {
+            errors[lane] = new TimeStepException().getMessage();
+            running[lane] = false;
+        }
+    }
+
+    private boolean anyRunning() {
+        for (int lane = 0; lane < count; lane++) if (running[lane]) return true;
+        return false;
+    }
+
+    private boolean anyIterating() {
+        for (boolean b : iterating) if (b) return true;
+        return false;
+    }
+}
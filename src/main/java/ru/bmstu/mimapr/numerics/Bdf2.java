@@ -0,0 +1,94 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+
+/*
+ * Формула Гира второго порядка (BDF2) для неравномерной сетки
+ *
+ * При отношении шагов w = deltaT / deltaT_n:
+ *   X - (1 + w)^2 / (1 + 2w) * X_n + w^2 / (1 + 2w) * X_(n-1)
+ *     = deltaT * (1 + w) / (1 + 2w) * dX
+ * Первый шаг выполняется по неявной формуле Эйлера
+ * */
+public final class Bdf2 implements IntegrationMethod {
+    private final int[] stateIdx;
+    private final double[] states;
+    private final double[] prevStates;
+    private double prevDeltaT = 0.0;
+    private boolean started = false;
+
+    public Bdf2(CircuitModel model) {
+        this.stateIdx = IntegrationMethod.stateIndices(model);
+        this.states = new double[stateIdx.length];
+        this.prevStates = new double[stateIdx.length];
+    }
+
+    @Override
+    public IntegrationMethodKind kind() {
+        return IntegrationMethodKind.BDF2;
+    }
+
+    @Override
+    public int order() {
+        return 2;
+    }
+
+    // Константа для постоянного шага
+    @Override
+    public double errorConstant() {
+        return 2.0 / 9.0;
+    }
+
+    @Override
+    public double prepare(double deltaT, double[] history) {
+        if (!started) {
+            System.arraycopy(states, 0, history, 0, states.length);
+            return deltaT;
+        }
+        final double w = deltaT / prevDeltaT;
+        final double denominator = 1.0 + 2.0 * w;
+        final double a = (1.0 + w) * (1.0 + w) / denominator;
+        final double b = w * w / denominator;
+        for (int k = 0; k < states.length; k++) {
+            history[k] = a * states[k] - b * prevStates[k];
+        }
+        return deltaT * (1.0 + w) / denominator;
+    }
+
+    @Override
+    public void accept(double deltaT, double[] x) {
+        System.arraycopy(states, 0, prevStates, 0, states.length);
+        for (int k = 0; k < states.length; k++) states[k] = x[stateIdx[k]];
+        prevDeltaT = deltaT;
+        started = true;
+    }
+
+    // Второй точки истории нет, поэтому первый шаг выполняется по неявной формуле Эйлера
+    @Override
+    public void initialize(double[] x) {
+        for (int k = 0; k < states.length; k++) states[k] = x[stateIdx[k]];
+        started = false;
+    }
+
+    // [X_n, X_(n-1), deltaT_n, признак начала]
+    @Override
+    public double[] saveState() {
+        final int m = states.length;
+        double[] state = new double[2 * m + 2];
+        System.arraycopy(states, 0, state, 0, m);
+        System.arraycopy(prevStates, 0, state, m, m);
+        state[2 * m] = prevDeltaT;
+        state[2 * m + 1] = started ? 1.0 : 0.0;
+        return state;
+    }
+
+    @Override
+    public void restoreState(double[] state) {
+        final int m = states.length;
+        IntegrationMethod.checkStateLength(state, 2 * m + 2);
+        System.arraycopy(state, 0, states, 0, m);
+        System.arraycopy(state, m, prevStates, 0, m);
+        prevDeltaT = state[2 * m];
+        started = state[2 * m + 1] != 0.0;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.bmstu.mimapr.numerics;
+
+/*
+ * Сгенерированные для одной схемы функции модели и LU-разложения
+ *
+ * Невязка и матрица Якоби записаны без циклов по элементам, разложение
+ * и решение - без циклов по портрету L + U в порядке исключения, выбранном
+ * SparseLU. Операции выполняются в том же порядке, что и в интерпретируемом
+ * пути, поэтому результаты совпадают побитно.
+ * Экземпляр не хранит состояния: разложение лежит в массиве вызывающего
+ * */
+public interface CircuitKernel {
+    // Невязка, как CircuitModel.fillVector; history == null - режим по постоянному току
+    void fillVector(
+            double[] v, double t, double gamma, double[] x, double[] history, double sourceScale);
+
+    // Значения матрицы Якоби в портрете createJacobiMatrix модели
+    void fillJacobi(double[] values, double gamma, double[] x);
+
+    // Порядок исключения, для которого развернуто разложение
+    int[] rowPermutation();
+
+    int[] columnPermutation();
+
+    // Длина массива разложения lu
+    int luSize();
+
+    // Разложение значений матрицы Якоби. false - потерян ведущий элемент
+    boolean factor(double[] values, double[] lu);
+
+    void solve(double[] lu, double[] b, double[] x);
+}
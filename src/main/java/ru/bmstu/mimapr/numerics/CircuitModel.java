@@ -0,0 +1,80 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.LinearSolverKind;
+
+/*
+ * Математическая модель схемы для расширенного узлового метода
+ *
+ * Вектор неизвестных плоский: производные переменных состояния,
+ * переменные состояния, потенциалы узлов и токи источников ЭДС.
+ * Производные связаны с переменными состояния формулой интегрирования
+ * dX = (X - h) / gamma, где h и gamma задает IntegrationMethod. Для неявной
+ * формулы Эйлера h - значения на прошлом шаге, gamma - шаг
+ * */
+public interface CircuitModel {
+    // Размерность системы
+    int size();
+
+    // Число переменных состояния (напряжений конденсаторов и токов катушек)
+    int stateCount();
+
+    // Положение k-й переменной состояния в векторе неизвестных
+    int stateIndex(int k);
+
+    // Положение производной k-й переменной состояния
+    int derivativeIndex(int k);
+
+    // Потенциалы узлов, по которым оценивается локальная погрешность
+    int[] potentialIndices();
+
+    // Портрет матрицы Якоби, общий для всех шагов
+    SparseMatrix createJacobiMatrix();
+
+    // Заполнение значений матрицы Якоби в точке approx
+    void fillJacobiMatrix(SparseMatrix jacobi, double gamma, double[] approx);
+
+    // Заполнение вектора невязок в момент t, history - слагаемые h по переменным состояния
+    void fillVector(double[] v, double t, double gamma, double[] approx, double[] history);
+
+    // Вектор невязок режима по постоянному току в момент t: производные равны нулю
+    // (gamma бесконечно, матрица Якоби - fillJacobiMatrix с такой же gamma),
+    // ЭДС источников умножены на sourceScale из [0, 1]
+    void fillDcVector(double[] v, double t, double sourceScale, double[] approx);
+
+    // Норма вектора поправок без производных
+    double calculateVectorNorm(double[] deltas);
+
+    // Ограничение поправки метода Ньютона по напряжениям p-n переходов:
+    // множитель из (0, 1] для deltas в точке approx, 1 - без ограничения
+    default double limitStep(double[] approx, double[] deltas) {
+        return 1.0;
+    }
+
+    // Период источников для расчета периодического режима, NaN - источники непериодические
+    default double period() {
+        return Double.NaN;
+    }
+
+    // Ближайший после t момент излома или экстремума ЭДС источников, в который
+    // должен попасть шаг, POSITIVE_INFINITY - таких моментов нет
+    default double nextBreakpoint(double t) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // Правая часть малосигнального режима: минус производные невязок
+    // по амплитудам ЭДС, то есть единичные амплитуды источников сигнала
+    default void fillAcExcitation(double[] b) {
+        throw new UnsupportedOperationException("model has no AC excitation");
+    }
+
+    // Решатель СЛАУ для матриц createJacobiMatrix
+    default LinearSolver createLinearSolver(LinearSolverKind kind) {
+        if (kind == LinearSolverKind.CONDENSED) return CondensedSolver.of(this);
+        return LinearSolver.of(kind, size());
+    }
+
+    // Имя i-й неизвестной для вывода результатов
+    default String variableName(int i) {
+        return "x" + i;
+    }
+}
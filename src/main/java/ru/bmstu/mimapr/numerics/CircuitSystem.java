@@ -1,7 +1,9 @@
 package ru.bmstu.mimapr.numerics;
 
-import ru.bmstu.mimapr.config.Components;
+import ru.bmstu.mimapr.config.CircuitParameters;
 import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.device.DeviceState;
+import ru.bmstu.mimapr.device.Diode;
 import ru.bmstu.mimapr.model.PhaseVariables;
 import ru.bmstu.mimapr.model.PrevStateVariables;
 import ru.bmstu.mimapr.model.TimeDemon;
@@ -10,14 +12,37 @@ import ru.bmstu.mimapr.model.TimeDemon;
 public final class CircuitSystem {
     private CircuitSystem() {}
 
+    // Номиналы Components для вызовов без явных параметров, не изменяются
+    private static final CircuitParameters DEFAULTS = new CircuitParameters();
+
     // Построение матрицы Якоби
     public static double[][] createJacobiMatrix(double deltaT, double uCb) {
         double[][] jacobi = new double[Data.N][Data.N];
+        fillJacobiMatrix(jacobi, deltaT, uCb);
+        return jacobi;
+    }
+
+    // Заполнение матрицы Якоби на месте. Портрет матрицы постоянный,
+    // поэтому перезаписываются только ненулевые элементы
+    public static void fillJacobiMatrix(double[][] jacobi, double deltaT, double uCb) {
+        fillJacobiMatrix(jacobi, deltaT, uCb, DEFAULTS);
+    }
+
+    // Заполнение матрицы Якоби для заданных номиналов
+    public static void fillJacobiMatrix(
+            double[][] jacobi, double deltaT, double uCb, CircuitParameters p) {
+        fillJacobiWithConductance(jacobi, deltaT, diodeConductance(uCb, p), p);
+    }
+
+    // Заполнение матрицы Якоби по уже вычисленному состоянию диода
+    public static void fillJacobiMatrix(
+            double[][] jacobi, double deltaT, DeviceState diode, CircuitParameters p) {
+        fillJacobiWithConductance(jacobi, deltaT, 1.0 / p.R_U + diode.conductance, p);
+    }
 
-        // Значение для диода
-        final double a =
-                1.0 / Components.R_U
-                        + Components.I_T / Components.MFT * Math.exp(uCb / Components.MFT);
+    // a - проводимость диода вместе с сопротивлением утечки
+    private static void fillJacobiWithConductance(
+            double[][] jacobi, double deltaT, double a, CircuitParameters p) {
 
         // Производные
         jacobi[0][0] = 1.0;
@@ -44,46 +69,115 @@ public final class CircuitSystem {
         jacobi[7][11] = 1.0;
         jacobi[7][12] = -1.0;
 
-        jacobi[8][3] = Components.L;
+        jacobi[8][3] = p.L;
         jacobi[8][10] = 1.0;
         jacobi[8][11] = -1.0;
 
         jacobi[9][9] = 1.0;
         jacobi[9][14] = -1.0;
 
-        jacobi[10][0] = -Components.C1;
-        jacobi[10][5] = -1.0 / Components.R1;
+        jacobi[10][0] = -p.C1;
+        jacobi[10][5] = -1.0 / p.R1;
         jacobi[10][8] = -1.0;
         jacobi[10][15] = 1.0;
 
-        jacobi[11][0] = Components.C1;
-        jacobi[11][2] = -Components.C_B;
-        jacobi[11][5] = 1.0 / Components.R1;
+        jacobi[11][0] = p.C1;
+        jacobi[11][2] = -p.C_B;
+        jacobi[11][5] = 1.0 / p.R1;
         jacobi[11][7] = -a;
         jacobi[11][8] = 1.0;
 
-        jacobi[12][2] = Components.C_B;
+        jacobi[12][2] = p.C_B;
         jacobi[12][7] = a;
-        jacobi[12][12] = 1.0 / Components.R_B;
-        jacobi[12][13] = -1.0 / Components.R_B;
+        jacobi[12][12] = 1.0 / p.R_B;
+        jacobi[12][13] = -1.0 / p.R_B;
 
-        jacobi[13][1] = -Components.C2;
-        jacobi[13][12] = -1.0 / Components.R_B;
-        jacobi[13][13] = 1.0 / Components.R_B;
+        jacobi[13][1] = -p.C2;
+        jacobi[13][12] = -1.0 / p.R_B;
+        jacobi[13][13] = 1.0 / p.R_B;
 
-        jacobi[14][1] = Components.C2;
-        jacobi[14][4] = Components.C2;
-        jacobi[14][14] = 1.0 / Components.R2;
+        jacobi[14][1] = p.C2;
+        jacobi[14][4] = p.C2;
+        jacobi[14][14] = 1.0 / p.R2;
 
         // ЭДС
         jacobi[15][10] = 1.0;
+    }
 
-        return jacobi;
+    // Дифференциальная проводимость диода вместе с сопротивлением утечки.
+    // Единственный элемент матрицы Якоби, зависящий от решения
+    public static double diodeConductance(double uCb) {
+        return diodeConductance(uCb, DEFAULTS);
+    }
+
+    public static double diodeConductance(double uCb, CircuitParameters p) {
+        return 1.0 / p.R_U + diode(p).conductance(uCb);
+    }
+
+    // Модель диода схемы по номиналам, общая для всех вызовов с этими номиналами
+    public static Diode diode(CircuitParameters p) {
+        return p.diode();
     }
 
     // Построение вектора невязок
     public static double[] createVector(
             TimeDemon td, PhaseVariables pvApprox, PrevStateVariables prevState) {
+        double[] v = new double[Data.N];
+        fillVector(v, td, pvApprox, prevState);
+        return v;
+    }
+
+    // Заполнение вектора невязок на месте
+    public static void fillVector(
+            double[] v, TimeDemon td, PhaseVariables pvApprox, PrevStateVariables prevState) {
+        fillVector(v, td, pvApprox, prevState, DEFAULTS);
+    }
+
+    // Заполнение вектора невязок на месте с рабочим состоянием диода diode,
+    // которое переиспользуется между вызовами и не создается заново
+    public static void fillVector(
+            double[] v,
+            TimeDemon td,
+            PhaseVariables pvApprox,
+            PrevStateVariables prevState,
+            DeviceState diode) {
+        DEFAULTS.diode().evaluate(pvApprox.Ucb, diode);
+        fillVector(v, td.currT, td.deltaT, pvApprox, prevState, DEFAULTS, diode);
+    }
+
+    // Заполнение вектора невязок для заданных номиналов
+    public static void fillVector(
+            double[] v,
+            TimeDemon td,
+            PhaseVariables pvApprox,
+            PrevStateVariables prevState,
+            CircuitParameters p) {
+        fillVector(v, td.currT, td.deltaT, pvApprox, prevState, p);
+    }
+
+    // Заполнение вектора невязок для формулы интегрирования dU = (U - h) / gamma.
+    // Для неявной формулы Эйлера h - значения на прошлом шаге, gamma - шаг
+    public static void fillVector(
+            double[] v,
+            double t,
+            double gamma,
+            PhaseVariables pvApprox,
+            PrevStateVariables history,
+            CircuitParameters p) {
+        DeviceState diode = new DeviceState();
+        diode(p).evaluate(pvApprox.Ucb, diode);
+        fillVector(v, t, gamma, pvApprox, history, p, diode);
+    }
+
+    // Заполнение вектора невязок по уже вычисленному в pvApprox.Ucb состоянию диода
+    public static void fillVector(
+            double[] v,
+            double t,
+            double gamma,
+            PhaseVariables pvApprox,
+            PrevStateVariables history,
+            CircuitParameters p,
+            DeviceState diode) {
 
         // Аппроксимированные производные
         final double dUc1 = pvApprox.dUc1;
@@ -108,41 +202,37 @@ public final class CircuitSystem {
 
         final double iE = pvApprox.iE;
 
-        final double deltaT = td.deltaT;
-
-        final double E_eq = phi1 - Components.currentE1(td.currT);
+        final double E_eq = phi1 - p.currentE1(t);
 
         // Токи в резисторах I_r = U_r / R
-        final double iR1 = uC1 / Components.R1;
-        final double iR2 = phi5 / Components.R2;
-        final double iRu = uCb / Components.R_U;
-        final double iRb = (phi4 - phi3) / Components.R_B;
+        final double iR1 = uC1 / p.R1;
+        final double iR2 = phi5 / p.R2;
+        final double iRu = uCb / p.R_U;
+        final double iRb = (phi4 - phi3) / p.R_B;
 
         // Токи в конденсаторах I_c = C * dU_c / dt
-        final double iC1 = Components.C1 * dUc1;
-        final double iC2 = Components.C2 * dUc2;
-        final double iCb = Components.C_B * dUcb;
-        final double iC3 = Components.C3 * duC3;
+        final double iC1 = p.C1 * dUc1;
+        final double iC2 = p.C2 * dUc2;
+        final double iCb = p.C_B * dUcb;
+        final double iC3 = p.C3 * duC3;
 
         // Ток диода I_t * ( e^(U_cb / MFT) - 1)
-        final double iD = Components.I_T * (Math.exp(uCb / Components.MFT) - 1.0);
-
-        double[] v = new double[Data.N];
+        final double iD = diode.current;
 
         // Построение вектора невязок
 
         // Производные
-        v[0] = dUc1 - (uC1 - prevState.uC1Prev) / deltaT;
-        v[1] = dUc2 - (uC2 - prevState.uC2Prev) / deltaT;
-        v[2] = dUcb - (uCb - prevState.uCbPrev) / deltaT;
-        v[3] = dIl1 - (iL1 - prevState.iL1Prev) / deltaT;
-        v[4] = duC3 - (uC3 - prevState.uC3Prev) / deltaT;
+        v[0] = dUc1 - (uC1 - history.uC1Prev) / gamma;
+        v[1] = dUc2 - (uC2 - history.uC2Prev) / gamma;
+        v[2] = dUcb - (uCb - history.uCbPrev) / gamma;
+        v[3] = dIl1 - (iL1 - history.iL1Prev) / gamma;
+        v[4] = duC3 - (uC3 - history.uC3Prev) / gamma;
 
         // ПС
         v[5] = uC1 - (phi2 - phi1);
         v[6] = uC2 - (phi5 - phi4);
         v[7] = uCb - (phi3 - phi2);
-        v[8] = Components.L * dIl1 - (phi2 - phi1);
+        v[8] = p.L * dIl1 - (phi2 - phi1);
         v[9] = uC3 - phi5;
 
         // Потенциалы (1 закон Кирхгофа)
@@ -153,8 +243,6 @@ public final class CircuitSystem {
         v[14] = iR2 + iC2 + iC3;
         // ЭДС
         v[15] = E_eq;
-
-        return v;
     }
 
     // Вычисление второй нормы вектора поправок
@@ -0,0 +1,156 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.device.DeviceState;
+import ru.bmstu.mimapr.device.Diode;
+import ru.bmstu.mimapr.model.PhaseVariables;
+import ru.bmstu.mimapr.model.PrevStateVariables;
+
+import java.util.Arrays;
+
+/*
+ * Встроенная схема CircuitSystem в виде модели с плоским вектором неизвестных
+ *
+ * Расположение неизвестных совпадает с PhaseVariables.toArray. Вычисления
+ * выполняются теми же функциями CircuitSystem, поэтому результаты совпадают
+ * побитово. Состояние диода вычисляется один раз для матрицы Якоби и вектора
+ * невязок в одной точке. Хранит рабочие буферы, поэтому не потокобезопасна
+ * */
+public final class CircuitSystemModel implements CircuitModel {
+    private static final int STATES = 5;
+    private static final int[] POTENTIALS = {10, 11, 12, 13, 14};
+    private static final String[] NAMES = {
+        "dUc1", "dUc2", "dUcb", "dIl1", "duC3",
+        "Uc1", "Uc2", "Ucb", "Il1", "uC3",
+        "phi1", "phi2", "phi3", "phi4", "phi5",
+        "iE"
+    };
+
+    // Уравнение ЭДС phi1 - E(t)
+    private static final int SOURCE = 15;
+    // Напряжение на диоде (барьерной емкости) - переменная состояния Ucb
+    private static final int JUNCTION = 7;
+
+    private final CircuitParameters parameters;
+    // Номиналы с уменьшенной амплитудой ЭДС для пошагового включения источника
+    private final CircuitParameters dcParameters;
+    private final Diode diode;
+    private final DeviceState diodeState = new DeviceState();
+    private final double[][] dense = new double[Data.N][Data.N];
+    private final PhaseVariables approxVars = new PhaseVariables();
+    private final PrevStateVariables prevVars = new PrevStateVariables();
+
+    public CircuitSystemModel() {
+        this(new CircuitParameters());
+    }
+
+    public CircuitSystemModel(CircuitParameters parameters) {
+        this(parameters, Data.EXP_TABLE);
+    }
+
+    // expTable - экспонента диода по таблице ExpTable
+    public CircuitSystemModel(CircuitParameters parameters, boolean expTable) {
+        this.parameters = parameters.copy();
+        this.dcParameters = parameters.copy();
+        this.diode = new Diode(parameters.I_T, parameters.MFT, expTable);
+    }
+
+    @Override
+    public int size() {
+        return Data.N;
+    }
+
+    @Override
+    public int stateCount() {
+        return STATES;
+    }
+
+    @Override
+    public int stateIndex(int k) {
+        return STATES + k;
+    }
+
+    @Override
+    public int derivativeIndex(int k) {
+        return k;
+    }
+
+    @Override
+    public int[] potentialIndices() {
+        return POTENTIALS.clone();
+    }
+
+    @Override
+    public SparseMatrix createJacobiMatrix() {
+        return SparseMatrix.fromDense(CircuitSystem.createJacobiMatrix(1.0, 0.0));
+    }
+
+    @Override
+    public void fillJacobiMatrix(SparseMatrix jacobi, double gamma, double[] approx) {
+        diode.evaluate(approx[JUNCTION], diodeState);
+        CircuitSystem.fillJacobiMatrix(dense, gamma, diodeState, parameters);
+        jacobi.gather(dense);
+    }
+
+    @Override
+    public void fillVector(double[] v, double t, double gamma, double[] approx, double[] history) {
+        approxVars.setFromArray(approx);
+        prevVars.uC1Prev = history[0];
+        prevVars.uC2Prev = history[1];
+        prevVars.uCbPrev = history[2];
+        prevVars.iL1Prev = history[3];
+        prevVars.uC3Prev = history[4];
+        diode.evaluate(approx[JUNCTION], diodeState);
+        CircuitSystem.fillVector(v, t, gamma, approxVars, prevVars, parameters, diodeState);
+    }
+
+    @Override
+    public void fillDcVector(double[] v, double t, double sourceScale, double[] approx) {
+        approxVars.setFromArray(approx);
+        prevVars.uC1Prev = 0.0;
+        prevVars.uC2Prev = 0.0;
+        prevVars.uCbPrev = 0.0;
+        prevVars.iL1Prev = 0.0;
+        prevVars.uC3Prev = 0.0;
+        dcParameters.E_AMPLITUDE = parameters.E_AMPLITUDE * sourceScale;
+        diode.evaluate(approx[JUNCTION], diodeState);
+        CircuitSystem.fillVector(
+                v, t, Double.POSITIVE_INFINITY, approxVars, prevVars, dcParameters, diodeState);
+    }
+
+    @Override
+    public void fillAcExcitation(double[] b) {
+        Arrays.fill(b, 0.0);
+        b[SOURCE] = 1.0;
+    }
+
+    @Override
+    public double limitStep(double[] approx, double[] deltas) {
+        final double vOld = approx[JUNCTION];
+        final double vNew = vOld + deltas[JUNCTION];
+        final double limited = diode.limit(vNew, vOld);
+        return (limited == vNew) ? 1.0 : (limited - vOld) / (vNew - vOld);
+    }
+
+    @Override
+    public double calculateVectorNorm(double[] deltas) {
+        approxVars.setFromArray(deltas);
+        return CircuitSystem.calculateVectorNorm(approxVars);
+    }
+
+    @Override
+    public double period() {
+        return parameters.E_TIME;
+    }
+
+    @Override
+    public double nextBreakpoint(double t) {
+        return parameters.nextBreakpoint(t);
+    }
+
+    @Override
+    public String variableName(int i) {
+        return NAMES[i];
+    }
+}
@@ -0,0 +1,105 @@
+package ru.bmstu.mimapr.numerics;
+
+/*
+ * Плотное LU-разложение комплексной матрицы с выбором ведущего элемента по столбцу
+ *
+ * Действительные и мнимые части хранятся в отдельных массивах.
+ * Ведущий элемент выбирается по модулю: матрица малосигнального режима
+ * на разных частотах обусловлена по-разному, и порядок исключения
+ * без выбора, как в DenseLuSolver, на высоких частотах неустойчив.
+ * Экземпляр хранит разложение и не потокобезопасен
+ * */
+public final class ComplexLU {
+    private final int n;
+    private final double[][] re;
+    private final double[][] im;
+    private final int[] perm;
+    private final double[] yRe;
+    private final double[] yIm;
+
+    public ComplexLU(int n) {
+        this.n = n;
+        this.re = new double[n][n];
+        this.im = new double[n][n];
+        this.perm = new int[n];
+        this.yRe = new double[n];
+        this.yIm = new double[n];
+    }
+
+    // Разложение aRe + j * aIm. false - матрица вырождена
+    public boolean factor(double[][] aRe, double[][] aIm) {
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(aRe[i], 0, re[i], 0, n);
+            System.arraycopy(aIm[i], 0, im[i], 0, n);
+            perm[i] = i;
+        }
+
+        for (int k = 0; k < n; k++) {
+            int pivot = k;
+            double best = Math.hypot(re[k][k], im[k][k]);
+            for (int i = k + 1; i < n; i++) {
+                final double abs = Math.hypot(re[i][k], im[i][k]);
+                if (abs > best) {
+                    best = abs;
+                    pivot = i;
+                }
+            }
+            if (best == 0.0 || !Double.isFinite(best)) return false;
+            if (pivot != k) {
+                swap(re, k, pivot);
+                swap(im, k, pivot);
+                final int p = perm[k];
+                perm[k] = perm[pivot];
+                perm[pivot] = p;
+            }
+
+            // 1 / a_kk
+            final double d = re[k][k] * re[k][k] + im[k][k] * im[k][k];
+            final double invRe = re[k][k] / d;
+            final double invIm = -im[k][k] / d;
+            for (int i = k + 1; i < n; i++) {
+                final double lRe = re[i][k] * invRe - im[i][k] * invIm;
+                final double lIm = re[i][k] * invIm + im[i][k] * invRe;
+                re[i][k] = lRe;
+                im[i][k] = lIm;
+                if (lRe == 0.0 && lIm == 0.0) continue;
+                for (int j = k + 1; j < n; j++) {
+                    re[i][j] -= lRe * re[k][j] - lIm * im[k][j];
+                    im[i][j] -= lRe * im[k][j] + lIm * re[k][j];
+                }
+            }
+        }
+        return true;
+    }
+
+    // Решение по последнему разложению
+    public void solve(double[] bRe, double[] bIm, double[] xRe, double[] xIm) {
+        for (int i = 0; i < n; i++) {
+            double sRe = bRe[perm[i]];
+            double sIm = bIm[perm[i]];
+            for (int j = 0; j < i; j++) {
+                sRe -= re[i][j] * yRe[j] - im[i][j] * yIm[j];
+                sIm -= re[i][j] * yIm[j] + im[i][j] * yRe[j];
+            }
+            yRe[i] = sRe;
+            yIm[i] = sIm;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sRe = yRe[i];
+            double sIm = yIm[i];
+            for (int j = i + 1; j < n; j++) {
+                sRe -= re[i][j] * xRe[j] - im[i][j] * xIm[j];
+                sIm -= re[i][j] * xIm[j] + im[i][j] * xRe[j];
+            }
+            final double d = re[i][i] * re[i][i] + im[i][i] * im[i][i];
+            xRe[i] = (sRe * re[i][i] + sIm * im[i][i]) / d;
+            xIm[i] = (sIm * re[i][i] - sRe * im[i][i]) / d;
+        }
+    }
+
+    private static void swap(double[][] a, int i, int j) {
+        final double[] row = a[i];
+        a[i] = a[j];
+        a[j] = row;
+    }
+}
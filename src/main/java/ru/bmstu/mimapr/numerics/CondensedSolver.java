@@ -0,0 +1,377 @@
+package ru.bmstu.mimapr.numerics;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/*
+ * Решатель с исключением производных и переменных состояния до разложения
+ * (статическая конденсация, дополнение Шура)
+ *
+ * Строка производной k связывает только dX_k и X_k (dX - X / gamma), поэтому
+ * dX_k = (b - a_dx * X_k) / a_dd подставляется во все строки со столбцом dX_k.
+ * Строка переменной состояния с X_k на диагонали (конденсатор: U - (phi_a - phi_b))
+ * после этого выражает X_k через потенциалы узлов, и X_k тоже исключается.
+ * Исключаемая часть матрицы блочно-диагональная с блоками по одной
+ * неизвестной, поэтому дополнение Шура собирается без ее разложения.
+ * Приведенная система по потенциалам узлов, токам источников и переменным
+ * состояния без диагонали (токам катушек) раскладывается SparseLU, исключенные
+ * неизвестные восстанавливаются обратной подстановкой.
+ * Портрет анализируется по первой матрице (при плотном входе - заново, если
+ * появился ненулевой элемент вне портрета); строки, не подходящие под эту
+ * структуру, остаются в приведенной системе
+ * */
+public final class CondensedSolver implements LinearSolver {
+    private final int n;
+    private final int[] derivatives;
+    private final int[] states;
+
+    private SparseMatrix analyzedFor;
+    private SparseMatrix fromDense;
+
+    // Исключается производная / и переменная состояния пары k
+    private boolean[] dropDerivative;
+    private boolean[] dropState;
+    // Исходные номера неизвестных приведенной системы
+    private int[] kept;
+
+    // Позиции элементов строк исключаемых пар в values исходной матрицы, -1 - нет элемента
+    private int[] posDd;
+    private int[] posDx;
+    private int[] posXd;
+    private int[] posXx;
+    // Элементы строки X_k по столбцам приведенной системы: xPtr[k]..xPtr[k + 1]
+    private int[] xPtr;
+    private int[] xSrc;
+    private int[] xCol;
+
+    // Элементы строк приведенной системы, переносимые без изменений
+    private int[] directSrc;
+    private int[] directDst;
+    // Связи строк приведенной системы с исключенными столбцами: cpPtr[i]..cpPtr[i + 1]
+    private int[] cpPtr;
+    private int[] cpPair;
+    private int[] cpPosD;
+    private int[] cpPosX;
+    // Куда вычитается строка X_k (fillPtr[c]..fillPtr[c + 1]) или где стоит X_k
+    private int[] fillPtr;
+    private int[] fillDst;
+    private int[] keptDst;
+
+    private SparseMatrix reduced;
+    private SparseLU reducedLu;
+
+    // Числа последнего разложения
+    private double[] invDd;
+    private double[] factorX;
+    private double[] coefXd;
+    private double[] pivotX;
+    private double[] xVal;
+    private double[] cpD;
+    private double[] cpX;
+
+    private final double[] bd;
+    private final double[] bx;
+    private double[] rb;
+    private double[] y;
+
+    // derivatives[k], states[k] - положения dX_k и X_k, строки с теми же номерами
+    public CondensedSolver(int n, int[] derivatives, int[] states) {
+        if (derivatives.length != states.length) {
+            throw new IllegalArgumentException("derivative and state counts differ");
+        }
+        this.n = n;
+        this.derivatives = derivatives.clone();
+        this.states = states.clone();
+        this.bd = new double[states.length];
+        this.bx = new double[states.length];
+    }
+
+    public static CondensedSolver of(CircuitModel model) {
+        final int m = model.stateCount();
+        int[] d = new int[m];
+        int[] x = new int[m];
+        for (int k = 0; k < m; k++) {
+            d[k] = model.derivativeIndex(k);
+            x[k] = model.stateIndex(k);
+        }
+        return new CondensedSolver(model.size(), d, x);
+    }
+
+    // Размерность приведенной системы, 0 - портрет еще не анализировался
+    public int reducedSize() {
+        return (kept == null) ? 0 : kept.length;
+    }
+
+    @Override
+    public boolean factor(double[][] a) {
+        // Новый ненулевой элемент вне портрета дает новую матрицу и новый анализ
+        fromDense = SparseMatrix.fromDense(a, fromDense);
+        return factor(fromDense);
+    }
+
+    @Override
+    public boolean factor(SparseMatrix a) {
+        if (a.n != n) throw new IllegalArgumentException("matrix does not match the circuit size");
+        if (a != analyzedFor) analyze(a);
+        final double[] v = a.values;
+        for (int k = 0; k < states.length; k++) {
+            if (!dropDerivative[k]) continue;
+            final double dd = v[posDd[k]];
+            if (dd == 0.0) return false;
+            invDd[k] = 1.0 / dd;
+            factorX[k] = (posDx[k] >= 0) ? v[posDx[k]] * invDd[k] : 0.0;
+            if (!dropState[k]) continue;
+            coefXd[k] = (posXd[k] >= 0) ? v[posXd[k]] : 0.0;
+            pivotX[k] = v[posXx[k]] - coefXd[k] * factorX[k];
+            if (pivotX[k] == 0.0) return false;
+            for (int e = xPtr[k]; e < xPtr[k + 1]; e++) xVal[e] = v[xSrc[e]];
+        }
+
+        final double[] s = reduced.values;
+        Arrays.fill(s, 0.0);
+        for (int e = 0; e < directSrc.length; e++) s[directDst[e]] += v[directSrc[e]];
+        for (int c = 0; c < cpPair.length; c++) {
+            final int k = cpPair[c];
+            final double ad = (cpPosD[c] >= 0) ? v[cpPosD[c]] : 0.0;
+            final double ax = (cpPosX[c] >= 0) ? v[cpPosX[c]] : 0.0;
+            cpD[c] = ad;
+            if (dropState[k]) {
+                cpX[c] = ax - ad * factorX[k];
+                final double mult = cpX[c] / pivotX[k];
+                int e = xPtr[k];
+                for (int f = fillPtr[c]; f < fillPtr[c + 1]; f++, e++) {
+                    s[fillDst[f]] -= mult * xVal[e];
+                }
+            } else {
+                // Элемент столбца X_k уже перенесен напрямую
+                s[keptDst[c]] -= ad * factorX[k];
+            }
+        }
+        return reducedLu.factor(reduced);
+    }
+
+    @Override
+    public void solve(double[] b, double[] x) {
+        for (int k = 0; k < states.length; k++) {
+            if (!dropDerivative[k]) continue;
+            bd[k] = b[derivatives[k]] * invDd[k];
+            if (dropState[k]) bx[k] = b[states[k]] - coefXd[k] * bd[k];
+        }
+        for (int i = 0; i < kept.length; i++) {
+            double r = b[kept[i]];
+            for (int c = cpPtr[i]; c < cpPtr[i + 1]; c++) {
+                final int k = cpPair[c];
+                r -= cpD[c] * bd[k];
+                if (dropState[k]) r -= cpX[c] * bx[k] / pivotX[k];
+            }
+            rb[i] = r;
+        }
+        reducedLu.solve(rb, y);
+        for (int i = 0; i < kept.length; i++) x[kept[i]] = y[i];
+        for (int k = 0; k < states.length; k++) {
+            if (!dropState[k]) continue;
+            double r = bx[k];
+            for (int e = xPtr[k]; e < xPtr[k + 1]; e++) r -= xVal[e] * y[xCol[e]];
+            x[states[k]] = r / pivotX[k];
+        }
+        for (int k = 0; k < states.length; k++) {
+            if (dropDerivative[k]) x[derivatives[k]] = bd[k] - factorX[k] * x[states[k]];
+        }
+    }
+
+    // Выбор исключаемых неизвестных и портрет приведенной системы
+    private void analyze(SparseMatrix a) {
+        final int m = states.length;
+        // Пара, которой принадлежит неизвестная, -1 - узел или источник
+        int[] pairOf = new int[n];
+        Arrays.fill(pairOf, -1);
+        for (int k = 0; k < m; k++) {
+            pairOf[derivatives[k]] = k;
+            pairOf[states[k]] = k;
+        }
+
+        dropDerivative = new boolean[m];
+        dropState = new boolean[m];
+        posDd = new int[m];
+        posDx = new int[m];
+        posXd = new int[m];
+        posXx = new int[m];
+        for (int k = 0; k < m; k++) {
+            posDd[k] = a.indexOf(derivatives[k], derivatives[k]);
+            posDx[k] = a.indexOf(derivatives[k], states[k]);
+            posXd[k] = a.indexOf(states[k], derivatives[k]);
+            posXx[k] = a.indexOf(states[k], states[k]);
+            dropDerivative[k] = posDd[k] >= 0 && onlyOwnPair(a, derivatives[k], k, pairOf, true);
+            dropState[k] =
+                    dropDerivative[k]
+                            && posXx[k] >= 0
+                            && onlyOwnPair(a, states[k], k, pairOf, false);
+        }
+
+        // Положение неизвестной в приведенной системе, -1 - исключена
+        int[] reducedIndex = new int[n];
+        int size = 0;
+        for (int j = 0; j < n; j++) {
+            final int k = pairOf[j];
+            final boolean dropped =
+                    k >= 0 && (j == derivatives[k] ? dropDerivative[k] : dropState[k]);
+            reducedIndex[j] = dropped ? -1 : size++;
+        }
+        kept = new int[size];
+        for (int j = 0; j < n; j++) {
+            if (reducedIndex[j] >= 0) kept[reducedIndex[j]] = j;
+        }
+
+        // Строки исключаемых переменных состояния по столбцам приведенной системы
+        xPtr = new int[m + 1];
+        for (int k = 0; k < m; k++) {
+            int count = 0;
+            if (dropState[k]) {
+                final int row = states[k];
+                for (int p = a.rowPtr[row]; p < a.rowPtr[row + 1]; p++) {
+                    if (reducedIndex[a.colIdx[p]] >= 0) count++;
+                }
+            }
+            xPtr[k + 1] = xPtr[k] + count;
+        }
+        xSrc = new int[xPtr[m]];
+        xCol = new int[xPtr[m]];
+        for (int k = 0; k < m; k++) {
+            if (!dropState[k]) continue;
+            final int row = states[k];
+            int e = xPtr[k];
+            for (int p = a.rowPtr[row]; p < a.rowPtr[row + 1]; p++) {
+                final int r = reducedIndex[a.colIdx[p]];
+                if (r < 0) continue;
+                xSrc[e] = p;
+                xCol[e++] = r;
+            }
+        }
+
+        // Портрет приведенной системы с заполнением от исключенных пар
+        TreeSet<Long> pattern = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            final int row = kept[i];
+            for (int p = a.rowPtr[row]; p < a.rowPtr[row + 1]; p++) {
+                final int j = a.colIdx[p];
+                if (reducedIndex[j] >= 0) {
+                    pattern.add((long) i * size + reducedIndex[j]);
+                    continue;
+                }
+                final int k = pairOf[j];
+                if (dropState[k]) {
+                    for (int e = xPtr[k]; e < xPtr[k + 1]; e++) {
+                        pattern.add((long) i * size + xCol[e]);
+                    }
+                } else {
+                    pattern.add((long) i * size + reducedIndex[states[k]]);
+                }
+            }
+        }
+        int[] rowPtr = new int[size + 1];
+        int[] colIdx = new int[pattern.size()];
+        int nz = 0;
+        for (long key : pattern) {
+            rowPtr[(int) (key / size) + 1]++;
+            colIdx[nz++] = (int) (key % size);
+        }
+        for (int i = 0; i < size; i++) rowPtr[i + 1] += rowPtr[i];
+        reduced = new SparseMatrix(size, rowPtr, colIdx);
+
+        // Переносимые элементы и связи с исключенными парами по строкам
+        int directCount = 0;
+        int couplingCount = 0;
+        int[] slot = new int[m];
+        Arrays.fill(slot, -1);
+        for (int i = 0; i < size; i++) {
+            final int row = kept[i];
+            for (int p = a.rowPtr[row]; p < a.rowPtr[row + 1]; p++) {
+                final int j = a.colIdx[p];
+                if (reducedIndex[j] >= 0) {
+                    directCount++;
+                } else if (slot[pairOf[j]] != i) {
+                    slot[pairOf[j]] = i;
+                    couplingCount++;
+                }
+            }
+        }
+        directSrc = new int[directCount];
+        directDst = new int[directCount];
+        cpPtr = new int[size + 1];
+        cpPair = new int[couplingCount];
+        cpPosD = new int[couplingCount];
+        cpPosX = new int[couplingCount];
+        Arrays.fill(slot, -1);
+        int d = 0;
+        int c = 0;
+        for (int i = 0; i < size; i++) {
+            final int row = kept[i];
+            final int first = c;
+            for (int p = a.rowPtr[row]; p < a.rowPtr[row + 1]; p++) {
+                final int j = a.colIdx[p];
+                if (reducedIndex[j] >= 0) {
+                    directSrc[d] = p;
+                    directDst[d++] = reduced.indexOf(i, reducedIndex[j]);
+                    continue;
+                }
+                final int k = pairOf[j];
+                if (slot[k] < first) {
+                    slot[k] = c;
+                    cpPair[c] = k;
+                    cpPosD[c] = -1;
+                    cpPosX[c] = -1;
+                    c++;
+                }
+                if (j == derivatives[k]) {
+                    cpPosD[slot[k]] = p;
+                } else {
+                    cpPosX[slot[k]] = p;
+                }
+            }
+            cpPtr[i + 1] = c;
+        }
+        // Состояние без исключения попадает в связи только через производную
+        fillPtr = new int[couplingCount + 1];
+        keptDst = new int[couplingCount];
+        for (c = 0; c < couplingCount; c++) {
+            final int k = cpPair[c];
+            fillPtr[c + 1] = fillPtr[c] + (dropState[k] ? xPtr[k + 1] - xPtr[k] : 0);
+        }
+        fillDst = new int[fillPtr[couplingCount]];
+        for (int i = 0; i < size; i++) {
+            for (c = cpPtr[i]; c < cpPtr[i + 1]; c++) {
+                final int k = cpPair[c];
+                if (dropState[k]) {
+                    int f = fillPtr[c];
+                    for (int e = xPtr[k]; e < xPtr[k + 1]; e++) {
+                        fillDst[f++] = reduced.indexOf(i, xCol[e]);
+                    }
+                } else {
+                    keptDst[c] = reduced.indexOf(i, reducedIndex[states[k]]);
+                }
+            }
+        }
+
+        invDd = new double[m];
+        factorX = new double[m];
+        coefXd = new double[m];
+        pivotX = new double[m];
+        xVal = new double[xPtr[m]];
+        cpD = new double[couplingCount];
+        cpX = new double[couplingCount];
+        rb = new double[size];
+        y = new double[size];
+        reducedLu = new SparseLU(size);
+        analyzedFor = a;
+    }
+
+    // Строка row ссылается из производных и переменных состояния только на пару k;
+    // строка производной - только на dX_k и X_k, без узлов и источников
+    private boolean onlyOwnPair(SparseMatrix a, int row, int k, int[] pairOf, boolean pairOnly) {
+        for (int p = a.rowPtr[row]; p < a.rowPtr[row + 1]; p++) {
+            final int owner = pairOf[a.colIdx[p]];
+            if (owner >= 0 ? owner != k : pairOnly) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,201 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.exceptions.ConvergenceException;
+
+import java.util.Arrays;
+
+/*
+ * Режим по постоянному току для начальных условий переходного процесса
+ *
+ * Уравнения модели с бесконечной gamma: производные переменных состояния
+ * равны нулю, конденсаторы разомкнуты, катушки замкнуты. Метод Ньютона
+ * полный (матрица Якоби пересчитывается на каждой итерации) с ограничением
+ * напряжений p-n переходов. В уравнения узлов добавлена проводимость gmin
+ * на землю, для нее портрет матрицы модели дополнен диагональю узлов.
+ * Если метод Ньютона из нулевого приближения не сходится, решение ищется
+ * продолжением по параметру: сначала уменьшением gmin от DC_GMIN_START,
+ * затем включением источников от нуля. СЛАУ решается с выбором ведущего
+ * элемента, так как матрица по постоянному току хуже обусловлена.
+ * Экземпляр хранит рабочие буферы и не потокобезопасен
+ * */
+public final class DcOperatingPoint {
+    private final CircuitModel model;
+    private final int n;
+    private final int[] nodes;
+
+    // Матрица модели и она же с диагональю узлов: map[k] - позиция k-го элемента
+    private final SparseMatrix modelJacobi;
+    private final SparseMatrix jacobi;
+    private final int[] map;
+    private final int[] gminSlots;
+    private final LinearSolver linearSolver;
+
+    private final double[] vector;
+    private final double[] deltas;
+    private final double[] solution;
+    private final double[] accepted;
+
+    // Ограничение приращений напряжений p-n переходов (CircuitModel.limitStep)
+    public boolean junctionLimiting = true;
+
+    // Статистика последнего расчета
+    private int iterations = 0;
+    private int gminSteps = 0;
+    private int sourceSteps = 0;
+
+    public DcOperatingPoint(CircuitModel model) {
+        this.model = model;
+        this.n = model.size();
+        this.nodes = model.potentialIndices();
+        this.modelJacobi = model.createJacobiMatrix();
+
+        boolean[] gmin = new boolean[n];
+        for (int i : nodes) gmin[i] = true;
+        int[] rowPtr = new int[n + 1];
+        int[] colIdx = new int[modelJacobi.nnz() + nodes.length];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            boolean diagonal = !gmin[i];
+            for (int k = modelJacobi.rowPtr[i]; k < modelJacobi.rowPtr[i + 1]; k++) {
+                final int j = modelJacobi.colIdx[k];
+                if (!diagonal && j >= i) {
+                    if (j > i) colIdx[pos++] = i;
+                    diagonal = true;
+                }
+                colIdx[pos++] = j;
+            }
+            if (!diagonal) colIdx[pos++] = i;
+            rowPtr[i + 1] = pos;
+        }
+        this.jacobi = new SparseMatrix(n, rowPtr, Arrays.copyOf(colIdx, pos));
+
+        this.map = new int[modelJacobi.nnz()];
+        for (int i = 0; i < n; i++) {
+            for (int k = modelJacobi.rowPtr[i]; k < modelJacobi.rowPtr[i + 1]; k++) {
+                map[k] = jacobi.indexOf(i, modelJacobi.colIdx[k]);
+            }
+        }
+        this.gminSlots = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) gminSlots[i] = jacobi.indexOf(nodes[i], nodes[i]);
+
+        this.linearSolver = LinearSolver.of(LinearSolverKind.SPARSE, n);
+        this.vector = new double[n];
+        this.deltas = new double[n];
+        this.solution = new double[n];
+        this.accepted = new double[n];
+    }
+
+    // Итерации метода Ньютона, включая ступени продолжения
+    public int iterations() {
+        return iterations;
+    }
+
+    // Решенные ступени уменьшения gmin
+    public int gminSteps() {
+        return gminSteps;
+    }
+
+    // Решенные ступени включения источников
+    public int sourceSteps() {
+        return sourceSteps;
+    }
+
+    // Режим по постоянному току при значениях источников в момент t
+    public double[] solve(double t) {
+        iterations = 0;
+        gminSteps = 0;
+        sourceSteps = 0;
+
+        Arrays.fill(solution, 0.0);
+        if (newtonMethod(t, Data.DC_GMIN, 1.0)) return solution.clone();
+        if (gminStepping(t)) return solution.clone();
+        if (sourceStepping(t)) return solution.clone();
+        throw new ConvergenceException("DC operating point did not converge");
+    }
+
+    // Продолжение по gmin: каждая ступень начинается с решения предыдущей,
+    // при неудаче ступень дробится
+    private boolean gminStepping(double t) {
+        Arrays.fill(accepted, 0.0);
+        double gmin = Data.DC_GMIN_START;
+        double factor = Data.DC_GMIN_FACTOR;
+        double acceptedGmin = Double.NaN;
+
+        while (true) {
+            System.arraycopy(accepted, 0, solution, 0, n);
+            if (newtonMethod(t, gmin, 1.0)) {
+                gminSteps++;
+                if (gmin <= Data.DC_GMIN) return true;
+                System.arraycopy(solution, 0, accepted, 0, n);
+                acceptedGmin = gmin;
+                gmin = Math.max(gmin / factor, Data.DC_GMIN);
+            } else {
+                if (Double.isNaN(acceptedGmin)) return false;
+                factor = Math.sqrt(factor);
+                if (factor < 1.0 + 1e-3) return false;
+                gmin = Math.max(acceptedGmin / factor, Data.DC_GMIN);
+            }
+        }
+    }
+
+    // Продолжение по множителю источников от нуля до единицы
+    private boolean sourceStepping(double t) {
+        Arrays.fill(solution, 0.0);
+        if (!newtonMethod(t, Data.DC_GMIN, 0.0)) return false;
+        System.arraycopy(solution, 0, accepted, 0, n);
+        double scale = 0.0;
+        double step = Data.DC_SOURCE_STEP;
+
+        while (true) {
+            final double next = Math.min(scale + step, 1.0);
+            System.arraycopy(accepted, 0, solution, 0, n);
+            if (newtonMethod(t, Data.DC_GMIN, next)) {
+                sourceSteps++;
+                if (next == 1.0) return true;
+                System.arraycopy(solution, 0, accepted, 0, n);
+                scale = next;
+                step *= 2.0;
+            } else {
+                step /= 2.0;
+                if (step < Data.DC_MIN_SOURCE_STEP) return false;
+            }
+        }
+    }
+
+    // Полный метод Ньютона из приближения в solution
+    private boolean newtonMethod(double t, double gmin, double sourceScale) {
+        int limitedSteps = 0;
+        for (int it = 0; it < Data.DC_NEWTON_STEPS; it++) {
+            iterations++;
+            fillJacobiMatrix(gmin);
+            if (!linearSolver.factor(jacobi)) return false;
+
+            model.fillDcVector(vector, t, sourceScale, solution);
+            for (int i : nodes) vector[i] += gmin * solution[i];
+            for (int i = 0; i < n; i++) vector[i] = -vector[i];
+            linearSolver.solve(vector, deltas);
+
+            double factor = 1.0;
+            if (junctionLimiting && limitedSteps < Data.LIMITED_NEWTON_STEPS) {
+                factor = model.limitStep(solution, deltas);
+                if (factor < 1.0) limitedSteps++;
+            }
+            for (int i = 0; i < n; i++) solution[i] += factor * deltas[i];
+
+            final double norm = model.calculateVectorNorm(deltas);
+            if (!Double.isFinite(norm)) return false;
+            if (factor == 1.0 && norm < Data.EPSILON) return true;
+        }
+        return false;
+    }
+
+    private void fillJacobiMatrix(double gmin) {
+        model.fillJacobiMatrix(modelJacobi, Double.POSITIVE_INFINITY, solution);
+        final double[] values = jacobi.values;
+        Arrays.fill(values, 0.0);
+        for (int k = 0; k < map.length; k++) values[map[k]] = modelJacobi.values[k];
+        for (int slot : gminSlots) values[slot] += gmin;
+    }
+}
@@ -0,0 +1,35 @@
+package ru.bmstu.mimapr.numerics;
+
+import java.util.Arrays;
+
+// Плотное LU-разложение без выбора ведущего элемента, совпадает с методом Гаусса
+public final class DenseLuSolver implements LinearSolver {
+    private final double[][] lu;
+    private final double[][] dense;
+
+    public DenseLuSolver(int n) {
+        this.lu = new double[n][n];
+        this.dense = new double[n][n];
+    }
+
+    @Override
+    public boolean factor(double[][] a) {
+        return LinearAlgebra.luDecompose(a, lu);
+    }
+
+    @Override
+    public boolean factor(SparseMatrix a) {
+        for (int i = 0; i < a.n; i++) {
+            Arrays.fill(dense[i], 0.0);
+            for (int k = a.rowPtr[i]; k < a.rowPtr[i + 1]; k++) {
+                dense[i][a.colIdx[k]] = a.values[k];
+            }
+        }
+        return LinearAlgebra.luDecompose(dense, lu);
+    }
+
+    @Override
+    public void solve(double[] b, double[] x) {
+        LinearAlgebra.luSolve(lu, b, x);
+    }
+}
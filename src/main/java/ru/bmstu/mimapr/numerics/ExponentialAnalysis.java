@@ -0,0 +1,362 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.exceptions.TimeStepException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Экспоненциальное интегрирование переходного процесса
+ *
+ * Схема записывается как X' = F(X, t) по переменным состояния (StateSpace)
+ * и делится на линейную часть A X + c(t) и нелинейную поправку
+ * N(X) = F(X, t) - A X - c(t), где A = dF/dX в нулевой точке и c(t) = F(0, t).
+ * В N остается только отклонение диодов от их линеаризации в нуле. Шаг h:
+ *   X_(n+1) = e^(hA) X_n + h phi1(hA) (c_n + N(X_(n+1))) + h phi2(hA) (c_(n+1) - c_n),
+ * phi1(z) = (e^z - 1) / z, phi2(z) = (e^z - 1 - z) / z^2. Линейная часть при линейных
+ * на шаге источниках интегрируется точно, поправка - неявно, как в неявной формуле
+ * Эйлера, методом Ньютона с матрицей I - h phi1(hA) dN/dX, которая пересчитывается
+ * на каждой итерации: открытый диод делает h dN/dX большим уже на малых шагах.
+ * Поправки ограничиваются по напряжениям p-n переходов (CircuitModel.limitStep).
+ * Погрешность шага - сумма погрешности поправки h (phi1 - phi2) (N_(n+1) - N_n)
+ * и линейной интерполяции источников 2/3 h phi1(hA) (c(t + h/2) - (c_n + c_(n+1)) / 2)
+ * в допусках RELATIVE_TOLERANCE/ABSOLUTE_TOLERANCE по переменным состояния.
+ * Шаг начинается с START_DELTA_TIME и только удваивается (если оценка для удвоенного
+ * шага, в 4 раза большая, не больше STEP_SAFETY) или делится пополам, поэтому длины
+ * шагов образуют небольшой набор. Матрицы e^(hA), h phi1(hA), h phi2(hA) хранятся
+ * в кэше по длине шага не больше чем для cacheSize длин с вытеснением давно не
+ * использованных. Они вычисляются одной экспонентой блочной матрицы
+ * [[hA, I, 0], [0, 0, I], [0, 0, 0]], верхняя строка блоков которой -
+ * [e^(hA), phi1(hA), phi2(hA)]
+ * */
+public final class ExponentialAnalysis {
+    // Матрицы шага одной длины
+    private static final class Propagator {
+        final double[][] exp;
+        final double[][] phi1;
+        final double[][] phi2;
+
+        Propagator(double[][] a, double h) {
+            final int m = a.length;
+            double[][] block = new double[3 * m][3 * m];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < m; j++) block[i][j] = h * a[i][j];
+                block[i][m + i] = 1.0;
+                block[m + i][2 * m + i] = 1.0;
+            }
+            double[][] e = LinearAlgebra.exp(block);
+            exp = new double[m][m];
+            phi1 = new double[m][m];
+            phi2 = new double[m][m];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < m; j++) {
+                    exp[i][j] = e[i][j];
+                    phi1[i][j] = h * e[i][m + j];
+                    phi2[i][j] = h * e[i][2 * m + j];
+                }
+            }
+        }
+    }
+
+    private final CircuitModel model;
+    private final StateSpace space;
+    private final int n;
+    private final int m;
+    private final int[] states;
+    private final int[] derivatives;
+
+    // Линейная часть dF/dX в нулевой точке
+    private final double[][] a;
+    private final double[][] sensitivity;
+    private final double[][] jacobian;
+    private final double[][] newtonMatrix;
+    private final LinearSolver newtonSolver;
+
+    // Кэш матриц шага по его длине в порядке последнего обращения
+    public int cacheSize = Data.EXPONENTIAL_CACHE_SIZE;
+    private final Map<Double, Propagator> cache;
+
+    // Точки вывода интерполируются линейно между принятыми шагами
+    public boolean denseOutput = Data.DENSE_OUTPUT;
+
+    // Текущая точка: полный вектор неизвестных, c(t) и N(X)
+    private double t = Data.TIME_START - Data.START_DELTA_TIME;
+    private double deltaT = Data.START_DELTA_TIME;
+    private double[] x;
+    private double[] xNext;
+    // Вектор неизвестных при X = 0 для c(t)
+    private final double[] zero;
+    private double[] c;
+    private double[] cNext;
+    private final double[] cMid;
+    private double[] nonlinear;
+    private double[] nonlinearNext;
+    private final double[] base;
+    private final double[] residual;
+    private final double[] step;
+    private final double[] deltas;
+    private final double[] interpolated;
+    private boolean initialized = false;
+    private double nextSaveT = Data.TIME_START;
+
+    private long acceptedSteps = 0;
+    private long rejectedSteps = 0;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private long cacheEvictions = 0;
+    private long elapsedNanos = 0;
+
+    public ExponentialAnalysis(CircuitModel model) {
+        this.model = model;
+        this.space = new StateSpace(model);
+        this.n = model.size();
+        this.m = model.stateCount();
+        this.states = IntegrationMethod.stateIndices(model);
+        this.derivatives = IntegrationMethod.derivativeIndices(model);
+        this.sensitivity = new double[m][n];
+        this.jacobian = new double[m][m];
+        this.newtonMatrix = new double[m][m];
+        this.newtonSolver = LinearSolver.of(LinearSolverKind.SPARSE, m);
+
+        this.zero = new double[n];
+        this.a = new double[m][m];
+        if (!space.solve(Data.TIME_START, zero) || !space.jacobian(zero, sensitivity, a)) {
+            throw new IllegalArgumentException("circuit has no consistent state");
+        }
+        this.cache =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Double, Propagator> eldest) {
+                        if (size() <= cacheSize) return false;
+                        cacheEvictions++;
+                        return true;
+                    }
+                };
+
+        this.x = new double[n];
+        this.xNext = new double[n];
+        this.c = new double[m];
+        this.cNext = new double[m];
+        this.cMid = new double[m];
+        this.nonlinear = new double[m];
+        this.nonlinearNext = new double[m];
+        this.base = new double[m];
+        this.residual = new double[m];
+        this.step = new double[m];
+        this.deltas = new double[n];
+        this.interpolated = new double[n];
+    }
+
+    public long acceptedSteps() {
+        return acceptedSteps;
+    }
+
+    // Шаги, отброшенные по погрешности или из-за расходимости метода Ньютона
+    public long rejectedSteps() {
+        return rejectedSteps;
+    }
+
+    public long cacheHits() {
+        return cacheHits;
+    }
+
+    // Вычисленные экспоненты: первые обращения к длине шага и повторные после вытеснения
+    public long cacheMisses() {
+        return cacheMisses;
+    }
+
+    public long cacheEvictions() {
+        return cacheEvictions;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // Начало расчета из решения x0 в момент t0 вместо нулевых начальных условий
+    public void start(double t0, double[] x0) {
+        if (x0.length != n) {
+            throw new IllegalArgumentException("initial point does not match the circuit size");
+        }
+        t = t0;
+        deltaT = Data.START_DELTA_TIME;
+        nextSaveT = t0 + Data.START_DELTA_TIME;
+        System.arraycopy(x0, 0, x, 0, n);
+        initialized = false;
+    }
+
+    public void run(double timeEnd, TransientAnalysis.SampleSink sink) throws IOException {
+        final long begin = System.nanoTime();
+        if (!initialized) {
+            if (!space.solve(t, x)) {
+                throw new IllegalArgumentException("inconsistent initial state");
+            }
+            if (!input(t, c)) {
+                throw new IllegalArgumentException("circuit has no consistent state at zero");
+            }
+            nonlinearPart(x, c, nonlinear);
+            initialized = true;
+        }
+        while (t < timeEnd) {
+            final double h = deltaT;
+            final Propagator p = propagator(h);
+            final double error = step(p, h);
+            if (!(error <= 1.0)) {
+                rejectedSteps++;
+                deltaT = h / 2.0;
+                if (deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                continue;
+            }
+            acceptedSteps++;
+            if (4.0 * error <= Data.STEP_SAFETY && 2.0 * h <= Data.MAXIMAL_STEP) deltaT = 2.0 * h;
+
+            final double tNext = t + h;
+            emit(tNext, sink);
+            t = tNext;
+            double[] tmp = x;
+            x = xNext;
+            xNext = tmp;
+            tmp = c;
+            c = cNext;
+            cNext = tmp;
+            tmp = nonlinear;
+            nonlinear = nonlinearNext;
+            nonlinearNext = tmp;
+        }
+        elapsedNanos += System.nanoTime() - begin;
+    }
+
+    // Шаг h из текущей точки в xNext. Возвращает взвешенную оценку погрешности,
+    // бесконечность - метод Ньютона не сошелся
+    private double step(Propagator p, double h) {
+        final double tNext = t + h;
+        if (!input(tNext, cNext) || !input(t + 0.5 * h, cMid)) return Double.POSITIVE_INFINITY;
+        for (int k = 0; k < m; k++) {
+            double sum = 0.0;
+            for (int j = 0; j < m; j++) {
+                sum += p.exp[k][j] * x[states[j]];
+                sum += p.phi1[k][j] * c[j];
+                sum += p.phi2[k][j] * (cNext[j] - c[j]);
+            }
+            base[k] = sum;
+        }
+
+        // Начальное приближение - поправка по началу шага
+        System.arraycopy(x, 0, xNext, 0, n);
+        for (int k = 0; k < m; k++) {
+            double sum = base[k];
+            for (int j = 0; j < m; j++) sum += p.phi1[k][j] * nonlinear[j];
+            xNext[states[k]] = sum;
+        }
+
+        // Ограниченная по напряжениям p-n переходов итерация не расходует число
+        // итераций (не больше LIMITED_NEWTON_STEPS таких), после нее матрица
+        // пересчитывается в новой точке
+        boolean converged = false;
+        int limitedSteps = 0;
+        for (int it = 0; it < Data.NEWTON_STEPS && !converged; it++) {
+            if (!space.solve(tNext, xNext)) return Double.POSITIVE_INFINITY;
+            if (!factorNewtonMatrix(p)) return Double.POSITIVE_INFINITY;
+            nonlinearPart(xNext, cNext, nonlinearNext);
+            for (int k = 0; k < m; k++) {
+                double sum = xNext[states[k]] - base[k];
+                for (int j = 0; j < m; j++) sum -= p.phi1[k][j] * nonlinearNext[j];
+                residual[k] = -sum;
+            }
+            newtonSolver.solve(residual, step);
+            for (int k = 0; k < m; k++) deltas[states[k]] = step[k];
+            if (limitedSteps < Data.LIMITED_NEWTON_STEPS) {
+                final double factor = model.limitStep(xNext, deltas);
+                if (factor < 1.0) {
+                    for (int k = 0; k < m; k++) xNext[states[k]] += factor * step[k];
+                    limitedSteps++;
+                    it--;
+                    continue;
+                }
+            }
+            for (int k = 0; k < m; k++) xNext[states[k]] += step[k];
+            converged = model.calculateVectorNorm(deltas) < Data.EPSILON;
+        }
+        if (!converged || !space.solve(tNext, xNext)) return Double.POSITIVE_INFINITY;
+        nonlinearPart(xNext, cNext, nonlinearNext);
+
+        double error = 0.0;
+        for (int k = 0; k < m; k++) {
+            double sum = 0.0;
+            for (int j = 0; j < m; j++) {
+                sum += (p.phi1[k][j] - p.phi2[k][j]) * (nonlinearNext[j] - nonlinear[j]);
+                sum += 2.0 / 3.0 * p.phi1[k][j] * (cMid[j] - 0.5 * (c[j] + cNext[j]));
+            }
+            final int i = states[k];
+            final double tolerance =
+                    Data.ABSOLUTE_TOLERANCE
+                            + Data.RELATIVE_TOLERANCE
+                                    * Math.max(Math.abs(xNext[i]), Math.abs(x[i]));
+            error = Math.max(error, Math.abs(sum) / tolerance);
+        }
+        return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+    }
+
+    // I - h phi1(hA) (dF/dX - A) в точке xNext
+    private boolean factorNewtonMatrix(Propagator p) {
+        if (!space.jacobian(xNext, sensitivity, jacobian)) return false;
+        for (int k = 0; k < m; k++) {
+            for (int j = 0; j < m; j++) {
+                double sum = (k == j) ? 1.0 : 0.0;
+                for (int l = 0; l < m; l++) sum -= p.phi1[k][l] * (jacobian[l][j] - a[l][j]);
+                newtonMatrix[k][j] = sum;
+            }
+        }
+        return newtonSolver.factor(newtonMatrix);
+    }
+
+    // c(t) = F(0, t). Неизвестные при X = 0 с прошлого вызова - начальное приближение,
+    // после отброшенного шага оно может быть далеко, тогда повтор от нулей
+    private boolean input(double time, double[] out) {
+        if (!space.solve(time, zero)) {
+            Arrays.fill(zero, 0.0);
+            if (!space.solve(time, zero)) return false;
+        }
+        for (int k = 0; k < m; k++) out[k] = zero[derivatives[k]];
+        return true;
+    }
+
+    // N(X) = F(X, t) - A X - c(t) по согласованному вектору неизвестных xs
+    private void nonlinearPart(double[] xs, double[] input, double[] out) {
+        for (int k = 0; k < m; k++) {
+            double sum = xs[derivatives[k]] - input[k];
+            for (int j = 0; j < m; j++) sum -= a[k][j] * xs[states[j]];
+            out[k] = sum;
+        }
+    }
+
+    private Propagator propagator(double h) {
+        Propagator p = cache.get(h);
+        if (p != null) {
+            cacheHits++;
+            return p;
+        }
+        cacheMisses++;
+        p = new Propagator(a, h);
+        cache.put(h, p);
+        return p;
+    }
+
+    // Точки вывода из сетки SAVE_DT на принятом шаге до tNext
+    private void emit(double tNext, TransientAnalysis.SampleSink sink) throws IOException {
+        while (tNext >= nextSaveT) {
+            if (!denseOutput) {
+                sink.sample(nextSaveT, xNext);
+            } else {
+                final double w = (nextSaveT - t) / (tNext - t);
+                for (int i = 0; i < n; i++) interpolated[i] = x[i] + w * (xNext[i] - x[i]);
+                sink.sample(nextSaveT, interpolated);
+            }
+            nextSaveT += Data.SAVE_DT;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+
+/*
+ * Неявная формула интегрирования в виде dX = (X - h) / gamma
+ *
+ * Слагаемые h и коэффициент gamma вычисляются по истории принятых шагов,
+ * поэтому модель схемы и метод Ньютона от формулы не зависят.
+ * Экземпляр хранит историю одного расчета и не потокобезопасен
+ * */
+public interface IntegrationMethod {
+    IntegrationMethodKind kind();
+
+    // Порядок точности p
+    int order();
+
+    // Модуль константы главного члена локальной погрешности C * deltaT^(p+1) * x^(p+1)
+    double errorConstant();
+
+    // Коэффициент gamma для шага deltaT, history заполняется слагаемыми h
+    double prepare(double deltaT, double[] history);
+
+    // Сохранение в истории принятого шага deltaT с решением x
+    void accept(double deltaT, double[] x);
+
+    // Начало расчета из согласованного решения x (режим по постоянному току,
+    // периодический режим) вместо нулевых начальных условий
+    void initialize(double[] x);
+
+    // История в виде плоского массива для контрольной точки
+    double[] saveState();
+
+    void restoreState(double[] state);
+
+    static IntegrationMethod of(IntegrationMethodKind kind, CircuitModel model) {
+        return switch (kind) {
+            case BACKWARD_EULER -> new BackwardEuler(model);
+            case TRAPEZOIDAL -> new TrapezoidalRule(model);
+            case BDF2 -> new Bdf2(model);
+        };
+    }
+
+    // Положения переменных состояния в векторе неизвестных
+    static int[] stateIndices(CircuitModel model) {
+        int[] idx = new int[model.stateCount()];
+        for (int k = 0; k < idx.length; k++) idx[k] = model.stateIndex(k);
+        return idx;
+    }
+
+    // Положения производных переменных состояния
+    static int[] derivativeIndices(CircuitModel model) {
+        int[] idx = new int[model.stateCount()];
+        for (int k = 0; k < idx.length; k++) idx[k] = model.derivativeIndex(k);
+        return idx;
+    }
+
+    static void checkStateLength(double[] state, int expected) {
+        if (state.length != expected) {
+            throw new IllegalArgumentException("integrator state does not match the circuit");
+        }
+    }
+}
@@ -7,21 +7,29 @@ import java.util.Arrays;
 public final class LinearAlgebra {
     private LinearAlgebra() {}
 
+    // Членов ряда Тейлора в exp: при норме не больше 1/2 остаток меньше 2^-17 / 17!
+    private static final int EXP_TAYLOR_TERMS = 16;
+
     // Метод Гаусса
     public static double[] gauss(double[][] aIn, double[] bIn) {
         final int n = bIn.length;
-        if (aIn.length != n) throw new MatrixDimensionException();
-        for (double[] row : aIn) {
-            if (row.length != n) throw new MatrixDimensionException();
-        }
+        double[] x = new double[n];
+        gauss(aIn, bIn, x, new double[n][n], new double[n]);
+        return x;
+    }
+
+    // Метод Гаусса без выделения памяти: исходные матрица и вектор копируются
+    // в рабочие буферы a и b, решение записывается в x
+    public static void gauss(double[][] aIn, double[] bIn, double[] x, double[][] a, double[] b) {
+        final int n = bIn.length;
+        checkDimensions(aIn, n);
+        checkDimensions(a, n);
+        if (x.length != n || b.length != n) throw new MatrixDimensionException();
 
-        double[][] a = new double[n][n];
         for (int i = 0; i < n; i++) {
-            a[i] = Arrays.copyOf(aIn[i], n);
+            System.arraycopy(aIn[i], 0, a[i], 0, n);
         }
-        double[] b = Arrays.copyOf(bIn, n);
-
-        double[] x = new double[n];
+        System.arraycopy(bIn, 0, b, 0, n);
 
         for (int j = 0; j < n - 1; ++j) {
             final double ajj = a[j][j];
@@ -41,7 +49,127 @@ public final class LinearAlgebra {
             }
             x[i] = (b[i] - sum) / a[i][i];
         }
+    }
 
-        return x;
+    // LU-разложение без выбора ведущего элемента (как и в gauss).
+    // Множители L хранятся под диагональю lu, U - на диагонали и выше.
+    // Возвращает false, если встретился нулевой или нечисловой ведущий элемент
+    public static boolean luDecompose(double[][] aIn, double[][] lu) {
+        final int n = aIn.length;
+        checkDimensions(aIn, n);
+        checkDimensions(lu, n);
+
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(aIn[i], 0, lu[i], 0, n);
+        }
+
+        for (int j = 0; j < n - 1; ++j) {
+            final double ajj = lu[j][j];
+            if (ajj == 0.0 || !Double.isFinite(ajj)) return false;
+            for (int i = j + 1; i < n; ++i) {
+                final double coeff = lu[i][j] / ajj;
+                for (int k = j + 1; k < n; ++k) {
+                    lu[i][k] -= coeff * lu[j][k];
+                }
+                lu[i][j] = coeff;
+            }
+        }
+        final double last = lu[n - 1][n - 1];
+        return last != 0.0 && Double.isFinite(last);
+    }
+
+    // Решение по готовому LU-разложению: прямой и обратный ход на месте в x.
+    // Порядок операций совпадает с gauss, поэтому результаты совпадают побитово
+    public static void luSolve(double[][] lu, double[] b, double[] x) {
+        final int n = b.length;
+        if (lu.length != n || x.length != n) throw new MatrixDimensionException();
+
+        System.arraycopy(b, 0, x, 0, n);
+
+        for (int i = 1; i < n; ++i) {
+            final double[] row = lu[i];
+            double xi = x[i];
+            for (int j = 0; j < i; ++j) {
+                xi -= row[j] * x[j];
+            }
+            x[i] = xi;
+        }
+
+        for (int i = n - 1; i >= 0; --i) {
+            final double[] row = lu[i];
+            double sum = 0.0;
+            for (int ind = n - 1; ind >= i + 1; --ind) {
+                sum += row[ind] * x[ind];
+            }
+            x[i] = (x[i] - sum) / row[i];
+        }
+    }
+
+    // Экспонента плотной матрицы: ряд Тейлора для a / 2^s с нормой не больше 1/2,
+    // затем s возведений в квадрат. Затухающие составляющие при возведении
+    // в квадрат не усиливаются, поэтому метод пригоден и для жестких матриц
+    public static double[][] exp(double[][] a) {
+        final int n = a.length;
+        checkDimensions(a, n);
+        double norm = 0.0;
+        for (double[] row : a) {
+            double sum = 0.0;
+            for (double v : row) sum += Math.abs(v);
+            norm = Math.max(norm, sum);
+        }
+        if (!Double.isFinite(norm)) throw new IllegalArgumentException("matrix is not finite");
+        int squarings = 0;
+        double scale = 1.0;
+        while (norm * scale > 0.5) {
+            scale *= 0.5;
+            squarings++;
+        }
+
+        double[][] result = new double[n][n];
+        double[][] term = new double[n][n];
+        double[][] next = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            result[i][i] = 1.0;
+            term[i][i] = 1.0;
+        }
+        for (int k = 1; k <= EXP_TAYLOR_TERMS; k++) {
+            multiply(term, a, next);
+            final double factor = scale / k;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    term[i][j] = next[i][j] * factor;
+                    result[i][j] += term[i][j];
+                }
+            }
+        }
+        for (int s = 0; s < squarings; s++) {
+            multiply(result, result, next);
+            double[][] tmp = result;
+            result = next;
+            next = tmp;
+        }
+        return result;
+    }
+
+    // c = a * b для квадратных матриц, c не совпадает с a и b
+    private static void multiply(double[][] a, double[][] b, double[][] c) {
+        final int n = a.length;
+        for (int i = 0; i < n; i++) {
+            final double[] ci = c[i];
+            Arrays.fill(ci, 0.0);
+            for (int k = 0; k < n; k++) {
+                final double aik = a[i][k];
+                if (aik == 0.0) continue;
+                final double[] bk = b[k];
+                for (int j = 0; j < n; j++) ci[j] += aik * bk[j];
+            }
+        }
+    }
+
+    private static void checkDimensions(double[][] a, int n) {
+        if (a.length != n) throw new MatrixDimensionException();
+        for (double[] row : a) {
+            if (row.length != n) throw new MatrixDimensionException();
+        }
     }
 }
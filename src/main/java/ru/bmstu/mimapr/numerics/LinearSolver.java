@@ -0,0 +1,30 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.LinearSolverKind;
+
+/*
+ * Решатель СЛАУ с разделением на разложение и решение
+ *
+ * Одно разложение используется для нескольких правых частей
+ * */
+public interface LinearSolver {
+    // Разложение матрицы. false - матрица вырождена для данного решателя
+    boolean factor(double[][] a);
+
+    // Разложение разреженной матрицы
+    boolean factor(SparseMatrix a);
+
+    // Решение по последнему успешному разложению
+    void solve(double[] b, double[] x);
+
+    static LinearSolver of(LinearSolverKind kind, int n) {
+        return switch (kind) {
+            case DENSE -> new DenseLuSolver(n);
+            case SPARSE -> new SparseLuSolver(n);
+            case CONDENSED ->
+                    throw new IllegalArgumentException(
+                            "condensed solver needs the model layout,"
+                                    + " use CircuitModel.createLinearSolver");
+        };
+    }
+}
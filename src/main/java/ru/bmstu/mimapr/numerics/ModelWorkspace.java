@@ -0,0 +1,88 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.metrics.SolverMetrics;
+
+/*
+ * Рабочая память метода Ньютона для произвольной модели схемы
+ *
+ * Аналог SolverWorkspace с плоскими векторами размерности модели.
+ * Экземпляр не потокобезопасен: на каждый поток расчета нужен свой
+ * */
+public final class ModelWorkspace {
+    public final int n;
+
+    // Матрица Якоби в формате CSR и вектор невязок
+    public final SparseMatrix jacobi;
+    public final double[] vector;
+
+    // Вектор поправок
+    public final double[] deltas;
+
+    // Текущая аппроксимация, после успешного решения - результат
+    public final double[] solution;
+
+    // Пробная точка дробления поправки и невязка в ней
+    final double[] trial;
+    final double[] trialVector;
+    // Строки формул интегрирования: их невязка при проверке домножается на шаг
+    final boolean[] integrationRows;
+
+    // Решатель СЛАУ, хранит разложение матрицы Якоби
+    public final LinearSolver linearSolver;
+
+    // Модифицированный метод Ньютона: разложение переиспользуется между шагами,
+    // пока элементы матрицы Якоби меняются не больше чем на diodeTolerance
+    public boolean modifiedNewton = Data.MODIFIED_NEWTON;
+    public double diodeTolerance = Data.DIODE_TOLERANCE;
+
+    // Ограничение приращений напряжений p-n переходов на итерациях (CircuitModel.limitStep)
+    public boolean junctionLimiting = Data.JUNCTION_LIMITING;
+
+    // Метод Ньютона с контролем скорости сходимости: досрочный отказ при расходимости,
+    // проверка невязки и дробление поправки (NewtonSolver)
+    public boolean adaptiveNewton = Data.ADAPTIVE_NEWTON;
+
+    // Наибольший коэффициент сжатия поправок последнего решения, 0 - одна итерация.
+    // Заполняется только при adaptiveNewton
+    public double contractionRate = 0.0;
+
+    // Значения матрицы, по которым получено текущее разложение
+    final double[] factoredValues;
+    boolean luValid = false;
+    double luGamma = 0.0;
+
+    // Статистика: число LU-разложений и решений СЛАУ за прогон
+    public long factorizations = 0;
+    public long solves = 0;
+    // Итерации, на которых поправка была ограничена
+    public long limitedIterations = 0;
+    // Досрочные отказы метода Ньютона и итерации с дроблением поправки (adaptiveNewton)
+    public long newtonAborts = 0;
+    public long dampedIterations = 0;
+
+    // Подробная статистика с замером времени, null - сбор выключен
+    public SolverMetrics metrics = null;
+
+    public ModelWorkspace(CircuitModel model, LinearSolverKind kind) {
+        this.n = model.size();
+        this.jacobi = model.createJacobiMatrix();
+        this.vector = new double[n];
+        this.deltas = new double[n];
+        this.solution = new double[n];
+        this.trial = new double[n];
+        this.trialVector = new double[n];
+        this.integrationRows = new boolean[n];
+        for (int k = 0; k < model.stateCount(); k++) {
+            integrationRows[model.derivativeIndex(k)] = true;
+        }
+        this.linearSolver = model.createLinearSolver(kind);
+        this.factoredValues = new double[jacobi.nnz()];
+    }
+
+    // Разложения, которые сэкономлены по сравнению с методом Гаусса на каждой итерации
+    public long savedFactorizations() {
+        return solves - factorizations;
+    }
+}
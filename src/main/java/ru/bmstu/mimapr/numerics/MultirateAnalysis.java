@@ -0,0 +1,513 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.exceptions.TimeStepException;
+import ru.bmstu.mimapr.model.TimeDemon;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Многоскоростной расчет переходного процесса
+ *
+ * Неизвестные делятся на быстрые и медленные по постоянным времени переменных
+ * состояния в нулевой точке: tau_k = 1 / |dX'_k/dX_k| при остальных переменных
+ * состояния замороженных. Быстрые переменные состояния - те, что ниже наибольшего
+ * разрыва постоянных времени, если он не меньше MULTIRATE_SEPARATION раз;
+ * вместе с ними быстрыми считаются их производные и потенциалы узлов, чувствительность
+ * которых к быстрым переменным состояния больше MULTIRATE_COUPLING.
+ * Медленный шаг H решает всю систему, а локальная погрешность оценивается только по
+ * медленным переменным состояния и потенциалам, поэтому быстрая часть шаг не ограничивает.
+ * Затем быстрые неизвестные пересчитываются на [t, t + H] своими шагами с выбором по
+ * локальной погрешности быстрых неизвестных: решаются только их строки и столбцы, а
+ * медленные неизвестные интерполируются линейно между точками медленных шагов.
+ * Точки вывода на сетке SAVE_DT берутся по быстрым шагам, при denseOutput -
+ * с линейной интерполяцией между ними.
+ * Без разрыва постоянных времени расчет совпадает с обычным выбором шага по погрешности
+ * */
+public final class MultirateAnalysis {
+    private final CircuitModel model;
+    private final LinearSolverKind kind;
+    public final ModelWorkspace workspace;
+    private final IntegrationMethod integrator;
+    private final IntegrationMethod fastIntegrator;
+    private final int n;
+
+    // Постоянные времени переменных состояния, бесконечность - производная от самой
+    // переменной не зависит
+    private final double[] timeConstants;
+    // Быстрые неизвестные: номера строк и столбцов подсистемы по возрастанию
+    private final int[] fast;
+    private final boolean[] isFast;
+    // Переменные состояния и потенциалы, по которым оцениваются медленные и быстрые шаги
+    private final int[] slowEstimated;
+    private final int[] fastEstimated;
+
+    // Подсистема быстрых неизвестных: ее элементы в полной матрице Якоби
+    private final SparseMatrix jacobi;
+    private final SparseMatrix fastJacobi;
+    private final int[] fastPositions;
+    private final SparseLU fastLu;
+    private final double[] vector;
+    private final double[] fastVector;
+    private final double[] fastDeltas;
+    private final double[] deltas;
+
+    // Шаги попадают в изломы и экстремумы ЭДС, как в TransientAnalysis
+    public boolean breakpoints = Data.BREAKPOINTS;
+
+    public boolean denseOutput = Data.DENSE_OUTPUT;
+
+    // Состояние медленных шагов. Шаги меняются на месте: step - копия только что
+    // сделанного медленного шага, sub и next - быстрый шаг и следующий за ним
+    private final TimeDemon timeDemon;
+    private final TimeDemon step;
+    private final TimeDemon sub;
+    private final TimeDemon next;
+    private double prevDeltaT;
+    private double prevPrevDeltaT;
+    private final double[] history;
+    private final double[] initialApproximation;
+    private double[] pvPrev;
+    private double[] pvPrevPrev;
+    private double[] pvPrev3;
+    private double prevT;
+    private final double[] coarse;
+    private final double[] merged;
+    private double nextSaveT;
+    private long acceptedSteps = 0;
+    private long rejectedSteps = 0;
+
+    // Состояние быстрых шагов, история непрерывна между медленными шагами
+    private double fastDeltaT = Data.START_DELTA_TIME;
+    private double fastPrevDeltaT = Data.START_DELTA_TIME;
+    private double fastPrevPrevDeltaT = Data.START_DELTA_TIME;
+    private final double[] fastHistory;
+    private final double[] fastApproximation;
+    private final double[] fastSolution;
+    private double[] fPrev;
+    private double[] fPrevPrev;
+    private double[] fPrev3;
+    private long fastAcceptedSteps = 0;
+    private long fastRejectedSteps = 0;
+
+    private double t0 = Data.TIME_START - Data.START_DELTA_TIME;
+    private double[] x0 = null;
+    private final double[] interpolated;
+    // Интерполированное решение в последней точке вывода не позже timeEnd
+    private final double[] lastSample;
+    private long elapsedNanos = 0;
+
+    // Тот же расчет обычным выбором шага по погрешности (runGlobal)
+    private long globalNanos = 0;
+    private long globalAcceptedSteps = 0;
+    private long globalRejectedSteps = 0;
+
+    public MultirateAnalysis(
+            CircuitModel model, LinearSolverKind kind, IntegrationMethodKind method) {
+        this.model = model;
+        this.kind = kind;
+        this.workspace = new ModelWorkspace(model, kind);
+        this.integrator = IntegrationMethod.of(method, model);
+        this.fastIntegrator = IntegrationMethod.of(method, model);
+        this.n = model.size();
+        final int m = model.stateCount();
+        this.jacobi = model.createJacobiMatrix();
+        this.vector = new double[n];
+        this.deltas = new double[n];
+
+        // Разбиение неизвестных
+        final double[][] sensitivity = new double[m][];
+        this.timeConstants = timeConstants(sensitivity);
+        final boolean[] fastState = fastStates(timeConstants);
+        this.isFast = new boolean[n];
+        for (int k = 0; k < m; k++) {
+            if (!fastState[k]) continue;
+            isFast[model.stateIndex(k)] = true;
+            isFast[model.derivativeIndex(k)] = true;
+            for (int i : model.potentialIndices()) {
+                if (Math.abs(sensitivity[k][i]) > Data.MULTIRATE_COUPLING) isFast[i] = true;
+            }
+        }
+        this.fast = StateSpace.indices(isFast, true);
+        final int[] potentials = model.potentialIndices();
+        final int[] estimated = new int[m + potentials.length];
+        for (int k = 0; k < m; k++) estimated[k] = model.stateIndex(k);
+        System.arraycopy(potentials, 0, estimated, m, potentials.length);
+        this.slowEstimated = Arrays.stream(estimated).filter(i -> !isFast[i]).toArray();
+        this.fastEstimated = Arrays.stream(estimated).filter(i -> isFast[i]).toArray();
+
+        this.fastJacobi = StateSpace.subMatrix(jacobi, fast, fast);
+        this.fastPositions = StateSpace.positions(jacobi, fastJacobi, fast, fast);
+        this.fastLu = new SparseLU(fast.length);
+        this.fastVector = new double[fast.length];
+        this.fastDeltas = new double[fast.length];
+        if (fast.length > 0) {
+            model.fillJacobiMatrix(jacobi, Data.START_DELTA_TIME, new double[n]);
+            gather(jacobi, fastJacobi, fastPositions);
+            if (!fastLu.factor(fastJacobi)) {
+                throw new IllegalArgumentException("fast partition of the circuit is singular");
+            }
+        }
+
+        this.timeDemon = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+        this.step = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+        this.sub = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+        this.next = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+        this.prevDeltaT = timeDemon.deltaT;
+        this.prevPrevDeltaT = timeDemon.deltaT;
+        this.history = new double[m];
+        this.initialApproximation = new double[n];
+        this.pvPrev = new double[n];
+        this.pvPrevPrev = new double[n];
+        this.pvPrev3 = new double[n];
+        this.prevT = t0;
+        this.coarse = new double[n];
+        this.merged = new double[n];
+        this.nextSaveT = Data.TIME_START;
+        this.fastHistory = new double[m];
+        this.fastApproximation = new double[n];
+        this.fastSolution = new double[n];
+        this.fPrev = new double[n];
+        this.fPrevPrev = new double[n];
+        this.fPrev3 = new double[n];
+        this.interpolated = new double[n];
+        this.lastSample = new double[n];
+    }
+
+    // Быстрые неизвестные: производные, переменные состояния и потенциалы
+    public int[] fastIndices() {
+        return fast.clone();
+    }
+
+    public double[] timeConstants() {
+        return timeConstants.clone();
+    }
+
+    public long acceptedSteps() {
+        return acceptedSteps;
+    }
+
+    public long rejectedSteps() {
+        return rejectedSteps;
+    }
+
+    public long fastAcceptedSteps() {
+        return fastAcceptedSteps;
+    }
+
+    public long fastRejectedSteps() {
+        return fastRejectedSteps;
+    }
+
+    // Разложения подсистемы быстрых неизвестных
+    public long fastFactorizations() {
+        return fastLu.factorizations;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long globalNanos() {
+        return globalNanos;
+    }
+
+    public long globalAcceptedSteps() {
+        return globalAcceptedSteps;
+    }
+
+    public long globalRejectedSteps() {
+        return globalRejectedSteps;
+    }
+
+    // Решение в последней точке вывода не позже timeEnd последнего расчета run,
+    // интерполированное независимо от denseOutput
+    public double[] lastSample() {
+        return lastSample.clone();
+    }
+
+    // Начало расчета из согласованного решения x0 в момент t0, как TransientAnalysis.start
+    public void start(double t0, double[] x0) {
+        if (x0.length != n) {
+            throw new IllegalArgumentException("initial point does not match the circuit size");
+        }
+        this.t0 = t0;
+        this.x0 = x0.clone();
+        integrator.initialize(x0);
+        fastIntegrator.initialize(x0);
+        timeDemon.set(t0 + Data.START_DELTA_TIME, Data.START_DELTA_TIME, true);
+        prevDeltaT = timeDemon.deltaT;
+        prevPrevDeltaT = timeDemon.deltaT;
+        nextSaveT = timeDemon.currT;
+        System.arraycopy(x0, 0, initialApproximation, 0, n);
+        System.arraycopy(x0, 0, pvPrev, 0, n);
+        System.arraycopy(x0, 0, pvPrevPrev, 0, n);
+        System.arraycopy(x0, 0, pvPrev3, 0, n);
+        System.arraycopy(x0, 0, fPrev, 0, n);
+        System.arraycopy(x0, 0, fPrevPrev, 0, n);
+        System.arraycopy(x0, 0, fPrev3, 0, n);
+        prevT = t0;
+        workspace.luValid = false;
+    }
+
+    public void run(double timeEnd, TransientAnalysis.SampleSink sink) throws IOException {
+        final long begin = System.nanoTime();
+        while (timeDemon.currT < timeEnd) {
+            if (breakpoints) {
+                TimeStepController.landOnBreakpoint(
+                        timeDemon, prevT, model.nextBreakpoint(prevT + Data.MINIMAL_STEP));
+            }
+            if (acceptedSteps > integrator.order()) {
+                TimeStepController.predictPhaseVariables(
+                        pvPrev,
+                        pvPrevPrev,
+                        pvPrev3,
+                        timeDemon.deltaT,
+                        prevDeltaT,
+                        prevPrevDeltaT,
+                        integrator.order(),
+                        initialApproximation);
+            }
+            final double gamma = integrator.prepare(timeDemon.deltaT, history);
+            if (!NewtonSolver.newtonMethod(
+                    model, timeDemon.currT, gamma, initialApproximation, history, workspace)) {
+                rejectedSteps++;
+                TimeStepController.resizeStep(timeDemon, timeDemon.deltaT / 2.0, true);
+                if (timeDemon.deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                continue;
+            }
+            System.arraycopy(workspace.solution, 0, coarse, 0, n);
+
+            step.copyFrom(timeDemon);
+            chooseDeltaT(timeDemon);
+            if (!timeDemon.success) {
+                rejectedSteps++;
+                if (timeDemon.deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                continue;
+            }
+            acceptedSteps++;
+
+            final double tBegin = step.currT - step.deltaT;
+            System.arraycopy(coarse, 0, merged, 0, n);
+            if (fast.length > 0) {
+                refine(tBegin, step.currT, timeEnd, sink);
+            } else {
+                emit(prevT, pvPrev, step.currT, merged, timeEnd, sink);
+            }
+
+            prevPrevDeltaT = prevDeltaT;
+            prevDeltaT = step.deltaT;
+            TimeStepController.predictPhaseVariables(merged, pvPrev, initialApproximation);
+            integrator.accept(step.deltaT, merged);
+
+            double[] tmp = pvPrev3;
+            pvPrev3 = pvPrevPrev;
+            pvPrevPrev = pvPrev;
+            pvPrev = tmp;
+            System.arraycopy(merged, 0, pvPrev, 0, n);
+            prevT = step.currT;
+        }
+        elapsedNanos = System.nanoTime() - begin;
+    }
+
+    // Тот же расчет всей системы обычным выбором шага по погрешности - для сравнения
+    // числа шагов и времени. Возвращает последнюю точку вывода не позже timeEnd,
+    // интерполированную по принятым шагам, чтобы сравнение не зависело от их положения
+    public double[] runGlobal(double timeEnd) throws IOException {
+        TransientAnalysis analysis = new TransientAnalysis(model, kind, integrator.kind());
+        analysis.progressOutput = false;
+        analysis.stepControl = StepControlKind.LTE;
+        analysis.breakpoints = breakpoints;
+        analysis.denseOutput = true;
+        analysis.workspace.junctionLimiting = workspace.junctionLimiting;
+        analysis.workspace.adaptiveNewton = workspace.adaptiveNewton;
+        if (x0 != null) analysis.start(t0, x0);
+
+        final double[] last = new double[n];
+        final long begin = System.nanoTime();
+        analysis.run(
+                timeEnd,
+                (t, x) -> {
+                    if (t <= timeEnd) System.arraycopy(x, 0, last, 0, n);
+                });
+        globalNanos = System.nanoTime() - begin;
+        globalAcceptedSteps = analysis.acceptedSteps();
+        globalRejectedSteps = analysis.rejectedSteps();
+        return last;
+    }
+
+    // Быстрые шаги на (tBegin, tEnd] при медленных неизвестных, линейных между
+    // pvPrev и coarse. Быстрые неизвестные конца отрезка записываются в merged
+    private void refine(
+            double tBegin, double tEnd, double timeEnd, TransientAnalysis.SampleSink sink)
+            throws IOException {
+        final double span = tEnd - tBegin;
+        final int order = fastIntegrator.order();
+        double tau = tBegin;
+        sub.set(tau + fastDeltaT, fastDeltaT, true);
+        while (tau < tEnd) {
+            TimeStepController.landOnBreakpoint(sub, tau, tEnd);
+            final double h = sub.deltaT;
+            final double w = (sub.currT - tBegin) / span;
+            final boolean predicted = fastAcceptedSteps > order;
+            if (predicted) {
+                TimeStepController.predictPhaseVariables(
+                        fPrev,
+                        fPrevPrev,
+                        fPrev3,
+                        h,
+                        fastPrevDeltaT,
+                        fastPrevPrevDeltaT,
+                        order,
+                        fastApproximation);
+            }
+            for (int i = 0; i < n; i++) {
+                if (!isFast[i]) {
+                    fastApproximation[i] = pvPrev[i] + w * (coarse[i] - pvPrev[i]);
+                } else if (!predicted) {
+                    fastApproximation[i] = fPrev[i];
+                }
+            }
+
+            final double gamma = fastIntegrator.prepare(h, fastHistory);
+            if (!solveFast(sub.currT, gamma)) {
+                fastRejectedSteps++;
+                TimeStepController.resizeStep(sub, h / 2.0, true);
+                if (sub.deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                continue;
+            }
+            next.set(sub.currT + h, h, true);
+            if (predicted) {
+                TimeStepController.calculateDeltaT(
+                        next.copyFrom(sub),
+                        order,
+                        fastIntegrator.errorConstant(),
+                        fastPrevDeltaT,
+                        fastPrevPrevDeltaT,
+                        fastSolution,
+                        fastApproximation,
+                        fPrev,
+                        fastEstimated);
+                if (!next.success) {
+                    fastRejectedSteps++;
+                    if (next.deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                    sub.copyFrom(next);
+                    continue;
+                }
+            }
+            fastAcceptedSteps++;
+            emit(tau, fPrev, sub.currT, fastSolution, timeEnd, sink);
+            fastIntegrator.accept(h, fastSolution);
+            fastPrevPrevDeltaT = fastPrevDeltaT;
+            fastPrevDeltaT = h;
+            double[] tmp = fPrev3;
+            fPrev3 = fPrevPrev;
+            fPrevPrev = fPrev;
+            fPrev = tmp;
+            System.arraycopy(fastSolution, 0, fPrev, 0, n);
+            tau = sub.currT;
+            sub.copyFrom(next);
+        }
+        fastDeltaT = sub.deltaT;
+        for (int i : fast) merged[i] = fastSolution[i];
+    }
+
+    // Метод Ньютона для быстрых неизвестных при медленных из fastApproximation.
+    // Матрица строится по начальному приближению, как в NewtonSolver
+    private boolean solveFast(double t, double gamma) {
+        System.arraycopy(fastApproximation, 0, fastSolution, 0, n);
+        model.fillJacobiMatrix(jacobi, gamma, fastSolution);
+        gather(jacobi, fastJacobi, fastPositions);
+        if (!fastLu.factor(fastJacobi)) return false;
+
+        for (int it = 0; it < Data.NEWTON_STEPS; it++) {
+            model.fillVector(vector, t, gamma, fastSolution, fastHistory);
+            for (int j = 0; j < fast.length; j++) fastVector[j] = -vector[fast[j]];
+            fastLu.solve(fastVector, fastDeltas);
+            for (int j = 0; j < fast.length; j++) {
+                deltas[fast[j]] = fastDeltas[j];
+                fastSolution[fast[j]] += fastDeltas[j];
+            }
+            if (model.calculateVectorNorm(deltas) < Data.EPSILON) return true;
+        }
+        return false;
+    }
+
+    // Точки вывода из сетки SAVE_DT на шаге из (tPrev, xPrev) в (t, x)
+    private void emit(
+            double tPrev,
+            double[] xPrev,
+            double t,
+            double[] x,
+            double timeEnd,
+            TransientAnalysis.SampleSink sink)
+            throws IOException {
+        while (t >= nextSaveT) {
+            final double w = (nextSaveT - tPrev) / (t - tPrev);
+            for (int i = 0; i < n; i++) interpolated[i] = xPrev[i] + w * (x[i] - xPrev[i]);
+            if (nextSaveT <= timeEnd) System.arraycopy(interpolated, 0, lastSample, 0, n);
+            sink.sample(nextSaveT, denseOutput ? interpolated : x);
+            nextSaveT += Data.SAVE_DT;
+        }
+    }
+
+    // Первые шаги, пока точек для прогноза недостаточно, принимаются без оценки
+    private TimeDemon chooseDeltaT(TimeDemon td) {
+        if (acceptedSteps <= integrator.order()) {
+            return td.set(td.currT + td.deltaT, td.deltaT, true);
+        }
+        return TimeStepController.calculateDeltaT(
+                td,
+                integrator.order(),
+                integrator.errorConstant(),
+                prevDeltaT,
+                prevPrevDeltaT,
+                coarse,
+                initialApproximation,
+                pvPrev,
+                slowEstimated);
+    }
+
+    // Постоянные времени в нулевой точке по чувствительности StateSpace:
+    // sensitivity[k] - dU/dX_k по номерам неизвестных, tau_k = 1 / |dX'_k/dX_k|
+    private double[] timeConstants(double[][] sensitivity) {
+        final int m = model.stateCount();
+        for (int k = 0; k < m; k++) sensitivity[k] = new double[n];
+        if (!new StateSpace(model).sensitivity(new double[n], sensitivity)) {
+            throw new IllegalArgumentException("circuit has no consistent state");
+        }
+        final double[] tau = new double[m];
+        for (int k = 0; k < m; k++) {
+            final double rate = Math.abs(sensitivity[k][model.derivativeIndex(k)]);
+            tau[k] = (rate > 0.0) ? 1.0 / rate : Double.POSITIVE_INFINITY;
+        }
+        return tau;
+    }
+
+    // Быстрые переменные состояния - ниже наибольшего разрыва конечных постоянных времени
+    private static boolean[] fastStates(double[] tau) {
+        final boolean[] result = new boolean[tau.length];
+        final double[] sorted =
+                Arrays.stream(tau).filter(t -> t < Double.POSITIVE_INFINITY).sorted().toArray();
+        double gap = 1.0;
+        double bound = 0.0;
+        for (int i = 0; i + 1 < sorted.length; i++) {
+            final double ratio = sorted[i + 1] / sorted[i];
+            if (ratio > gap) {
+                gap = ratio;
+                bound = sorted[i];
+            }
+        }
+        if (gap < Data.MULTIRATE_SEPARATION) return result;
+        for (int k = 0; k < tau.length; k++) result[k] = tau[k] <= bound;
+        return result;
+    }
+
+    private static void gather(SparseMatrix a, SparseMatrix sub, int[] positions) {
+        for (int k = 0; k < positions.length; k++) sub.values[k] = a.values[positions[k]];
+    }
+}
@@ -1,6 +1,7 @@
 package ru.bmstu.mimapr.numerics;
 
 import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.metrics.SolverMetrics;
 import ru.bmstu.mimapr.model.*;
 
 public final class NewtonSolver {
@@ -10,37 +11,344 @@ public final class NewtonSolver {
     public static NewtonMethodResults newtonMethod(
             TimeDemon td, PhaseVariables initApprox, PrevStateVariables prevState) {
 
+        SolverWorkspace ws = new SolverWorkspace();
+        // Если метод не сошелся, то итерация помечается как неуспешная
+        if (!newtonMethod(td, initApprox, prevState, ws)) {
+            return new NewtonMethodResults(false, new PhaseVariables());
+        }
+        return new NewtonMethodResults(true, ws.solution);
+    }
+
+    // Решение методом Ньютона в заранее выделенной рабочей памяти.
+    // Результат остается в ws.solution и действителен до следующего вызова
+    public static boolean newtonMethod(
+            TimeDemon td,
+            PhaseVariables initApprox,
+            PrevStateVariables prevState,
+            SolverWorkspace ws) {
+
+        // Матрица Якоби строится по начальной аппроксимации и не меняется
+        // в течение шага, поэтому достаточно одного LU-разложения на шаг
+        final double conductance = CircuitSystem.diodeConductance(initApprox.Ucb);
+        final boolean reused = canReuseFactorization(ws, td.deltaT, conductance);
+
+        if (!reused && !factorize(ws, td.deltaT, initApprox.Ucb, conductance)) return false;
+        if (iterate(td, initApprox, prevState, ws)) return true;
+
+        // Устаревшее разложение могло помешать сходимости: пересчитываем и повторяем
+        if (reused) {
+            return factorize(ws, td.deltaT, initApprox.Ucb, conductance)
+                    && iterate(td, initApprox, prevState, ws);
+        }
+        return false;
+    }
+
+    private static boolean canReuseFactorization(
+            SolverWorkspace ws, double deltaT, double conductance) {
+
+        if (!ws.modifiedNewton || !ws.luValid) return false;
+        if (deltaT != ws.luDeltaT) return false;
+        return Math.abs(conductance - ws.luConductance)
+                <= ws.diodeTolerance * Math.abs(ws.luConductance);
+    }
+
+    private static boolean factorize(
+            SolverWorkspace ws, double deltaT, double uCb, double conductance) {
+
+        // Вычисление матрицы Якоби на основе начальной аппроксимации
+        CircuitSystem.fillJacobiMatrix(ws.jacobi, deltaT, uCb);
+        ws.factorizations++;
+        ws.luValid = ws.linearSolver.factor(ws.jacobi);
+        ws.luDeltaT = deltaT;
+        ws.luConductance = conductance;
+        return ws.luValid;
+    }
+
+    private static boolean iterate(
+            TimeDemon td,
+            PhaseVariables initApprox,
+            PrevStateVariables prevState,
+            SolverWorkspace ws) {
+
         int n = 0;
         // Текущая аппроксимация равна начальной при старте итерации
-        PhaseVariables currApprox = initApprox;
+        PhaseVariables currApprox = ws.solution;
+        currApprox.copyFrom(initApprox);
 
-        while (n < Data.NEWTON_STEPS) {
-            // Вычисление матрицы Якоби на основе начальной аппроксимации
-            double[][] jacobi = CircuitSystem.createJacobiMatrix(td.deltaT, initApprox.Ucb);
+        double[] vectorForNewton = ws.vector;
 
+        while (n < Data.NEWTON_STEPS) {
             // Построение вектора невязок
-            double[] vectorForNewton = CircuitSystem.createVector(td, currApprox, prevState);
+            CircuitSystem.fillVector(vectorForNewton, td, currApprox, prevState, ws.diodeState);
 
             // Домножение на -1 для того, чтобы соблюдалось уравнение для метода Ньютона
             for (int i = 0; i < vectorForNewton.length; i++) vectorForNewton[i] *= -1.0;
 
-            // Получение вектора поправок методом Гаусса
-            double[] gaussResults = LinearAlgebra.gauss(jacobi, vectorForNewton);
-            PhaseVariables deltas = PhaseVariables.fromArray(gaussResults);
+            // Получение вектора поправок по LU-разложению
+            ws.linearSolver.solve(vectorForNewton, ws.deltas);
+            ws.solves++;
+            PhaseVariables deltas = ws.deltaVars;
+            deltas.setFromArray(ws.deltas);
 
             // Получение текущего шага аппроксимации
-            PhaseVariables newApprox = currApprox.sum(deltas);
-            currApprox = newApprox;
+            currApprox.add(deltas);
 
             // Проверка второй нормы вектора поправок на порог точности
             if (CircuitSystem.calculateVectorNorm(deltas) < Data.EPSILON) break;
 
             n++;
         }
-        // Если метод не сошелся, то итерация помечается как неуспешная
-        if (n >= Data.NEWTON_STEPS) {
-            return new NewtonMethodResults(false, new PhaseVariables());
+        return n < Data.NEWTON_STEPS;
+    }
+
+    // Решение методом Ньютона для произвольной модели схемы в момент t
+    // с формулой интегрирования dX = (X - history) / gamma.
+    // Результат остается в ws.solution и действителен до следующего вызова
+    public static boolean newtonMethod(
+            CircuitModel model,
+            double t,
+            double gamma,
+            double[] initApprox,
+            double[] history,
+            ModelWorkspace ws) {
+
+        // Матрица Якоби строится по начальной аппроксимации
+        model.fillJacobiMatrix(ws.jacobi, gamma, initApprox);
+        final boolean reused = canReuseFactorization(ws, gamma);
+
+        if (!reused && !factorize(ws, gamma)) return false;
+        if (iterate(model, t, gamma, initApprox, history, ws)) return true;
+
+        // Устаревшее разложение могло помешать сходимости: пересчитываем и повторяем.
+        // При ограничении напряжений матрица могла быть перестроена в другой точке
+        if (reused) {
+            if (ws.junctionLimiting) model.fillJacobiMatrix(ws.jacobi, gamma, initApprox);
+            return factorize(ws, gamma) && iterate(model, t, gamma, initApprox, history, ws);
+        }
+        return false;
+    }
+
+    private static boolean canReuseFactorization(ModelWorkspace ws, double gamma) {
+        if (!ws.modifiedNewton || !ws.luValid) return false;
+        if (gamma != ws.luGamma) return false;
+
+        final double[] values = ws.jacobi.values;
+        final double[] factored = ws.factoredValues;
+        for (int k = 0; k < values.length; k++) {
+            if (Math.abs(values[k] - factored[k]) > ws.diodeTolerance * Math.abs(factored[k])) {
+                return false;
+            }
         }
-        return new NewtonMethodResults(true, currApprox);
+        return true;
+    }
+
+    private static boolean factorize(ModelWorkspace ws, double gamma) {
+        ws.factorizations++;
+        final SolverMetrics metrics = ws.metrics;
+        final boolean timed = metrics != null && metrics.factorizing();
+        final long start = timed ? System.nanoTime() : 0L;
+        ws.luValid = ws.linearSolver.factor(ws.jacobi);
+        if (timed) metrics.factorizationTimed(System.nanoTime() - start);
+        ws.luGamma = gamma;
+        System.arraycopy(ws.jacobi.values, 0, ws.factoredValues, 0, ws.factoredValues.length);
+        return ws.luValid;
+    }
+
+    private static boolean iterate(
+            CircuitModel model,
+            double t,
+            double gamma,
+            double[] initApprox,
+            double[] history,
+            ModelWorkspace ws) {
+
+        if (ws.adaptiveNewton) return iterateAdaptive(model, t, gamma, initApprox, history, ws);
+
+        int n = 0;
+        int limitedSteps = 0;
+        // Текущая аппроксимация равна начальной при старте итерации
+        final double[] currApprox = ws.solution;
+        System.arraycopy(initApprox, 0, currApprox, 0, ws.n);
+
+        final double[] vectorForNewton = ws.vector;
+        final double[] deltas = ws.deltas;
+        final SolverMetrics metrics = ws.metrics;
+        double residualNorm = 0.0;
+
+        while (n < Data.NEWTON_STEPS) {
+            // Построение вектора невязок
+            model.fillVector(vectorForNewton, t, gamma, currApprox, history);
+            if (metrics != null) residualNorm = maxAbs(vectorForNewton);
+
+            // Домножение на -1 для того, чтобы соблюдалось уравнение для метода Ньютона
+            for (int i = 0; i < vectorForNewton.length; i++) vectorForNewton[i] *= -1.0;
+
+            // Получение вектора поправок по LU-разложению
+            final boolean timed = metrics != null && metrics.linearSolving();
+            final long start = timed ? System.nanoTime() : 0L;
+            ws.linearSolver.solve(vectorForNewton, deltas);
+            if (timed) metrics.linearSolveTimed(System.nanoTime() - start);
+            ws.solves++;
+
+            // Ограничение напряжений p-n переходов. Ограниченная итерация не может
+            // быть последней и не расходует число итераций (не больше LIMITED_NEWTON_STEPS таких).
+            // Переход ушел далеко от точки, где построена матрица Якоби, поэтому
+            // она пересчитывается в новой точке
+            if (ws.junctionLimiting && limitedSteps < Data.LIMITED_NEWTON_STEPS) {
+                final double factor = model.limitStep(currApprox, deltas);
+                if (factor < 1.0) {
+                    for (int i = 0; i < deltas.length; i++) currApprox[i] += factor * deltas[i];
+                    ws.limitedIterations++;
+                    limitedSteps++;
+                    model.fillJacobiMatrix(ws.jacobi, gamma, currApprox);
+                    if (!factorize(ws, gamma)) {
+                        n = Data.NEWTON_STEPS;
+                        break;
+                    }
+                    continue;
+                }
+            }
+
+            // Получение текущего шага аппроксимации
+            for (int i = 0; i < currApprox.length; i++) currApprox[i] += deltas[i];
+
+            // Проверка второй нормы вектора поправок на порог точности
+            if (model.calculateVectorNorm(deltas) < Data.EPSILON) break;
+
+            n++;
+        }
+
+        final boolean converged = n < Data.NEWTON_STEPS;
+        if (metrics != null) {
+            metrics.newtonSolved(converged ? n + 1 : n, converged, residualNorm);
+        }
+        return converged;
+    }
+
+    // Итерации с контролем скорости сходимости.
+    // Коэффициент сжатия theta = ||dx_k|| / ||dx_(k-1)||: при theta >= 1 метод расходится,
+    // а если с третьей итерации за оставшиеся поправка при том же theta не станет меньше
+    // EPSILON (||dx_k|| * theta^осталось >= EPSILON), отказ тоже досрочный - шаг все равно
+    // придется уменьшить, и оставшиеся решения СЛАУ не нужны. На первых итерациях из
+    // далекого приближения theta завышено, поэтому прогноз по ним не делается.
+    // Поправка дробится вдвое (до NEWTON_DAMPING_STEPS раз), пока норма невязки
+    // (residualNorm) не уменьшится. Решение принимается, когда поправка меньше EPSILON,
+    // а невязка - NEWTON_RESIDUAL_TOLERANCE
+    private static boolean iterateAdaptive(
+            CircuitModel model,
+            double t,
+            double gamma,
+            double[] initApprox,
+            double[] history,
+            ModelWorkspace ws) {
+
+        final double[] currApprox = ws.solution;
+        System.arraycopy(initApprox, 0, currApprox, 0, ws.n);
+        final double[] vectorForNewton = ws.vector;
+        final double[] deltas = ws.deltas;
+        final double[] trial = ws.trial;
+        final double[] trialVector = ws.trialVector;
+        final SolverMetrics metrics = ws.metrics;
+
+        model.fillVector(vectorForNewton, t, gamma, currApprox, history);
+        double residualNorm = residualNorm(ws, gamma, vectorForNewton);
+        double prevNorm = 0.0;
+        ws.contractionRate = 0.0;
+        int n = 0;
+        int limitedSteps = 0;
+        boolean converged = false;
+
+        while (n < Data.NEWTON_STEPS) {
+            for (int i = 0; i < vectorForNewton.length; i++) vectorForNewton[i] *= -1.0;
+
+            final boolean timed = metrics != null && metrics.linearSolving();
+            final long start = timed ? System.nanoTime() : 0L;
+            ws.linearSolver.solve(vectorForNewton, deltas);
+            if (timed) metrics.linearSolveTimed(System.nanoTime() - start);
+            ws.solves++;
+
+            // Ограничение напряжений p-n переходов, как в iterate; сжатие после
+            // ограниченной итерации отсчитывается заново
+            if (ws.junctionLimiting && limitedSteps < Data.LIMITED_NEWTON_STEPS) {
+                final double factor = model.limitStep(currApprox, deltas);
+                if (factor < 1.0) {
+                    for (int i = 0; i < deltas.length; i++) currApprox[i] += factor * deltas[i];
+                    ws.limitedIterations++;
+                    limitedSteps++;
+                    model.fillJacobiMatrix(ws.jacobi, gamma, currApprox);
+                    if (!factorize(ws, gamma)) break;
+                    model.fillVector(vectorForNewton, t, gamma, currApprox, history);
+                    residualNorm = residualNorm(ws, gamma, vectorForNewton);
+                    prevNorm = 0.0;
+                    continue;
+                }
+            }
+
+            final double norm = model.calculateVectorNorm(deltas);
+            if (!Double.isFinite(norm)) break;
+            if (prevNorm > 0.0) {
+                final double rate = norm / prevNorm;
+                ws.contractionRate = Math.max(ws.contractionRate, rate);
+                final boolean slow =
+                        n >= 2 && norm * Math.pow(rate, Data.NEWTON_STEPS - 1 - n) >= Data.EPSILON;
+                if (norm >= Data.EPSILON && (rate >= 1.0 || slow)) {
+                    ws.newtonAborts++;
+                    break;
+                }
+            }
+            prevNorm = norm;
+
+            // Дробление поправки: пробная точка принимается, если невязка в ней
+            // уменьшилась или уже в пределах допуска
+            double lambda = 1.0;
+            double trialNorm;
+            int damping = 0;
+            while (true) {
+                for (int i = 0; i < trial.length; i++) {
+                    trial[i] = currApprox[i] + lambda * deltas[i];
+                }
+                model.fillVector(trialVector, t, gamma, trial, history);
+                trialNorm = residualNorm(ws, gamma, trialVector);
+                if (trialNorm < residualNorm
+                        || trialNorm <= Data.NEWTON_RESIDUAL_TOLERANCE
+                        || damping == Data.NEWTON_DAMPING_STEPS) {
+                    break;
+                }
+                lambda *= 0.5;
+                damping++;
+            }
+            if (damping > 0) ws.dampedIterations++;
+            System.arraycopy(trial, 0, currApprox, 0, trial.length);
+            System.arraycopy(trialVector, 0, vectorForNewton, 0, trialVector.length);
+            residualNorm = trialNorm;
+
+            if (norm < Data.EPSILON && residualNorm <= Data.NEWTON_RESIDUAL_TOLERANCE) {
+                converged = true;
+                break;
+            }
+            n++;
+        }
+
+        if (metrics != null) {
+            metrics.newtonSolved(converged ? n + 1 : n, converged, residualNorm);
+        }
+        return converged;
+    }
+
+    // Максимум-норма невязки, в которой невязки формул интегрирования домножены на gamma:
+    // иначе при малом шаге в них преобладает погрешность округления (X - h) / gamma
+    private static double residualNorm(ModelWorkspace ws, double gamma, double[] v) {
+        final boolean[] integration = ws.integrationRows;
+        double norm = 0.0;
+        for (int i = 0; i < v.length; i++) {
+            norm = Math.max(norm, integration[i] ? gamma * Math.abs(v[i]) : Math.abs(v[i]));
+        }
+        return norm;
+    }
+
+    private static double maxAbs(double[] v) {
+        double m = 0.0;
+        for (double x : v) m = Math.max(m, Math.abs(x));
+        return m;
     }
 }
@@ -0,0 +1,237 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.model.DoubleList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/*
+ * Параллельный по времени расчет переходного процесса (Parareal)
+ *
+ * Отрезок [t0, tEnd] делится на равные окна. Грубый расчет G - неявная
+ * формула Эйлера с PARAREAL_COARSE_STEPS постоянными шагами на окно -
+ * последовательно дает начальные условия окон U_k. Точные расчеты F -
+ * WindowIntegrator с выбором шага по порогам - выполняются по окнам
+ * параллельно в ForkJoinPool. Затем начальные условия уточняются
+ * последовательно: U_(k+1) = G(U_k) + F(U_k прошлой итерации) - G(U_k прошлой итерации).
+ * Итерации повторяются, пока U_k не перестанут меняться в пределах допусков
+ * RELATIVE_TOLERANCE/ABSOLUTE_TOLERANCE по переменным состояния. После итерации
+ * j первые j окон рассчитаны точно, поэтому их точный расчет не повторяется,
+ * и не больше чем за число окон итераций результат совпадает с последовательным.
+ * Точки вывода на сетке SAVE_DT интерполируются линейно по шагам точного
+ * расчета последней итерации.
+ * Каждое окно рассчитывается на своем экземпляре модели из models
+ * */
+public final class PararealAnalysis {
+    private final int windows;
+    private final int n;
+    private final int m;
+    private final int[] states;
+    private final ForkJoinPool pool;
+
+    // Точный расчет окна k и его точки вывода: [t, x...] подряд
+    private final WindowIntegrator[] fine;
+    private final DoubleList[] samples;
+    private final WindowIntegrator coarse;
+
+    private double t0 = Data.TIME_START - Data.START_DELTA_TIME;
+    private double[] x0;
+    private double[] solution;
+    // Последняя точка вывода не позже конца расчета
+    private final double[] lastSample;
+
+    private int iterations = 0;
+    private long elapsedNanos = 0;
+
+    public PararealAnalysis(
+            Supplier<CircuitModel> models, LinearSolverKind kind, int windows, int parallelism) {
+        if (windows < 1) throw new IllegalArgumentException("number of windows must be positive");
+        this.windows = windows;
+        this.pool = new ForkJoinPool(parallelism);
+        this.fine = new WindowIntegrator[windows];
+        this.samples = new DoubleList[windows];
+        for (int k = 0; k < windows; k++) fine[k] = new WindowIntegrator(models.get(), kind);
+        final CircuitModel model = models.get();
+        this.coarse = new WindowIntegrator(model, kind);
+        this.n = model.size();
+        this.m = model.stateCount();
+        this.states = IntegrationMethod.stateIndices(model);
+        this.x0 = new double[n];
+        this.lastSample = new double[n];
+    }
+
+    // Итерации уточнения начальных условий окон
+    public int iterations() {
+        return iterations;
+    }
+
+    // Принятые шаги точных расчетов всех окон за все итерации
+    public long fineSteps() {
+        long steps = 0;
+        for (WindowIntegrator w : fine) steps += w.acceptedSteps();
+        return steps;
+    }
+
+    public long coarseSteps() {
+        return coarse.acceptedSteps();
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // Время последнего расчета run без передачи точек вывода получателю
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // Решение в конце последнего расчета
+    public double[] solution() {
+        return solution;
+    }
+
+    public double[] lastSample() {
+        return lastSample.clone();
+    }
+
+    // Начало расчета из решения x0 в момент t0 вместо нулевых начальных условий в 0
+    public void start(double t0, double[] x0) {
+        if (x0.length != n) {
+            throw new IllegalArgumentException("initial point does not match the circuit size");
+        }
+        this.t0 = t0;
+        this.x0 = x0.clone();
+    }
+
+    public void run(double timeEnd, TransientAnalysis.SampleSink sink)
+            throws IOException, InterruptedException {
+        final long begin = System.nanoTime();
+        final double[] bounds = new double[windows + 1];
+        for (int k = 0; k <= windows; k++) bounds[k] = t0 + (timeEnd - t0) * k / windows;
+        bounds[windows] = timeEnd;
+
+        double[][] u = new double[windows + 1][];
+        double[][] g = new double[windows][];
+        u[0] = x0.clone();
+        for (int k = 0; k < windows; k++) {
+            g[k] = coarse(bounds[k], u[k], bounds[k + 1]);
+            u[k + 1] = g[k].clone();
+        }
+
+        iterations = 0;
+        for (int first = 0; first < windows; first++) {
+            iterations++;
+            double[][] f = fine(first, bounds, u);
+
+            // Окно first начинается с точного U, поэтому его конец уже точен
+            boolean converged = true;
+            for (int k = first; k < windows; k++) {
+                double[] next;
+                if (k == first) {
+                    next = f[k];
+                } else {
+                    final double[] gNew = coarse(bounds[k], u[k], bounds[k + 1]);
+                    next = new double[n];
+                    for (int i = 0; i < n; i++) next[i] = gNew[i] + f[k][i] - g[k][i];
+                    g[k] = gNew;
+                }
+                if (converged && !isClose(next, u[k + 1])) converged = false;
+                u[k + 1] = next;
+            }
+            if (converged) break;
+        }
+        solution = u[windows];
+        elapsedNanos = System.nanoTime() - begin;
+
+        for (DoubleList list : samples) {
+            for (int pos = 0; pos < list.size(); pos += n + 1) {
+                double[] x = new double[n];
+                for (int i = 0; i < n; i++) x[i] = list.get(pos + 1 + i);
+                if (list.get(pos) <= timeEnd) System.arraycopy(x, 0, lastSample, 0, n);
+                sink.sample(list.get(pos), x);
+            }
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private double[] coarse(double tBegin, double[] x, double tEnd) {
+        return coarse.integrateFixed(tBegin, x, tEnd, Data.PARAREAL_COARSE_STEPS).clone();
+    }
+
+    // Точные расчеты окон first..windows-1 из U_k параллельно
+    private double[][] fine(int first, double[] bounds, double[][] u) throws InterruptedException {
+        List<Callable<double[]>> tasks = new ArrayList<>();
+        for (int k = first; k < windows; k++) {
+            final int window = k;
+            final double[] start = u[k];
+            tasks.add(() -> fineWindow(window, bounds[window], start, bounds[window + 1]));
+        }
+
+        double[][] f = new double[windows][];
+        List<Future<double[]>> results = pool.invokeAll(tasks);
+        for (int k = first; k < windows; k++) {
+            try {
+                f[k] = results.get(k - first).get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException re) throw re;
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        return f;
+    }
+
+    // Точный расчет окна с точками вывода из (tBegin, tEnd]
+    private double[] fineWindow(int window, double tBegin, double[] x, double tEnd) {
+        final DoubleList out = new DoubleList();
+        final double[] prev = x.clone();
+        final double[] prevT = {tBegin};
+        // Первая точка сетки вывода строго после tBegin
+        final long[] next = {
+            Math.max(0L, (long) Math.floor((tBegin - Data.TIME_START) / Data.SAVE_DT) + 1)
+        };
+
+        double[] result =
+                fine[window].integrate(
+                        tBegin,
+                        x,
+                        tEnd,
+                        (t, deltaT, xt) -> {
+                            double ts = Data.TIME_START + next[0] * Data.SAVE_DT;
+                            while (ts <= t && ts <= tEnd) {
+                                final double w = (ts - prevT[0]) / (t - prevT[0]);
+                                out.add(ts);
+                                for (int i = 0; i < n; i++) {
+                                    out.add(prev[i] + w * (xt[i] - prev[i]));
+                                }
+                                next[0]++;
+                                ts = Data.TIME_START + next[0] * Data.SAVE_DT;
+                            }
+                            System.arraycopy(xt, 0, prev, 0, n);
+                            prevT[0] = t;
+                        });
+        samples[window] = out;
+        return result.clone();
+    }
+
+    // Изменение начальных условий окна в пределах допусков по переменным состояния
+    private boolean isClose(double[] a, double[] b) {
+        for (int k = 0; k < m; k++) {
+            final int i = states[k];
+            final double tolerance =
+                    Data.ABSOLUTE_TOLERANCE + Data.RELATIVE_TOLERANCE * Math.abs(a[i]);
+            if (!(Math.abs(a[i] - b[i]) <= tolerance)) return false;
+        }
+        return true;
+    }
+}
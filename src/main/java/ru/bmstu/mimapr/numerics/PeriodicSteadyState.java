@@ -0,0 +1,156 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.exceptions.ConvergenceException;
+
+import java.util.Arrays;
+
+/*
+ * Периодический установившийся режим методом стрельбы
+ *
+ * Ищутся переменные состояния s в момент t0, из которых расчет на период T
+ * возвращается в ту же точку: F(s) = Phi(s) - s = 0. Уравнение решается
+ * методом Ньютона с матрицей dPhi/ds - I. Матрица чувствительности dPhi/ds
+ * накапливается вдоль расчета периода: для неявной формулы Эйлера
+ * невязка формулы интегрирования k-й переменной (строка derivativeIndex(k))
+ * зависит от прошлого значения как +X_n / deltaT, поэтому
+ * dx_(n+1)/dX_n = -J^-1 * E / deltaT, где J - матрица Якоби в решении шага.
+ * Период рассчитывается WindowIntegrator с выбором шага по порогам.
+ * Экземпляр хранит рабочие буферы и не потокобезопасен
+ * */
+public final class PeriodicSteadyState {
+    private final CircuitModel model;
+    private final double period;
+    private final int n;
+    private final int m;
+
+    private final WindowIntegrator integrator;
+    public final ModelWorkspace workspace;
+    // Матрица Якоби в решении принятого шага для чувствительностей
+    private final SparseMatrix jacobi;
+    private final LinearSolver linearSolver;
+
+    private final double[] rhs;
+    private final double[] column;
+    // Чувствительность текущих переменных состояния к начальным, m x m
+    private double[][] sensitivity;
+    private double[][] nextSensitivity;
+    // Решение в конце последнего рассчитанного периода
+    private final double[] endPoint;
+
+    // Статистика последнего расчета
+    private int iterations = 0;
+    private double residual = Double.NaN;
+
+    public PeriodicSteadyState(CircuitModel model, LinearSolverKind kind, double period) {
+        if (!(period > 0.0) || Double.isInfinite(period)) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        this.model = model;
+        this.period = period;
+        this.n = model.size();
+        this.m = model.stateCount();
+        this.integrator = new WindowIntegrator(model, kind);
+        this.workspace = integrator.workspace;
+        this.jacobi = model.createJacobiMatrix();
+        this.linearSolver = model.createLinearSolver(kind);
+        this.rhs = new double[n];
+        this.column = new double[n];
+        this.sensitivity = new double[m][m];
+        this.nextSensitivity = new double[m][m];
+        this.endPoint = new double[n];
+    }
+
+    // Итерации метода стрельбы
+    public int iterations() {
+        return iterations;
+    }
+
+    // Принятые шаги по времени во всех рассчитанных периодах за время жизни экземпляра
+    public long acceptedSteps() {
+        return integrator.acceptedSteps();
+    }
+
+    // Наибольшее расхождение переменных состояния за период на последней итерации
+    public double residual() {
+        return residual;
+    }
+
+    // Решение в момент t0 на периодической траектории, x0 - начальное приближение
+    // (например, режим по постоянному току)
+    public double[] solve(double t0, double[] x0) {
+        if (x0.length != n) {
+            throw new IllegalArgumentException("initial point does not match the circuit size");
+        }
+        iterations = 0;
+
+        double[] s = new double[m];
+        for (int k = 0; k < m; k++) s[k] = x0[model.stateIndex(k)];
+        System.arraycopy(x0, 0, endPoint, 0, n);
+
+        double[][] a = new double[m][m];
+        double[] f = new double[m];
+        double[] step = new double[m];
+        LinearSolver shootingSolver = LinearSolver.of(LinearSolverKind.SPARSE, m);
+
+        while (true) {
+            integratePeriod(t0, s);
+
+            residual = 0.0;
+            boolean converged = true;
+            for (int k = 0; k < m; k++) {
+                f[k] = endPoint[model.stateIndex(k)] - s[k];
+                residual = Math.max(residual, Math.abs(f[k]));
+                final double tolerance =
+                        Data.ABSOLUTE_TOLERANCE + Data.RELATIVE_TOLERANCE * Math.abs(s[k]);
+                if (!(Math.abs(f[k]) <= tolerance)) converged = false;
+            }
+            if (converged) return endPoint.clone();
+            if (++iterations > Data.PSS_ITERATIONS) {
+                throw new ConvergenceException("periodic steady state did not converge");
+            }
+
+            // (dPhi/ds - I) * step = -F
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < m; j++) a[i][j] = sensitivity[i][j];
+                a[i][i] -= 1.0;
+                f[i] = -f[i];
+            }
+            if (!shootingSolver.factor(a)) {
+                throw new ConvergenceException("singular shooting matrix");
+            }
+            shootingSolver.solve(f, step);
+            for (int k = 0; k < m; k++) s[k] += step[k];
+        }
+    }
+
+    // Расчет на период из переменных состояния s с накоплением чувствительности.
+    // Остальные неизвестные начального приближения берутся из конца прошлого периода
+    private void integratePeriod(double t0, double[] s) {
+        for (int k = 0; k < m; k++) {
+            endPoint[model.stateIndex(k)] = s[k];
+            Arrays.fill(sensitivity[k], 0.0);
+            sensitivity[k][k] = 1.0;
+        }
+        double[] x = integrator.integrate(t0, endPoint, t0 + period, this::propagateSensitivity);
+        System.arraycopy(x, 0, endPoint, 0, n);
+    }
+
+    // S_(n+1) = -(J^-1 * E / deltaT) * S_n по столбцам S_n
+    private void propagateSensitivity(double t, double deltaT, double[] x) {
+        model.fillJacobiMatrix(jacobi, deltaT, x);
+        if (!linearSolver.factor(jacobi)) {
+            throw new ConvergenceException("singular Jacobian on the periodic orbit");
+        }
+        for (int c = 0; c < m; c++) {
+            Arrays.fill(rhs, 0.0);
+            for (int k = 0; k < m; k++) rhs[model.derivativeIndex(k)] = -sensitivity[k][c] / deltaT;
+            linearSolver.solve(rhs, column);
+            for (int k = 0; k < m; k++) nextSensitivity[k][c] = column[model.stateIndex(k)];
+        }
+        double[][] tmp = sensitivity;
+        sensitivity = nextSensitivity;
+        nextSensitivity = tmp;
+    }
+}
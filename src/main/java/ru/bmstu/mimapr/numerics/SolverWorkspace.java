@@ -0,0 +1,62 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.device.DeviceState;
+import ru.bmstu.mimapr.model.PhaseVariables;
+
+/*
+ * Рабочая память метода Ньютона
+ *
+ * Все буферы выделяются один раз на прогон и заполняются на месте,
+ * поэтому итерация метода Ньютона не создает новых объектов.
+ * Экземпляр не потокобезопасен: на каждый поток расчета нужен свой.
+ * */
+public final class SolverWorkspace {
+    public SolverWorkspace() {
+        this(Data.LINEAR_SOLVER);
+    }
+
+    public SolverWorkspace(LinearSolverKind kind) {
+        this.linearSolver = new CircuitSystemModel().createLinearSolver(kind);
+    }
+
+    // Матрица Якоби и вектор невязок
+    public final double[][] jacobi = new double[Data.N][Data.N];
+    public final double[] vector = new double[Data.N];
+
+    // Состояние диода при построении вектора невязок
+    public final DeviceState diodeState = new DeviceState();
+
+    // Копии матрицы и правой части, которые портит метод Гаусса
+    public final double[][] luScratch = new double[Data.N][Data.N];
+    public final double[] rhsScratch = new double[Data.N];
+
+    // Решатель СЛАУ, хранит разложение матрицы Якоби
+    public final LinearSolver linearSolver;
+
+    // Модифицированный метод Ньютона: разложение переиспользуется между шагами
+    public boolean modifiedNewton = Data.MODIFIED_NEWTON;
+    public double diodeTolerance = Data.DIODE_TOLERANCE;
+
+    // Параметры, при которых получено текущее разложение
+    boolean luValid = false;
+    double luDeltaT = 0.0;
+    double luConductance = 0.0;
+
+    // Статистика: число LU-разложений и решений СЛАУ за прогон
+    public long factorizations = 0;
+    public long solves = 0;
+
+    // Вектор поправок
+    public final double[] deltas = new double[Data.N];
+    public final PhaseVariables deltaVars = new PhaseVariables();
+
+    // Текущая аппроксимация, после успешного решения - результат
+    public final PhaseVariables solution = new PhaseVariables();
+
+    // Разложения, которые сэкономлены по сравнению с методом Гаусса на каждой итерации
+    public long savedFactorizations() {
+        return solves - factorizations;
+    }
+}
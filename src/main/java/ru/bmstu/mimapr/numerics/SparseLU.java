@@ -0,0 +1,502 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.exceptions.MatrixDimensionException;
+
+import java.util.Arrays;
+
+/*
+ * Разреженное LU-разложение
+ *
+ * Символьный этап (analyze) выбирает ведущие элементы по критерию Марковица
+ * с пороговым ограничением и строит портрет L + U с учетом заполнения.
+ * Он работает по портрету CSR без плотных копий и выполняется один раз
+ * для портрета матрицы. Численный этап (factor) повторяет исключение
+ * в найденном порядке и затрагивает только элементы портрета. Если ведущий элемент стал слишком мал, выполняется повторный
+ * выбор ведущих элементов по текущим значениям
+ * */
+public final class SparseLU {
+    // Пороговый критерий: |a_rc| >= PIVOT_THRESHOLD * max |a_ic| в активной части столбца
+    public static final double PIVOT_THRESHOLD = 1e-3;
+    // Ведущий элемент численного этапа, меньший SINGULAR_THRESHOLD * max |u_kj|,
+    // считается потерянным, и порядок исключения выбирается заново
+    public static final double SINGULAR_THRESHOLD = 1e-14;
+
+    private final int n;
+
+    // Порядок исключения: k-я строка/столбец переставленной матрицы
+    private final int[] rowPerm;
+    private final int[] colPerm;
+    private final int[] colPos;
+
+    // Портрет L + U переставленной матрицы в формате CSR, диагональ хранится в U
+    private int[] luRowPtr;
+    private int[] luColIdx;
+    private int[] luDiag;
+    private double[] luValues;
+
+    // Позиция каждого элемента исходной матрицы в luValues
+    private int[] scatterMap;
+    private SparseMatrix analyzedFor;
+
+    private final double[] work;
+    private final double[] solveBuffer;
+
+    // Статистика: символьные анализы и численные разложения
+    public long analyses = 0;
+    public long factorizations = 0;
+
+    public SparseLU(int n) {
+        this.n = n;
+        this.rowPerm = new int[n];
+        this.colPerm = new int[n];
+        this.colPos = new int[n];
+        this.work = new double[n];
+        this.solveBuffer = new double[n];
+    }
+
+    public int fillNnz() {
+        return (luColIdx == null) ? 0 : luColIdx.length;
+    }
+
+    // Порядок исключения и портрет L + U последнего анализа для UnrolledLuSolver
+    int[] rowPermutation() {
+        return rowPerm.clone();
+    }
+
+    int[] columnPermutation() {
+        return colPerm.clone();
+    }
+
+    int[] luRowPtr() {
+        return luRowPtr;
+    }
+
+    int[] luColIdx() {
+        return luColIdx;
+    }
+
+    int[] luDiag() {
+        return luDiag;
+    }
+
+    int[] scatterMap() {
+        return scatterMap;
+    }
+
+    // Численное разложение. Символьный анализ выполняется при первом вызове,
+    // при смене портрета и при потере устойчивости ведущего элемента
+    public boolean factor(SparseMatrix a) {
+        if (a.n != n) throw new MatrixDimensionException();
+        if (analyzedFor != a && !analyze(a)) return false;
+        if (refactor(a)) return true;
+        return analyze(a) && refactor(a);
+    }
+
+    // Выбор ведущих элементов и построение портрета L + U.
+    // Активная часть матрицы хранится списками строк (столбцы по возрастанию,
+    // вместе с уже исключенными столбцами - это портрет L) и списками столбцов,
+    // поэтому шаг исключения затрагивает только строки столбца ведущего элемента
+    public boolean analyze(SparseMatrix a) {
+        analyses++;
+        analyzedFor = null;
+
+        int[][] rowCols = new int[n][];
+        double[][] rowVals = new double[n][];
+        int[] rowLen = new int[n];
+        int[][] colRows = new int[n][];
+        int[] colLen = new int[n];
+        // Число ненулевых элементов в активных столбцах строки и в активных строках столбца
+        int[] rowCount = new int[n];
+        int[] colCount = new int[n];
+        for (int i = 0; i < n; i++) {
+            final int start = a.rowPtr[i];
+            final int len = a.rowPtr[i + 1] - start;
+            rowCols[i] = Arrays.copyOfRange(a.colIdx, start, start + Math.max(len, 1));
+            rowVals[i] = Arrays.copyOfRange(a.values, start, start + Math.max(len, 1));
+            rowLen[i] = len;
+            rowCount[i] = len;
+            for (int k = start; k < start + len; k++) colCount[a.colIdx[k]]++;
+        }
+        for (int j = 0; j < n; j++) colRows[j] = new int[Math.max(colCount[j], 1)];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < rowLen[i]; k++) {
+                final int j = rowCols[i][k];
+                colRows[j][colLen[j]++] = i;
+            }
+        }
+
+        boolean[] rowDone = new boolean[n];
+        boolean[] colDone = new boolean[n];
+        Pivot pivots =
+                new Pivot(
+                        rowCols, rowVals, rowLen, colRows, colLen, rowDone, colDone, rowCount,
+                        colCount);
+        int[] mergedCols = new int[n];
+        double[] mergedVals = new double[n];
+
+        for (int step = 0; step < n; step++) {
+            final int pr = pivots.best();
+            if (pr < 0) return false;
+            final int pc = pivots.column(pr);
+
+            rowPerm[step] = pr;
+            colPerm[step] = pc;
+            colPos[pc] = step;
+            rowDone[pr] = true;
+            colDone[pc] = true;
+            pivots.remove(pr);
+
+            // Исключение с учетом заполнения: активная часть ведущей строки
+            // сливается с каждой активной строкой столбца pc
+            final int[] pCols = rowCols[pr];
+            final double[] pVals = rowVals[pr];
+            final int pLen = rowLen[pr];
+            final double pivot = pVals[Arrays.binarySearch(pCols, 0, pLen, pc)];
+            for (int c = 0; c < colLen[pc]; c++) {
+                final int i = colRows[pc][c];
+                if (rowDone[i]) continue;
+                final int[] cols = rowCols[i];
+                final double[] vals = rowVals[i];
+                final int len = rowLen[i];
+                final double coeff = vals[Arrays.binarySearch(cols, 0, len, pc)] / pivot;
+                rowCount[i]--;
+
+                int m = 0;
+                int q = 0;
+                for (int k = 0; k < pLen; k++) {
+                    final int j = pCols[k];
+                    if (colDone[j]) continue;
+                    while (q < len && cols[q] < j) {
+                        mergedCols[m] = cols[q];
+                        mergedVals[m++] = vals[q++];
+                    }
+                    double v = 0.0;
+                    if (q < len && cols[q] == j) {
+                        v = vals[q++];
+                    } else {
+                        rowCount[i]++;
+                        colCount[j]++;
+                        if (colLen[j] == colRows[j].length) {
+                            colRows[j] = Arrays.copyOf(colRows[j], 2 * colLen[j]);
+                        }
+                        colRows[j][colLen[j]++] = i;
+                    }
+                    mergedCols[m] = j;
+                    mergedVals[m++] = v - coeff * pVals[k];
+                }
+                while (q < len) {
+                    mergedCols[m] = cols[q];
+                    mergedVals[m++] = vals[q++];
+                }
+                if (m > len) {
+                    if (m > cols.length) {
+                        rowCols[i] = new int[Math.max(m, 2 * cols.length)];
+                        rowVals[i] = new double[rowCols[i].length];
+                    }
+                    System.arraycopy(mergedCols, 0, rowCols[i], 0, m);
+                    rowLen[i] = m;
+                }
+                System.arraycopy(mergedVals, 0, rowVals[i], 0, m);
+            }
+            for (int k = 0; k < pLen; k++) {
+                if (!colDone[pCols[k]]) colCount[pCols[k]]--;
+            }
+
+            pivots.update(step, pr, pc);
+        }
+
+        buildPattern(a, rowCols, rowLen);
+        analyzedFor = a;
+        return true;
+    }
+
+    private void buildPattern(SparseMatrix a, int[][] rowCols, int[] rowLen) {
+        luRowPtr = new int[n + 1];
+        for (int k = 0; k < n; k++) luRowPtr[k + 1] = luRowPtr[k] + rowLen[rowPerm[k]];
+
+        luColIdx = new int[luRowPtr[n]];
+        luDiag = new int[n];
+        luValues = new double[luRowPtr[n]];
+        for (int k = 0; k < n; k++) {
+            final int i = rowPerm[k];
+            final int start = luRowPtr[k];
+            for (int p = 0; p < rowLen[i]; p++) luColIdx[start + p] = colPos[rowCols[i][p]];
+            Arrays.sort(luColIdx, start, luRowPtr[k + 1]);
+            luDiag[k] = Arrays.binarySearch(luColIdx, start, luRowPtr[k + 1], k);
+        }
+
+        int[] rowPos = new int[n];
+        for (int k = 0; k < n; k++) rowPos[rowPerm[k]] = k;
+        scatterMap = new int[a.nnz()];
+        for (int i = 0; i < n; i++) {
+            final int k = rowPos[i];
+            for (int p = a.rowPtr[i]; p < a.rowPtr[i + 1]; p++) {
+                final int q = colPos[a.colIdx[p]];
+                scatterMap[p] = Arrays.binarySearch(luColIdx, luRowPtr[k], luRowPtr[k + 1], q);
+            }
+        }
+    }
+
+    // Численное разложение в готовом порядке исключения
+    private boolean refactor(SparseMatrix a) {
+        factorizations++;
+        Arrays.fill(luValues, 0.0);
+        for (int p = 0; p < scatterMap.length; p++) {
+            luValues[scatterMap[p]] += a.values[p];
+        }
+
+        final double[] x = work;
+        for (int k = 0; k < n; k++) {
+            final int start = luRowPtr[k];
+            final int end = luRowPtr[k + 1];
+            final int diag = luDiag[k];
+
+            for (int p = start; p < end; p++) x[luColIdx[p]] = luValues[p];
+
+            // Вычитание уже исключенных строк (часть L текущей строки)
+            for (int p = start; p < diag; p++) {
+                final int q = luColIdx[p];
+                final double l = x[q] / luValues[luDiag[q]];
+                x[q] = l;
+                for (int r = luDiag[q] + 1; r < luRowPtr[q + 1]; r++) {
+                    x[luColIdx[r]] -= l * luValues[r];
+                }
+            }
+
+            double rowMax = 0.0;
+            for (int p = start; p < end; p++) {
+                final double v = x[luColIdx[p]];
+                luValues[p] = v;
+                if (p >= diag) rowMax = Math.max(rowMax, Math.abs(v));
+            }
+
+            // Порядок исключения фиксирован, поэтому проверяется только численная вырожденность
+            final double pivot = Math.abs(luValues[diag]);
+            if (pivot == 0.0 || !Double.isFinite(pivot) || pivot < SINGULAR_THRESHOLD * rowMax) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Решение A x = b по последнему разложению
+    public void solve(double[] b, double[] x) {
+        if (b.length != n || x.length != n) throw new MatrixDimensionException();
+        final double[] y = solveBuffer;
+        for (int k = 0; k < n; k++) y[k] = b[rowPerm[k]];
+
+        for (int k = 0; k < n; k++) {
+            double yk = y[k];
+            for (int p = luRowPtr[k]; p < luDiag[k]; p++) {
+                yk -= luValues[p] * y[luColIdx[p]];
+            }
+            y[k] = yk;
+        }
+
+        for (int k = n - 1; k >= 0; k--) {
+            final int diag = luDiag[k];
+            double yk = y[k];
+            for (int p = diag + 1; p < luRowPtr[k + 1]; p++) {
+                yk -= luValues[p] * y[luColIdx[p]];
+            }
+            y[k] = yk / luValues[diag];
+        }
+
+        for (int k = 0; k < n; k++) x[colPerm[k]] = y[k];
+    }
+    /*
+     * Выбор ведущего элемента по критерию Марковица
+     *
+     * Кандидат лучше, если меньше произведение (r - 1) * (c - 1), при равенстве -
+     * если больше модуль, затем если меньше номер строки и столбца. Для каждой
+     * активной строки хранится ее лучший кандидат, строки упорядочены по нему
+     * в двоичной куче. После исключения пересчитываются только строки, в которых
+     * есть столбцы ведущей строки: у остальных не менялись ни значения, ни число
+     * элементов, ни максимумы модуля по столбцам для порогового критерия
+     * */
+    private static final class Pivot {
+        private final int[][] rowCols;
+        private final double[][] rowVals;
+        private final int[] rowLen;
+        private final int[][] colRows;
+        private final int[] colLen;
+        private final boolean[] rowDone;
+        private final boolean[] colDone;
+        private final int[] rowCount;
+        private final int[] colCount;
+
+        // Лучший кандидат строки: столбец (-1 - нет допустимых), стоимость и модуль
+        private final int[] bestCol;
+        private final long[] bestCost;
+        private final double[] bestAbs;
+
+        // Максимум модуля по активным строкам столбца, NaN - не вычислен
+        private final double[] colMax;
+        private final int[] updated;
+
+        private final int[] heap;
+        private final int[] heapPos;
+        private int size;
+
+        Pivot(
+                int[][] rowCols,
+                double[][] rowVals,
+                int[] rowLen,
+                int[][] colRows,
+                int[] colLen,
+                boolean[] rowDone,
+                boolean[] colDone,
+                int[] rowCount,
+                int[] colCount) {
+            final int n = rowLen.length;
+            this.rowCols = rowCols;
+            this.rowVals = rowVals;
+            this.rowLen = rowLen;
+            this.colRows = colRows;
+            this.colLen = colLen;
+            this.rowDone = rowDone;
+            this.colDone = colDone;
+            this.rowCount = rowCount;
+            this.colCount = colCount;
+            this.bestCol = new int[n];
+            this.bestCost = new long[n];
+            this.bestAbs = new double[n];
+            this.colMax = new double[n];
+            this.updated = new int[n];
+            this.heap = new int[n];
+            this.heapPos = new int[n];
+            Arrays.fill(colMax, Double.NaN);
+            Arrays.fill(updated, -1);
+            for (int i = 0; i < n; i++) {
+                evaluate(i);
+                heap[i] = i;
+                heapPos[i] = i;
+            }
+            size = n;
+            for (int k = n / 2 - 1; k >= 0; k--) siftDown(k);
+        }
+
+        // Строка с лучшим кандидатом или -1, если допустимых кандидатов нет
+        int best() {
+            return (size > 0 && bestCol[heap[0]] >= 0) ? heap[0] : -1;
+        }
+
+        int column(int row) {
+            return bestCol[row];
+        }
+
+        void remove(int row) {
+            final int k = heapPos[row];
+            final int last = heap[--size];
+            if (k == size) return;
+            heap[k] = last;
+            heapPos[last] = k;
+            siftDown(k);
+            siftUp(heapPos[last]);
+        }
+
+        // Пересчет строк, пересекающихся со столбцами ведущей строки pr (pc - ведущий
+        // столбец). Сначала сбрасываются максимумы изменившихся столбцов, затем каждая
+        // строка пересчитывается один раз, списки столбцов очищаются от исключенных строк
+        void update(int step, int pr, int pc) {
+            final int[] cols = rowCols[pr];
+            final int len = rowLen[pr];
+            for (int k = 0; k < len; k++) {
+                if (!colDone[cols[k]]) colMax[cols[k]] = Double.NaN;
+            }
+            for (int k = 0; k < len; k++) {
+                final int j = cols[k];
+                if (colDone[j] && j != pc) continue;
+                final int[] rows = colRows[j];
+                int kept = 0;
+                for (int p = 0; p < colLen[j]; p++) {
+                    final int i = rows[p];
+                    if (rowDone[i]) continue;
+                    rows[kept++] = i;
+                    if (updated[i] == step) continue;
+                    updated[i] = step;
+                    evaluate(i);
+                    siftDown(heapPos[i]);
+                    siftUp(heapPos[i]);
+                }
+                colLen[j] = kept;
+            }
+        }
+
+        private void evaluate(int i) {
+            int col = -1;
+            long cost = Long.MAX_VALUE;
+            double abs = 0.0;
+            final int[] cols = rowCols[i];
+            final double[] vals = rowVals[i];
+            for (int k = 0; k < rowLen[i]; k++) {
+                final int j = cols[k];
+                if (colDone[j]) continue;
+                final double v = Math.abs(vals[k]);
+                if (v == 0.0 || !Double.isFinite(v) || v < PIVOT_THRESHOLD * columnMax(j)) {
+                    continue;
+                }
+                final long c = (long) (rowCount[i] - 1) * (colCount[j] - 1);
+                if (c < cost || (c == cost && v > abs)) {
+                    cost = c;
+                    abs = v;
+                    col = j;
+                }
+            }
+            bestCol[i] = col;
+            bestCost[i] = cost;
+            bestAbs[i] = abs;
+        }
+
+        private double columnMax(int j) {
+            double max = colMax[j];
+            if (max == max) return max;
+            max = 0.0;
+            for (int p = 0; p < colLen[j]; p++) {
+                final int i = colRows[j][p];
+                if (rowDone[i]) continue;
+                final int k = Arrays.binarySearch(rowCols[i], 0, rowLen[i], j);
+                max = Math.max(max, Math.abs(rowVals[i][k]));
+            }
+            colMax[j] = max;
+            return max;
+        }
+
+        // Кандидат строки a лучше кандидата строки b
+        private boolean before(int a, int b) {
+            if (bestCol[a] < 0) return false;
+            if (bestCol[b] < 0) return true;
+            if (bestCost[a] != bestCost[b]) return bestCost[a] < bestCost[b];
+            if (bestAbs[a] != bestAbs[b]) return bestAbs[a] > bestAbs[b];
+            return a < b;
+        }
+
+        private void siftUp(int k) {
+            final int row = heap[k];
+            while (k > 0) {
+                final int parent = (k - 1) >>> 1;
+                if (!before(row, heap[parent])) break;
+                heap[k] = heap[parent];
+                heapPos[heap[k]] = k;
+                k = parent;
+            }
+            heap[k] = row;
+            heapPos[row] = k;
+        }
+
+        private void siftDown(int k) {
+            final int row = heap[k];
+            while (true) {
+                int child = 2 * k + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+                if (!before(heap[child], row)) break;
+                heap[k] = heap[child];
+                heapPos[heap[k]] = k;
+                k = child;
+            }
+            heap[k] = row;
+            heapPos[row] = k;
+        }
+    }
+}
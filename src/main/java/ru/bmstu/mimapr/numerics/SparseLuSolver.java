@@ -0,0 +1,38 @@
+package ru.bmstu.mimapr.numerics;
+
+/*
+ * Разреженный решатель для плотно собранной матрицы Якоби
+ *
+ * Портрет берется по ненулевым элементам первой матрицы, далее
+ * на каждом разложении переносятся только элементы портрета. Если
+ * ненулевой элемент появился вне портрета, портрет расширяется
+ * и выполняется новый символьный анализ
+ * */
+public final class SparseLuSolver implements LinearSolver {
+    private final SparseLU lu;
+    private SparseMatrix matrix;
+
+    public SparseLuSolver(int n) {
+        this.lu = new SparseLU(n);
+    }
+
+    @Override
+    public boolean factor(double[][] a) {
+        matrix = SparseMatrix.fromDense(a, matrix);
+        return lu.factor(matrix);
+    }
+
+    @Override
+    public boolean factor(SparseMatrix a) {
+        return lu.factor(a);
+    }
+
+    @Override
+    public void solve(double[] b, double[] x) {
+        lu.solve(b, x);
+    }
+
+    public SparseLU decomposition() {
+        return lu;
+    }
+}
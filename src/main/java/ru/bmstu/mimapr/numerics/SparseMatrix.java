@@ -0,0 +1,116 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.exceptions.MatrixDimensionException;
+
+import java.util.Arrays;
+
+/*
+ * Разреженная квадратная матрица в формате CSR
+ *
+ * Портрет (rowPtr, colIdx) задается один раз для топологии схемы,
+ * при расчете меняются только значения values
+ * */
+public final class SparseMatrix {
+    public final int n;
+    // Начала строк в colIdx/values, длина n + 1
+    public final int[] rowPtr;
+    // Номера столбцов, внутри строки отсортированы по возрастанию
+    public final int[] colIdx;
+    public final double[] values;
+
+    public SparseMatrix(int n, int[] rowPtr, int[] colIdx) {
+        if (rowPtr.length != n + 1 || colIdx.length != rowPtr[n]) {
+            throw new MatrixDimensionException();
+        }
+        this.n = n;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = new double[colIdx.length];
+    }
+
+    // Портрет по ненулевым элементам плотной матрицы, значения копируются
+    public static SparseMatrix fromDense(double[][] dense) {
+        return fromDense(dense, null);
+    }
+
+    // Матрица со значениями dense в портрете previous, если все ненулевые элементы
+    // dense в него попадают. Иначе (и при previous == null) - новая матрица по
+    // объединению портретов: это другой объект, и разложение проанализирует его заново
+    public static SparseMatrix fromDense(double[][] dense, SparseMatrix previous) {
+        if (previous != null && previous.covers(dense)) {
+            previous.gather(dense);
+            return previous;
+        }
+        final int n = dense.length;
+        if (previous != null && previous.n != n) throw new MatrixDimensionException();
+        int[] rowPtr = new int[n + 1];
+        int[] colIdx = new int[0];
+        int nnz = 0;
+        for (int i = 0; i < n; i++) {
+            if (dense[i].length != n) throw new MatrixDimensionException();
+            int k = (previous == null) ? 0 : previous.rowPtr[i];
+            final int end = (previous == null) ? 0 : previous.rowPtr[i + 1];
+            for (int j = 0; j < n; j++) {
+                final boolean inPattern = k < end && previous.colIdx[k] == j;
+                if (inPattern) k++;
+                if (!inPattern && dense[i][j] == 0.0) continue;
+                if (nnz == colIdx.length) colIdx = Arrays.copyOf(colIdx, Math.max(16, 2 * nnz));
+                colIdx[nnz++] = j;
+            }
+            rowPtr[i + 1] = nnz;
+        }
+        SparseMatrix m = new SparseMatrix(n, rowPtr, Arrays.copyOf(colIdx, nnz));
+        m.gather(dense);
+        return m;
+    }
+
+    // Все ненулевые элементы плотной матрицы лежат в портрете
+    public boolean covers(double[][] dense) {
+        if (dense.length != n) throw new MatrixDimensionException();
+        for (int i = 0; i < n; i++) {
+            final double[] row = dense[i];
+            if (row.length != n) throw new MatrixDimensionException();
+            int k = rowPtr[i];
+            final int end = rowPtr[i + 1];
+            for (int j = 0; j < n; j++) {
+                if (k < end && colIdx[k] == j) {
+                    k++;
+                } else if (row[j] != 0.0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int nnz() {
+        return colIdx.length;
+    }
+
+    // Позиция элемента (i, j) в values или -1, если он вне портрета
+    public int indexOf(int i, int j) {
+        int pos = Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i + 1], j);
+        return (pos >= 0) ? pos : -1;
+    }
+
+    public double get(int i, int j) {
+        int pos = indexOf(i, j);
+        return (pos >= 0) ? values[pos] : 0.0;
+    }
+
+    // Загрузка значений из плотной матрицы того же портрета. Элементы вне портрета
+    // не переносятся: если они могут быть ненулевыми, нужен fromDense(dense, this)
+    public void gather(double[][] dense) {
+        if (dense.length != n) throw new MatrixDimensionException();
+        for (int i = 0; i < n; i++) {
+            final double[] row = dense[i];
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                values[k] = row[colIdx[k]];
+            }
+        }
+    }
+
+    public void clearValues() {
+        Arrays.fill(values, 0.0);
+    }
+}
@@ -0,0 +1,159 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+
+import java.util.Arrays;
+
+/*
+ * Модель схемы как система X' = F(X, t) по переменным состояния
+ *
+ * Строки без формул интегрирования (уравнения переменных состояния, узлов
+ * и источников) при заданных X решаются методом Ньютона относительно
+ * остальных неизвестных U, в том числе производных X'. Чувствительность
+ * dU/dX получается по тому же разложению: A_UU dU = -A_UX dX.
+ * Экземпляр хранит рабочие буферы и не потокобезопасен
+ * */
+final class StateSpace {
+    final int n;
+    final int m;
+    private final CircuitModel model;
+    // Строки без формул интегрирования и столбцы всех неизвестных, кроме X
+    private final int[] rows;
+    private final int[] columns;
+
+    private final SparseMatrix jacobi;
+    private final SparseMatrix reduced;
+    private final int[] positions;
+    private final SparseLU lu;
+    private final double[] vector;
+    private final double[] rhs;
+    private final double[] du;
+    private final double[] deltas;
+    // Строки формул интегрирования не решаются, поэтому их слагаемые не нужны
+    private final double[] history;
+
+    StateSpace(CircuitModel model) {
+        this.model = model;
+        this.n = model.size();
+        this.m = model.stateCount();
+        final boolean[] integrationRow = new boolean[n];
+        final boolean[] stateColumn = new boolean[n];
+        for (int k = 0; k < m; k++) {
+            integrationRow[model.derivativeIndex(k)] = true;
+            stateColumn[model.stateIndex(k)] = true;
+        }
+        this.rows = indices(integrationRow, false);
+        this.columns = indices(stateColumn, false);
+        this.jacobi = model.createJacobiMatrix();
+        this.reduced = subMatrix(jacobi, rows, columns);
+        this.positions = positions(jacobi, reduced, rows, columns);
+        this.lu = new SparseLU(rows.length);
+        this.vector = new double[n];
+        this.rhs = new double[rows.length];
+        this.du = new double[rows.length];
+        this.deltas = new double[n];
+        this.history = new double[m];
+    }
+
+    // Неизвестные U в момент t при переменных состояния из x; x - начальное
+    // приближение и результат. false - матрица вырождена или метод Ньютона не сошелся.
+    // Итерации с ограничением напряжений p-n переходов не расходуют число итераций
+    // (не больше LIMITED_NEWTON_STEPS таких)
+    boolean solve(double t, double[] x) {
+        int limitedSteps = 0;
+        for (int it = 0; it < Data.NEWTON_STEPS; it++) {
+            if (!factor(x)) return false;
+            model.fillVector(vector, t, 1.0, x, history);
+            for (int r = 0; r < rows.length; r++) rhs[r] = -vector[rows[r]];
+            lu.solve(rhs, du);
+            for (int c = 0; c < columns.length; c++) deltas[columns[c]] = du[c];
+            double factor = 1.0;
+            if (limitedSteps < Data.LIMITED_NEWTON_STEPS) {
+                factor = model.limitStep(x, deltas);
+                if (factor < 1.0) {
+                    limitedSteps++;
+                    it--;
+                }
+            }
+            for (int c = 0; c < columns.length; c++) x[columns[c]] += factor * du[c];
+            final double norm = model.calculateVectorNorm(deltas);
+            if (!Double.isFinite(norm)) return false;
+            if (factor == 1.0 && norm < Data.EPSILON) return true;
+        }
+        return false;
+    }
+
+    // dU/dX_j в точке x: sensitivity[j] - вектор длины n, нули на месте X
+    boolean sensitivity(double[] x, double[][] sensitivity) {
+        if (!factor(x)) return false;
+        for (int j = 0; j < m; j++) {
+            final int state = model.stateIndex(j);
+            for (int r = 0; r < rows.length; r++) rhs[r] = -jacobi.get(rows[r], state);
+            lu.solve(rhs, du);
+            Arrays.fill(sensitivity[j], 0.0);
+            for (int c = 0; c < columns.length; c++) sensitivity[j][columns[c]] = du[c];
+        }
+        return true;
+    }
+
+    // dF/dX в точке x: a[k][j] = dX'_k/dX_j
+    boolean jacobian(double[] x, double[][] sensitivity, double[][] a) {
+        if (!sensitivity(x, sensitivity)) return false;
+        for (int k = 0; k < m; k++) {
+            final int derivative = model.derivativeIndex(k);
+            for (int j = 0; j < m; j++) a[k][j] = sensitivity[j][derivative];
+        }
+        return true;
+    }
+
+    private boolean factor(double[] x) {
+        model.fillJacobiMatrix(jacobi, 1.0, x);
+        for (int k = 0; k < positions.length; k++) reduced.values[k] = jacobi.values[positions[k]];
+        return lu.factor(reduced);
+    }
+
+    // Номера i по возрастанию, для которых flags[i] == value
+    static int[] indices(boolean[] flags, boolean value) {
+        int count = 0;
+        for (boolean f : flags) if (f == value) count++;
+        int[] idx = new int[count];
+        int k = 0;
+        for (int i = 0; i < flags.length; i++) if (flags[i] == value) idx[k++] = i;
+        return idx;
+    }
+
+    // Портрет подматрицы a[rows][columns], columns - по возрастанию
+    static SparseMatrix subMatrix(SparseMatrix a, int[] rows, int[] columns) {
+        final int[] colPos = new int[a.n];
+        Arrays.fill(colPos, -1);
+        for (int c = 0; c < columns.length; c++) colPos[columns[c]] = c;
+
+        int[] rowPtr = new int[rows.length + 1];
+        for (int r = 0; r < rows.length; r++) {
+            int count = 0;
+            for (int k = a.rowPtr[rows[r]]; k < a.rowPtr[rows[r] + 1]; k++) {
+                if (colPos[a.colIdx[k]] >= 0) count++;
+            }
+            rowPtr[r + 1] = rowPtr[r] + count;
+        }
+        int[] colIdx = new int[rowPtr[rows.length]];
+        int pos = 0;
+        for (int r = 0; r < rows.length; r++) {
+            for (int k = a.rowPtr[rows[r]]; k < a.rowPtr[rows[r] + 1]; k++) {
+                if (colPos[a.colIdx[k]] >= 0) colIdx[pos++] = colPos[a.colIdx[k]];
+            }
+        }
+        return new SparseMatrix(rows.length, rowPtr, colIdx);
+    }
+
+    // Позиции элементов подматрицы sub в a.values
+    static int[] positions(SparseMatrix a, SparseMatrix sub, int[] rows, int[] columns) {
+        int[] pos = new int[sub.nnz()];
+        for (int r = 0; r < sub.n; r++) {
+            for (int k = sub.rowPtr[r]; k < sub.rowPtr[r + 1]; k++) {
+                pos[k] = a.indexOf(rows[r], columns[sub.colIdx[k]]);
+            }
+        }
+        return pos;
+    }
+}
@@ -10,15 +10,115 @@ public final class TimeStepController {
     public static PhaseVariables predictPhaseVariables(
             PhaseVariables pvPrev, PhaseVariables pvPrevPrev) {
 
-        double[] prevPrevArr = pvPrevPrev.toArray();
-        double[] curArr = pvPrev.toArray();
+        PhaseVariables out = new PhaseVariables();
+        predictPhaseVariables(pvPrev, pvPrevPrev, out);
+        return out;
+    }
+
+    // Линейная экстраполяция в заранее выделенный объект
+    public static void predictPhaseVariables(
+            PhaseVariables pvPrev, PhaseVariables pvPrevPrev, PhaseVariables out) {
+
+        out.dUc1 = 2.0 * pvPrev.dUc1 - pvPrevPrev.dUc1;
+        out.dUc2 = 2.0 * pvPrev.dUc2 - pvPrevPrev.dUc2;
+        out.dUcb = 2.0 * pvPrev.dUcb - pvPrevPrev.dUcb;
+        out.dIl1 = 2.0 * pvPrev.dIl1 - pvPrevPrev.dIl1;
+        out.duC3 = 2.0 * pvPrev.duC3 - pvPrevPrev.duC3;
+
+        out.Uc1 = 2.0 * pvPrev.Uc1 - pvPrevPrev.Uc1;
+        out.Uc2 = 2.0 * pvPrev.Uc2 - pvPrevPrev.Uc2;
+        out.Ucb = 2.0 * pvPrev.Ucb - pvPrevPrev.Ucb;
+        out.Il1 = 2.0 * pvPrev.Il1 - pvPrevPrev.Il1;
+        out.uC3 = 2.0 * pvPrev.uC3 - pvPrevPrev.uC3;
+
+        out.phi1 = 2.0 * pvPrev.phi1 - pvPrevPrev.phi1;
+        out.phi2 = 2.0 * pvPrev.phi2 - pvPrevPrev.phi2;
+        out.phi3 = 2.0 * pvPrev.phi3 - pvPrevPrev.phi3;
+        out.phi4 = 2.0 * pvPrev.phi4 - pvPrevPrev.phi4;
+        out.phi5 = 2.0 * pvPrev.phi5 - pvPrevPrev.phi5;
+
+        out.iE = 2.0 * pvPrev.iE - pvPrevPrev.iE;
+    }
+
+    // Линейная экстраполяция для плоских векторов неизвестных
+    public static void predictPhaseVariables(double[] pvPrev, double[] pvPrevPrev, double[] out) {
+        for (int i = 0; i < out.length; ++i) {
+            out[i] = 2.0 * pvPrev[i] - pvPrevPrev[i];
+        }
+    }
 
-        double[] newVals = new double[Data.N];
-        for (int i = 0; i < Data.N; ++i) {
-            newVals[i] = 2.0 * curArr[i] - prevPrevArr[i];
+    // Экстраполяция многочленом степени order (1 или 2) по принятым точкам
+    // на неравномерной сетке в момент через deltaT после последней точки
+    public static void predictPhaseVariables(
+            double[] pvPrev,
+            double[] pvPrevPrev,
+            double[] pvPrev3,
+            double deltaT,
+            double prevDeltaT,
+            double prevPrevDeltaT,
+            int order,
+            double[] out) {
+
+        if (order == 1) {
+            final double ratio = deltaT / prevDeltaT;
+            for (int i = 0; i < out.length; ++i) {
+                out[i] = pvPrev[i] + (pvPrev[i] - pvPrevPrev[i]) * ratio;
+            }
+            return;
+        }
+
+        // Интерполяционный многочлен Ньютона по трем точкам
+        final double w = deltaT * (deltaT + prevDeltaT) / (prevDeltaT + prevPrevDeltaT);
+        for (int i = 0; i < out.length; ++i) {
+            final double f1 = (pvPrev[i] - pvPrevPrev[i]) / prevDeltaT;
+            final double f2 = (pvPrevPrev[i] - pvPrev3[i]) / prevPrevDeltaT;
+            out[i] = pvPrev[i] + f1 * deltaT + (f1 - f2) * w;
+        }
+    }
+
+    // Плотный вывод: значение в момент t между принятыми точками (t1, x1) и (t0, x0)
+    // по многочлену степени order (1 или 2), для степени 2 - еще и через (t2, x2).
+    // Если третьей точки нет (t2 >= t1), интерполяция линейная
+    public static void interpolate(
+            double t,
+            int order,
+            double t0,
+            double[] x0,
+            double t1,
+            double[] x1,
+            double t2,
+            double[] x2,
+            double[] out) {
+
+        final double h = t0 - t1;
+        final boolean quadratic = order >= 2 && t2 < t1;
+        final double span = t0 - t2;
+        for (int i = 0; i < out.length; ++i) {
+            final double f01 = (x0[i] - x1[i]) / h;
+            double slope = f01;
+            if (quadratic) {
+                final double f12 = (x1[i] - x2[i]) / (t1 - t2);
+                slope += (t - t1) * (f01 - f12) / span;
+            }
+            out[i] = x0[i] + (t - t0) * slope;
         }
+    }
 
-        return PhaseVariables.fromArray(newVals);
+    // Укорачивание шага из принятой точки prevT так, чтобы шаги попали точно
+    // в breakpoint. Если его перешагнет следующий шаг, остаток делится на два
+    // равных шага: иначе последний шаг перед breakpoint мог бы оказаться во много
+    // раз короче предыдущего, и оценки по разделенным разностям усилили бы
+    // погрешность метода Ньютона. Отрезок короче MINIMAL_STEP не оставляется.
+    // Как и остальные методы выбора шага, меняет td на месте и возвращает его
+    public static TimeDemon landOnBreakpoint(TimeDemon td, double prevT, double breakpoint) {
+        final double remaining = breakpoint - prevT;
+        if (td.currT > breakpoint - Data.MINIMAL_STEP) {
+            return td.set(breakpoint, remaining, td.success);
+        }
+        if (td.currT + td.deltaT > breakpoint) {
+            return td.set(prevT + 0.5 * remaining, 0.5 * remaining, td.success);
+        }
+        return td;
     }
 
     public static double findMaxValue(double[] values) {
@@ -27,6 +127,11 @@ public final class TimeStepController {
         return maxv;
     }
 
+    // Как и findMaxValue, пропускает NaN
+    private static double max(double maxv, double v) {
+        return (v > maxv) ? v : maxv;
+    }
+
     public static double secondDerivative(
             double curr, double prev, double prevPrev, double deltaT, double prevDeltaT) {
 
@@ -37,6 +142,24 @@ public final class TimeStepController {
                                 / (deltaT + prevDeltaT));
     }
 
+    // Оценка модуля третьей производной по разделенным разностям на неравномерной сетке
+    public static double thirdDerivative(
+            double curr,
+            double prev,
+            double prevPrev,
+            double prev3,
+            double deltaT,
+            double prevDeltaT,
+            double prevPrevDeltaT) {
+
+        final double f1 = (curr - prev) / deltaT;
+        final double f2 = (prev - prevPrev) / prevDeltaT;
+        final double f3 = (prevPrev - prev3) / prevPrevDeltaT;
+        final double f12 = (f1 - f2) / (deltaT + prevDeltaT);
+        final double f23 = (f2 - f3) / (prevDeltaT + prevPrevDeltaT);
+        return 6.0 * Math.abs((f12 - f23) / (deltaT + prevDeltaT + prevPrevDeltaT));
+    }
+
     public static double firstDerivativeOfDerivative(
             double currDer, double prevDer, double deltaT) {
 
@@ -50,30 +173,193 @@ public final class TimeStepController {
             PhaseVariables pvPrev,
             PhaseVariables pvPrevPrev) {
 
-        double currT = td.currT;
         double deltaT = td.deltaT;
 
-        PhaseVariables tmpPhi = new PhaseVariables();
-        tmpPhi.phi1 = secondDerivative(pv.phi1, pvPrev.phi1, pvPrevPrev.phi1, deltaT, prevDeltaT);
-        tmpPhi.phi2 = secondDerivative(pv.phi2, pvPrev.phi2, pvPrevPrev.phi2, deltaT, prevDeltaT);
-        tmpPhi.phi3 = secondDerivative(pv.phi3, pvPrev.phi3, pvPrevPrev.phi3, deltaT, prevDeltaT);
-        tmpPhi.phi4 = secondDerivative(pv.phi4, pvPrev.phi4, pvPrevPrev.phi4, deltaT, prevDeltaT);
-        tmpPhi.phi5 = secondDerivative(pv.phi5, pvPrev.phi5, pvPrevPrev.phi5, deltaT, prevDeltaT);
+        double d1 = secondDerivative(pv.phi1, pvPrev.phi1, pvPrevPrev.phi1, deltaT, prevDeltaT);
+        double d2 = secondDerivative(pv.phi2, pvPrev.phi2, pvPrevPrev.phi2, deltaT, prevDeltaT);
+        double d3 = secondDerivative(pv.phi3, pvPrev.phi3, pvPrevPrev.phi3, deltaT, prevDeltaT);
+        double d4 = secondDerivative(pv.phi4, pvPrev.phi4, pvPrevPrev.phi4, deltaT, prevDeltaT);
+        double d5 = secondDerivative(pv.phi5, pvPrev.phi5, pvPrevPrev.phi5, deltaT, prevDeltaT);
+
+        // Максимум оценок без промежуточных массивов
+        double delta = max(max(max(max(max(0.0, d1), d2), d3), d4), d5);
+        return chooseDeltaT(td, delta);
+    }
+
+    // Выбор шага по вторым производным потенциалов с номерами indices
+    public static TimeDemon calculateDeltaT(
+            TimeDemon td,
+            double prevDeltaT,
+            double[] pv,
+            double[] pvPrev,
+            double[] pvPrevPrev,
+            int[] indices) {
+
+        return calculateDeltaT(td, prevDeltaT, pv, pvPrev, pvPrevPrev, indices, 1.0);
+    }
+
+    // То же с порогами DELTA_1/DELTA_2, умноженными на toleranceScale
+    public static TimeDemon calculateDeltaT(
+            TimeDemon td,
+            double prevDeltaT,
+            double[] pv,
+            double[] pvPrev,
+            double[] pvPrevPrev,
+            int[] indices,
+            double toleranceScale) {
+
+        double deltaT = td.deltaT;
+
+        double delta = 0.0;
+        for (int i : indices) {
+            double d = secondDerivative(pv[i], pvPrev[i], pvPrevPrev[i], deltaT, prevDeltaT);
+            delta = max(delta, d);
+        }
+        return chooseDeltaT(td, delta / toleranceScale);
+    }
+
+    // Выбор шага для формулы второго порядка по третьим производным потенциалов.
+    // Оценка приводится к масштабу secondDerivative, равному половине локальной
+    // погрешности неявной формулы Эйлера, поэтому пороги DELTA_1/DELTA_2 общие
+    // и так же умножаются на toleranceScale
+    public static TimeDemon calculateDeltaT(
+            TimeDemon td,
+            double prevDeltaT,
+            double prevPrevDeltaT,
+            double[] pv,
+            double[] pvPrev,
+            double[] pvPrevPrev,
+            double[] pvPrev3,
+            int[] indices,
+            double errorConstant,
+            double toleranceScale) {
+
+        double deltaT = td.deltaT;
+        double scale = 0.5 * errorConstant * deltaT * deltaT * deltaT;
+
+        double delta = 0.0;
+        for (int i : indices) {
+            double d =
+                    thirdDerivative(
+                            pv[i],
+                            pvPrev[i],
+                            pvPrevPrev[i],
+                            pvPrev3[i],
+                            deltaT,
+                            prevDeltaT,
+                            prevPrevDeltaT);
+            delta = max(delta, scale * d);
+        }
+        return chooseDeltaT(td, delta / toleranceScale);
+    }
+
+    // Выбор шага по оценке локальной погрешности методом предиктор-корректор.
+    // Погрешность предиктора порядка p равна x^(p+1) / (p+1)! * П (t - t_j),
+    // формулы интегрирования - C * deltaT^(p+1) * x^(p+1), откуда оценка
+    // по разности решения pv и прогноза predicted на том же шаге.
+    // Решение pv относится к моменту td.currT, достигнутому шагом td.deltaT,
+    // поэтому новый шаг отсчитывается от td.currT при принятии
+    // и от td.currT - td.deltaT при отказе
+    public static TimeDemon calculateDeltaT(
+            TimeDemon td,
+            int order,
+            double errorConstant,
+            double prevDeltaT,
+            double prevPrevDeltaT,
+            double[] pv,
+            double[] predicted,
+            double[] pvPrev,
+            int[] indices) {
+
+        return calculateDeltaT(
+                td,
+                order,
+                errorConstant,
+                prevDeltaT,
+                prevPrevDeltaT,
+                pv,
+                predicted,
+                pvPrev,
+                indices,
+                1.0);
+    }
+
+    // То же с допусками RELATIVE_TOLERANCE/ABSOLUTE_TOLERANCE, умноженными на toleranceScale
+    public static TimeDemon calculateDeltaT(
+            TimeDemon td,
+            int order,
+            double errorConstant,
+            double prevDeltaT,
+            double prevPrevDeltaT,
+            double[] pv,
+            double[] predicted,
+            double[] pvPrev,
+            int[] indices,
+            double toleranceScale) {
+
+        final double deltaT = td.deltaT;
+        double span = deltaT * (deltaT + prevDeltaT);
+        double scale = 2.0 * errorConstant * deltaT * deltaT / span;
+        if (order == 2) {
+            span *= deltaT + prevDeltaT + prevPrevDeltaT;
+            scale = 6.0 * errorConstant * deltaT * deltaT * deltaT / span;
+        }
+
+        // Взвешенная максимум-норма: 1 соответствует границе допуска
+        double error = 0.0;
+        for (int i : indices) {
+            final double tolerance =
+                    toleranceScale
+                            * (Data.ABSOLUTE_TOLERANCE
+                                    + Data.RELATIVE_TOLERANCE
+                                            * Math.max(Math.abs(pv[i]), Math.abs(pvPrev[i])));
+            error = max(error, scale * Math.abs(pv[i] - predicted[i]) / tolerance);
+        }
+
+        double ratio =
+                (error > 0.0)
+                        ? Data.STEP_SAFETY * Math.pow(error, -1.0 / (order + 1))
+                        : Data.MAX_STEP_RATIO;
+        ratio = Math.min(Data.MAX_STEP_RATIO, Math.max(Data.MIN_STEP_RATIO, ratio));
+
+        if (!(error <= 1.0)) {
+            return resizeStep(td, deltaT * Math.min(ratio, Data.STEP_SAFETY), false);
+        }
+        final double newDeltaT = Math.min(deltaT * ratio, Data.MAXIMAL_STEP);
+        return td.set(td.currT + newDeltaT, newDeltaT, true);
+    }
+
+    // Замена шага, которым достигается момент td.currT
+    public static TimeDemon resizeStep(TimeDemon td, double newDeltaT, boolean success) {
+        return td.set(td.currT - td.deltaT + newDeltaT, newDeltaT, success);
+    }
+
+    // Уменьшение, сохранение или увеличение шага по оценке погрешности
+    private static TimeDemon chooseDeltaT(TimeDemon td, double delta) {
+        double currT = td.currT;
+        double deltaT = td.deltaT;
 
-        double delta = findMaxValue(tmpPhi.toArray());
         if (delta > Data.DELTA_1) {
-            return new TimeDemon(currT, deltaT / 2.0, false);
+            return td.set(currT, deltaT / 2.0, false);
         }
 
         if (delta > Data.DELTA_2) {
-            return new TimeDemon(currT + deltaT, deltaT, true);
+            return td.set(currT + deltaT, deltaT, true);
         }
 
         double newDeltaT = (deltaT > Data.MAXIMAL_STEP) ? Data.MAXIMAL_STEP : deltaT * 2.0;
-        return new TimeDemon(currT + deltaT, newDeltaT, true);
+        return td.set(currT + deltaT, newDeltaT, true);
+    }
+
+    // Множитель шага по скорости сходимости метода Ньютона: сжатие поправок примерно
+    // пропорционально шагу, поэтому при rate выше NEWTON_TARGET_RATE шаг уменьшается
+    // в rate / NEWTON_TARGET_RATE раз, но не сильнее чем до MIN_STEP_RATIO
+    public static double newtonRateRatio(double rate) {
+        if (!(rate > Data.NEWTON_TARGET_RATE)) return 1.0;
+        return Math.max(Data.MIN_STEP_RATIO, Data.NEWTON_TARGET_RATE / rate);
     }
 
     public static TimeDemon deltaTReduction(TimeDemon td) {
-        return new TimeDemon(td.currT, td.deltaT / 2.0, true);
+        return td.set(td.currT, td.deltaT / 2.0, true);
     }
 }
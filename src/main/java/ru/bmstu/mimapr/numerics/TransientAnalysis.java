@@ -0,0 +1,407 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.exceptions.TimeStepException;
+import ru.bmstu.mimapr.io.OutputUtils;
+import ru.bmstu.mimapr.model.TimeDemon;
+
+import java.io.IOException;
+
+/*
+ * Анализ переходного процесса для произвольной модели схемы
+ *
+ * Метод Ньютона на каждом шаге, выбор шага по вторым (для формул второго
+ * порядка - третьим) производным потенциалов или по оценке локальной
+ * погрешности и вывод результатов на равномерной сетке SAVE_DT.
+ * При выборе шага по погрешности начальное приближение метода Ньютона -
+ * прогноз по принятым точкам, а первые шаги, пока точек для прогноза
+ * недостаточно, выполняются с начальным шагом.
+ * Шаги могут попадать точно в изломы и экстремумы ЭДС (breakpoints),
+ * а точки вывода - интерполироваться между принятыми шагами (denseOutput).
+ * При ModelWorkspace.adaptiveNewton шаг дополнительно ограничивается по
+ * скорости сходимости метода Ньютона (TimeStepController.newtonRateRatio)
+ * */
+public final class TransientAnalysis {
+
+    // Получатель принятых точек решения
+    @FunctionalInterface
+    public interface SampleSink {
+        void sample(double t, double[] x) throws IOException;
+    }
+
+    // Получатель контрольных точек. Вызывается после передачи в SampleSink
+    // всех точек принятого шага, поэтому снимок согласован с выводом
+    @FunctionalInterface
+    public interface CheckpointSink {
+        void checkpoint(TransientState state) throws IOException;
+    }
+
+    // Вызывается раз в PROGRESS_CHECK_ITERATIONS решений методом Ньютона, включая
+    // отброшенные шаги: отмена расчета (исключением) и уступка процессора
+    @FunctionalInterface
+    public interface ProgressHook {
+        void progress(double t);
+    }
+
+    private final CircuitModel model;
+    public final ModelWorkspace workspace;
+    public final IntegrationMethod integrator;
+    private final int[] controlled;
+    // Переменные состояния и потенциалы, по которым оценивается локальная погрешность
+    private final int[] estimated;
+
+    // Печать хода расчета каждые PRINT_EVERY_SUCCESS_STEPS шагов
+    // вместе с дополнительной точкой результата в этот момент
+    public boolean progressOutput = true;
+
+    public StepControlKind stepControl = Data.STEP_CONTROL;
+
+    // Множитель допусков выбора шага: порогов DELTA_1/DELTA_2 или допусков
+    // оценки локальной погрешности. Меньше 1 - мельче шаги и точнее решение
+    public double toleranceScale = 1.0;
+
+    // Шаг укорачивается до ближайшего момента CircuitModel.nextBreakpoint, чтобы
+    // излом или экстремум ЭДС не обнаруживался только по отброшенному шагу
+    public boolean breakpoints = Data.BREAKPOINTS;
+
+    // Точки вывода на сетке SAVE_DT интерполируются многочленом порядка формулы
+    // интегрирования по принятым точкам, а не повторяют последнее принятое решение
+    public boolean denseOutput = Data.DENSE_OUTPUT;
+
+    // Контрольные точки не чаще одной за checkpointPeriodNanos, null - выключены.
+    // Время проверяется раз в CHECKPOINT_CHECK_STEPS принятых шагов
+    public CheckpointSink checkpointSink = null;
+    public long checkpointPeriodNanos = 0L;
+    private static final int CHECKPOINT_CHECK_STEPS = 256;
+
+    public ProgressHook progressHook = null;
+    private static final int PROGRESS_CHECK_ITERATIONS = 256;
+
+    // Состояние интегрирования. Оба объекта меняются на месте: prevTimeDemon -
+    // копия шага, которым достигнуто только что найденное решение
+    private final TimeDemon timeDemon;
+    private final TimeDemon prevTimeDemon;
+    private double prevDeltaT;
+    private double prevPrevDeltaT;
+    // Слагаемые h формулы интегрирования для текущего шага
+    private final double[] history;
+    private final double[] initialApproximation;
+    private double[] pvPrev;
+    private double[] pvPrevPrev;
+    private double[] pvPrev3;
+    // Моменты решений pvPrev и pvPrevPrev
+    private double prevT;
+    private double prevPrevT;
+    private final double[] interpolated;
+    private double nextSaveT;
+    private int iteration = 0;
+    private long acceptedSteps = 0;
+    private long rejectedSteps = 0;
+
+    public TransientAnalysis(CircuitModel model, LinearSolverKind kind) {
+        this(model, kind, Data.INTEGRATION_METHOD);
+    }
+
+    public TransientAnalysis(
+            CircuitModel model, LinearSolverKind kind, IntegrationMethodKind method) {
+        this.model = model;
+        this.workspace = new ModelWorkspace(model, kind);
+        this.integrator = IntegrationMethod.of(method, model);
+        this.controlled = model.potentialIndices();
+        this.estimated = new int[model.stateCount() + controlled.length];
+        for (int k = 0; k < model.stateCount(); k++) estimated[k] = model.stateIndex(k);
+        System.arraycopy(controlled, 0, estimated, model.stateCount(), controlled.length);
+
+        final int n = model.size();
+        this.timeDemon = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+        this.prevTimeDemon = new TimeDemon(Data.TIME_START, Data.START_DELTA_TIME, true);
+        this.prevDeltaT = timeDemon.deltaT;
+        this.prevPrevDeltaT = timeDemon.deltaT;
+        this.history = new double[model.stateCount()];
+        this.initialApproximation = new double[n];
+        this.pvPrev = new double[n];
+        this.pvPrevPrev = new double[n];
+        this.pvPrev3 = new double[n];
+        this.prevT = timeDemon.currT - timeDemon.deltaT;
+        this.prevPrevT = prevT;
+        this.interpolated = new double[n];
+        this.nextSaveT = Data.TIME_START;
+    }
+
+    // Число решений методом Ньютона, включая отброшенные шаги
+    public int iterations() {
+        return iteration;
+    }
+
+    public long acceptedSteps() {
+        return acceptedSteps;
+    }
+
+    // Шаги, отброшенные по погрешности или из-за расходимости метода Ньютона
+    public long rejectedSteps() {
+        return rejectedSteps;
+    }
+
+    public void run(double timeEnd, SampleSink sink) throws IOException {
+        long nextCheckpointNanos = System.nanoTime() + checkpointPeriodNanos;
+        while (timeDemon.currT < timeEnd) {
+            if (progressHook != null && iteration % PROGRESS_CHECK_ITERATIONS == 0) {
+                progressHook.progress(timeDemon.currT);
+            }
+            if (breakpoints) {
+                TimeStepController.landOnBreakpoint(
+                        timeDemon, prevT, model.nextBreakpoint(prevT + Data.MINIMAL_STEP));
+            }
+            if (isLteControlled()) {
+                TimeStepController.predictPhaseVariables(
+                        pvPrev,
+                        pvPrevPrev,
+                        pvPrev3,
+                        timeDemon.deltaT,
+                        prevDeltaT,
+                        prevPrevDeltaT,
+                        integrator.order(),
+                        initialApproximation);
+            }
+            final double gamma = integrator.prepare(timeDemon.deltaT, history);
+            boolean isSuccessful =
+                    NewtonSolver.newtonMethod(
+                            model,
+                            timeDemon.currT,
+                            gamma,
+                            initialApproximation,
+                            history,
+                            workspace);
+            iteration++;
+
+            if (isSuccessful) {
+                double[] phaseVariables = workspace.solution;
+
+                prevTimeDemon.copyFrom(timeDemon);
+                chooseDeltaT(phaseVariables);
+
+                if (!timeDemon.success) {
+                    rejectedSteps++;
+                    if (workspace.metrics != null) workspace.metrics.stepRejected();
+                    // Пороговый выбор шага исторически не ограничен снизу при отказе
+                    if (stepControl == StepControlKind.LTE
+                            && timeDemon.deltaT < Data.MINIMAL_STEP) {
+                        throw new TimeStepException();
+                    }
+                    continue;
+                }
+                // Медленная сходимость на принятом шаге: шаг не увеличивается
+                if (workspace.adaptiveNewton
+                        && TimeStepController.newtonRateRatio(workspace.contractionRate) < 1.0
+                        && timeDemon.deltaT > prevTimeDemon.deltaT) {
+                    changeStep(timeDemon, prevTimeDemon.deltaT);
+                }
+                acceptedSteps++;
+                if (workspace.metrics != null) {
+                    workspace.metrics.stepAccepted(prevTimeDemon.currT, prevTimeDemon.deltaT);
+                }
+                double tAccepted = prevTimeDemon.currT;
+                while (tAccepted >= nextSaveT) {
+                    sink.sample(nextSaveT, outputPoint(nextSaveT, tAccepted, phaseVariables));
+                    nextSaveT += Data.SAVE_DT;
+                }
+                prevPrevDeltaT = prevDeltaT;
+                prevDeltaT = prevTimeDemon.deltaT;
+
+                TimeStepController.predictPhaseVariables(
+                        phaseVariables, pvPrev, initialApproximation);
+
+                integrator.accept(prevTimeDemon.deltaT, phaseVariables);
+
+                // Сдвиг истории: самый старый буфер переиспользуется под новое значение pvPrev
+                double[] tmp = pvPrev3;
+                pvPrev3 = pvPrevPrev;
+                pvPrevPrev = pvPrev;
+                pvPrev = tmp;
+                System.arraycopy(phaseVariables, 0, pvPrev, 0, pvPrev.length);
+                prevPrevT = prevT;
+                prevT = tAccepted;
+
+                if (progressOutput && iteration % Data.PRINT_EVERY_SUCCESS_STEPS == 0) {
+                    System.out.println(iteration + ", t = " + OutputUtils.fmt(timeDemon.currT));
+                    sink.sample(prevTimeDemon.currT, phaseVariables);
+                }
+
+                if (checkpointSink != null
+                        && acceptedSteps % CHECKPOINT_CHECK_STEPS == 0
+                        && System.nanoTime() >= nextCheckpointNanos) {
+                    checkpointSink.checkpoint(snapshot());
+                    nextCheckpointNanos = System.nanoTime() + checkpointPeriodNanos;
+                }
+            } else {
+                rejectedSteps++;
+                if (workspace.metrics != null) workspace.metrics.stepReduced();
+                if (workspace.adaptiveNewton) {
+                    // Уменьшение не меньше чем вдвое, сильнее - по наблюдаемому сжатию
+                    final double ratio =
+                            Math.min(
+                                    0.5,
+                                    TimeStepController.newtonRateRatio(
+                                            workspace.contractionRate));
+                    changeStep(timeDemon, timeDemon.deltaT * ratio);
+                } else if (stepControl == StepControlKind.LTE) {
+                    TimeStepController.resizeStep(timeDemon, timeDemon.deltaT / 2.0, true);
+                } else {
+                    TimeStepController.deltaTReduction(timeDemon);
+                }
+                if (timeDemon.deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+            }
+        }
+    }
+
+    // Начало расчета из согласованного решения x0 в момент t0 (режим по постоянному току,
+    // периодический режим) вместо нулевых начальных условий. Первый шаг - START_DELTA_TIME
+    public void start(double t0, double[] x0) {
+        if (x0.length != model.size()) {
+            throw new IllegalArgumentException("initial point does not match the circuit size");
+        }
+        integrator.initialize(x0);
+        timeDemon.set(t0 + Data.START_DELTA_TIME, Data.START_DELTA_TIME, true);
+        prevDeltaT = timeDemon.deltaT;
+        prevPrevDeltaT = timeDemon.deltaT;
+        nextSaveT = timeDemon.currT;
+        System.arraycopy(x0, 0, initialApproximation, 0, x0.length);
+        System.arraycopy(x0, 0, pvPrev, 0, x0.length);
+        System.arraycopy(x0, 0, pvPrevPrev, 0, x0.length);
+        System.arraycopy(x0, 0, pvPrev3, 0, x0.length);
+        prevT = t0;
+        prevPrevT = t0;
+        workspace.luValid = false;
+    }
+
+    public TransientState snapshot() {
+        TransientState s = new TransientState();
+        s.size = model.size();
+        s.method = integrator.kind();
+        s.stepControl = stepControl;
+        s.currT = timeDemon.currT;
+        s.deltaT = timeDemon.deltaT;
+        s.success = timeDemon.success;
+        s.prevDeltaT = prevDeltaT;
+        s.prevPrevDeltaT = prevPrevDeltaT;
+        s.nextSaveT = nextSaveT;
+        s.prevT = prevT;
+        s.prevPrevT = prevPrevT;
+        s.breakpoints = breakpoints;
+        s.denseOutput = denseOutput;
+        s.iteration = iteration;
+        s.acceptedSteps = acceptedSteps;
+        s.rejectedSteps = rejectedSteps;
+        s.factorizations = workspace.factorizations;
+        s.solves = workspace.solves;
+        s.initialApproximation = initialApproximation.clone();
+        s.pvPrev = pvPrev.clone();
+        s.pvPrevPrev = pvPrevPrev.clone();
+        s.pvPrev3 = pvPrev3.clone();
+        s.integratorState = integrator.saveState();
+        return s;
+    }
+
+    // Продолжение расчета с контрольной точки той же схемы и той же формулой интегрирования
+    public void restore(TransientState s) {
+        if (s.size != model.size()) {
+            throw new IllegalArgumentException("checkpoint does not match the circuit size");
+        }
+        if (s.method != integrator.kind()) {
+            throw new IllegalArgumentException("checkpoint was made with " + s.method);
+        }
+        integrator.restoreState(s.integratorState);
+        stepControl = s.stepControl;
+        timeDemon.set(s.currT, s.deltaT, s.success);
+        prevDeltaT = s.prevDeltaT;
+        prevPrevDeltaT = s.prevPrevDeltaT;
+        nextSaveT = s.nextSaveT;
+        prevT = s.prevT;
+        prevPrevT = s.prevPrevT;
+        breakpoints = s.breakpoints;
+        denseOutput = s.denseOutput;
+        iteration = s.iteration;
+        acceptedSteps = s.acceptedSteps;
+        rejectedSteps = s.rejectedSteps;
+        workspace.factorizations = s.factorizations;
+        workspace.solves = s.solves;
+        workspace.luValid = false;
+        System.arraycopy(s.initialApproximation, 0, initialApproximation, 0, model.size());
+        System.arraycopy(s.pvPrev, 0, pvPrev, 0, model.size());
+        System.arraycopy(s.pvPrevPrev, 0, pvPrevPrev, 0, model.size());
+        System.arraycopy(s.pvPrev3, 0, pvPrev3, 0, model.size());
+    }
+
+    // Решение для точки вывода t из (prevT, tAccepted]
+    private double[] outputPoint(double t, double tAccepted, double[] phaseVariables) {
+        if (!denseOutput || t == tAccepted) return phaseVariables;
+        TimeStepController.interpolate(
+                t,
+                integrator.order(),
+                tAccepted,
+                phaseVariables,
+                prevT,
+                pvPrev,
+                prevPrevT,
+                pvPrevPrev,
+                interpolated);
+        return interpolated;
+    }
+
+    // Замена шага тем же способом, что и при отказе метода Ньютона: при выборе шага
+    // по порогам момент td.currT исторически сохраняется
+    private TimeDemon changeStep(TimeDemon td, double deltaT) {
+        return (stepControl == StepControlKind.LTE)
+                ? TimeStepController.resizeStep(td, deltaT, true)
+                : td.set(td.currT, deltaT, true);
+    }
+
+    // Прогноз порядка p строится по p + 1 принятым точкам
+    private boolean isLteControlled() {
+        return stepControl == StepControlKind.LTE && acceptedSteps > integrator.order();
+    }
+
+    // Для формул второго порядка оценка по третьим производным требует трех принятых шагов
+    private TimeDemon chooseDeltaT(double[] phaseVariables) {
+        if (isLteControlled()) {
+            return TimeStepController.calculateDeltaT(
+                    timeDemon,
+                    integrator.order(),
+                    integrator.errorConstant(),
+                    prevDeltaT,
+                    prevPrevDeltaT,
+                    phaseVariables,
+                    initialApproximation,
+                    pvPrev,
+                    estimated,
+                    toleranceScale);
+        }
+        if (stepControl == StepControlKind.LTE) {
+            return timeDemon.set(timeDemon.currT + timeDemon.deltaT, timeDemon.deltaT, true);
+        }
+        if (integrator.order() >= 2 && acceptedSteps >= 3) {
+            return TimeStepController.calculateDeltaT(
+                    timeDemon,
+                    prevDeltaT,
+                    prevPrevDeltaT,
+                    phaseVariables,
+                    pvPrev,
+                    pvPrevPrev,
+                    pvPrev3,
+                    controlled,
+                    integrator.errorConstant(),
+                    toleranceScale);
+        }
+        return TimeStepController.calculateDeltaT(
+                timeDemon,
+                prevDeltaT,
+                phaseVariables,
+                pvPrev,
+                pvPrevPrev,
+                controlled,
+                toleranceScale);
+    }
+}
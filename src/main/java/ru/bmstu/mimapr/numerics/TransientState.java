@@ -0,0 +1,44 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+
+/*
+ * Снимок состояния TransientAnalysis для контрольной точки
+ *
+ * Содержит все, от чего зависит продолжение расчета: текущий момент и шаг,
+ * историю принятых решений и формулы интегрирования, момент следующей
+ * точки вывода и счетчики. Разложение матрицы Якоби не сохраняется
+ * и строится заново на первом шаге после восстановления
+ * */
+public final class TransientState {
+    public int size;
+    public IntegrationMethodKind method;
+    public StepControlKind stepControl;
+
+    // TimeDemon
+    public double currT;
+    public double deltaT;
+    public boolean success;
+
+    public double prevDeltaT;
+    public double prevPrevDeltaT;
+    public double nextSaveT;
+    // Моменты двух последних принятых решений для плотного вывода и точек излома
+    public double prevT;
+    public double prevPrevT;
+    public boolean breakpoints;
+    public boolean denseOutput;
+
+    public int iteration;
+    public long acceptedSteps;
+    public long rejectedSteps;
+    public long factorizations;
+    public long solves;
+
+    public double[] initialApproximation;
+    public double[] pvPrev;
+    public double[] pvPrevPrev;
+    public double[] pvPrev3;
+    public double[] integratorState;
+}
@@ -0,0 +1,88 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+
+/*
+ * Формула трапеций: X = X_n + deltaT / 2 * (dX + dX_n),
+ * то есть h = X_n + deltaT / 2 * dX_n, gamma = deltaT / 2
+ *
+ * Производные в начальной точке неизвестны, поэтому первый шаг
+ * выполняется по неявной формуле Эйлера
+ * */
+public final class TrapezoidalRule implements IntegrationMethod {
+    private final int[] stateIdx;
+    private final int[] derivativeIdx;
+    private final double[] states;
+    private final double[] derivatives;
+    private boolean started = false;
+
+    public TrapezoidalRule(CircuitModel model) {
+        this.stateIdx = IntegrationMethod.stateIndices(model);
+        this.derivativeIdx = IntegrationMethod.derivativeIndices(model);
+        this.states = new double[stateIdx.length];
+        this.derivatives = new double[stateIdx.length];
+    }
+
+    @Override
+    public IntegrationMethodKind kind() {
+        return IntegrationMethodKind.TRAPEZOIDAL;
+    }
+
+    @Override
+    public int order() {
+        return 2;
+    }
+
+    @Override
+    public double errorConstant() {
+        return 1.0 / 12.0;
+    }
+
+    @Override
+    public double prepare(double deltaT, double[] history) {
+        if (!started) {
+            System.arraycopy(states, 0, history, 0, states.length);
+            return deltaT;
+        }
+        final double gamma = 0.5 * deltaT;
+        for (int k = 0; k < states.length; k++) {
+            history[k] = states[k] + gamma * derivatives[k];
+        }
+        return gamma;
+    }
+
+    @Override
+    public void accept(double deltaT, double[] x) {
+        for (int k = 0; k < states.length; k++) {
+            states[k] = x[stateIdx[k]];
+            derivatives[k] = x[derivativeIdx[k]];
+        }
+        started = true;
+    }
+
+    // Производные в x известны, поэтому первый шаг сразу выполняется по формуле трапеций
+    @Override
+    public void initialize(double[] x) {
+        accept(0.0, x);
+    }
+
+    // [переменные состояния, производные, признак начала]
+    @Override
+    public double[] saveState() {
+        final int m = states.length;
+        double[] state = new double[2 * m + 1];
+        System.arraycopy(states, 0, state, 0, m);
+        System.arraycopy(derivatives, 0, state, m, m);
+        state[2 * m] = started ? 1.0 : 0.0;
+        return state;
+    }
+
+    @Override
+    public void restoreState(double[] state) {
+        final int m = states.length;
+        IntegrationMethod.checkStateLength(state, 2 * m + 1);
+        System.arraycopy(state, 0, states, 0, m);
+        System.arraycopy(state, m, derivatives, 0, m);
+        started = state[2 * m] != 0.0;
+    }
+}
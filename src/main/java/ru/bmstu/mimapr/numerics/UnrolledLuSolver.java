@@ -0,0 +1,175 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.exceptions.MatrixDimensionException;
+
+import java.util.Arrays;
+
+/*
+ * Решатель СЛАУ на развернутом LU-разложении CircuitKernel
+ *
+ * При первом разложении SparseLU выбирает порядок исключения по значениям
+ * матрицы, как и в SparseLuSolver. Если порядок совпал с тем, для которого
+ * сгенерировано ядро, дальше разложение и решение выполняет ядро; иначе
+ * (другая начальная точка) и после потери ведущего элемента - SparseLU.
+ * Результаты в обоих случаях совпадают с SparseLuSolver побитно.
+ * Здесь же генерируется исходный текст развернутого разложения
+ * */
+public final class UnrolledLuSolver implements LinearSolver {
+    private final CircuitKernel kernel;
+    private final SparseMatrix pattern;
+    private final SparseLU lu;
+    private final double[] luValues;
+
+    private SparseMatrix analyzedFor;
+    private SparseMatrix dense;
+    private boolean unrolled = false;
+
+    // pattern - портрет матриц, для которого сгенерировано ядро
+    public UnrolledLuSolver(CircuitKernel kernel, SparseMatrix pattern) {
+        this.kernel = kernel;
+        this.pattern = pattern;
+        this.lu = new SparseLU(pattern.n);
+        this.luValues = new double[kernel.luSize()];
+    }
+
+    // Разложение выполняется сгенерированным кодом
+    public boolean isUnrolled() {
+        return unrolled;
+    }
+
+    @Override
+    public boolean factor(double[][] a) {
+        // Портрет вне сгенерированного ядра разлагается SparseLU
+        dense = SparseMatrix.fromDense(a, dense);
+        return factor(dense);
+    }
+
+    // Та же последовательность, что в SparseLU.factor: анализ для новой матрицы,
+    // разложение, при потере ведущего элемента - повторный анализ
+    @Override
+    public boolean factor(SparseMatrix a) {
+        if (analyzedFor != a) {
+            analyzedFor = null;
+            unrolled = false;
+            if (!lu.analyze(a)) return false;
+            analyzedFor = a;
+            unrolled =
+                    Arrays.equals(a.rowPtr, pattern.rowPtr)
+                            && Arrays.equals(a.colIdx, pattern.colIdx)
+                            && Arrays.equals(lu.rowPermutation(), kernel.rowPermutation())
+                            && Arrays.equals(lu.columnPermutation(), kernel.columnPermutation());
+        }
+        if (!unrolled) return lu.factor(a);
+        if (kernel.factor(a.values, luValues)) return true;
+        unrolled = false;
+        return lu.analyze(a) && lu.factor(a);
+    }
+
+    @Override
+    public void solve(double[] b, double[] x) {
+        if (!unrolled) {
+            lu.solve(b, x);
+            return;
+        }
+        if (b.length != pattern.n || x.length != pattern.n) throw new MatrixDimensionException();
+        kernel.solve(luValues, b, x);
+    }
+
+    // Методы CircuitKernel для разложения в порядке последнего анализа lu:
+    // rowPermutation, columnPermutation, luSize, factor и solve.
+    // Разложение повторяет SparseLU.refactor, а решение - SparseLU.solve
+    // с теми же операциями в том же порядке; элементы строки держатся в локальных переменных
+    public static void emitKernelMethods(StringBuilder out, SparseLU lu) {
+        final int[] rowPerm = lu.rowPermutation();
+        final int[] colPerm = lu.columnPermutation();
+        final int[] rowPtr = lu.luRowPtr();
+        final int[] colIdx = lu.luColIdx();
+        final int[] diag = lu.luDiag();
+        final int[] scatter = lu.scatterMap();
+        final int n = rowPerm.length;
+
+        out.append("    public int[] rowPermutation() {\n");
+        out.append("        return new int[] ").append(intArray(rowPerm)).append(";\n");
+        out.append("    }\n\n");
+        out.append("    public int[] columnPermutation() {\n");
+        out.append("        return new int[] ").append(intArray(colPerm)).append(";\n");
+        out.append("    }\n\n");
+        out.append("    public int luSize() {\n");
+        out.append("        return ").append(colIdx.length).append(";\n");
+        out.append("    }\n\n");
+
+        // Позиция в values исходной матрицы для каждого элемента L + U, -1 - заполнение
+        int[] source = new int[colIdx.length];
+        Arrays.fill(source, -1);
+        for (int p = 0; p < scatter.length; p++) source[scatter[p]] = p;
+
+        out.append("    public boolean factor(double[] a, double[] lu) {\n");
+        out.append("        double pivot;\n");
+        out.append("        double rowMax;\n");
+        for (int k = 0; k < n; k++) {
+            out.append("        {\n");
+            for (int p = rowPtr[k]; p < rowPtr[k + 1]; p++) {
+                out.append("            double c").append(colIdx[p]).append(" = ");
+                out.append((source[p] >= 0) ? "0.0 + a[" + source[p] + "]" : "0.0").append(";\n");
+            }
+            for (int p = rowPtr[k]; p < diag[k]; p++) {
+                final int q = colIdx[p];
+                out.append("            c").append(q).append(" = c").append(q);
+                out.append(" / lu[").append(diag[q]).append("];\n");
+                for (int r = diag[q] + 1; r < rowPtr[q + 1]; r++) {
+                    final int j = colIdx[r];
+                    out.append("            c").append(j).append(" = c").append(j);
+                    out.append(" - c").append(q).append(" * lu[").append(r).append("];\n");
+                }
+            }
+            out.append("            rowMax = 0.0;\n");
+            for (int p = rowPtr[k]; p < rowPtr[k + 1]; p++) {
+                out.append("            lu[").append(p).append("] = c").append(colIdx[p]);
+                out.append(";\n");
+                if (p >= diag[k]) {
+                    out.append("            rowMax = Math.max(rowMax, Math.abs(c");
+                    out.append(colIdx[p]).append("));\n");
+                }
+            }
+            out.append("            pivot = Math.abs(lu[").append(diag[k]).append("]);\n");
+            out.append("            if (pivot == 0.0 || !Double.isFinite(pivot) || pivot < ");
+            out.append(SparseLU.SINGULAR_THRESHOLD).append(" * rowMax) return false;\n");
+            out.append("        }\n");
+        }
+        out.append("        return true;\n");
+        out.append("    }\n\n");
+
+        out.append("    public void solve(double[] lu, double[] b, double[] x) {\n");
+        for (int k = 0; k < n; k++) {
+            out.append("        double y").append(k).append(" = b[").append(rowPerm[k]);
+            out.append("];\n");
+        }
+        for (int k = 0; k < n; k++) {
+            for (int p = rowPtr[k]; p < diag[k]; p++) {
+                out.append("        y").append(k).append(" = y").append(k).append(" - lu[");
+                out.append(p).append("] * y").append(colIdx[p]).append(";\n");
+            }
+        }
+        for (int k = n - 1; k >= 0; k--) {
+            for (int p = diag[k] + 1; p < rowPtr[k + 1]; p++) {
+                out.append("        y").append(k).append(" = y").append(k).append(" - lu[");
+                out.append(p).append("] * y").append(colIdx[p]).append(";\n");
+            }
+            out.append("        y").append(k).append(" = y").append(k).append(" / lu[");
+            out.append(diag[k]).append("];\n");
+        }
+        for (int k = 0; k < n; k++) {
+            out.append("        x[").append(colPerm[k]).append("] = y").append(k).append(";\n");
+        }
+        out.append("    }\n");
+    }
+
+    private static String intArray(int[] values) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(values[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
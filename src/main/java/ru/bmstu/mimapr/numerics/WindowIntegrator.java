@@ -0,0 +1,137 @@
+package ru.bmstu.mimapr.numerics;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.exceptions.TimeStepException;
+import ru.bmstu.mimapr.model.TimeDemon;
+
+/*
+ * Расчет переходного процесса на отрезке [t0, tEnd] из заданного решения x0
+ * неявной формулой Эйлера с точным попаданием в tEnd
+ *
+ * Шаги решаются NewtonSolver и выбираются по порогам TimeStepController,
+ * как в TransientAnalysis, либо постоянны (грубый расчет). Алгебраические
+ * неизвестные x0 могут быть не согласованы с переменными состояния
+ * (например, после поправки метода стрельбы или Parareal), поэтому первый
+ * шаг принимается без оценки, а история выбора шага начинается с его решения.
+ * Экземпляр хранит рабочие буферы и не потокобезопасен
+ * */
+public final class WindowIntegrator {
+
+    // Получатель принятых шагов: решение x в момент t, достигнутый шагом deltaT
+    @FunctionalInterface
+    public interface StepListener {
+        void accepted(double t, double deltaT, double[] x);
+    }
+
+    private final CircuitModel model;
+    private final int n;
+    private final int m;
+    private final int[] controlled;
+
+    public final ModelWorkspace workspace;
+
+    private final double[] history;
+    private final double[] initialApproximation;
+    private double[] pvPrev;
+    private double[] pvPrevPrev;
+    // Выбор следующего шага, меняется на месте
+    private final TimeDemon next = new TimeDemon(0.0, 0.0, true);
+
+    private long acceptedSteps = 0;
+
+    public WindowIntegrator(CircuitModel model, LinearSolverKind kind) {
+        this.model = model;
+        this.n = model.size();
+        this.m = model.stateCount();
+        this.controlled = model.potentialIndices();
+        this.workspace = new ModelWorkspace(model, kind);
+        this.history = new double[m];
+        this.initialApproximation = new double[n];
+        this.pvPrev = new double[n];
+        this.pvPrevPrev = new double[n];
+    }
+
+    // Принятые шаги за все расчеты этим экземпляром
+    public long acceptedSteps() {
+        return acceptedSteps;
+    }
+
+    // Расчет с выбором шага по порогам. Результат - решение в момент tEnd,
+    // действителен до следующего расчета
+    public double[] integrate(double t0, double[] x0, double tEnd, StepListener listener) {
+        return integrate(t0, x0, tEnd, Data.START_DELTA_TIME, false, listener);
+    }
+
+    // Расчет с постоянным шагом (tEnd - t0) / steps. При расходимости метода Ньютона
+    // шаг уменьшается вдвое, а после принятых шагов удваивается до исходного
+    public double[] integrateFixed(double t0, double[] x0, double tEnd, int steps) {
+        return integrate(t0, x0, tEnd, (tEnd - t0) / steps, true, null);
+    }
+
+    private double[] integrate(
+            double t0,
+            double[] x0,
+            double tEnd,
+            double startDeltaT,
+            boolean fixed,
+            StepListener listener) {
+
+        for (int k = 0; k < m; k++) history[k] = x0[model.stateIndex(k)];
+        System.arraycopy(x0, 0, initialApproximation, 0, n);
+        System.arraycopy(x0, 0, pvPrev, 0, n);
+        System.arraycopy(x0, 0, pvPrevPrev, 0, n);
+
+        double t = t0;
+        double deltaT = startDeltaT;
+        double prevDeltaT = deltaT;
+        while (t < tEnd) {
+            final boolean last = t + deltaT > tEnd - Data.MINIMAL_STEP;
+            if (last) deltaT = tEnd - t;
+
+            if (!NewtonSolver.newtonMethod(
+                    model, t + deltaT, deltaT, initialApproximation, history, workspace)) {
+                deltaT = TimeStepController.deltaTReduction(next.set(t, deltaT, false)).deltaT;
+                if (deltaT < Data.MINIMAL_STEP) throw new TimeStepException();
+                // Прогноз на прежний шаг мог и помешать сходимости: меньший шаг
+                // начинается с последнего принятого решения
+                System.arraycopy(pvPrev, 0, initialApproximation, 0, n);
+                continue;
+            }
+            final double[] x = workspace.solution;
+            final boolean first = t == t0;
+            if (fixed) {
+                next.set(t, Math.min(2.0 * deltaT, startDeltaT), true);
+            } else if (first) {
+                next.set(t + 2.0 * deltaT, deltaT, true);
+            } else {
+                TimeStepController.calculateDeltaT(
+                        next.set(t + deltaT, deltaT, true),
+                        prevDeltaT,
+                        x,
+                        pvPrev,
+                        pvPrevPrev,
+                        controlled);
+            }
+            // Пороговый выбор шага, как и в TransientAnalysis, не ограничен снизу при отказе
+            if (!next.success) {
+                deltaT = next.deltaT;
+                continue;
+            }
+
+            acceptedSteps++;
+            t = last ? tEnd : t + deltaT;
+            if (listener != null) listener.accepted(t, deltaT, x);
+            for (int k = 0; k < m; k++) history[k] = x[model.stateIndex(k)];
+            if (first) System.arraycopy(x, 0, pvPrev, 0, n);
+            TimeStepController.predictPhaseVariables(x, pvPrev, initialApproximation);
+            double[] tmp = pvPrevPrev;
+            pvPrevPrev = pvPrev;
+            pvPrev = tmp;
+            System.arraycopy(x, 0, pvPrev, 0, n);
+            prevDeltaT = deltaT;
+            deltaT = next.deltaT;
+        }
+        return pvPrev;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.bmstu.mimapr.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Задание, поставленное в очередь Simulator: состояние, отмена и ожидание итога
+public final class JobHandle {
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED,
+        TIMED_OUT
+    }
+
+    public final long id;
+    private final CompletableFuture<SimulationResult> result = new CompletableFuture<>();
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelRequested = false;
+    // Модельное время, до которого дошел расчет
+    private volatile double time = 0.0;
+    // System.nanoTime() завершения
+    private volatile long finishedNanos = 0;
+
+    JobHandle(long id) {
+        this.id = id;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public double time() {
+        return time;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    // Запрос отмены. Задание в очереди снимается сразу, расчет останавливается
+    // при ближайшей проверке. false - задание уже завершено
+    public boolean cancel() {
+        if (result.isDone()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    public SimulationResult await() throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public SimulationResult await(long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        try {
+            return result.get(timeout, unit);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    long finishedNanos() {
+        return finishedNanos;
+    }
+
+    // action выполняется после завершения задания, сразу - если оно уже завершено
+    void whenDone(Runnable action) {
+        result.whenComplete((r, ex) -> action.run());
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void running() {
+        state = State.RUNNING;
+    }
+
+    void progress(double t) {
+        time = t;
+    }
+
+    void finish(SimulationResult r) {
+        state =
+                switch (r.status) {
+                    case COMPLETED -> State.COMPLETED;
+                    case FAILED -> State.FAILED;
+                    case CANCELLED -> State.CANCELLED;
+                    case TIMED_OUT -> State.TIMED_OUT;
+                };
+        finishedNanos = System.nanoTime();
+        result.complete(r);
+    }
+}
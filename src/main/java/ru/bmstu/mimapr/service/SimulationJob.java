@@ -0,0 +1,51 @@
+package ru.bmstu.mimapr.service;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+
+/*
+ * Задание на расчет переходного процесса для Simulator
+ *
+ * Поля повторяют параметры командной строки Main. netlist - текст схемного
+ * описания, null - встроенная схема CircuitSystem. Результат - потенциалы
+ * узлов (allVariables - все неизвестные) на сетке SAVE_DT до timeEnd.
+ * timeLimitMillis ограничивает время счета задания на процессоре без учета
+ * ожидания в очереди, 0 - без ограничения.
+ * Simulator копирует задание при постановке в очередь
+ * */
+public final class SimulationJob {
+    public String netlist = null;
+    public boolean compiled = false;
+    public boolean condensed = false;
+    public IntegrationMethodKind method = Data.INTEGRATION_METHOD;
+    public StepControlKind stepControl = Data.STEP_CONTROL;
+    public double timeEnd = Data.TIME_END;
+    public boolean junctionLimiting = Data.JUNCTION_LIMITING;
+    public boolean adaptiveNewton = Data.ADAPTIVE_NEWTON;
+    public boolean expTable = Data.EXP_TABLE;
+    public boolean breakpoints = Data.BREAKPOINTS;
+    public boolean denseOutput = Data.DENSE_OUTPUT;
+    public boolean dcOperatingPoint = false;
+    public boolean allVariables = false;
+    public long timeLimitMillis = 0L;
+
+    public SimulationJob copy() {
+        SimulationJob j = new SimulationJob();
+        j.netlist = netlist;
+        j.compiled = compiled;
+        j.condensed = condensed;
+        j.method = method;
+        j.stepControl = stepControl;
+        j.timeEnd = timeEnd;
+        j.junctionLimiting = junctionLimiting;
+        j.adaptiveNewton = adaptiveNewton;
+        j.expTable = expTable;
+        j.breakpoints = breakpoints;
+        j.denseOutput = denseOutput;
+        j.dcOperatingPoint = dcOperatingPoint;
+        j.allVariables = allVariables;
+        j.timeLimitMillis = timeLimitMillis;
+        return j;
+    }
+}
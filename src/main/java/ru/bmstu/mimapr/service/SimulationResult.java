@@ -0,0 +1,42 @@
+package ru.bmstu.mimapr.service;
+
+// Итог задания Simulator. time и values - null, если точки передавались в получатель
+public final class SimulationResult {
+    public enum Status {
+        COMPLETED,
+        FAILED,
+        CANCELLED,
+        TIMED_OUT
+    }
+
+    public final Status status;
+    // Имена столбцов values
+    public final String[] names;
+    public final double[] time;
+    public final double[][] values;
+    public final long acceptedSteps;
+    public final long rejectedSteps;
+    // Время счета на процессоре без ожидания в очереди
+    public final long cpuNanos;
+    // Сообщение об ошибке для FAILED
+    public final String error;
+
+    SimulationResult(
+            Status status,
+            String[] names,
+            double[] time,
+            double[][] values,
+            long acceptedSteps,
+            long rejectedSteps,
+            long cpuNanos,
+            String error) {
+        this.status = status;
+        this.names = names;
+        this.time = time;
+        this.values = values;
+        this.acceptedSteps = acceptedSteps;
+        this.rejectedSteps = rejectedSteps;
+        this.cpuNanos = cpuNanos;
+        this.error = error;
+    }
+}
@@ -0,0 +1,284 @@
+package ru.bmstu.mimapr.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.io.OutputUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Локальный HTTP-доступ к Simulator (только 127.0.0.1)
+ *
+ *   POST   /jobs?параметры   тело - схемное описание, пустое - встроенная схема;
+ *                            ответ {"id": N}, 503 - очередь заполнена
+ *   GET    /jobs/N           состояние задания
+ *   GET    /jobs/N/result    результат в CSV: t и столбцы; 409 - задание не завершено
+ *   DELETE /jobs/N           отмена, задание удаляется после завершения
+ *
+ * Завершенное задание с результатом хранится не дольше jobTtlMillis и вытесняется
+ * раньше, если завершенных заданий больше maxFinished (сначала давно завершенные).
+ * Проверка - при каждом запросе: без запросов число заданий не растет
+ * Параметры повторяют ключи Main: method, step-control, time-end,
+ * time-limit-ms и флаги compiled, condensed, junction-limiting, adaptive-newton,
+ * exp-table, breakpoints, dense-output, dc-op, all-variables
+ * */
+public final class SimulationServer implements AutoCloseable {
+    private final Simulator simulator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Long, JobHandle> jobs = new ConcurrentHashMap<>();
+    // Завершенные задания в порядке завершения
+    private final ConcurrentLinkedQueue<JobHandle> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final long jobTtlNanos;
+    private final int maxFinished;
+
+    public SimulationServer(Simulator simulator, int port) throws IOException {
+        this(simulator, port, Data.SERVER_JOB_TTL_MILLIS, Data.SERVER_FINISHED_JOBS);
+    }
+
+    public SimulationServer(Simulator simulator, int port, long jobTtlMillis, int maxFinished)
+            throws IOException {
+        if (jobTtlMillis < 0 || maxFinished < 0) {
+            throw new IllegalArgumentException("bad job retention limits");
+        }
+        this.simulator = simulator;
+        this.jobTtlNanos = TimeUnit.MILLISECONDS.toNanos(jobTtlMillis);
+        this.maxFinished = maxFinished;
+        this.server =
+                HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // Запросы обслуживают потоки платформы: виртуальные потоки заданий
+        // занимают несущие потоки на все время счета
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/jobs", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        simulator.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            route(exchange);
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        evict();
+        try {
+            final String[] path = exchange.getRequestURI().getPath().split("/");
+            final String method = exchange.getRequestMethod();
+            if (path.length == 2 && method.equals("POST")) {
+                submit(exchange);
+                return;
+            }
+            JobHandle handle = path.length >= 3 ? jobs.get(parseId(path[2])) : null;
+            if (handle == null) {
+                send(exchange, 404, "{\"error\": \"no such job\"}");
+            } else if (path.length == 3 && method.equals("GET")) {
+                send(exchange, 200, status(handle));
+            } else if (path.length == 4 && path[3].equals("result") && method.equals("GET")) {
+                result(exchange, handle);
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                if (handle.cancel()) {
+                    handle.whenDone(() -> remove(handle));
+                } else {
+                    remove(handle);
+                }
+                send(exchange, 200, status(handle));
+            } else {
+                send(exchange, 405, "{\"error\": \"unsupported request\"}");
+            }
+        } catch (IllegalArgumentException ex) {
+            send(exchange, 400, "{\"error\": \"" + escape(ex.getMessage()) + "\"}");
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        SimulationJob job = parseJob(exchange.getRequestURI().getRawQuery());
+        String text =
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        job.netlist = text.isBlank() ? null : text;
+        try {
+            JobHandle handle = simulator.submit(job);
+            jobs.put(handle.id, handle);
+            handle.whenDone(
+                    () -> {
+                        // Отмененное через DELETE задание уже удалено
+                        if (jobs.containsKey(handle.id)) {
+                            finished.add(handle);
+                            finishedCount.incrementAndGet();
+                        }
+                    });
+            send(exchange, 202, "{\"id\": " + handle.id + "}");
+        } catch (RejectedExecutionException ex) {
+            send(exchange, 503, "{\"error\": \"" + escape(ex.getMessage()) + "\"}");
+        }
+    }
+
+    private void remove(JobHandle handle) {
+        jobs.remove(handle.id);
+        if (finished.remove(handle)) finishedCount.decrementAndGet();
+    }
+
+    // Удаление давно завершенных заданий и лишних сверх maxFinished
+    private void evict() {
+        final long now = System.nanoTime();
+        JobHandle oldest;
+        while ((oldest = finished.peek()) != null) {
+            if (finishedCount.get() <= maxFinished
+                    && now - oldest.finishedNanos() < jobTtlNanos) {
+                break;
+            }
+            if (finished.remove(oldest)) {
+                finishedCount.decrementAndGet();
+                jobs.remove(oldest.id);
+            }
+        }
+    }
+
+    private void result(HttpExchange exchange, JobHandle handle) throws IOException {
+        if (!handle.isDone()) {
+            send(exchange, 409, status(handle));
+            return;
+        }
+        SimulationResult r;
+        try {
+            r = handle.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        if (r.status != SimulationResult.Status.COMPLETED) {
+            send(exchange, 409, status(handle));
+            return;
+        }
+        StringBuilder csv = new StringBuilder("t");
+        for (String name : r.names) csv.append(',').append(name);
+        csv.append('\n');
+        for (int k = 0; k < r.time.length; k++) {
+            csv.append(OutputUtils.fmt(r.time[k]));
+            for (double[] column : r.values) csv.append(',').append(OutputUtils.fmt(column[k]));
+            csv.append('\n');
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/csv");
+        send(exchange, 200, csv.toString());
+    }
+
+    private static String status(JobHandle handle) {
+        StringBuilder s = new StringBuilder();
+        s.append("{\"id\": ").append(handle.id);
+        s.append(", \"state\": \"").append(handle.state()).append('"');
+        s.append(", \"t\": ").append(OutputUtils.fmt(handle.time()));
+        if (handle.isDone()) {
+            try {
+                SimulationResult r = handle.await();
+                s.append(", \"acceptedSteps\": ").append(r.acceptedSteps);
+                s.append(", \"rejectedSteps\": ").append(r.rejectedSteps);
+                s.append(String.format(Locale.ROOT, ", \"cpuSeconds\": %.3f", r.cpuNanos / 1e9));
+                if (r.error != null) {
+                    s.append(", \"error\": \"").append(escape(r.error)).append('"');
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return s.append('}').toString();
+    }
+
+    private static SimulationJob parseJob(String query) {
+        SimulationJob job = new SimulationJob();
+        Map<String, String> params = new HashMap<>();
+        if (query != null && !query.isEmpty()) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                params.put(
+                        URLDecoder.decode(key, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        for (Map.Entry<String, String> p : params.entrySet()) {
+            final String value = p.getValue();
+            switch (p.getKey()) {
+                case "method" -> job.method = IntegrationMethodKind.valueOf(upper(value));
+                case "step-control" -> job.stepControl = StepControlKind.valueOf(upper(value));
+                case "time-end" -> job.timeEnd = Double.parseDouble(value);
+                case "time-limit-ms" -> job.timeLimitMillis = Long.parseLong(value);
+                case "compiled" -> job.compiled = true;
+                case "condensed" -> job.condensed = true;
+                case "junction-limiting" -> job.junctionLimiting = true;
+                case "adaptive-newton" -> job.adaptiveNewton = true;
+                case "exp-table" -> job.expTable = true;
+                case "breakpoints" -> job.breakpoints = true;
+                case "dense-output" -> job.denseOutput = true;
+                case "dc-op" -> job.dcOperatingPoint = true;
+                case "all-variables" -> job.allVariables = true;
+                default -> throw new IllegalArgumentException("unknown parameter " + p.getKey());
+            }
+        }
+        if (!(job.timeEnd > 0.0) || job.timeLimitMillis < 0) {
+            throw new IllegalArgumentException("bad time-end or time-limit-ms");
+        }
+        return job;
+    }
+
+    private static long parseId(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static String upper(String s) {
+        return s.toUpperCase(Locale.ROOT);
+    }
+
+    private static String escape(String s) {
+        return s == null ? "" : s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", " ");
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package ru.bmstu.mimapr.service;
+
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.model.DoubleList;
+import ru.bmstu.mimapr.netlist.AssembledCircuit;
+import ru.bmstu.mimapr.netlist.CircuitAssembler;
+import ru.bmstu.mimapr.netlist.CircuitCompiler;
+import ru.bmstu.mimapr.netlist.NetlistParser;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.CircuitSystemModel;
+import ru.bmstu.mimapr.numerics.DcOperatingPoint;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Программный интерфейс расчетов без командной строки
+ *
+ * Каждое задание выполняется в своем виртуальном потоке. Заданий в очереди
+ * и в счете не больше capacity, сверх этого submit отказывает
+ * (RejectedExecutionException). Одновременно считают не больше cores заданий,
+ * остальные ждут в очереди в порядке поступления. Задание встает в очередь
+ * еще в submit: виртуальный поток, ждущий несущего потока, не может сам
+ * встать в очередь, пока счетные потоки не освобождают несущие. Раз в
+ * SIMULATOR_TIME_SLICE_MILLIS считающее задание при непустой очереди
+ * передает процессор первому ожидающему и встает в конец, так что длинные
+ * расчеты делят процессоры поровну с короткими. Отмена и ограничение
+ * времени проверяются в TransientAnalysis.progressHook; ожидание в очереди
+ * в лимит не входит, сборка модели и режим по постоянному току не прерываются.
+ * Процесс с прогретым JIT переиспользуется между заданиями
+ * */
+public final class Simulator implements AutoCloseable {
+    // Период проверки отмены при ожидании процессора
+    private static final long WAIT_POLL_MILLIS = 10;
+
+    private final int cores;
+    private final Semaphore slots;
+    // Очередь ожидающих процессора и число свободных процессоров
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Slice> waiting = new ArrayDeque<>();
+    private int free;
+    private final long sliceNanos;
+    private final ThreadFactory threads = Thread.ofVirtual().name("simulation-", 1).factory();
+    private final AtomicLong ids = new AtomicLong();
+    private final Set<JobHandle> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    public Simulator() {
+        this(Runtime.getRuntime().availableProcessors(), Data.SIMULATOR_QUEUE_CAPACITY);
+    }
+
+    public Simulator(int cores, int capacity) {
+        if (cores < 1 || capacity < cores) {
+            throw new IllegalArgumentException("bad simulator limits");
+        }
+        this.cores = cores;
+        this.free = cores;
+        this.slots = new Semaphore(capacity);
+        this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(Data.SIMULATOR_TIME_SLICE_MILLIS);
+    }
+
+    public JobHandle submit(SimulationJob job) {
+        return submit(job, null);
+    }
+
+    // sink получает точки по мере расчета (значения в порядке SimulationResult.names),
+    // тогда результат не накапливается в памяти
+    public JobHandle submit(SimulationJob job, TransientAnalysis.SampleSink sink) {
+        if (closed) throw new RejectedExecutionException("simulator is closed");
+        if (!slots.tryAcquire()) throw new RejectedExecutionException("simulation queue is full");
+        final SimulationJob spec = job.copy();
+        final JobHandle handle = new JobHandle(ids.incrementAndGet());
+        final Slice slice = new Slice(handle, spec.timeLimitMillis);
+        active.add(handle);
+        slice.enqueue();
+        try {
+            threads.newThread(() -> execute(spec, sink, slice)).start();
+        } catch (RuntimeException | Error ex) {
+            slice.release();
+            active.remove(handle);
+            slots.release();
+            throw ex;
+        }
+        return handle;
+    }
+
+    public SimulationResult run(SimulationJob job) throws InterruptedException {
+        return submit(job).await();
+    }
+
+    public int cores() {
+        return cores;
+    }
+
+    // Задания в очереди и в счете
+    public int activeJobs() {
+        return active.size();
+    }
+
+    // Новые задания не принимаются, начатые отменяются
+    @Override
+    public void close() {
+        closed = true;
+        for (JobHandle handle : active) handle.cancel();
+    }
+
+    private void execute(SimulationJob job, TransientAnalysis.SampleSink sink, Slice slice) {
+        final JobHandle handle = slice.handle;
+        String[] names = new String[0];
+        TransientAnalysis analysis = null;
+        DoubleList time = null;
+        DoubleList[] values = null;
+        SimulationResult.Status status = SimulationResult.Status.COMPLETED;
+        String error = null;
+        // Error (нехватка памяти, ошибка в SampleSink) тоже завершает задание,
+        // иначе ожидающий результата повиснет; после finish она пробрасывается дальше
+        Error fatal = null;
+        try {
+            slice.awaitGrant();
+            handle.running();
+
+            LinearSolverKind solver;
+            CircuitModel model;
+            if (job.netlist == null) {
+                model = new CircuitSystemModel(new CircuitParameters(), job.expTable);
+                solver = Data.LINEAR_SOLVER;
+            } else {
+                AssembledCircuit circuit =
+                        CircuitAssembler.assemble(NetlistParser.parse(job.netlist), job.expTable);
+                model = job.compiled ? CircuitCompiler.compile(circuit) : circuit;
+                solver = LinearSolverKind.SPARSE;
+            }
+            if (job.condensed) solver = LinearSolverKind.CONDENSED;
+            int[] columns = model.potentialIndices();
+            if (job.allVariables) {
+                columns = new int[model.size()];
+                for (int i = 0; i < columns.length; i++) columns[i] = i;
+            }
+            names = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) names[i] = model.variableName(columns[i]);
+
+            analysis = new TransientAnalysis(model, solver, job.method);
+            analysis.progressOutput = false;
+            analysis.stepControl = job.stepControl;
+            analysis.breakpoints = job.breakpoints;
+            analysis.denseOutput = job.denseOutput;
+            analysis.workspace.junctionLimiting = job.junctionLimiting;
+            analysis.workspace.adaptiveNewton = job.adaptiveNewton;
+            analysis.progressHook = slice::check;
+            if (job.dcOperatingPoint) {
+                analysis.start(0.0, new DcOperatingPoint(model).solve(0.0));
+            }
+
+            final int[] selected = columns;
+            final double[] row = new double[columns.length];
+            TransientAnalysis.SampleSink target = sink;
+            if (target == null) {
+                final DoubleList t = new DoubleList();
+                final DoubleList[] v = new DoubleList[columns.length];
+                for (int i = 0; i < v.length; i++) v[i] = new DoubleList();
+                time = t;
+                values = v;
+                target =
+                        (ts, x) -> {
+                            t.add(ts);
+                            for (int i = 0; i < selected.length; i++) v[i].add(x[selected[i]]);
+                        };
+            } else {
+                final TransientAnalysis.SampleSink out = sink;
+                target =
+                        (ts, x) -> {
+                            for (int i = 0; i < selected.length; i++) row[i] = x[selected[i]];
+                            out.sample(ts, row);
+                        };
+            }
+            analysis.run(job.timeEnd, target);
+            handle.progress(job.timeEnd);
+        } catch (CancellationException ex) {
+            status =
+                    slice.timedOut
+                            ? SimulationResult.Status.TIMED_OUT
+                            : SimulationResult.Status.CANCELLED;
+        } catch (Throwable ex) {
+            status = SimulationResult.Status.FAILED;
+            error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+            if (ex instanceof Error e) fatal = e;
+        } finally {
+            slice.release();
+            active.remove(handle);
+            slots.release();
+        }
+
+        double[] t = null;
+        double[][] v = null;
+        if (time != null && status == SimulationResult.Status.COMPLETED) {
+            t = time.toArray();
+            v = new double[values.length][];
+            for (int i = 0; i < v.length; i++) v[i] = values[i].toArray();
+        }
+        handle.finish(
+                new SimulationResult(
+                        status,
+                        names,
+                        t,
+                        v,
+                        analysis != null ? analysis.acceptedSteps() : 0,
+                        analysis != null ? analysis.rejectedSteps() : 0,
+                        slice.cpuNanos,
+                        error));
+        if (fatal != null) throw fatal;
+    }
+
+    // Процессор одного задания и учет его времени счета. holding меняется под lock
+    private final class Slice {
+        final JobHandle handle;
+        private final long limitNanos;
+        private final Condition granted = lock.newCondition();
+        private boolean holding = false;
+        private long sliceStart;
+        private long lastCheck;
+        long cpuNanos = 0;
+        boolean timedOut = false;
+
+        Slice(JobHandle handle, long limitMillis) {
+            this.handle = handle;
+            this.limitNanos = TimeUnit.MILLISECONDS.toNanos(limitMillis);
+        }
+
+        // Свободный процессор сразу, иначе конец очереди
+        void enqueue() {
+            lock.lock();
+            try {
+                if (free > 0 && waiting.isEmpty()) {
+                    free--;
+                    holding = true;
+                } else {
+                    waiting.addLast(this);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Ожидание передачи процессора с проверкой отмены
+        void awaitGrant() {
+            lock.lock();
+            try {
+                while (!holding) {
+                    if (handle.isCancelRequested()) {
+                        waiting.remove(this);
+                        throw new CancellationException();
+                    }
+                    granted.await(WAIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException ex) {
+                if (!holding) waiting.remove(this);
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } finally {
+                lock.unlock();
+            }
+            sliceStart = System.nanoTime();
+            lastCheck = sliceStart;
+            if (handle.isCancelRequested()) throw new CancellationException();
+        }
+
+        // Процессор передается первому ожидающему или освобождается
+        void release() {
+            lock.lock();
+            try {
+                if (!holding) {
+                    waiting.remove(this);
+                    return;
+                }
+                cpuNanos += System.nanoTime() - lastCheck;
+                holding = false;
+                Slice next = waiting.pollFirst();
+                if (next == null) {
+                    free++;
+                } else {
+                    next.holding = true;
+                    next.granted.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void check(double t) {
+            handle.progress(t);
+            final long now = System.nanoTime();
+            cpuNanos += now - lastCheck;
+            lastCheck = now;
+            if (handle.isCancelRequested()) throw new CancellationException();
+            if (limitNanos > 0 && cpuNanos > limitNanos) {
+                timedOut = true;
+                throw new CancellationException();
+            }
+            if (now - sliceStart >= sliceNanos) {
+                lock.lock();
+                try {
+                    if (!waiting.isEmpty()) {
+                        release();
+                        waiting.addLast(this);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                awaitGrant();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.bmstu.mimapr.sweep;
+
+/*
+ * Накопление статистики по величине без хранения отсчетов
+ *
+ * Отсчеты берутся на равномерной сетке вывода, поэтому
+ * действующее значение - среднеквадратичное по отсчетам
+ * */
+public final class ProbeStatistics {
+    private long count = 0;
+    private double sumSquares = 0.0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double v) {
+        count++;
+        sumSquares += v * v;
+        if (v < min) min = v;
+        if (v > max) max = v;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    // Амплитудное значение
+    public double peak() {
+        return Math.max(Math.abs(min), Math.abs(max));
+    }
+
+    // Действующее значение
+    public double rms() {
+        return (count == 0) ? 0.0 : Math.sqrt(sumSquares / count);
+    }
+}
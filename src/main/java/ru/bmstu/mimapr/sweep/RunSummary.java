@@ -0,0 +1,61 @@
+package ru.bmstu.mimapr.sweep;
+
+import ru.bmstu.mimapr.config.CircuitParameters;
+
+import java.util.Locale;
+
+// Итог одного прогона серии
+public final class RunSummary {
+    public final int index;
+    public final CircuitParameters parameters;
+    public final boolean isSuccessful;
+    public final String error;
+    public final int iterations;
+    public final long wallNanos;
+    // Статистика по потенциалам phi1..phi5
+    public final ProbeStatistics[] probes;
+
+    RunSummary(
+            int index,
+            CircuitParameters parameters,
+            boolean isSuccessful,
+            String error,
+            int iterations,
+            long wallNanos,
+            ProbeStatistics[] probes) {
+        this.index = index;
+        this.parameters = parameters;
+        this.isSuccessful = isSuccessful;
+        this.error = error;
+        this.iterations = iterations;
+        this.wallNanos = wallNanos;
+        this.probes = probes;
+    }
+
+    public static String csvHeader(int probes) {
+        StringBuilder sb = new StringBuilder("run,ok,iterations,wall_ms,R1,C1,R_B,I_T,E_AMPLITUDE");
+        for (int i = 1; i <= probes; i++) {
+            sb.append(",peak_phi").append(i).append(",rms_phi").append(i);
+        }
+        return sb.toString();
+    }
+
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(index).append(',').append(isSuccessful ? 1 : 0).append(',').append(iterations);
+        sb.append(',').append(String.format(Locale.US, "%.1f", wallNanos / 1e6));
+        sb.append(',').append(fmt(parameters.R1));
+        sb.append(',').append(fmt(parameters.C1));
+        sb.append(',').append(fmt(parameters.R_B));
+        sb.append(',').append(fmt(parameters.I_T));
+        sb.append(',').append(fmt(parameters.E_AMPLITUDE));
+        for (ProbeStatistics p : probes) {
+            sb.append(',').append(fmt(p.peak())).append(',').append(fmt(p.rms()));
+        }
+        return sb.toString();
+    }
+
+    private static String fmt(double v) {
+        return String.format(Locale.US, "%.6g", v);
+    }
+}
@@ -0,0 +1,179 @@
+package ru.bmstu.mimapr.sweep;
+
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.numerics.BatchedTransientAnalysis;
+import ru.bmstu.mimapr.numerics.CircuitSystemModel;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/*
+ * Серия независимых прогонов переходного процесса с разными параметрами
+ *
+ * Прогоны выполняются параллельно в ForkJoinPool. Число одновременно
+ * запущенных прогонов ограничено, итоги передаются получателю по мере
+ * готовности, поэтому память не растет с размером серии. В пакетном
+ * режиме задача пула рассчитывает сразу несколько прогонов в ногу
+ * векторными операциями (BatchedTransientAnalysis). Исключение в задаче
+ * пула, в том числе в получателе итогов, прекращает запуск новых прогонов
+ * и после завершения уже запущенных пробрасывается из run
+ * */
+public final class SweepRunner {
+    // Потенциалы phi1..phi5 в векторе неизвестных CircuitSystem
+    private static final int[] PHI_INDICES = {10, 11, 12, 13, 14};
+
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final double timeEnd;
+    private final LinearSolverKind solver;
+
+    public SweepRunner(int parallelism, double timeEnd, LinearSolverKind solver) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxInFlight = 2 * parallelism;
+        this.timeEnd = timeEnd;
+        this.solver = solver;
+    }
+
+    // Монте-Карло: номиналы nominal с равномерным разбросом tolerance.
+    // Прогон i использует собственный генератор, поэтому серия воспроизводима
+    public static Iterator<CircuitParameters> monteCarlo(
+            CircuitParameters nominal, double tolerance, long seed, int runs) {
+        return new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < runs;
+            }
+
+            @Override
+            public CircuitParameters next() {
+                SplittableRandom random = new SplittableRandom(seed + i++);
+                return nominal.vary(random, tolerance);
+            }
+        };
+    }
+
+    // Запуск серии. Получатель вызывается последовательно, в порядке завершения прогонов
+    public void run(Iterator<CircuitParameters> parameters, Consumer<RunSummary> out)
+            throws InterruptedException {
+        run(parameters, out, 1);
+    }
+
+    // Запуск серии пакетами по batchSize прогонов, batchSize = 1 - без пакетов.
+    // Итоги прогонов пакета передаются получателю вместе после завершения пакета.
+    // Первое исключение задачи пула - причина IllegalStateException
+    public void run(Iterator<CircuitParameters> parameters, Consumer<RunSummary> out, int batchSize)
+            throws InterruptedException {
+        if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive");
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Object outLock = new Object();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        int index = 0;
+        while (parameters.hasNext() && failure.get() == null) {
+            inFlight.acquire();
+            final List<CircuitParameters> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && parameters.hasNext()) batch.add(parameters.next());
+            final int firstIndex = index;
+            index += batch.size();
+            pool.execute(
+                    () -> {
+                        try {
+                            List<RunSummary> summaries =
+                                    (batchSize == 1)
+                                            ? List.of(runOne(firstIndex, batch.get(0)))
+                                            : runBatch(firstIndex, batch);
+                            synchronized (outLock) {
+                                summaries.forEach(out);
+                            }
+                        } catch (Throwable ex) {
+                            failure.compareAndSet(null, ex);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+        // Ожидание завершения всех прогонов
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+
+        Throwable ex = failure.get();
+        if (ex != null) throw new IllegalStateException("Sweep run failed: " + ex, ex);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Пакет прогонов в ногу. Время прогона - время всего пакета
+    public List<RunSummary> runBatch(int firstIndex, List<CircuitParameters> batch) {
+        ProbeStatistics[][] stats = new ProbeStatistics[batch.size()][PHI_INDICES.length];
+        for (ProbeStatistics[] lane : stats) {
+            for (int i = 0; i < lane.length; i++) lane[i] = new ProbeStatistics();
+        }
+
+        long start = System.nanoTime();
+        BatchedTransientAnalysis analysis = new BatchedTransientAnalysis(batch);
+        analysis.run(
+                timeEnd,
+                (lane, t, x) -> {
+                    for (int i = 0; i < PHI_INDICES.length; i++) {
+                        stats[lane][i].add(x[PHI_INDICES[i]]);
+                    }
+                });
+        long wallNanos = System.nanoTime() - start;
+
+        List<RunSummary> summaries = new ArrayList<>(batch.size());
+        for (int lane = 0; lane < batch.size(); lane++) {
+            String error = analysis.error(lane);
+            summaries.add(
+                    new RunSummary(
+                            firstIndex + lane,
+                            batch.get(lane),
+                            error == null,
+                            error,
+                            analysis.iterations(lane),
+                            wallNanos,
+                            stats[lane]));
+        }
+        return summaries;
+    }
+
+    public RunSummary runOne(int index, CircuitParameters p) {
+        ProbeStatistics[] stats = new ProbeStatistics[PHI_INDICES.length];
+        for (int i = 0; i < stats.length; i++) stats[i] = new ProbeStatistics();
+
+        long start = System.nanoTime();
+        TransientAnalysis analysis = new TransientAnalysis(new CircuitSystemModel(p), solver);
+        analysis.progressOutput = false;
+        try {
+            analysis.run(
+                    timeEnd,
+                    (t, x) -> {
+                        for (int i = 0; i < PHI_INDICES.length; i++) {
+                            stats[i].add(x[PHI_INDICES[i]]);
+                        }
+                    });
+            return new RunSummary(
+                    index, p, true, null, analysis.iterations(), System.nanoTime() - start, stats);
+        } catch (Exception ex) {
+            return new RunSummary(
+                    index,
+                    p,
+                    false,
+                    ex.getMessage(),
+                    analysis.iterations(),
+                    System.nanoTime() - start,
+                    stats);
+        }
+    }
+}
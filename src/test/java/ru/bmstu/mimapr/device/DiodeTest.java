@@ -0,0 +1,48 @@
+package ru.bmstu.mimapr.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// Характеристика диода и табличная экспонента
+class DiodeTest {
+    private static final double IS = 1e-14;
+    private static final double VT = 0.026;
+
+    // Проводимость - производная тока, в том числе на линейном продолжении выше MAX_EXPONENT
+    @Test
+    void conductanceIsDerivativeOfCurrent() {
+        for (boolean table : new boolean[] {false, true}) {
+            Diode d = new Diode(IS, VT, table);
+            for (double x : new double[] {-5.0, 1.0, 20.0, 39.0, 41.0, 60.0, 200.0}) {
+                final double v = x * VT;
+                final double h = 1e-7 * VT;
+                final double numeric = (d.current(v + h) - d.current(v - h)) / (2.0 * h);
+                assertEquals(numeric, d.conductance(v), 1e-5 * Math.abs(numeric), "x = " + x);
+
+                DeviceState s = new DeviceState();
+                d.evaluate(v, s);
+                assertEquals(d.current(v), s.current, 0.0);
+                assertEquals(d.conductance(v), s.conductance, 0.0);
+            }
+        }
+    }
+
+    @Test
+    void conductanceIsConstantAboveLimit() {
+        Diode d = new Diode(IS, VT);
+        final double limit = IS / VT * Math.exp(Diode.MAX_EXPONENT);
+        assertEquals(limit, d.conductance(50.0 * VT), 1e-15 * limit);
+        assertEquals(limit, d.conductance(500.0 * VT), 1e-15 * limit);
+    }
+
+    @Test
+    void expTableRelativeErrorBelowDocumentedBound() {
+        double max = 0.0;
+        for (double x = ExpTable.MIN_ARGUMENT; x < ExpTable.MAX_ARGUMENT; x += 1e-4) {
+            max = Math.max(max, Math.abs(ExpTable.exp(x) / Math.exp(x) - 1.0));
+        }
+        assertTrue(max < 1e-13, "max relative error " + max);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.bmstu.mimapr.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+// Асинхронная запись: отказ потока записи не оставляет поток расчета ждать
+class AsyncSampleSinkTest {
+    private static final int CAPACITY = 16;
+
+    // Error в downstream: sample при заполненном буфере и flush завершаются им же
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void errorInDownstreamIsRethrown() {
+        AsyncSampleSink sink =
+                new AsyncSampleSink(
+                        (t, x) -> {
+                            throw new OutOfMemoryError("downstream broke");
+                        },
+                        2,
+                        CAPACITY,
+                        AsyncSampleSink.OverflowPolicy.BLOCK);
+        double[] x = new double[2];
+        OutOfMemoryError error =
+                assertThrows(
+                        OutOfMemoryError.class,
+                        () -> {
+                            for (int i = 0; i < 10 * CAPACITY; i++) sink.sample(i, x);
+                        });
+        assertEquals("downstream broke", error.getMessage());
+        assertThrows(OutOfMemoryError.class, sink::flush);
+        assertThrows(OutOfMemoryError.class, sink::close);
+    }
+
+    @Test
+    void deliversEverySample() throws Exception {
+        final int count = 100 * CAPACITY;
+        final double[] sum = new double[1];
+        try (AsyncSampleSink sink =
+                new AsyncSampleSink(
+                        (t, x) -> sum[0] += x[0],
+                        1,
+                        CAPACITY,
+                        AsyncSampleSink.OverflowPolicy.BLOCK)) {
+            for (int i = 0; i < count; i++) sink.sample(i, new double[] {i});
+            sink.flush();
+            assertEquals(count, sink.samplesWritten());
+        }
+        assertEquals(count * (count - 1) / 2.0, sum[0], 0.0);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.bmstu.mimapr.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Продолжение записи с контрольной точки дает тот же файл, что и запись без перерыва
+class BinaryResultWriterTest {
+    private static final String[] NAMES = {"t", "a", "b"};
+    private static final int[] INDICES = {0, 1};
+    private static final int ROWS = 10000;
+
+    private static void write(BinaryResultWriter writer, int from, int to) throws IOException {
+        double[] x = new double[2];
+        for (int i = from; i < to; i++) {
+            x[0] = Math.sin(i);
+            x[1] = i;
+            writer.sample(1e-6 * i, x);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1000, BinaryResultWriter.DEFAULT_BLOCK_ROWS, 4500, 9000})
+    void resumedFileIsIdentical(int checkpointRows, @TempDir Path dir) throws IOException {
+        Path expected = dir.resolve("expected.bin");
+        try (BinaryResultWriter writer = new BinaryResultWriter(expected, NAMES, INDICES)) {
+            write(writer, 0, ROWS);
+        }
+
+        // Снимки с неполными блоками, затем запись после последнего снимка и сбой
+        Path actual = dir.resolve("actual.bin");
+        long position;
+        double[] pending;
+        try (BinaryResultWriter writer = new BinaryResultWriter(actual, NAMES, INDICES)) {
+            write(writer, 0, checkpointRows / 3);
+            writer.commit();
+            write(writer, checkpointRows / 3, checkpointRows);
+            position = writer.commit();
+            pending = writer.pendingRows();
+            assertEquals(checkpointRows, writer.rowsWritten());
+            write(writer, checkpointRows, Math.min(ROWS, checkpointRows + 777));
+        }
+        try (BinaryResultWriter writer =
+                BinaryResultWriter.resume(
+                        actual, NAMES, INDICES, position, checkpointRows, pending)) {
+            write(writer, checkpointRows, ROWS);
+        }
+
+        assertEquals(-1L, Files.mismatch(expected, actual));
+    }
+}
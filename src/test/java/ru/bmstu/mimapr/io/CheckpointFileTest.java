@@ -0,0 +1,58 @@
+package ru.bmstu.mimapr.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.numerics.TransientState;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Контрольная точка читается такой же, какой записана, вместе со сверткой схемы
+class CheckpointFileTest {
+    private static double[] values(int n, double scale) {
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) v[i] = scale * (i + 1);
+        return v;
+    }
+
+    @Test
+    void roundTripKeepsSetupDigest(@TempDir Path dir) throws IOException {
+        TransientState s = new TransientState();
+        s.size = 3;
+        s.method = IntegrationMethodKind.TRAPEZOIDAL;
+        s.stepControl = StepControlKind.LTE;
+        s.currT = 1e-4;
+        s.deltaT = 1e-7;
+        s.nextSaveT = 1.001e-4;
+        s.acceptedSteps = 42;
+        s.initialApproximation = values(3, 1.0);
+        s.pvPrev = values(3, 2.0);
+        s.pvPrevPrev = values(3, 3.0);
+        s.pvPrev3 = values(3, 4.0);
+        s.integratorState = values(5, 0.5);
+
+        byte[] digest = CheckpointFile.digest("netlist\nR1 1 0 1k\ncondensed=true");
+        Path path = dir.resolve("checkpoint.bin");
+        new CheckpointFile(digest, s, 4096, 100, values(6, -1.0)).write(path);
+        CheckpointFile read = CheckpointFile.read(path);
+
+        assertTrue(read.matches(digest));
+        assertFalse(read.matches(CheckpointFile.digest("netlist\nR1 1 0 1k\ncondensed=false")));
+        assertEquals(s.method, read.state.method);
+        assertEquals(s.stepControl, read.state.stepControl);
+        assertEquals(s.currT, read.state.currT);
+        assertEquals(s.acceptedSteps, read.state.acceptedSteps);
+        assertArrayEquals(s.pvPrev3, read.state.pvPrev3);
+        assertArrayEquals(s.integratorState, read.state.integratorState);
+        assertEquals(4096, read.outputPosition);
+        assertEquals(100, read.outputRows);
+        assertArrayEquals(values(6, -1.0), read.outputPending);
+    }
+}
@@ -0,0 +1,173 @@
+package ru.bmstu.mimapr.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// Запросы к файлу осциллограмм совпадают с перебором всех строк
+class WaveformStoreTest {
+    private static final int ROWS = 100_000;
+    private static final int CHUNK_ROWS = 1000;
+    private static final String[] NAMES = {"t", "a", "b", "c"};
+    private static final int QUERIES = 300;
+
+    @TempDir static Path dir;
+    private static Path path;
+    // Строки по столбцам: time, затем a, b, c
+    private static double[][] data;
+
+    @BeforeAll
+    static void write() throws IOException {
+        Random random = new Random(11);
+        data = new double[NAMES.length][ROWS];
+        path = dir.resolve("waveforms.bin");
+        try (WaveformWriter writer =
+                new WaveformWriter(path, NAMES, new int[] {0, 1, 2}, CHUNK_ROWS)) {
+            double[] x = new double[3];
+            double t = 0.0;
+            for (int r = 0; r < ROWS; r++) {
+                // Повторяющиеся моменты времени и редкие большие промежутки
+                if (random.nextInt(10) != 0) t += random.nextDouble() * 1e-6;
+                if (random.nextInt(5000) == 0) t += 1e-3;
+                x[0] = Math.sin(r * 1e-3) + 0.1 * random.nextGaussian();
+                x[1] = random.nextGaussian();
+                x[2] = (random.nextInt(50) == 0) ? Double.NaN : random.nextDouble();
+                data[0][r] = t;
+                for (int c = 0; c < 3; c++) data[c + 1][r] = x[c];
+                writer.sample(t, x);
+            }
+        }
+    }
+
+    private static double[] time() {
+        return data[0];
+    }
+
+    private static int bruteFirstAtOrAfter(double t) {
+        int r = 0;
+        while (r < ROWS && time()[r] < t) r++;
+        return r;
+    }
+
+    // Случайный момент внутри записи, иногда точно равный времени строки
+    private static double randomTime(Random random) {
+        if (random.nextBoolean()) return time()[random.nextInt(ROWS)];
+        return time()[0] + random.nextDouble() * (time()[ROWS - 1] - time()[0]);
+    }
+
+    @Test
+    void readsEveryValue() throws IOException {
+        try (WaveformStore store = new WaveformStore(path)) {
+            assertEquals(ROWS, store.rows());
+            assertArrayEquals(NAMES, store.names);
+            int mismatches = 0;
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < NAMES.length; c++) {
+                    if (Double.compare(data[c][r], store.get(r, c)) != 0) mismatches++;
+                }
+            }
+            assertEquals(0, mismatches);
+        }
+    }
+
+    @Test
+    void findsRowsByTime() throws IOException {
+        Random random = new Random(12);
+        try (WaveformStore store = new WaveformStore(path)) {
+            for (int q = 0; q < QUERIES; q++) {
+                final double t = randomTime(random);
+                assertEquals(bruteFirstAtOrAfter(t), store.firstRowAtOrAfter(t));
+            }
+            assertEquals(0, store.firstRowAtOrAfter(-1.0));
+            assertEquals(ROWS, store.firstRowAtOrAfter(time()[ROWS - 1] + 1.0));
+        }
+    }
+
+    @Test
+    void slicesMatchScan() throws IOException {
+        Random random = new Random(13);
+        try (WaveformStore store = new WaveformStore(path)) {
+            for (int q = 0; q < QUERIES; q++) {
+                double t0 = randomTime(random);
+                double t1 = randomTime(random);
+                if (t1 < t0) {
+                    final double tmp = t0;
+                    t0 = t1;
+                    t1 = tmp;
+                }
+                int begin = bruteFirstAtOrAfter(t0);
+                int end = begin;
+                while (end < ROWS && time()[end] <= t1) end++;
+
+                WaveformStore.Slice slice = store.slice(t0, t1, 3, 1);
+                assertArrayEquals(Arrays.copyOfRange(time(), begin, end), slice.time, 0.0);
+                assertArrayEquals(Arrays.copyOfRange(data[3], begin, end), slice.values[0], 0.0);
+                assertArrayEquals(Arrays.copyOfRange(data[1], begin, end), slice.values[1], 0.0);
+            }
+        }
+    }
+
+    @Test
+    void interpolatesBetweenRows() throws IOException {
+        Random random = new Random(14);
+        try (WaveformStore store = new WaveformStore(path)) {
+            for (int q = 0; q < QUERIES; q++) {
+                final double t = randomTime(random);
+                final int row = bruteFirstAtOrAfter(t);
+                double expected = data[2][row];
+                if (time()[row] != t && row > 0) {
+                    final double t0 = time()[row - 1];
+                    final double v0 = data[2][row - 1];
+                    expected = v0 + (t - t0) / (time()[row] - t0) * (data[2][row] - v0);
+                }
+                assertEquals(expected, store.valueAt(2, t), 0.0);
+            }
+        }
+    }
+
+    // Интервалы крупнее и мельче отрезков, столбец с NaN
+    @Test
+    void decimationMatchesScan() throws IOException {
+        Random random = new Random(15);
+        try (WaveformStore store = new WaveformStore(path)) {
+            for (int q = 0; q < QUERIES; q++) {
+                final int column = 1 + random.nextInt(3);
+                final int buckets = 1 + random.nextInt(q % 2 == 0 ? 20 : 2000);
+                double t0 = (q % 3 == 0) ? time()[0] : randomTime(random);
+                double t1 = (q % 3 == 0) ? time()[ROWS - 1] : randomTime(random);
+                if (t1 < t0) {
+                    final double tmp = t0;
+                    t0 = t1;
+                    t1 = tmp;
+                }
+                if (!(t1 > t0)) continue;
+
+                double[] min = new double[buckets];
+                double[] max = new double[buckets];
+                Arrays.fill(min, Double.NaN);
+                Arrays.fill(max, Double.NaN);
+                for (int r = 0; r < ROWS; r++) {
+                    final double t = time()[r];
+                    final double v = data[column][r];
+                    if (t < t0 || t > t1 || Double.isNaN(v)) continue;
+                    final double position = (t - t0) / (t1 - t0) * buckets;
+                    final int b = (int) Math.min(buckets - 1, Math.max(0.0, Math.floor(position)));
+                    if (!(min[b] <= v)) min[b] = v;
+                    if (!(max[b] >= v)) max[b] = v;
+                }
+
+                WaveformStore.Envelope envelope = store.decimate(column, t0, t1, buckets);
+                assertArrayEquals(min, envelope.min, 0.0);
+                assertArrayEquals(max, envelope.max, 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.bmstu.mimapr.netlist;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.numerics.CircuitModel;
+import ru.bmstu.mimapr.numerics.DcOperatingPoint;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Сгенерированная модель повторяет собранную схему побитно
+class CircuitCompilerTest {
+    // Все принятые точки переходного процесса до timeEnd: t и решение
+    private static List<double[]> simulate(CircuitModel model, double timeEnd)
+            throws IOException {
+        TransientAnalysis analysis = new TransientAnalysis(model, LinearSolverKind.SPARSE);
+        analysis.progressOutput = false;
+        analysis.stepControl = StepControlKind.LTE;
+        analysis.workspace.junctionLimiting = true;
+        List<double[]> samples = new ArrayList<>();
+        analysis.run(
+                timeEnd,
+                (t, x) -> {
+                    double[] row = new double[x.length + 1];
+                    row[0] = t;
+                    System.arraycopy(x, 0, row, 1, x.length);
+                    samples.add(row);
+                });
+        return samples;
+    }
+
+    @Test
+    void compiledRectifierMatchesAssembled() throws IOException {
+        AssembledCircuit circuit = StiffNetlistTest.load("hard.cir");
+        CompiledCircuit compiled = CircuitCompiler.compile(circuit);
+
+        List<double[]> expected = simulate(circuit, 1e-3);
+        List<double[]> actual = simulate(compiled, 1e-3);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), 0.0, "sample " + i);
+        }
+    }
+
+    @Test
+    void compiledDcOperatingPointMatchesAssembled() throws IOException {
+        AssembledCircuit circuit = StiffNetlistTest.load("dc.cir");
+        CompiledCircuit compiled = CircuitCompiler.compile(circuit);
+        assertArrayEquals(
+                new DcOperatingPoint(circuit).solve(0.0),
+                new DcOperatingPoint(compiled).solve(0.0),
+                0.0);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.bmstu.mimapr.netlist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.numerics.DcOperatingPoint;
+import ru.bmstu.mimapr.numerics.TransientAnalysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Жесткие схемы с диодом из тестовых ресурсов netlist/
+ *
+ * hard.cir - выпрямитель с амплитудой 50 В: без ограничения напряжения
+ * p-n перехода метод Ньютона уходит далеко за MAX_EXPONENT.
+ * dc.cir - диод, открытый источником постоянного напряжения
+ * */
+class StiffNetlistTest {
+    static AssembledCircuit load(String name) throws IOException {
+        try (InputStream in = StiffNetlistTest.class.getResourceAsStream("/netlist/" + name)) {
+            return CircuitAssembler.assemble(
+                    NetlistParser.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    // Максимум и последнее значение напряжения узла 3 за timeEnd
+    private static double[] rectify(AssembledCircuit circuit, boolean limiting, double timeEnd)
+            throws IOException {
+        TransientAnalysis analysis = new TransientAnalysis(circuit, LinearSolverKind.SPARSE);
+        analysis.progressOutput = false;
+        analysis.stepControl = StepControlKind.LTE;
+        analysis.workspace.junctionLimiting = limiting;
+        final int node = circuit.nodeIndex("3");
+        final double[] out = new double[2];
+        analysis.run(
+                timeEnd,
+                (t, x) -> {
+                    out[0] = Math.max(out[0], x[node]);
+                    out[1] = x[node];
+                });
+        return out;
+    }
+
+    @Test
+    void rectifierWithAndWithoutJunctionLimiting() throws IOException {
+        AssembledCircuit circuit = load("hard.cir");
+        final double[] limited = rectify(circuit, true, 1e-3);
+        final double[] plain = rectify(circuit, false, 1e-3);
+
+        // Пик на конденсаторе - амплитуда за вычетом падения на R1 и открытом диоде
+        assertTrue(limited[0] > 40.0 && limited[0] < 50.0, "peak " + limited[0]);
+        assertEquals(limited[0], plain[0], 1e-2 * limited[0]);
+        assertEquals(limited[1], plain[1], 1e-2 * limited[0]);
+    }
+
+    @Test
+    void dcOperatingPointSatisfiesKirchhoff() throws IOException {
+        AssembledCircuit circuit = load("dc.cir");
+        DcOperatingPoint dc = new DcOperatingPoint(circuit);
+        final double[] x = dc.solve(0.0);
+        final double v2 = x[circuit.nodeIndex("2")];
+
+        // Ток через R1 равен току диода: корень 5 - v = Is * (e^(v / Vt) - 1) делением пополам
+        double lo = 0.0;
+        double hi = 5.0;
+        for (int k = 0; k < 100; k++) {
+            final double v = 0.5 * (lo + hi);
+            if (5.0 - v > 1e-14 * (Math.exp(v / 0.026) - 1.0)) lo = v;
+            else hi = v;
+        }
+        assertEquals(lo, v2, 1e-6);
+    }
+}
@@ -0,0 +1,71 @@
+package ru.bmstu.mimapr.numerics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import ru.bmstu.mimapr.netlist.AssembledCircuit;
+
+import java.io.IOException;
+
+/*
+ * Малосигнальный анализ линейной цепочки ladder.cir против передаточной функции:
+ * V2 = V1 Z / (R1 + Z), Z = 1 / (j w C1) || (j w L1 + R2), V3 = V2 R2 / (j w L1 + R2)
+ * */
+class AcAnalysisTest {
+    private static final double R1 = 1e3;
+    private static final double C1 = 1e-6;
+    private static final double L1 = 1e-3;
+    private static final double R2 = 10.0;
+
+    // Комплексное число как {re, im}
+    private static double[] mul(double[] a, double[] b) {
+        return new double[] {a[0] * b[0] - a[1] * b[1], a[0] * b[1] + a[1] * b[0]};
+    }
+
+    private static double[] div(double[] a, double[] b) {
+        final double d = b[0] * b[0] + b[1] * b[1];
+        return new double[] {(a[0] * b[0] + a[1] * b[1]) / d, (a[1] * b[0] - a[0] * b[1]) / d};
+    }
+
+    private static double[] add(double[] a, double[] b) {
+        return new double[] {a[0] + b[0], a[1] + b[1]};
+    }
+
+    private static void assertPhasor(double[] expected, AcAnalysis ac, int k, int node) {
+        final double magnitude = Math.hypot(expected[0], expected[1]);
+        assertEquals(magnitude, ac.magnitude(k, node), 1e-9 * magnitude, "magnitude " + k);
+        assertEquals(
+                Math.toDegrees(Math.atan2(expected[1], expected[0])),
+                ac.phaseDegrees(k, node),
+                1e-7,
+                "phase " + k);
+    }
+
+    @Test
+    void ladderMatchesTransferFunction() throws IOException, InterruptedException {
+        AssembledCircuit circuit = CondensedSolverTest.netlist("ladder.cir");
+        double[] operatingPoint = new DcOperatingPoint(circuit).solve(0.0);
+        AcAnalysis ac = new AcAnalysis(circuit, operatingPoint, 2);
+        double[] f = AcAnalysis.logFrequencies(1.0, 1e5, 10);
+        try {
+            ac.run(f);
+        } finally {
+            ac.shutdown();
+        }
+        assertEquals(0, ac.singularPoints());
+
+        final int node2 = circuit.nodeIndex("2");
+        final int node3 = circuit.nodeIndex("3");
+        final double[] one = {1.0, 0.0};
+        for (int k = 0; k < f.length; k++) {
+            final double w = 2.0 * Math.PI * f[k];
+            final double[] branch = {R2, w * L1};
+            final double[] capacitor = {0.0, w * C1};
+            final double[] z = div(one, add(capacitor, div(one, branch)));
+            final double[] v2 = div(z, add(new double[] {R1, 0.0}, z));
+            final double[] v3 = mul(v2, div(new double[] {R2, 0.0}, branch));
+            assertPhasor(v2, ac, k, node2);
+            assertPhasor(v3, ac, k, node3);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ru.bmstu.mimapr.numerics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.netlist.AssembledCircuit;
+import ru.bmstu.mimapr.netlist.CircuitAssembler;
+import ru.bmstu.mimapr.netlist.NetlistParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Решатель с исключением производных и переменных состояния
+class CondensedSolverTest {
+    private static double[] solveDense(double[][] a, double[] b) {
+        DenseLuSolver dense = new DenseLuSolver(a.length);
+        assertTrue(dense.factor(a));
+        double[] x = new double[a.length];
+        dense.solve(b, x);
+        return x;
+    }
+
+    // Совпадение с точностью до 1e-9 от максимума модуля решения
+    static void assertClose(double[] expected, double[] actual) {
+        double scale = 0.0;
+        for (double v : expected) scale = Math.max(scale, Math.abs(v));
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-9 * scale, "index " + i);
+        }
+    }
+
+    // Плотный вход: ненулевой элемент вне портрета первой матрицы не теряется
+    @Test
+    void denseInputOutsideFirstPatternIsReanalyzed() {
+        CondensedSolver solver = CondensedSolver.of(new CircuitSystemModel());
+        double[][] a = CircuitSystem.createJacobiMatrix(1e-6, 0.3);
+        double[] b = new double[a.length];
+        for (int i = 0; i < b.length; i++) b[i] = 1.0 + i;
+        double[] x = new double[a.length];
+
+        assertTrue(solver.factor(a));
+        solver.solve(b, x);
+        assertClose(solveDense(a, b), x);
+
+        // Связь строки ЭДС с производной и с переменной состояния, которых не было
+        a[15][0] = 0.5;
+        a[15][5] = 2.0;
+        assertTrue(solver.factor(a));
+        solver.solve(b, x);
+        assertClose(solveDense(a, b), x);
+    }
+
+    // Решения СЛАУ с матрицами Якоби модели в случайных точках
+    private static void compareLinearSolves(CircuitModel model) {
+        SparseMatrix jacobi = model.createJacobiMatrix();
+        LinearSolver sparse = LinearSolver.of(LinearSolverKind.SPARSE, model.size());
+        CondensedSolver condensed = CondensedSolver.of(model);
+        Random random = new Random(5);
+        double[] x = new double[model.size()];
+        double[] b = new double[model.size()];
+        double[] expected = new double[model.size()];
+        double[] actual = new double[model.size()];
+        for (int t = 0; t < 50; t++) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] = 0.5 * random.nextGaussian();
+                b[i] = random.nextGaussian();
+            }
+            model.fillJacobiMatrix(jacobi, Math.pow(10.0, -3 - 5 * random.nextDouble()), x);
+            assertTrue(sparse.factor(jacobi));
+            assertTrue(condensed.factor(jacobi));
+            sparse.solve(b, expected);
+            condensed.solve(b, actual);
+            assertClose(expected, actual);
+        }
+        assertTrue(condensed.reducedSize() < model.size());
+    }
+
+    // Переходный процесс с обычным и приведенным решателем: последняя точка
+    private static void compareTransient(CircuitModel model, double timeEnd) throws IOException {
+        double[] expected = simulate(model, LinearSolverKind.SPARSE, timeEnd);
+        double[] actual = simulate(model, LinearSolverKind.CONDENSED, timeEnd);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-6 * (1.0 + Math.abs(expected[i])), "x" + i);
+        }
+    }
+
+    private static double[] simulate(CircuitModel model, LinearSolverKind kind, double timeEnd)
+            throws IOException {
+        TransientAnalysis analysis = new TransientAnalysis(model, kind);
+        analysis.progressOutput = false;
+        double[] last = new double[model.size()];
+        analysis.run(timeEnd, (t, x) -> System.arraycopy(x, 0, last, 0, last.length));
+        return last;
+    }
+
+    // Схема из тестовых ресурсов netlist/
+    static AssembledCircuit netlist(String name) throws IOException {
+        try (InputStream in = CondensedSolverTest.class.getResourceAsStream("/netlist/" + name)) {
+            return CircuitAssembler.assemble(
+                    NetlistParser.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void builtinCircuitMatchesSparse() throws IOException {
+        compareLinearSolves(new CircuitSystemModel());
+        compareTransient(new CircuitSystemModel(), 2e-5);
+    }
+
+    @Test
+    void rectifierNetlistMatchesSparse() throws IOException {
+        compareLinearSolves(netlist("hard.cir"));
+        compareTransient(netlist("hard.cir"), 5e-5);
+    }
+}
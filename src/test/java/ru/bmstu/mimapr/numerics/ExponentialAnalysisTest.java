@@ -0,0 +1,108 @@
+package ru.bmstu.mimapr.numerics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import ru.bmstu.mimapr.config.Data;
+import ru.bmstu.mimapr.model.DoubleList;
+import ru.bmstu.mimapr.netlist.AssembledCircuit;
+
+import java.io.IOException;
+
+/*
+ * Экспоненциальное интегрирование линейной цепочки ladder_step.cir против
+ * метода Рунге-Кутты 4-го порядка с мелким шагом:
+ * C1 v' = (V1 - v) / R1 - i, L1 i' = v - R2 i, V(2) = v, V(3) = R2 i.
+ * Для линейной схемы с постоянным источником оценка погрешности шага равна нулю,
+ * шаг удваивается от START_DELTA_TIME до MAXIMAL_STEP, и точки вывода - линейная
+ * интерполяция точного решения между концами этих шагов
+ * */
+class ExponentialAnalysisTest {
+    private static final double V1 = 1.0;
+    private static final double R1 = 1e3;
+    private static final double C1 = 1e-6;
+    private static final double L1 = 1e-3;
+    private static final double R2 = 10.0;
+    private static final double RK4_STEP = 1e-8;
+    private static final double TIME_END = 1e-3;
+
+    private static void derivative(double[] y, double[] dy) {
+        dy[0] = ((V1 - y[0]) / R1 - y[1]) / C1;
+        dy[1] = (y[0] - R2 * y[1]) / L1;
+    }
+
+    // Шаг RK4 длины h для y = {v, i}
+    private static void rk4(double[] y, double h) {
+        double[] k1 = new double[2];
+        double[] k2 = new double[2];
+        double[] k3 = new double[2];
+        double[] k4 = new double[2];
+        double[] tmp = new double[2];
+        derivative(y, k1);
+        for (int i = 0; i < 2; i++) tmp[i] = y[i] + 0.5 * h * k1[i];
+        derivative(tmp, k2);
+        for (int i = 0; i < 2; i++) tmp[i] = y[i] + 0.5 * h * k2[i];
+        derivative(tmp, k3);
+        for (int i = 0; i < 2; i++) tmp[i] = y[i] + h * k3[i];
+        derivative(tmp, k4);
+        for (int i = 0; i < 2; i++) y[i] += h / 6.0 * (k1[i] + 2.0 * k2[i] + 2.0 * k3[i] + k4[i]);
+    }
+
+    @Test
+    void ladderMatchesRungeKutta() throws IOException {
+        AssembledCircuit circuit = CondensedSolverTest.netlist("ladder_step.cir");
+        final int node2 = circuit.nodeIndex("2");
+        final int node3 = circuit.nodeIndex("3");
+        ExponentialAnalysis analysis = new ExponentialAnalysis(circuit);
+        analysis.denseOutput = true;
+
+        DoubleList times = new DoubleList();
+        DoubleList v2 = new DoubleList();
+        DoubleList v3 = new DoubleList();
+        analysis.run(
+                TIME_END,
+                (t, x) -> {
+                    times.add(t);
+                    v2.add(x[node2]);
+                    v3.add(x[node3]);
+                });
+        assertEquals(0, analysis.rejectedSteps());
+
+        // Концы шагов и эталонное решение в них
+        DoubleList ends = new DoubleList();
+        DoubleList refV2 = new DoubleList();
+        DoubleList refV3 = new DoubleList();
+        final double[] y = new double[2];
+        double t = 0.0;
+        double h = Data.START_DELTA_TIME;
+        ends.add(t);
+        refV2.add(0.0);
+        refV3.add(0.0);
+        while (t < TIME_END) {
+            final double tNext = t + h;
+            final int substeps = (int) Math.ceil(h / RK4_STEP);
+            for (int k = 0; k < substeps; k++) rk4(y, h / substeps);
+            ends.add(tNext);
+            refV2.add(y[0]);
+            refV3.add(R2 * y[1]);
+            if (2.0 * h <= Data.MAXIMAL_STEP) h = 2.0 * h;
+            t = tNext;
+        }
+        assertEquals(ends.size() - 1, analysis.acceptedSteps());
+
+        int step = 1;
+        for (int s = 0; s < times.size(); s++) {
+            final double ts = times.get(s);
+            while (ends.get(step) < ts) step++;
+            final double t0 = ends.get(step - 1);
+            final double w = (ts - t0) / (ends.get(step) - t0);
+            final double e2 = refV2.get(step - 1) + w * (refV2.get(step) - refV2.get(step - 1));
+            final double e3 = refV3.get(step - 1) + w * (refV3.get(step) - refV3.get(step - 1));
+            assertEquals(e2, v2.get(s), 1e-10, "V(2) at " + ts);
+            assertEquals(e3, v3.get(s), 1e-10, "V(3) at " + ts);
+        }
+        // Последний шаг может перейти через TIME_END, точки вывода выдаются до его конца
+        assertTrue(times.size() > Math.round((TIME_END - Data.TIME_START) / Data.SAVE_DT));
+    }
+}
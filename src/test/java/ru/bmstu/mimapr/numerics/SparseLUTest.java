@@ -0,0 +1,111 @@
+package ru.bmstu.mimapr.numerics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+// Разреженное LU-разложение: решение СЛАУ и символьный этап на больших портретах
+class SparseLUTest {
+    // Максимум |A x - b| по строкам
+    private static double residual(SparseMatrix a, double[] x, double[] b) {
+        double max = 0.0;
+        for (int i = 0; i < a.n; i++) {
+            double r = -b[i];
+            for (int k = a.rowPtr[i]; k < a.rowPtr[i + 1]; k++) r += a.values[k] * x[a.colIdx[k]];
+            max = Math.max(max, Math.abs(r));
+        }
+        return max;
+    }
+
+    @Test
+    void solvesRandomSparseSystems() {
+        Random random = new Random(3);
+        for (int t = 0; t < 200; t++) {
+            final int n = 1 + random.nextInt(40);
+            double[][] dense = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (random.nextDouble() < 0.15) dense[i][j] = random.nextGaussian();
+                }
+                // Ненулевой элемент в каждой строке и столбце, порядок исключения не диагональный
+                dense[i][(i * 7 + 3) % n] += 2.0 + random.nextDouble();
+            }
+            SparseMatrix a = SparseMatrix.fromDense(dense);
+            double[] b = new double[n];
+            for (int i = 0; i < n; i++) b[i] = random.nextGaussian();
+
+            SparseLU lu = new SparseLU(n);
+            if (!lu.factor(a)) continue;
+            double[] x = new double[n];
+            lu.solve(b, x);
+            assertTrue(residual(a, x, b) < 1e-9, "n = " + n);
+        }
+    }
+
+    // Ленточная матрица с дальними связями: плотная копия n x n заняла бы ~3 ГБ
+    @Test
+    void analyzesLargePatternWithoutDenseCopy() {
+        final int n = 20000;
+        int[] rowPtr = new int[n + 1];
+        int[] colIdx = new int[4 * n];
+        int nnz = 0;
+        for (int i = 0; i < n; i++) {
+            final int far = (i + n / 2) % n;
+            int[] cols = {i - 1, i, i + 1, far};
+            Arrays.sort(cols);
+            int last = -1;
+            for (int j : cols) {
+                if (j < 0 || j >= n || j == last) continue;
+                colIdx[nnz++] = j;
+                last = j;
+            }
+            rowPtr[i + 1] = nnz;
+        }
+        SparseMatrix a = new SparseMatrix(n, rowPtr, Arrays.copyOf(colIdx, nnz));
+        for (int i = 0; i < n; i++) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                a.values[k] = (a.colIdx[k] == i) ? 4.0 : -1.0;
+            }
+        }
+        double[] b = new double[n];
+        for (int i = 0; i < n; i++) b[i] = Math.sin(i);
+
+        SparseLU lu = new SparseLU(n);
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> assertTrue(lu.factor(a)));
+        assertEquals(1, lu.analyses);
+        double[] x = new double[n];
+        lu.solve(b, x);
+        assertTrue(residual(a, x, b) < 1e-12);
+    }
+
+    // Плотный вход: ненулевой элемент вне портрета первой матрицы расширяет портрет
+    @Test
+    void denseInputOutsideFirstPatternIsReanalyzed() {
+        double[][] a = {{2.0, 0.0, 0.0}, {0.0, 3.0, 0.0}, {0.0, 0.0, 4.0}};
+        double[] b = {1.0, 2.0, 3.0};
+        double[] x = new double[3];
+        SparseLuSolver solver = new SparseLuSolver(3);
+        assertTrue(solver.factor(a));
+        assertEquals(1, solver.decomposition().analyses);
+
+        a[0][2] = 1.0;
+        a[2][0] = -1.0;
+        assertTrue(solver.factor(a));
+        assertEquals(2, solver.decomposition().analyses);
+        solver.solve(b, x);
+        assertTrue(residual(SparseMatrix.fromDense(a), x, b) < 1e-15);
+
+        // Элемент, ставший нулевым, остается в портрете: повторного анализа нет
+        a[0][2] = 0.0;
+        assertTrue(solver.factor(a));
+        assertEquals(2, solver.decomposition().analyses);
+        solver.solve(b, x);
+        assertTrue(residual(SparseMatrix.fromDense(a), x, b) < 1e-15);
+    }
+}
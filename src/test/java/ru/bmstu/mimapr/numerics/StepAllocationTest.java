@@ -0,0 +1,103 @@
+package ru.bmstu.mimapr.numerics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.bmstu.mimapr.config.IntegrationMethodKind;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.config.StepControlKind;
+import ru.bmstu.mimapr.model.PhaseVariables;
+import ru.bmstu.mimapr.model.PrevStateVariables;
+import ru.bmstu.mimapr.model.TimeDemon;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/*
+ * Шаг по времени не выделяет память: после прогрева на нескольких тысячах
+ * шагов в среднем меньше одного байта на шаг, то есть ни одного объекта
+ * */
+class StepAllocationTest {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final long MIN_STEPS = 2000;
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    // Выделенные байты на шаг при продолжении расчета от warmupEnd до timeEnd
+    private static double bytesPerStep(TransientAnalysis analysis, double warmupEnd, double timeEnd)
+            throws IOException {
+        final TransientAnalysis.SampleSink sink = (t, x) -> {};
+        analysis.progressOutput = false;
+        analysis.run(warmupEnd, sink);
+        final long steps = analysis.acceptedSteps() + analysis.rejectedSteps();
+        final long before = allocatedBytes();
+        analysis.run(timeEnd, sink);
+        final long bytes = allocatedBytes() - before;
+        final long measured = analysis.acceptedSteps() + analysis.rejectedSteps() - steps;
+        assertTrue(measured >= MIN_STEPS, "only " + measured + " steps measured");
+        return (double) bytes / measured;
+    }
+
+    @Test
+    void heuristicStepDoesNotAllocate() throws IOException {
+        TransientAnalysis analysis =
+                new TransientAnalysis(new CircuitSystemModel(), LinearSolverKind.DENSE);
+        final double perStep = bytesPerStep(analysis, 2e-5, 3e-5);
+        assertTrue(perStep < 1.0, perStep + " bytes per step");
+    }
+
+    @ParameterizedTest
+    @EnumSource(IntegrationMethodKind.class)
+    void lteStepDoesNotAllocate(IntegrationMethodKind method) throws IOException {
+        TransientAnalysis analysis =
+                new TransientAnalysis(new CircuitSystemModel(), LinearSolverKind.SPARSE, method);
+        analysis.stepControl = StepControlKind.LTE;
+        analysis.breakpoints = true;
+        analysis.denseOutput = true;
+        final double perStep = bytesPerStep(analysis, 1e-3, 1e-2);
+        assertTrue(perStep < 1.0, perStep + " bytes per step");
+    }
+
+    // Исходный метод Ньютона для встроенной схемы в рабочей памяти SolverWorkspace
+    @Test
+    void legacyNewtonStepDoesNotAllocate() {
+        final SolverWorkspace ws = new SolverWorkspace(LinearSolverKind.DENSE);
+        final PhaseVariables approx = new PhaseVariables();
+        final PrevStateVariables prev = new PrevStateVariables();
+        final TimeDemon td = new TimeDemon(0.0, 1e-8, true);
+        assertEquals(0, legacySteps(ws, approx, prev, td, 20000));
+        final long before = allocatedBytes();
+        final int failures = legacySteps(ws, approx, prev, td, 5000);
+        assertEquals(0, failures);
+        final double perStep = (double) (allocatedBytes() - before) / 5000;
+        assertTrue(perStep < 1.0, perStep + " bytes per step");
+    }
+
+    // Число шагов, на которых метод Ньютона не сошелся
+    private static int legacySteps(
+            SolverWorkspace ws,
+            PhaseVariables approx,
+            PrevStateVariables prev,
+            TimeDemon td,
+            int steps) {
+        int failures = 0;
+        for (int k = 0; k < steps; k++) {
+            td.set(td.currT + td.deltaT, td.deltaT, true);
+            if (!NewtonSolver.newtonMethod(td, approx, prev, ws)) failures++;
+            final PhaseVariables s = ws.solution;
+            prev.uC1Prev = s.Uc1;
+            prev.uC2Prev = s.Uc2;
+            prev.uCbPrev = s.Ucb;
+            prev.iL1Prev = s.Il1;
+            prev.uC3Prev = s.uC3;
+            approx.copyFrom(s);
+        }
+        return failures;
+    }
+}
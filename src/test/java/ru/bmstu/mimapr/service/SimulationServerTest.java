@@ -0,0 +1,91 @@
+package ru.bmstu.mimapr.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+// HTTP-служба: завершенные и отмененные задания не накапливаются
+class SimulationServerTest {
+    private static final long WAIT_MILLIS = 60_000;
+    private static final long HOUR_MILLIS = 3_600_000;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private static SimulationServer server(long ttlMillis, int maxFinished) throws IOException {
+        SimulationServer server =
+                new SimulationServer(new Simulator(1, 4), 0, ttlMillis, maxFinished);
+        server.start();
+        return server;
+    }
+
+    private HttpResponse<String> request(SimulationServer server, String method, String path)
+            throws Exception {
+        HttpRequest request =
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path))
+                        .method(method, HttpRequest.BodyPublishers.noBody())
+                        .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private long submit(SimulationServer server, String query) throws Exception {
+        HttpResponse<String> r = request(server, "POST", "/jobs?" + query);
+        assertEquals(202, r.statusCode(), r.body());
+        return Long.parseLong(r.body().replaceAll("\\D", ""));
+    }
+
+    // Код ответа GET /jobs/N после того, как задание перестало быть в состоянии
+    // QUEUED/RUNNING или пропало
+    private int awaitFinished(SimulationServer server, long id) throws Exception {
+        final long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            HttpResponse<String> r = request(server, "GET", "/jobs/" + id);
+            if (r.statusCode() != 200
+                    || !(r.body().contains("QUEUED") || r.body().contains("RUNNING"))) {
+                return r.statusCode();
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("job " + id + " did not finish");
+    }
+
+    @Test
+    void evictsOldestFinishedJobs() throws Exception {
+        try (SimulationServer server = server(HOUR_MILLIS, 1)) {
+            final long first = submit(server, "time-end=1e-6");
+            assertEquals(200, awaitFinished(server, first));
+            final long second = submit(server, "time-end=1e-6");
+            assertEquals(200, awaitFinished(server, second));
+            assertEquals(404, request(server, "GET", "/jobs/" + first).statusCode());
+            assertEquals(200, request(server, "GET", "/jobs/" + second + "/result").statusCode());
+        }
+    }
+
+    @Test
+    void evictsFinishedJobsAfterTtl() throws Exception {
+        try (SimulationServer server = server(0, 16)) {
+            final long id = submit(server, "time-end=1e-6");
+            awaitFinished(server, id);
+            assertEquals(404, request(server, "GET", "/jobs/" + id).statusCode());
+        }
+    }
+
+    // Одного DELETE достаточно: отмененное задание удаляется после остановки
+    @Test
+    void removesCancelledJobOnceStopped() throws Exception {
+        try (SimulationServer server = server(HOUR_MILLIS, 16)) {
+            final long id = submit(server, "time-end=1");
+            HttpResponse<String> r = request(server, "DELETE", "/jobs/" + id);
+            assertEquals(200, r.statusCode());
+            assertTrue(r.body().contains("\"id\": " + id), r.body());
+            awaitFinished(server, id);
+            assertEquals(404, request(server, "GET", "/jobs/" + id).statusCode());
+        }
+    }
+}
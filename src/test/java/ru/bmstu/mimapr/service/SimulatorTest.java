@@ -0,0 +1,44 @@
+package ru.bmstu.mimapr.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+// Сервис расчетов: задание завершается при любом исходе счета
+class SimulatorTest {
+    private static SimulationJob shortJob() {
+        SimulationJob job = new SimulationJob();
+        job.timeEnd = 1e-6;
+        return job;
+    }
+
+    @Test
+    void completesJob() throws Exception {
+        try (Simulator simulator = new Simulator(1, 2)) {
+            SimulationResult r = simulator.submit(shortJob()).await(60, TimeUnit.SECONDS);
+            assertEquals(SimulationResult.Status.COMPLETED, r.status);
+            assertTrue(r.acceptedSteps > 0);
+            assertEquals(r.names.length, r.values.length);
+        }
+    }
+
+    // Error в потоке счета не оставляет задание незавершенным
+    @Test
+    void errorInSinkFailsJob() throws Exception {
+        try (Simulator simulator = new Simulator(1, 2)) {
+            JobHandle handle =
+                    simulator.submit(
+                            shortJob(),
+                            (t, x) -> {
+                                throw new AssertionError("sink broke");
+                            });
+            SimulationResult r = handle.await(60, TimeUnit.SECONDS);
+            assertEquals(SimulationResult.Status.FAILED, r.status);
+            assertEquals("sink broke", r.error);
+            assertTrue(handle.isDone());
+        }
+    }
+}
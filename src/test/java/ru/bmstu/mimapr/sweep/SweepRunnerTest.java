@@ -0,0 +1,106 @@
+package ru.bmstu.mimapr.sweep;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.bmstu.mimapr.config.CircuitParameters;
+import ru.bmstu.mimapr.config.LinearSolverKind;
+import ru.bmstu.mimapr.numerics.BatchedCircuitSystem;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Серия прогонов: итоги всех прогонов, проброс исключения получателя и
+ * совпадение пакетного расчета в ногу с отдельными прогонами
+ * */
+class SweepRunnerTest {
+    private static final int RUNS = 16;
+    private static final double TIME_END = 1e-6;
+    private static final double BATCH_TIME_END = 2e-5;
+
+    // Пакет короче ширины вектора (неполные дорожки под маской) и пакет
+    // из двух полных векторов с хвостом
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 1})
+    void batchMatchesSingleRuns(int extra) {
+        final int lanes = BatchedCircuitSystem.SPECIES.length();
+        final int size = (extra < 0) ? Math.max(1, lanes - 1) : 2 * lanes + extra;
+        List<CircuitParameters> ps = new ArrayList<>();
+        Iterator<CircuitParameters> it =
+                SweepRunner.monteCarlo(new CircuitParameters(), 0.1, 7L + size, size);
+        while (it.hasNext()) ps.add(it.next());
+
+        SweepRunner runner = new SweepRunner(1, BATCH_TIME_END, LinearSolverKind.SPARSE);
+        try {
+            List<RunSummary> batch = runner.runBatch(0, ps);
+            assertEquals(size, batch.size());
+            for (int i = 0; i < size; i++) {
+                RunSummary expected = runner.runOne(i, ps.get(i));
+                RunSummary actual = batch.get(i);
+                assertTrue(expected.isSuccessful, expected.error);
+                assertTrue(actual.isSuccessful, "lane " + i + ": " + actual.error);
+                assertEquals(i, actual.index);
+                assertEquals(expected.iterations, actual.iterations, "lane " + i);
+                for (int k = 0; k < expected.probes.length; k++) {
+                    ProbeStatistics e = expected.probes[k];
+                    ProbeStatistics a = actual.probes[k];
+                    final String probe = "lane " + i + " phi" + (k + 1);
+                    assertTrue(e.count() > 0, probe);
+                    assertEquals(e.count(), a.count(), probe);
+                    assertEquals(e.peak(), a.peak(), 1e-12 * e.peak(), probe);
+                    assertEquals(e.rms(), a.rms(), 1e-12 * e.rms(), probe);
+                }
+            }
+        } finally {
+            runner.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void deliversEverySummary(int batch) throws InterruptedException {
+        SweepRunner runner = new SweepRunner(2, TIME_END, LinearSolverKind.SPARSE);
+        boolean[] seen = new boolean[RUNS];
+        try {
+            runner.run(
+                    SweepRunner.monteCarlo(new CircuitParameters(), 0.1, 1L, RUNS),
+                    summary -> seen[summary.index] = true,
+                    batch);
+        } finally {
+            runner.shutdown();
+        }
+        for (boolean s : seen) assertTrue(s);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void rethrowsConsumerFailure(int batch) {
+        SweepRunner runner = new SweepRunner(2, TIME_END, LinearSolverKind.SPARSE);
+        AtomicInteger delivered = new AtomicInteger();
+        RuntimeException broken = new RuntimeException("consumer broke");
+        try {
+            IllegalStateException ex =
+                    assertThrows(
+                            IllegalStateException.class,
+                            () ->
+                                    runner.run(
+                                            SweepRunner.monteCarlo(
+                                                    new CircuitParameters(), 0.1, 1L, RUNS),
+                                            summary -> {
+                                                if (delivered.incrementAndGet() == 3) throw broken;
+                                            },
+                                            batch));
+            assertSame(broken, ex.getCause());
+        } finally {
+            runner.shutdown();
+        }
+        assertTrue(delivered.get() >= 3);
+    }
+}